@@ -0,0 +1,84 @@
+import benchmarks.Workload;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Un frame della scena disegnato da {@link SceneRenderer} su un'immagine offscreen,
+ * come farebbe GamePanel.paintComponent (vedi {@code benchmarks.RenderBenchmark}).
+ *
+ * Lo stato dei corpi è fisso (dopo un secondo di simulazione) e varia solo il
+ * fattore di interpolazione, così si misura il solo rendering. In modalità
+ * {@code partial} vengono ridisegnate solo le aree dei corpi in movimento e dell'HUD
+ * ({@link DirtyRegions}), come fa il pannello a regime. {@code tiled} e
+ * {@code tiled-serial} disegnano i corpi con il {@link TiledRenderer}, con un thread
+ * per processore o con uno solo.
+ */
+final class RenderWorkload implements Workload {
+
+    private static final long BOX_SEED = 7L;
+    private static final int SETTLE_STEPS = SimulationEngine.TARGET_FPS;
+    private static final int ALPHA_STEPS = 16;
+
+    private final SceneRenderer renderer =
+        new SceneRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+    private final BufferedImage frame = new BufferedImage(
+        SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    private final Graphics2D g2d = frame.createGraphics();
+    private final BodyStates states;
+    private final DirtyRegions dirtyRegions;
+    private int frameCount;
+
+    RenderWorkload(String mode, int boxes) {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        for (int i = 0; i < SETTLE_STEPS; i++) {
+            engine.step();
+        }
+        states = new BodyStates(engine.getEntities().size());
+        states.copyFrom(engine.getEntities());
+
+        renderer.loadSprite();
+        if ("rectangles".equals(mode)) {
+            renderer.setSpritesEnabled(false);
+        } else if ("tiled".equals(mode) || "tiled-serial".equals(mode)) {
+            int threads = "tiled".equals(mode) ? Runtime.getRuntime().availableProcessors() : 1;
+            renderer.setTiledRenderer(new TiledRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                                        TiledRenderer.DEFAULT_TILE_SIZE, threads));
+        } else if (!"sprites".equals(mode) && !"partial".equals(mode)) {
+            throw new IllegalArgumentException("Modalità sconosciuta: " + mode);
+        }
+
+        if ("partial".equals(mode)) {
+            // Primo frame completo, poi solo le aree cambiate
+            dirtyRegions = new DirtyRegions(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+            renderPartial(1.0f);
+        } else {
+            dirtyRegions = null;
+        }
+    }
+
+    @Override
+    public Object run() {
+        float alpha = (frameCount++ % ALPHA_STEPS) / (float) ALPHA_STEPS;
+        if (dirtyRegions != null) {
+            renderPartial(alpha);
+        } else {
+            renderer.render(g2d, states, alpha);
+        }
+        return frame;
+    }
+
+    // Come GamePanel: repaint dell'unione delle aree, poi un render per area
+    private void renderPartial(float alpha) {
+        Rectangle bounds = dirtyRegions.next(states, null);
+        int regions = dirtyRegions.beginPaint(bounds);
+        for (int i = 0; i < regions; i++) {
+            g2d.setClip(dirtyRegions.paintRegion(i));
+            renderer.render(g2d, states, alpha);
+        }
+        g2d.setClip(null);
+        dirtyRegions.painted(states);
+    }
+}
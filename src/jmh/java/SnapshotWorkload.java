@@ -0,0 +1,32 @@
+import benchmarks.Workload;
+
+/**
+ * Ripristino di un {@link WorldSnapshot} (vedi {@code benchmarks.SnapshotBenchmark}): un
+ * mondo con {@code boxes} scatole dopo due secondi di simulazione, quindi con i corpi
+ * a terra e i contatti da ripristinare, tornato ogni volta allo stesso istante.
+ */
+final class SnapshotWorkload implements Workload {
+
+    private static final long BOX_SEED = 7L;
+    private static final int SETTLE_STEPS = 2 * SimulationEngine.TARGET_FPS;
+
+    private final SimulationEngine engine = new SimulationEngine();
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+
+    SnapshotWorkload(String variant, int boxes) {
+        if (!"restore".equals(variant)) {
+            throw new IllegalArgumentException("Variante sconosciuta: " + variant);
+        }
+        engine.spawnBoxes(boxes, BOX_SEED);
+        for (int s = 0; s < SETTLE_STEPS; s++) {
+            engine.step();
+        }
+        engine.saveSnapshot(snapshot);
+    }
+
+    @Override
+    public Object run() {
+        engine.restoreSnapshot(snapshot);
+        return engine;
+    }
+}
@@ -0,0 +1,101 @@
+import benchmarks.Workload;
+
+import org.jbox2d.callbacks.QueryCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Fixture;
+
+import java.util.SplittableRandom;
+
+/**
+ * Interrogazioni dell'indice spaziale della simulazione (vedi
+ * {@code benchmarks.SpatialBenchmark}) su un mondo con {@code boxes} scatole dopo dieci
+ * secondi di simulazione, confrontate con le alternative senza indice:
+ * <ul>
+ *   <li>{@code query}: le entità nell'area dello schermo ({@link SpatialHash#query});</li>
+ *   <li>{@code scan}: la stessa area scorrendo tutte le entità del registro;</li>
+ *   <li>{@code world}: la stessa area con World.queryAABB (broadphase di JBox2D);</li>
+ *   <li>{@code outside}: le entità che escono dallo schermo;</li>
+ *   <li>{@code pick}: l'entità sotto un punto casuale dello schermo.</li>
+ * </ul>
+ */
+final class SpatialWorkload implements Workload {
+
+    private static final long BOX_SEED = 7L;
+    private static final long POINT_SEED = 42L;
+    private static final int SETTLE_STEPS = 10 * SimulationEngine.TARGET_FPS;
+    private static final float WIDTH = SimulationEngine.WORLD_WIDTH;
+    private static final float HEIGHT = SimulationEngine.WORLD_HEIGHT;
+
+    private final String variant;
+    private final SpatialHash index;
+    private final EntityRegistry entities;
+    private final SimulationEngine engine;
+    private final Counter counter = new Counter();
+    private final AABB viewport = new AABB(new Vec2(0, 0), new Vec2(SimulationEngine.pixelsToMeters(WIDTH),
+                                                                     SimulationEngine.pixelsToMeters(HEIGHT)));
+    private final SplittableRandom random = new SplittableRandom(POINT_SEED);
+
+    SpatialWorkload(String variant, int boxes) {
+        if (!"query".equals(variant) && !"scan".equals(variant) && !"world".equals(variant)
+            && !"outside".equals(variant) && !"pick".equals(variant)) {
+            throw new IllegalArgumentException("Variante sconosciuta: " + variant);
+        }
+        this.variant = variant;
+        engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        for (int s = 0; s < SETTLE_STEPS; s++) {
+            engine.step();
+        }
+        index = engine.getSpatialIndex();
+        entities = engine.getEntities();
+    }
+
+    @Override
+    public Object run() {
+        counter.count = 0;
+        switch (variant) {
+            case "query":
+                index.query(0, 0, WIDTH, HEIGHT, counter);
+                return counter.count;
+            case "scan":
+                return scanViewport();
+            case "world":
+                engine.getWorld().queryAABB(counter, viewport);
+                return counter.count;
+            case "outside":
+                index.queryOutside(0, 0, WIDTH, HEIGHT, counter);
+                return counter.count;
+            default:
+                return index.pick((float) random.nextDouble(WIDTH), (float) random.nextDouble(HEIGHT));
+        }
+    }
+
+    // Entità il cui ingombro indicizzato tocca lo schermo, scorrendole tutte
+    private int scanViewport() {
+        int found = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            if (entities.x[i] + index.getExtentX(i) >= 0 && entities.x[i] - index.getExtentX(i) <= WIDTH
+                    && entities.y[i] + index.getExtentY(i) >= 0 && entities.y[i] - index.getExtentY(i) <= HEIGHT) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static final class Counter implements SpatialHash.Visitor, QueryCallback {
+        int count;
+
+        @Override
+        public boolean visit(int index) {
+            count++;
+            return true;
+        }
+
+        @Override
+        public boolean reportFixture(Fixture fixture) {
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import benchmarks.Workload;
+
+/**
+ * Un passo di simulazione con {@code bodies} corpi dinamici: il cubo più
+ * {@code bodies - 1} scatole create come il cubo (vedi {@code benchmarks.StepBenchmark}).
+ *
+ * Lo stato iniziale viene salvato in un {@link WorldSnapshot} e ripristinato prima di
+ * ogni iterazione ({@link #reset}): altrimenti ogni iterazione misurerebbe una fase
+ * diversa della simulazione (corpi in caduta, poi accatastati a terra).
+ */
+final class StepWorkload implements Workload {
+
+    private static final long BOX_SEED = 7L;
+
+    private final SimulationEngine engine = new SimulationEngine();
+    private final WorldSnapshot initialState = new WorldSnapshot();
+
+    StepWorkload(String variant, int bodies) {
+        if (!"step".equals(variant)) {
+            throw new IllegalArgumentException("Variante sconosciuta: " + variant);
+        }
+        if (bodies < 1) {
+            throw new IllegalArgumentException("Serve almeno il cubo: " + bodies);
+        }
+        engine.spawnBoxes(bodies - 1, BOX_SEED);
+        engine.saveSnapshot(initialState);
+    }
+
+    @Override
+    public void reset() {
+        engine.restoreSnapshot(initialState);
+    }
+
+    @Override
+    public Object run() {
+        engine.step();
+        return engine;
+    }
+}
@@ -0,0 +1,77 @@
+import benchmarks.Workload;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Colorazione di uno sprite sintetico quadrato (vedi {@code benchmarks.TintBenchmark}).
+ *
+ * Un terzo dei pixel è vicino al colore della maschera, così il tint per maschera
+ * esegue entrambi i rami; le varianti usano gli stessi colori della demo. La variante
+ * {@code indexed} colora la stessa maschera con una {@link TintPipeline} che inizia con
+ * la maschera, quindi tramite il {@link ColorMaskIndex} dello sprite (costruito alla
+ * prima chiamata, durante il warm-up).
+ */
+final class TintWorkload implements Workload {
+
+    private static final long SEED = 11L;
+    private static final Color GREEN = new Color(100, 255, 100);
+    private static final Color BLUE = new Color(100, 200, 255);
+    private static final Color MASK_TARGET = new Color(220, 20, 60);
+    private static final int MASK_TOLERANCE = 30;
+
+    private final BufferedImage sprite;
+    private final String kind;
+    private final TintPipeline pipeline;
+    private final TintPipeline masked;
+
+    TintWorkload(String kind, int size) {
+        if (!"tint".equals(kind) && !"partial".equals(kind)
+            && !"mask".equals(kind) && !"indexed".equals(kind) && !"pipeline".equals(kind)) {
+            throw new IllegalArgumentException("Variante sconosciuta: " + kind);
+        }
+        this.kind = kind;
+        this.sprite = createSprite(size);
+
+        // Stessa ricetta del cubo: verde ovunque, azzurro al centro
+        int margin = (int) (size * 0.2);
+        this.pipeline = TintPipeline.create()
+            .tint(GREEN)
+            .partialTint(BLUE, margin, margin, size - 2 * margin, size - 2 * margin);
+        this.masked = TintPipeline.create().colorMaskedTint(GREEN, MASK_TARGET, MASK_TOLERANCE);
+    }
+
+    @Override
+    public Object run() {
+        int size = sprite.getWidth();
+        int margin = (int) (size * 0.2);
+        switch (kind) {
+            case "tint":
+                return TintKernels.tint(sprite, GREEN);
+            case "partial":
+                return TintKernels.regionTint(sprite, BLUE, margin, margin, size - 2 * margin, size - 2 * margin);
+            case "mask":
+                return TintKernels.colorMaskedTint(sprite, GREEN, MASK_TARGET, MASK_TOLERANCE);
+            case "indexed":
+                return masked.apply(sprite);
+            default:
+                return pipeline.apply(sprite);
+        }
+    }
+
+    private static BufferedImage createSprite(int size) {
+        Random random = new Random(SEED);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        int target = MASK_TARGET.getRGB();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int argb = random.nextInt(3) == 0
+                    ? target ^ (random.nextInt(16) << 8)
+                    : 0xff000000 | random.nextInt(0x1000000);
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un frame completo della scena (lo stesso disegno di GamePanel.paintComponent)
+ * su un'immagine offscreen, con {@code boxes} scatole oltre a pavimento e cubo.
+ * {@code partial} ridisegna solo le aree cambiate, come il pannello a regime;
+ * {@code tiled} e {@code tiled-serial} usano il renderer a tile (tutti i processori o
+ * un thread).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RenderBenchmark {
+
+    @Param({"sprites", "rectangles", "partial", "tiled", "tiled-serial"})
+    public String mode;
+
+    @Param({"0", "100", "1000"})
+    public int boxes;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create("RenderWorkload", mode, boxes);
+    }
+
+    @Benchmark
+    public Object render() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Il ripristino di uno snapshot del World (riavvolgimento) con {@code boxes} scatole
+ * oltre a pavimento e cubo; con il profiler gc si leggono anche i byte allocati.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"0", "20", "200"})
+    public int boxes;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create("SnapshotWorkload", "restore", boxes);
+    }
+
+    @Benchmark
+    public Object restore() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un'interrogazione dell'indice spaziale con {@code boxes} scatole, e le stesse
+ * interrogazioni senza indice: scansione del registro e broadphase di JBox2D.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpatialBenchmark {
+
+    @Param({"query", "scan", "world", "outside", "pick"})
+    public String variant;
+
+    @Param({"100", "1000"})
+    public int boxes;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create("SpatialWorkload", variant, boxes);
+    }
+
+    @Benchmark
+    public Object query() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un passo di simulazione (world.step più sincronizzazione del registro e regole
+ * di gioco) con {@code bodies} corpi dinamici costruiti come il cubo, a partire dallo
+ * stesso stato in ogni iterazione.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StepBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int bodies;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create("StepWorkload", "step", bodies);
+    }
+
+    // Ogni iterazione riparte dallo stesso stato della simulazione
+    @Setup(Level.Iteration)
+    public void resetWorld() {
+        workload.reset();
+    }
+
+    @Benchmark
+    public Object step() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Colorazione di uno sprite quadrato di lato {@code size}: tint completo, tint di
+ * regione, tint per maschera di colore (con il test su ogni pixel o con la maschera già
+ * indicizzata) e la pipeline fusa usata per il cubo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TintBenchmark {
+
+    @Param({"tint", "partial", "mask", "indexed", "pipeline"})
+    public String kind;
+
+    @Param({"32", "64", "256", "1024"})
+    public int size;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create("TintWorkload", kind, size);
+    }
+
+    @Benchmark
+    public Object tint() {
+        return workload.run();
+    }
+}
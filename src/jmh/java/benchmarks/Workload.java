@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Operazione misurata da un benchmark.
+ *
+ * JMH non accetta benchmark nel package di default, mentre il codice della demo sta
+ * proprio lì e da un package con nome non è visibile. Per questo le classi
+ * {@code @Benchmark} di questo package misurano solo un Workload: le implementazioni
+ * stanno nel package di default accanto alla demo e vengono create con {@link #create}.
+ */
+public interface Workload {
+
+    /**
+     * Esegue un'operazione.
+     *
+     * @return Il risultato, da consumare per evitare che il JIT elimini il lavoro
+     */
+    Object run();
+
+    /**
+     * Riporta il workload allo stato iniziale, così ogni iterazione misura lo stesso
+     * lavoro. Per default non fa nulla (workload senza stato).
+     */
+    default void reset() {
+    }
+
+    /**
+     * Crea un workload del package di default tramite il costruttore {@code (String, int)}.
+     *
+     * @param className Nome della classe (package di default)
+     * @param variant Variante da misurare
+     * @param size Dimensione del problema
+     */
+    static Workload create(String className, String variant, int size) {
+        try {
+            Constructor<?> constructor =
+                Class.forName(className).getDeclaredConstructor(String.class, int.class);
+            constructor.setAccessible(true);
+            return (Workload) constructor.newInstance(variant, size);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Impossibile preparare " + className, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Workload non trovato: " + className, e);
+        }
+    }
+}
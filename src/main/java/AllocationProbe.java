@@ -0,0 +1,362 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Verifica che il game loop non allochi a regime: dopo un riscaldamento misura i byte
+ * allocati dal thread corrente per il tick di simulazione (passo + pubblicazione dello
+ * stato) e per il lavoro dell'EDT di JBox2Demo su un'immagine offscreen, con un nuovo
+ * stato pubblicato a ogni frame: calcolo delle aree cambiate ({@link DirtyRegions}),
+ * nuovo indice del {@link BodyCuller}, disegno della scena e dell'HUD, overlay delle
+ * {@link FrameMetrics}.
+ *
+ * La verifica vera e propria è in {@code AllocationProbeTest} (gradlew test); da riga di
+ * comando {@code --headless --alloc-check [--steps N] [--boxes B]} riporta le stesse
+ * misure e termina con codice 1 se, in uno qualsiasi dei passaggi di misura, il tick o
+ * il frame senza sprite allocano qualcosa.
+ *
+ * Restano fuori dalla verifica, e vengono solo riportate, le allocazioni interne a
+ * Java2D che il codice della demo non può evitare:
+ * - ogni setClip crea una nuova {@code Region} (circa 72 byte), quindi un frame con più
+ *   aree cambiate alloca per il clip di ciascuna area e per il ripristino finale;
+ * - il drawImage dello sprite alloca qualche decina di byte (rettangoli di clipping
+ *   della copia) e qualche centinaio quando è ruotato (pipeline di trasformazione del
+ *   JDK), per sprite disegnato.
+ * Il riscaldamento ripete i passaggi di misura per almeno {@value #WARMUP_FRAMES} frame,
+ * qualunque sia il numero di frame misurati: altre
+ * allocazioni di Java2D (i Rectangle del drawImage dello strato statico) spariscono
+ * solo quando C2 compila il percorso di disegno con l'escape analysis.
+ */
+final class AllocationProbe {
+
+    private static final long BOX_SEED = 7L;
+    private static final int WARMUP_FRAMES = 20_000;
+    private static final int MEASURE_PASSES = 2;
+
+    private AllocationProbe() {
+    }
+
+    /**
+     * @return true se la JVM sa misurare i byte allocati da un thread
+     */
+    static boolean isSupported() {
+        try {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .isThreadAllocatedMemorySupported();
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param frames Frame misurati per ciascuna fase
+     * @param boxes Scatole aggiuntive oltre al cubo
+     * @return 0 se il loop non alloca, 1 altrimenti (2 se la misura non è disponibile)
+     */
+    static int run(int frames, int boxes) {
+        if (!isSupported()) {
+            System.err.println("Misura delle allocazioni non disponibile su questa JVM");
+            return 2;
+        }
+        System.out.printf(Locale.ROOT, "Verifica allocazioni: %d frame per fase, %d scatole%n", frames, boxes);
+        Result result = measure(frames, boxes);
+
+        System.out.printf(Locale.ROOT, "  tick di simulazione:      %.1f B/frame%n", result.getTickBytesPerFrame());
+        System.out.printf(Locale.ROOT, "  rendering senza sprite:   %.1f B/frame%n", result.getPlainBytesPerFrame());
+        System.out.printf(Locale.ROOT, "  clip delle aree:          %.1f B/frame (interni a Java2D)%n",
+                          result.getClipBytesPerFrame());
+        if (result.spriteLoaded && result.sprites > 0) {
+            System.out.printf(Locale.ROOT, "  rendering con sprite:     %.1f B/frame (%.1f B per sprite, interni a Java2D)%n",
+                              result.getSpriteBytesPerFrame(), result.getBytesPerSprite());
+        }
+
+        boolean ok = result.isAllocationFree();
+        System.out.println(ok ? "OK: nessuna allocazione nel loop" : "ERRORE: il loop alloca memoria");
+        return ok ? 0 : 1;
+    }
+
+    /**
+     * Riscalda il loop per almeno {@value #WARMUP_FRAMES} frame e misura le allocazioni di
+     * {@code frames} frame per fase, {@value #MEASURE_PASSES} volte. Richiede
+     * {@link #isSupported()}.
+     *
+     * @param frames Frame misurati per ciascuna fase
+     * @param boxes Scatole aggiuntive oltre al cubo
+     */
+    static Result measure(int frames, int boxes) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        BodyStateBuffer buffer = new BodyStateBuffer(engine.getEntities().size());
+        FrameMetrics metrics = new FrameMetrics((long) (SimulationEngine.TIME_STEP * 1.0e9));
+        PanelPaint panel = new PanelPaint(buffer, metrics, threads, threadId);
+
+        long[] tickBytes = new long[MEASURE_PASSES];
+        long[] plainBytes = new long[MEASURE_PASSES];
+        long[] clipBytes = new long[MEASURE_PASSES];
+        long[] spriteBytes = new long[MEASURE_PASSES];
+
+        // Riscaldamento (cache delle tinte, glifi, JIT) con gli stessi passaggi che poi
+        // vengono misurati: un riscaldamento con un loop diverso lasciava il primo frame
+        // misurato, quello che ridisegna tutto dopo i tick senza paint, a una
+        // deottimizzazione o a un codice non ancora compilato da C2, e quindi a qualche
+        // centinaio di byte allocati solo in alcune esecuzioni.
+        int warmupPasses = (WARMUP_FRAMES + 3 * frames - 1) / (3 * frames);
+        long step = 0;
+        for (int pass = 0; pass < warmupPasses; pass++) {
+            step = measurePass(engine, buffer, metrics, panel, frames, step, 0,
+                               tickBytes, plainBytes, clipBytes, spriteBytes);
+        }
+        for (int pass = 0; pass < MEASURE_PASSES; pass++) {
+            step = measurePass(engine, buffer, metrics, panel, frames, step, pass,
+                               tickBytes, plainBytes, clipBytes, spriteBytes);
+        }
+        panel.dispose();
+
+        BodyStates states = buffer.latest();
+        int sprites = 0;
+        for (int i = 0; i < states.count; i++) {
+            if (states.spriteId[i] == SimulationEngine.SPRITE_CUBE) {
+                sprites++;
+            }
+        }
+        return new Result(frames, tickBytes, plainBytes, clipBytes, spriteBytes, sprites, panel.renderer.hasSprite());
+    }
+
+    /**
+     * Un passaggio: {@code frames} tick senza paint (come quando il Timer dell'EDT è in
+     * ritardo), poi {@code frames} frame senza sprite e {@code frames} con gli sprite. I
+     * byte misurati finiscono nell'elemento {@code pass} degli array.
+     *
+     * @return Il passo di simulazione successivo
+     */
+    private static long measurePass(SimulationEngine engine, BodyStateBuffer buffer, FrameMetrics metrics,
+                                    PanelPaint panel, int frames, long step, int pass,
+                                    long[] tickBytes, long[] plainBytes, long[] clipBytes, long[] spriteBytes) {
+        com.sun.management.ThreadMXBean threads = panel.threads;
+        long threadId = panel.threadId;
+        // Come MetricsReporter: uno snapshot nuovo, riletto dall'overlay al primo frame
+        // (lo alloca il thread delle metriche, non l'EDT)
+        metrics.report();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < frames; i++) {
+            tick(engine, buffer, metrics, step++);
+        }
+        tickBytes[pass] = threads.getThreadAllocatedBytes(threadId) - before;
+
+        panel.renderer.setSpritesEnabled(false);
+        panel.clipBytes = 0;
+        plainBytes[pass] = 0;
+        for (int i = 0; i < frames; i++) {
+            tick(engine, buffer, metrics, step++);
+            plainBytes[pass] += measurePaint(threads, threadId, panel);
+        }
+        clipBytes[pass] = panel.clipBytes;
+        plainBytes[pass] -= panel.clipBytes;
+
+        panel.renderer.setSpritesEnabled(true);
+        panel.clipBytes = 0;
+        spriteBytes[pass] = 0;
+        for (int i = 0; i < frames; i++) {
+            tick(engine, buffer, metrics, step++);
+            spriteBytes[pass] += measurePaint(threads, threadId, panel);
+        }
+        spriteBytes[pass] -= panel.clipBytes;
+        return step;
+    }
+
+    // Byte allocati dal Timer e dal paint di un frame, senza il clip preparato da Swing
+    private static long measurePaint(com.sun.management.ThreadMXBean threads, long threadId, PanelPaint panel) {
+        long before = threads.getThreadAllocatedBytes(threadId);
+        boolean dirty = panel.requestRepaint();
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        if (!dirty) {
+            return allocated;
+        }
+        panel.clipToRepaint();
+        before = threads.getThreadAllocatedBytes(threadId);
+        panel.paint();
+        return allocated + threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    // Un tick come sul thread di simulazione: passo fisico e pubblicazione di un nuovo stato
+    private static void tick(SimulationEngine engine, BodyStateBuffer buffer, FrameMetrics metrics, long step) {
+        long start = System.nanoTime();
+        engine.step();
+        metrics.recordSince(FrameMetrics.PHYSICS_STEP, start);
+        BodyStates states = buffer.back();
+        states.copyFrom(engine.getEntities());
+        states.step = step;
+        states.timeNanos = System.nanoTime();
+        buffer.publish();
+    }
+
+    /**
+     * Il lavoro dell'EDT di JBox2Demo su un'immagine offscreen, con le stesse chiamate
+     * nello stesso ordine: il Timer calcola le aree cambiate (con l'overlay delle metriche
+     * visibile), Swing prepara il clip del repaint e GamePanel.paintComponent disegna
+     * ogni area con il proprio clip, poi l'overlay. I byte allocati dai setClip delle
+     * aree (interni a Java2D) sono contati a parte in {@link #clipBytes}.
+     */
+    private static final class PanelPaint {
+        final SceneRenderer renderer = new SceneRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+        private final BodyStateBuffer buffer;
+        private final FrameMetrics metrics;
+        private final MetricsOverlay overlay;
+        private final QualityGovernor governor = new QualityGovernor((long) (SimulationEngine.TIME_STEP * 1.0e9));
+        private final DirtyRegions dirtyRegions = new DirtyRegions(SimulationEngine.WORLD_WIDTH,
+                                                                   SimulationEngine.WORLD_HEIGHT);
+        private final Rectangle overlayBounds = new Rectangle();
+        private final Rectangle clipBounds = new Rectangle();
+        private final BufferedImage frame = new BufferedImage(SimulationEngine.WORLD_WIDTH,
+                                                              SimulationEngine.WORLD_HEIGHT,
+                                                              BufferedImage.TYPE_INT_ARGB);
+        private final Graphics2D g2d = frame.createGraphics();
+        private final com.sun.management.ThreadMXBean threads;
+        private final long threadId;
+        private Rectangle dirty;
+        long clipBytes;
+
+        PanelPaint(BodyStateBuffer buffer, FrameMetrics metrics,
+                   com.sun.management.ThreadMXBean threads, long threadId) {
+            this.buffer = buffer;
+            this.metrics = metrics;
+            this.threads = threads;
+            this.threadId = threadId;
+            overlay = new MetricsOverlay(metrics, SimulationEngine.WORLD_WIDTH);
+            renderer.loadSprite();
+            renderer.setMetrics(metrics);
+        }
+
+        // JBox2Demo.requestRepaint: true se c'è qualcosa da ridisegnare
+        boolean requestRepaint() {
+            metrics.onTimerTick(System.nanoTime());
+            overlay.getBounds(overlayBounds);
+            dirty = dirtyRegions.next(buffer.latest(), overlayBounds);
+            return !dirty.isEmpty();
+        }
+
+        // Il clip con cui Swing chiama paintComponent dopo repaint(dirty)
+        void clipToRepaint() {
+            g2d.setClip(dirty);
+        }
+
+        // GamePanel.paintComponent
+        void paint() {
+            long start = System.nanoTime();
+            clipBounds.setBounds(0, 0, frame.getWidth(), frame.getHeight());
+            g2d.getClipBounds(clipBounds);
+            long layerBuilds = renderer.getStaticLayerBuilds();
+            BodyStates states = buffer.latest();
+
+            renderer.setFastRendering(governor.isFastRendering());
+            renderer.setTintingEnabled(governor.isTintingEnabled());
+            float alpha = (System.nanoTime() - states.timeNanos) / (SimulationEngine.TIME_STEP * 1.0e9f);
+            alpha = Math.min(1.0f, Math.max(0.0f, alpha));
+
+            int regions = dirtyRegions.beginPaint(clipBounds);
+            for (int i = 0; i < regions; i++) {
+                if (regions > 1) {
+                    setClip(dirtyRegions.paintRegion(i));
+                }
+                renderer.render(g2d, states, alpha);
+            }
+            if (regions > 1) {
+                setClip(clipBounds);
+            }
+            overlay.draw(g2d);
+
+            dirtyRegions.painted(states);
+            if (renderer.getStaticLayerBuilds() != layerBuilds) {
+                dirtyRegions.invalidateAll();
+            }
+            metrics.recordSince(FrameMetrics.PAINT, start);
+        }
+
+        private void setClip(Rectangle clip) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            g2d.setClip(clip);
+            clipBytes += threads.getThreadAllocatedBytes(threadId) - before;
+        }
+
+        void dispose() {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Byte allocati nelle fasi misurate, per ciascun passaggio di misura. I byte dei frame
+     * con e senza sprite non comprendono quelli dei setClip, riportati in {@code clipBytes}
+     * (fase senza sprite).
+     */
+    static final class Result {
+        final int frames;
+        final long[] tickBytes;
+        final long[] plainBytes;
+        final long[] clipBytes;
+        final long[] spriteBytes;
+        // Sprite disegnati per frame e se lo sprite era disponibile
+        final int sprites;
+        final boolean spriteLoaded;
+
+        Result(int frames, long[] tickBytes, long[] plainBytes, long[] clipBytes, long[] spriteBytes,
+               int sprites, boolean spriteLoaded) {
+            this.frames = frames;
+            this.tickBytes = tickBytes;
+            this.plainBytes = plainBytes;
+            this.clipBytes = clipBytes;
+            this.spriteBytes = spriteBytes;
+            this.sprites = sprites;
+            this.spriteLoaded = spriteLoaded;
+        }
+
+        /**
+         * @return true se in nessun passaggio il tick o il frame senza sprite allocano
+         */
+        boolean isAllocationFree() {
+            return max(tickBytes) == 0 && max(plainBytes) == 0;
+        }
+
+        double getTickBytesPerFrame() {
+            return (double) max(tickBytes) / frames;
+        }
+
+        double getPlainBytesPerFrame() {
+            return (double) max(plainBytes) / frames;
+        }
+
+        double getClipBytesPerFrame() {
+            return (double) max(clipBytes) / frames;
+        }
+
+        double getSpriteBytesPerFrame() {
+            return (double) max(spriteBytes) / frames;
+        }
+
+        /**
+         * @return Stima dei byte allocati da Java2D per ogni sprite disegnato (mai negativa:
+         *         le due fasi sono misurate separatamente e il rumore può invertirle)
+         */
+        double getBytesPerSprite() {
+            if (sprites == 0) {
+                return 0;
+            }
+            return Math.max(0, (double) (max(spriteBytes) - max(plainBytes)) / frames / sprites);
+        }
+
+        private static long max(long[] passes) {
+            long max = 0;
+            for (long bytes : passes) {
+                max = Math.max(max, bytes);
+            }
+            return max;
+        }
+    }
+}
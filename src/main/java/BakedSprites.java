@@ -0,0 +1,175 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sprite pre-calcolati in fase di build (task Gradle {@code bakeSprites}, vedi
+ * {@link SpriteBaker}): i frame dell'atlante e le loro varianti colorate salvati come
+ * pixel ARGB grezzi, così all'avvio non servono né la decodifica del JPEG né la
+ * colorazione.
+ *
+ * Formato (big-endian): magic, versione e numero di voci, poi per ogni voce nome del
+ * frame, ricetta di colorazione (stringa vuota per il frame originale, altrimenti il
+ * toString della ricetta), larghezza, altezza e i pixel riga per riga. I pixel vengono
+ * copiati in blocco direttamente nel raster di un'immagine {@code TYPE_INT_ARGB}.
+ */
+final class BakedSprites {
+
+    static final int MAGIC = 0x4A425341; // "JBSA"
+    static final int VERSION = 1;
+
+    // Ricetta delle voci che contengono il frame originale
+    private static final String SOURCE = "";
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> recipes = new ArrayList<>();
+    private final List<BufferedImage> images = new ArrayList<>();
+
+    BakedSprites() {
+    }
+
+    /**
+     * Carica gli sprite pre-calcolati dalle risorse.
+     *
+     * @param resource Percorso della risorsa (es. {@code "/sprites.argb"})
+     * @return Gli sprite, o null se la risorsa non esiste
+     * @throws IOException Se la risorsa non è nel formato atteso
+     */
+    static BakedSprites load(String resource) throws IOException {
+        InputStream is = BakedSprites.class.getResourceAsStream(resource);
+        if (is == null) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (InputStream in = is) {
+            buffer = ByteBuffer.wrap(in.readAllBytes());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Non è un file di sprite pre-calcolati: " + resource);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versione " + version + " non supportata: " + resource);
+            }
+            BakedSprites sprites = new BakedSprites();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String name = readString(buffer);
+                String recipe = readString(buffer);
+                int width = buffer.getInt();
+                int height = buffer.getInt();
+                if (width <= 0 || height <= 0 || (long) width * height * Integer.BYTES > buffer.remaining()) {
+                    throw new IOException("Voce '" + name + "' danneggiata: " + resource);
+                }
+                BufferedImage image = TintKernels.createArgb(width, height);
+                buffer.asIntBuffer().get(TintKernels.pixelsOf(image), 0, width * height);
+                buffer.position(buffer.position() + width * height * Integer.BYTES);
+                sprites.add(name, recipe, image);
+            }
+            return sprites;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("File di sprite pre-calcolati troncato: " + resource, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Aggiunge un frame originale.
+     */
+    void addFrame(String name, BufferedImage frame) {
+        add(name, SOURCE, frame);
+    }
+
+    /**
+     * Aggiunge la variante colorata di un frame.
+     *
+     * @param recipe La ricetta usata per costruirla (confrontata tramite toString al caricamento)
+     */
+    void addVariant(String name, Object recipe, BufferedImage variant) {
+        add(name, recipe.toString(), variant);
+    }
+
+    private void add(String name, String recipe, BufferedImage image) {
+        names.add(name);
+        recipes.add(recipe);
+        images.add(image);
+    }
+
+    int size() {
+        return images.size();
+    }
+
+    /**
+     * @return Il frame originale con quel nome, o null se non esiste
+     */
+    BufferedImage frame(String name) {
+        return find(name, SOURCE);
+    }
+
+    /**
+     * @return La variante del frame costruita con quella ricetta, o null se non è stata
+     *         pre-calcolata (o la ricetta è cambiata dopo la build)
+     */
+    BufferedImage variant(String name, Object recipe) {
+        return find(name, recipe.toString());
+    }
+
+    private BufferedImage find(String name, String recipe) {
+        for (int i = 0; i < images.size(); i++) {
+            if (names.get(i).equals(name) && recipes.get(i).equals(recipe)) {
+                return images.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scrive tutte le voci in {@code file}.
+     */
+    void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(images.size());
+            int[] pixels = new int[0];
+            for (int i = 0; i < images.size(); i++) {
+                BufferedImage image = images.get(i);
+                int width = image.getWidth();
+                int height = image.getHeight();
+                writeString(out, names.get(i));
+                writeString(out, recipes.get(i));
+                out.writeInt(width);
+                out.writeInt(height);
+                if (pixels.length < width * height) {
+                    pixels = new int[width * height];
+                }
+                TintKernels.readArgb(image, pixels);
+                for (int p = 0; p < width * height; p++) {
+                    out.writeInt(pixels[p]);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
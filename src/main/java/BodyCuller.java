@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Corpi dinamici di uno stato pubblicato che possono toccare l'area da ridisegnare, in
+ * ordine di indice (l'ordine di disegno), cercati in uno {@link SpatialHash} invece di
+ * esaminare tutti i corpi.
+ *
+ * L'indice della simulazione appartiene al thread di simulazione, mentre i renderer
+ * disegnano sull'EDT gli stati pubblicati: per questo ogni culler ha un proprio indice
+ * sullo stato, aggiornato solo quando arriva uno stato nuovo (i render di più aree dello
+ * stesso frame lo riusano). L'indice è costruito sulle posizioni dello stato, mentre si
+ * disegnano quelle interpolate dal passo precedente: l'area cercata viene allargata del
+ * massimo spostamento di un corpo tra i due passi.
+ *
+ * Da usare da un solo thread (quello che disegna).
+ */
+final class BodyCuller {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SpatialHash index;
+    private final SpatialHash.Visitor collector = this::collect;
+
+    // Stato indicizzato: un nuovo stato (o lo stesso ripubblicato) ha un altro istante
+    private BodyStates indexedStates;
+    private long indexedStep;
+    private long indexedNanos;
+    private float maxDisplacement;
+
+    private BodyStates current;
+    private int[] visible = new int[INITIAL_CAPACITY];
+    private int visibleCount;
+
+    /**
+     * @param cellSize Lato di una cella dell'indice in pixel
+     */
+    BodyCuller(float cellSize) {
+        index = new SpatialHash(cellSize);
+    }
+
+    /**
+     * Cerca i corpi dinamici il cui ingombro, in qualsiasi punto tra il passo precedente
+     * e quello dello stato, tocca il rettangolo (estremi inclusi).
+     *
+     * @return Il numero di corpi trovati, i cui indici crescenti sono in {@link #getVisible}
+     */
+    int cull(BodyStates states, float minX, float minY, float maxX, float maxY) {
+        if (states != indexedStates || states.step != indexedStep || states.timeNanos != indexedNanos) {
+            index.update(states);
+            maxDisplacement = maxDisplacement(states);
+            indexedStates = states;
+            indexedStep = states.step;
+            indexedNanos = states.timeNanos;
+        }
+
+        current = states;
+        visibleCount = 0;
+        float margin = maxDisplacement;
+        index.query(minX - margin, minY - margin, maxX + margin, maxY + margin, collector);
+        current = null;
+        Arrays.sort(visible, 0, visibleCount);
+        return visibleCount;
+    }
+
+    /**
+     * @return Gli indici trovati dall'ultimo {@link #cull} (validi i primi visibleCount)
+     */
+    int[] getVisible() {
+        return visible;
+    }
+
+    private boolean collect(int i) {
+        if (!current.isStatic(i)) {
+            if (visibleCount == visible.length) {
+                visible = Arrays.copyOf(visible, visibleCount * 2);
+            }
+            visible[visibleCount++] = i;
+        }
+        return true;
+    }
+
+    // Il massimo spostamento, per asse, di un corpo dinamico dal passo precedente
+    private static float maxDisplacement(BodyStates states) {
+        float max = 0;
+        for (int i = 0; i < states.count; i++) {
+            if (!states.isStatic(i)) {
+                max = Math.max(max, Math.abs(states.x[i] - states.prevX[i]));
+                max = Math.max(max, Math.abs(states.y[i] - states.prevY[i]));
+            }
+        }
+        return max;
+    }
+}
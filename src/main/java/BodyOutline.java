@@ -0,0 +1,182 @@
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Rettangolo ruotato riusabile, con i quattro vertici già in coordinate dello schermo.
+ *
+ * Permette di disegnare un corpo senza toccare la trasformazione del Graphics2D:
+ * annullare una rotazione con quella opposta lascia un piccolo errore numerico, e con
+ * una trasformazione "quasi identità" Java2D ricrea i glifi del testo disegnato dopo
+ * (l'HUD) ad ogni frame. La forma fa anche da PathIterator di se stessa, quindi fill e
+ * draw non allocano. Un'istanza va usata da un solo thread e un path alla volta.
+ */
+final class BodyOutline implements Shape, PathIterator {
+
+    private static final int CORNERS = 4;
+
+    private final float[] cornerX = new float[CORNERS];
+    private final float[] cornerY = new float[CORNERS];
+
+    // Stato dell'iterazione in corso
+    private AffineTransform iteratorTransform;
+    private int segment;
+
+    /**
+     * Posiziona il rettangolo.
+     *
+     * @param centerX Centro in pixel
+     * @param centerY Centro in pixel (Y verso il basso)
+     * @param halfWidth Mezza larghezza in pixel
+     * @param halfHeight Mezza altezza in pixel
+     * @param angle Angolo del corpo in radianti (convenzione JBox2D, antiorario)
+     */
+    void set(float centerX, float centerY, float halfWidth, float halfHeight, float angle) {
+        // Con Y verso il basso la rotazione antioraria di JBox2D diventa -angle
+        double cos = Math.cos(-angle);
+        double sin = Math.sin(-angle);
+        corner(0, centerX, centerY, -halfWidth, -halfHeight, cos, sin);
+        corner(1, centerX, centerY, halfWidth, -halfHeight, cos, sin);
+        corner(2, centerX, centerY, halfWidth, halfHeight, cos, sin);
+        corner(3, centerX, centerY, -halfWidth, halfHeight, cos, sin);
+    }
+
+    private void corner(int i, float centerX, float centerY, float localX, float localY,
+                        double cos, double sin) {
+        cornerX[i] = (float) (centerX + localX * cos - localY * sin);
+        cornerY[i] = (float) (centerY + localX * sin + localY * cos);
+    }
+
+    float minX() {
+        return Math.min(Math.min(cornerX[0], cornerX[1]), Math.min(cornerX[2], cornerX[3]));
+    }
+
+    float minY() {
+        return Math.min(Math.min(cornerY[0], cornerY[1]), Math.min(cornerY[2], cornerY[3]));
+    }
+
+    float maxX() {
+        return Math.max(Math.max(cornerX[0], cornerX[1]), Math.max(cornerX[2], cornerX[3]));
+    }
+
+    float maxY() {
+        return Math.max(Math.max(cornerY[0], cornerY[1]), Math.max(cornerY[2], cornerY[3]));
+    }
+
+    // --- Shape ---
+
+    @Override
+    public Rectangle getBounds() {
+        return getBounds2D().getBounds();
+    }
+
+    @Override
+    public Rectangle2D getBounds2D() {
+        float minX = minX();
+        float minY = minY();
+        return new Rectangle2D.Float(minX, minY, maxX() - minX, maxY() - minY);
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        // Il rettangolo è convesso: il punto è dentro se sta dallo stesso lato di tutti i lati
+        boolean positive = false;
+        boolean negative = false;
+        for (int i = 0; i < CORNERS; i++) {
+            int j = (i + 1) % CORNERS;
+            double cross = (cornerX[j] - cornerX[i]) * (y - cornerY[i])
+                         - (cornerY[j] - cornerY[i]) * (x - cornerX[i]);
+            positive |= cross > 0;
+            negative |= cross < 0;
+        }
+        return !(positive && negative);
+    }
+
+    @Override
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean intersects(double x, double y, double w, double h) {
+        // Stima per eccesso sul rettangolo di ingombro, ammessa dal contratto di Shape
+        return w > 0 && h > 0
+            && x < maxX() && x + w > minX()
+            && y < maxY() && y + h > minY();
+    }
+
+    @Override
+    public boolean intersects(Rectangle2D r) {
+        return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double w, double h) {
+        // Per una forma convessa basta che lo siano i quattro vertici
+        return contains(x, y) && contains(x + w, y) && contains(x + w, y + h) && contains(x, y + h);
+    }
+
+    @Override
+    public boolean contains(Rectangle2D r) {
+        return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public PathIterator getPathIterator(AffineTransform at) {
+        iteratorTransform = at;
+        segment = 0;
+        return this;
+    }
+
+    @Override
+    public PathIterator getPathIterator(AffineTransform at, double flatness) {
+        // Solo segmenti rettilinei: nessuna curva da appiattire
+        return getPathIterator(at);
+    }
+
+    // --- PathIterator ---
+
+    @Override
+    public int getWindingRule() {
+        return WIND_NON_ZERO;
+    }
+
+    @Override
+    public boolean isDone() {
+        return segment > CORNERS;
+    }
+
+    @Override
+    public void next() {
+        segment++;
+    }
+
+    @Override
+    public int currentSegment(float[] coords) {
+        if (segment == CORNERS) {
+            return SEG_CLOSE;
+        }
+        coords[0] = cornerX[segment];
+        coords[1] = cornerY[segment];
+        if (iteratorTransform != null) {
+            iteratorTransform.transform(coords, 0, coords, 0, 1);
+        }
+        return segment == 0 ? SEG_MOVETO : SEG_LINETO;
+    }
+
+    @Override
+    public int currentSegment(double[] coords) {
+        if (segment == CORNERS) {
+            return SEG_CLOSE;
+        }
+        coords[0] = cornerX[segment];
+        coords[1] = cornerY[segment];
+        if (iteratorTransform != null) {
+            iteratorTransform.transform(coords, 0, coords, 0, 1);
+        }
+        return segment == 0 ? SEG_MOVETO : SEG_LINETO;
+    }
+}
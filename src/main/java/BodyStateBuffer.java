@@ -0,0 +1,56 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triplo buffer lock-free per passare gli stati dei corpi dal thread di simulazione
+ * al thread di rendering (EDT).
+ *
+ * Il writer possiede sempre il frame "back", il reader il frame "front"; il terzo
+ * frame sta "in mezzo" e viene scambiato atomicamente. Nessuno dei due thread si
+ * blocca e il reader non vede mai un frame scritto a metà.
+ * Ammette un solo writer e un solo reader.
+ */
+final class BodyStateBuffer {
+
+    // Bit che indica un frame pubblicato e non ancora letto
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final BodyStates[] frames = new BodyStates[3];
+    private final AtomicInteger middle = new AtomicInteger(2);
+
+    // Indici posseduti in esclusiva dal writer e dal reader
+    private int back = 0;
+    private int front = 1;
+
+    BodyStateBuffer(int capacity) {
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new BodyStates(capacity);
+        }
+    }
+
+    /**
+     * @return Il frame su cui il writer può scrivere il prossimo stato
+     */
+    BodyStates back() {
+        return frames[back];
+    }
+
+    /**
+     * Pubblica il frame back, rendendolo visibile al reader.
+     */
+    void publish() {
+        int old = middle.getAndSet(back | FRESH);
+        back = old & INDEX_MASK;
+    }
+
+    /**
+     * @return L'ultimo frame pubblicato (o lo stesso della chiamata precedente se non ce ne sono di nuovi)
+     */
+    BodyStates latest() {
+        if ((middle.get() & FRESH) != 0) {
+            int old = middle.getAndSet(front);
+            front = old & INDEX_MASK;
+        }
+        return frames[front];
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Stato dei corpi pubblicato dal thread di simulazione per il rendering.
+ * Contiene lo stato dell'ultimo passo e quello del passo precedente,
+ * così il renderer può interpolare tra i due senza toccare il World.
+ *
+ * Una volta pubblicato tramite {@link BodyStateBuffer} il frame non viene più
+ * modificato finché il renderer non lo rilascia: per il lettore è immutabile.
+ * Posizioni e dimensioni in pixel (Y verso il basso, come in Swing), angoli in radianti
+ * (convenzione JBox2D), velocità in m/s.
+ */
+final class BodyStates {
+
+    float[] prevX;
+    float[] prevY;
+    float[] prevAngle;
+    float[] x;
+    float[] y;
+    float[] angle;
+    float[] velocityX;
+    float[] velocityY;
+    float[] halfWidth;
+    float[] halfHeight;
+    int[] spriteId;
+    int[] tintId;
+    // Flag dell'entità (EntityRegistry.FLAG_*)
+    int[] flags;
+
+    // Numero di corpi validi negli array
+    int count;
+
+    // EntityRegistry.getLayoutVersion() al momento della copia (cambia se i corpi cambiano)
+    int layoutVersion;
+
+    // Numero del passo di simulazione e istante (System.nanoTime) in cui è stato calcolato
+    long step;
+    long timeNanos;
+
+    BodyStates(int capacity) {
+        allocate(capacity);
+    }
+
+    int capacity() {
+        return x.length;
+    }
+
+    /**
+     * Garantisce spazio per almeno {@code capacity} corpi. Solo il writer la chiama,
+     * sul frame che possiede (mai su un frame pubblicato).
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > x.length) {
+            allocate(Math.max(capacity, x.length * 2));
+        }
+    }
+
+    /**
+     * Copia lo stato di tutte le entità del registro.
+     */
+    void copyFrom(EntityRegistry entities) {
+        int n = entities.size();
+        ensureCapacity(n);
+        System.arraycopy(entities.prevX, 0, prevX, 0, n);
+        System.arraycopy(entities.prevY, 0, prevY, 0, n);
+        System.arraycopy(entities.prevAngle, 0, prevAngle, 0, n);
+        System.arraycopy(entities.x, 0, x, 0, n);
+        System.arraycopy(entities.y, 0, y, 0, n);
+        System.arraycopy(entities.angle, 0, angle, 0, n);
+        System.arraycopy(entities.velocityX, 0, velocityX, 0, n);
+        System.arraycopy(entities.velocityY, 0, velocityY, 0, n);
+        System.arraycopy(entities.halfWidth, 0, halfWidth, 0, n);
+        System.arraycopy(entities.halfHeight, 0, halfHeight, 0, n);
+        System.arraycopy(entities.spriteId, 0, spriteId, 0, n);
+        System.arraycopy(entities.tintId, 0, tintId, 0, n);
+        System.arraycopy(entities.flags, 0, flags, 0, n);
+        count = n;
+        layoutVersion = entities.getLayoutVersion();
+    }
+
+    /**
+     * Posizione X interpolata tra il passo precedente e l'ultimo.
+     *
+     * @param alpha Frazione del passo trascorsa (0 = passo precedente, 1 = ultimo passo)
+     */
+    float interpolatedX(int index, float alpha) {
+        return prevX[index] + (x[index] - prevX[index]) * alpha;
+    }
+
+    float interpolatedY(int index, float alpha) {
+        return prevY[index] + (y[index] - prevY[index]) * alpha;
+    }
+
+    float interpolatedAngle(int index, float alpha) {
+        return prevAngle[index] + (angle[index] - prevAngle[index]) * alpha;
+    }
+
+    boolean isStatic(int index) {
+        return (flags[index] & EntityRegistry.FLAG_STATIC) != 0;
+    }
+
+    /**
+     * @return true se il corpo si è mosso (o ruotato) nell'ultimo passo o ha velocità
+     *         (un corpo appena teletrasportato ha lo stato precedente uguale all'ultimo)
+     */
+    boolean isMoving(int index) {
+        return x[index] != prevX[index] || y[index] != prevY[index] || angle[index] != prevAngle[index]
+            || velocityX[index] != 0 || velocityY[index] != 0;
+    }
+
+    private void allocate(int capacity) {
+        prevX = new float[capacity];
+        prevY = new float[capacity];
+        prevAngle = new float[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        angle = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        halfWidth = new float[capacity];
+        halfHeight = new float[capacity];
+        spriteId = new int[capacity];
+        tintId = new int[capacity];
+        flags = new int[capacity];
+    }
+}
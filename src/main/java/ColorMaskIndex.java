@@ -0,0 +1,148 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pixel di uno sprite simili a un colore target (stesso test per canale di
+ * {@link TintKernels#colorMaskedTint}), calcolati una volta sola e memorizzati come
+ * intervalli di pixel consecutivi (run-length, nell'ordine dell'array di pixel).
+ *
+ * {@link #tint} combina più maschere, ciascuna con il proprio tint, in una sola chiamata;
+ * {@link TintPipeline} la usa per tutti i suoi passaggi per maschera. Il test riguarda
+ * sempre i pixel dello sprite originale: ricolorare la stessa parte dello sprite (pelle,
+ * vestiti) con un altro colore costa quindi solo i pixel della maschera, senza ripetere
+ * il test su tutta l'immagine.
+ *
+ * L'indice descrive lo sprite al momento della costruzione: gli sprite non vengono più
+ * modificati dopo il caricamento. {@link #of} ne tiene uno per (sprite, colore,
+ * tolleranza), finché lo sprite è raggiungibile.
+ */
+final class ColorMaskIndex {
+
+    // sprite -> (colore RGB e tolleranza) -> indice; lo sprite è confrontato per identità
+    private static final Map<BufferedImage, Map<Long, ColorMaskIndex>> INDICES = new WeakHashMap<>();
+
+    // Coppie [inizio, fine) di indici di pixel (y * larghezza + x)
+    private final int[] spans;
+
+    private ColorMaskIndex(int[] spans) {
+        this.spans = spans;
+    }
+
+    /**
+     * Colora i pixel di più maschere, con il tint di ciascuna. Ogni maschera è scelta sui
+     * pixel di {@code source}, non su quelli già colorati dalle maschere precedenti; i
+     * tint sono applicati nell'ordine delle maschere, quindi un pixel di due maschere
+     * riceve entrambi i tint, uno dopo l'altro.
+     *
+     * @return Una nuova immagine TYPE_INT_ARGB, o la sorgente se non ci sono maschere
+     */
+    static BufferedImage tint(BufferedImage source, MaskTint... masks) {
+        if (source == null || masks.length == 0) {
+            return source;
+        }
+        BufferedImage tinted = TintKernels.createArgb(source.getWidth(), source.getHeight());
+        int[] pixels = TintKernels.pixelsOf(tinted);
+        TintKernels.readArgb(source, pixels);
+        apply(source, pixels, masks);
+        return tinted;
+    }
+
+    /**
+     * Come {@link #tint}, ma sui pixel di {@code source} già copiati (e magari già
+     * trasformati) in {@code pixels}, un array con la larghezza dello sprite.
+     */
+    static void apply(BufferedImage source, int[] pixels, MaskTint... masks) {
+        for (MaskTint mask : masks) {
+            of(source, mask.targetRgb, mask.tolerance).apply(pixels, mask.lutR, mask.lutG, mask.lutB);
+        }
+    }
+
+    /**
+     * Restituisce l'indice della maschera, costruendolo solo alla prima richiesta per la
+     * stessa combinazione (sprite, colore target, tolleranza).
+     */
+    static ColorMaskIndex of(BufferedImage source, int targetRgb, int tolerance) {
+        long key = ((long) tolerance << 24) | (targetRgb & 0xffffffL);
+        synchronized (INDICES) {
+            Map<Long, ColorMaskIndex> bySource = INDICES.computeIfAbsent(source, s -> new HashMap<>());
+            ColorMaskIndex index = bySource.get(key);
+            if (index == null) {
+                index = build(source, targetRgb, tolerance);
+                bySource.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Costruisce l'indice dei pixel il cui colore differisce da {@code targetRgb} al
+     * più di {@code tolerance} su ogni canale (alpha escluso).
+     */
+    private static ColorMaskIndex build(BufferedImage source, int targetRgb, int tolerance) {
+        int[] pixels = new int[source.getWidth() * source.getHeight()];
+        TintKernels.readArgb(source, pixels);
+        int targetR = (targetRgb >> 16) & 0xff;
+        int targetG = (targetRgb >> 8) & 0xff;
+        int targetB = targetRgb & 0xff;
+
+        int[] spans = new int[16];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= pixels.length; i++) {
+            boolean match = false;
+            if (i < pixels.length) {
+                int pixel = pixels[i];
+                match = Math.abs(((pixel >> 16) & 0xff) - targetR) <= tolerance
+                     && Math.abs(((pixel >> 8) & 0xff) - targetG) <= tolerance
+                     && Math.abs((pixel & 0xff) - targetB) <= tolerance;
+            }
+            if (match && start < 0) {
+                start = i;
+            } else if (!match && start >= 0) {
+                if (count == spans.length) {
+                    spans = Arrays.copyOf(spans, count * 2);
+                }
+                spans[count++] = start;
+                spans[count++] = i;
+                start = -1;
+            }
+        }
+        return new ColorMaskIndex(Arrays.copyOf(spans, count));
+    }
+
+    /**
+     * Applica le tabelle di lookup (vedi {@link TintKernels#channelLut}) ai soli pixel
+     * della maschera, in un array con la larghezza dello sprite.
+     */
+    void apply(int[] pixels, int[] lutR, int[] lutG, int[] lutB) {
+        for (int s = 0; s < spans.length; s += 2) {
+            TintKernels.tintSpan(pixels, spans[s], spans[s + 1], lutR, lutG, lutB);
+        }
+    }
+
+    /**
+     * Una maschera (colore target e tolleranza) con il suo tint, e le tabelle di lookup
+     * del tint già calcolate.
+     */
+    static final class MaskTint {
+        final int targetRgb;
+        final int tolerance;
+        final int[] lutR, lutG, lutB;
+
+        MaskTint(Color tintColor, Color targetColor, int tolerance) {
+            this(tintColor.getRGB(), targetColor.getRGB(), tolerance);
+        }
+
+        MaskTint(int tintRgb, int targetRgb, int tolerance) {
+            this.targetRgb = targetRgb & 0xffffff;
+            this.tolerance = tolerance;
+            this.lutR = TintKernels.channelLut((tintRgb >> 16) & 0xff);
+            this.lutG = TintKernels.channelLut((tintRgb >> 8) & 0xff);
+            this.lutB = TintKernels.channelLut(tintRgb & 0xff);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.awt.Rectangle;
+
+/**
+ * Calcola, ad ogni tick del Timer, le aree del pannello da ridisegnare al posto
+ * dell'intera scena.
+ *
+ * Le aree coprono:
+ * - dove sono stati disegnati i corpi in movimento all'ultimo paint (da cancellare);
+ * - dove possono trovarsi al prossimo paint: dal passo precedente all'ultimo più un
+ *   passo di estrapolazione, perché tra il tick e il paint la simulazione può
+ *   pubblicare un nuovo stato;
+ * - le parti di corpi rimaste fuori dalle aree dell'ultimo paint (recuperate subito dopo);
+ * - l'HUD, se lo stato del cubo è cambiato, e un'area aggiuntiva del chiamante (overlay).
+ *
+ * Ogni corpo è racchiuso nel quadrato del cerchio circoscritto, che non dipende
+ * dall'angolo, più un margine per bordo e antialiasing. I corpi statici stanno nello
+ * strato in cache di {@link SceneRenderer} e non contano.
+ *
+ * Swing unisce le richieste di repaint di un componente in un solo rettangolo, che
+ * con l'HUD in alto e il cubo in basso coprirebbe quasi tutta la scena: per questo le
+ * aree vicine vengono fuse, fino a {@link #MAX_REGIONS}, e il paint le ridisegna una per
+ * una ({@link #beginPaint}). Da usare solo sull'EDT.
+ */
+final class DirtyRegions {
+
+    private static final int MAX_REGIONS = 8;
+
+    // Margine in pixel attorno ai corpi: mezzo bordo più l'antialiasing
+    private static final int MARGIN = 3;
+    // Aree più vicine di così vengono fuse
+    private static final int MERGE_DISTANCE = 16;
+
+    private static final int CUBE_INDEX = SimulationEngine.CUBE_INDEX;
+
+    private final int width;
+    private final int height;
+
+    // Aree richieste dall'ultimo next() e loro unione (passata a repaint)
+    private final Rectangle[] regions = newRegions();
+    private int regionCount;
+    private final Rectangle bounds = new Rectangle();
+
+    // Aree disegnate nel paint in corso
+    private final Rectangle[] paintRegions = newRegions();
+    private int paintRegionCount;
+
+    // Corpi in movimento all'ultimo paint e parti rimaste fuori dalle sue aree
+    private final Rectangle[] paintedRegions = newRegions();
+    private int paintedRegionCount;
+    private final Rectangle missed = new Rectangle();
+
+    private final Rectangle body = new Rectangle();
+
+    private boolean full = true;
+
+    // Stato del cubo mostrato dall'HUD all'ultimo paint
+    private float hudX;
+    private float hudY;
+    private float hudVelocityX;
+    private float hudVelocityY;
+
+    DirtyRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+        clear(bounds);
+        clear(missed);
+    }
+
+    /**
+     * Richiede di ridisegnare tutta la scena al prossimo tick.
+     */
+    void invalidateAll() {
+        full = true;
+    }
+
+    /**
+     * Calcola le aree da ridisegnare. Il rettangolo restituito è riusato: va usato
+     * subito (repaint ne copia i valori).
+     *
+     * @param latest Ultimo stato pubblicato
+     * @param extra Area aggiuntiva da ridisegnare (null = nessuna)
+     * @return L'unione delle aree da ridisegnare, vuota se non è cambiato nulla
+     */
+    Rectangle next(BodyStates latest, Rectangle extra) {
+        regionCount = 0;
+        if (full) {
+            body.setBounds(0, 0, width, height);
+            regionCount = addRegion(regions, regionCount, body);
+        } else {
+            for (int i = 0; i < paintedRegionCount; i++) {
+                regionCount = addRegion(regions, regionCount, paintedRegions[i]);
+            }
+            regionCount = addRegion(regions, regionCount, missed);
+            for (int i = 0; i < latest.count; i++) {
+                if (latest.isStatic(i) || !latest.isMoving(i)) {
+                    continue;
+                }
+                motionBounds(latest, i, body);
+                regionCount = addRegion(regions, regionCount, body);
+            }
+            if (latest.count > CUBE_INDEX && hudChanged(latest)) {
+                body.setBounds(0, 0, SceneRenderer.HUD_WIDTH, SceneRenderer.HUD_HEIGHT);
+                regionCount = addRegion(regions, regionCount, body);
+            }
+            if (extra != null) {
+                body.setBounds(extra);
+                regionCount = addRegion(regions, regionCount, body);
+            }
+        }
+
+        clear(bounds);
+        for (int i = 0; i < regionCount; i++) {
+            bounds.add(regions[i]);
+        }
+        return bounds;
+    }
+
+    /**
+     * Prepara le aree da disegnare nel paint con il clip indicato: le aree richieste
+     * dall'ultimo {@link #next}, o tutto il clip se Swing ridisegna anche altro
+     * (finestra scoperta, ridimensionata...).
+     *
+     * @return Il numero di aree, da leggere con {@link #paintRegion}
+     */
+    int beginPaint(Rectangle clip) {
+        paintRegionCount = 0;
+        if (full || !bounds.contains(clip)) {
+            paintRegions[0].setBounds(clip);
+            paintRegionCount = 1;
+            return paintRegionCount;
+        }
+        for (int i = 0; i < regionCount; i++) {
+            Rectangle region = paintRegions[paintRegionCount];
+            region.setBounds(regions[i]);
+            intersect(region, clip);
+            if (!region.isEmpty()) {
+                paintRegionCount++;
+            }
+        }
+        return paintRegionCount;
+    }
+
+    Rectangle paintRegion(int index) {
+        return paintRegions[index];
+    }
+
+    /**
+     * Registra il paint appena completato sulle aree di {@link #beginPaint}.
+     *
+     * @param states Stato disegnato
+     */
+    void painted(BodyStates states) {
+        if (paintRegionCount == 1 && paintRegions[0].contains(0, 0, width, height)) {
+            full = false;
+        }
+        clear(missed);
+        paintedRegionCount = 0;
+        for (int i = 0; i < states.count; i++) {
+            if (states.isStatic(i) || !states.isMoving(i)) {
+                continue;
+            }
+            motionBounds(states, i, body);
+            clampToScene(body);
+            if (body.isEmpty()) {
+                continue;
+            }
+            paintedRegionCount = addRegion(paintedRegions, paintedRegionCount, body);
+            if (!isPainted(body)) {
+                missed.add(body);
+            }
+        }
+        if (states.count > CUBE_INDEX) {
+            hudX = states.x[CUBE_INDEX];
+            hudY = states.y[CUBE_INDEX];
+            hudVelocityX = states.velocityX[CUBE_INDEX];
+            hudVelocityY = states.velocityY[CUBE_INDEX];
+        }
+    }
+
+    private boolean isPainted(Rectangle r) {
+        for (int i = 0; i < paintRegionCount; i++) {
+            if (paintRegions[i].contains(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hudChanged(BodyStates states) {
+        return states.x[CUBE_INDEX] != hudX || states.y[CUBE_INDEX] != hudY
+            || states.velocityX[CUBE_INDEX] != hudVelocityX || states.velocityY[CUBE_INDEX] != hudVelocityY;
+    }
+
+    /**
+     * Aggiunge un'area alla lista, limitata alla scena: la fonde con quelle vicine o,
+     * se la lista è piena, con quella che cresce meno.
+     *
+     * @return Il nuovo numero di aree
+     */
+    private int addRegion(Rectangle[] list, int count, Rectangle r) {
+        if (r.isEmpty()) {
+            return count;
+        }
+        int target = -1;
+        for (int i = 0; i < count && target < 0; i++) {
+            if (near(list[i], r)) {
+                target = i;
+            }
+        }
+        if (target < 0 && count < list.length) {
+            list[count].setBounds(r);
+            clampToScene(list[count]);
+            return list[count].isEmpty() ? count : count + 1;
+        }
+        if (target < 0) {
+            target = cheapestMerge(list, count, r);
+        }
+        list[target].add(r);
+        clampToScene(list[target]);
+
+        // L'area cresciuta può ora toccarne altre: le assorbe
+        for (int i = 0; i < count; i++) {
+            if (i != target && near(list[target], list[i])) {
+                list[target].add(list[i]);
+                count--;
+                // Scambia con l'ultima (tenendo i rettangoli nel pool)
+                Rectangle removed = list[i];
+                list[i] = list[count];
+                list[count] = removed;
+                if (target == count) {
+                    target = i;
+                }
+                i = -1;
+            }
+        }
+        return count;
+    }
+
+    private static int cheapestMerge(Rectangle[] list, int count, Rectangle r) {
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Rectangle region = list[i];
+            long minX = Math.min(region.x, r.x);
+            long minY = Math.min(region.y, r.y);
+            long maxX = Math.max(region.x + region.width, r.x + r.width);
+            long maxY = Math.max(region.y + region.height, r.y + r.height);
+            long growth = (maxX - minX) * (maxY - minY) - (long) region.width * region.height;
+            if (growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static boolean near(Rectangle a, Rectangle b) {
+        return a.x - MERGE_DISTANCE < b.x + b.width && b.x - MERGE_DISTANCE < a.x + a.width
+            && a.y - MERGE_DISTANCE < b.y + b.height && b.y - MERGE_DISTANCE < a.y + a.height;
+    }
+
+    // Area del corpo dal passo precedente all'ultimo, più un passo di estrapolazione
+    private static void motionBounds(BodyStates states, int i, Rectangle bounds) {
+        float radius = (float) Math.sqrt(states.halfWidth[i] * states.halfWidth[i]
+                                         + states.halfHeight[i] * states.halfHeight[i]) + MARGIN;
+        float prevX = states.prevX[i];
+        float prevY = states.prevY[i];
+        float x = states.x[i];
+        float y = states.y[i];
+        float nextX = x + (x - prevX);
+        float nextY = y + (y - prevY);
+        int minX = (int) Math.floor(Math.min(prevX, nextX) - radius);
+        int minY = (int) Math.floor(Math.min(prevY, nextY) - radius);
+        int maxX = (int) Math.ceil(Math.max(prevX, nextX) + radius);
+        int maxY = (int) Math.ceil(Math.max(prevY, nextY) + radius);
+        bounds.setBounds(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private void clampToScene(Rectangle r) {
+        intersect(r, 0, 0, width, height);
+    }
+
+    private static void intersect(Rectangle r, Rectangle other) {
+        intersect(r, other.x, other.y, other.x + other.width, other.y + other.height);
+    }
+
+    // Intersezione in place (Rectangle.intersection crea un nuovo oggetto)
+    private static void intersect(Rectangle r, int minX, int minY, int maxX, int maxY) {
+        int x0 = Math.max(r.x, minX);
+        int y0 = Math.max(r.y, minY);
+        int x1 = Math.min(r.x + r.width, maxX);
+        int y1 = Math.min(r.y + r.height, maxY);
+        if (r.width < 0 || r.height < 0 || x1 <= x0 || y1 <= y0) {
+            clear(r);
+        } else {
+            r.setBounds(x0, y0, x1 - x0, y1 - y0);
+        }
+    }
+
+    // Rettangolo vuoto: con dimensioni negative Rectangle.add lo ignora
+    private static void clear(Rectangle r) {
+        r.setBounds(0, 0, -1, -1);
+    }
+
+    private static Rectangle[] newRegions() {
+        Rectangle[] list = new Rectangle[MAX_REGIONS];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = new Rectangle();
+        }
+        return list;
+    }
+}
@@ -0,0 +1,303 @@
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import java.util.Arrays;
+
+/**
+ * Registro delle entità della simulazione con lo stato in formato struct-of-arrays.
+ *
+ * Per ogni entità lo stato di rendering e di gioco (posizione in pixel, angolo,
+ * mezze dimensioni, velocità, sprite, tinta) è memorizzato in array primitivi
+ * contigui, indicizzati in modo denso da 0 a {@link #size()} - 1. La logica per
+ * frame (velocità minima, teletrasporto) è quindi un ciclo stretto sugli array,
+ * senza iterare oggetti Body né allocare Vec2.
+ *
+ * Rimuovere un'entità sposta l'ultima al suo posto (swap-remove): gli indici densi
+ * cambiano, mentre l'id restituito da {@link #register} resta valido finché
+ * l'entità esiste ({@link #indexOf}).
+ *
+ * Coordinate in pixel come in Swing: Y cresce verso il basso.
+ */
+final class EntityRegistry {
+
+    // Flag delle entità
+    static final int FLAG_STATIC = 1;
+    static final int FLAG_RUNNER = 2;
+
+    static final int NO_SPRITE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final World world;
+    private final float worldHeight;
+    private final float pixelsPerMeter;
+
+    // Stato per entità (indice denso)
+    float[] x;
+    float[] y;
+    float[] angle;
+    float[] prevX;
+    float[] prevY;
+    float[] prevAngle;
+    float[] velocityX;
+    float[] velocityY;
+    float[] halfWidth;
+    float[] halfHeight;
+    int[] spriteId;
+    int[] tintId;
+    int[] flags;
+    int[] ids;
+    Body[] bodies;
+
+    private int count;
+
+    // Incrementato ad ogni aggiunta o rimozione (gli indici densi cambiano)
+    private int layoutVersion;
+
+    // id -> indice denso (-1 se libero) e pila degli id liberi
+    private int[] indexById;
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+
+    // Vettore riusato per le chiamate a JBox2D (che copiano il valore)
+    private final Vec2 scratch = new Vec2();
+
+    EntityRegistry(World world, float worldHeight, float pixelsPerMeter) {
+        this.world = world;
+        this.worldHeight = worldHeight;
+        this.pixelsPerMeter = pixelsPerMeter;
+        allocate(INITIAL_CAPACITY);
+        indexById = new int[INITIAL_CAPACITY];
+        Arrays.fill(indexById, -1);
+        freeIds = new int[INITIAL_CAPACITY];
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return Un contatore che cambia ogni volta che le entità vengono aggiunte o rimosse:
+     *         a parità di valore, l'indice denso i identifica sempre la stessa entità
+     */
+    int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    /**
+     * Registra un corpo già creato nel World.
+     *
+     * @param body Il corpo
+     * @param halfWidthPx Mezza larghezza in pixel
+     * @param halfHeightPx Mezza altezza in pixel
+     * @param sprite Id dello sprite ({@link #NO_SPRITE} per un rettangolo colorato)
+     * @param tint Id della tinta / colore
+     * @param entityFlags Combinazione di FLAG_*
+     * @return L'id stabile dell'entità
+     */
+    int register(Body body, float halfWidthPx, float halfHeightPx, int sprite, int tint, int entityFlags) {
+        if (count == x.length) {
+            allocate(x.length * 2);
+        }
+
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == indexById.length) {
+                int oldLength = indexById.length;
+                indexById = Arrays.copyOf(indexById, oldLength * 2);
+                Arrays.fill(indexById, oldLength, indexById.length, -1);
+                freeIds = Arrays.copyOf(freeIds, oldLength * 2);
+            }
+        }
+
+        int i = count++;
+        layoutVersion++;
+        ids[i] = id;
+        indexById[id] = i;
+        bodies[i] = body;
+        halfWidth[i] = halfWidthPx;
+        halfHeight[i] = halfHeightPx;
+        spriteId[i] = sprite;
+        tintId[i] = tint;
+        flags[i] = entityFlags;
+        readBody(i);
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+        prevAngle[i] = angle[i];
+        return id;
+    }
+
+    /**
+     * @return L'indice denso dell'entità, o -1 se non esiste
+     */
+    int indexOf(int id) {
+        return id >= 0 && id < nextId ? indexById[id] : -1;
+    }
+
+    /**
+     * Rimuove l'entità e distrugge il suo corpo nel World.
+     *
+     * @return true se l'entità esisteva
+     */
+    boolean despawn(int id) {
+        int i = indexOf(id);
+        if (i < 0) {
+            return false;
+        }
+        world.destroyBody(bodies[i]);
+        layoutVersion++;
+
+        int last = --count;
+        if (i != last) {
+            moveEntity(last, i);
+        }
+        bodies[last] = null;
+        indexById[id] = -1;
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    /**
+     * Distrugge tutte le entità, in ordine inverso alla registrazione
+     * (vedi {@link SimulationEngine#reset}).
+     */
+    void clear() {
+        for (int i = count - 1; i >= 0; i--) {
+            world.destroyBody(bodies[i]);
+            bodies[i] = null;
+        }
+        count = 0;
+        layoutVersion++;
+        nextId = 0;
+        freeCount = 0;
+        Arrays.fill(indexById, -1);
+    }
+
+    /**
+     * Copia lo stato dei corpi negli array, dopo world.step.
+     * Lo stato corrente diventa quello precedente (per l'interpolazione).
+     */
+    void syncFromBodies() {
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & FLAG_STATIC) != 0) {
+                continue;
+            }
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            prevAngle[i] = angle[i];
+            readBody(i);
+        }
+    }
+
+    /**
+     * Rilegge lo stato di tutti i corpi, statici compresi, dopo che il World è stato
+     * riportato indietro (vedi {@link WorldSnapshot}). Come dopo un teletrasporto, lo
+     * stato precedente coincide con quello attuale.
+     */
+    void resyncFromBodies() {
+        for (int i = 0; i < count; i++) {
+            readBody(i);
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            prevAngle[i] = angle[i];
+        }
+    }
+
+    /**
+     * Regola di gioco per le entità FLAG_RUNNER: le mantiene in movimento.
+     *
+     * @param minSpeed Velocità orizzontale minima (m/s)
+     * @param speed Velocità orizzontale ripristinata (m/s)
+     */
+    void applyRunnerRules(float minSpeed, float speed) {
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & FLAG_RUNNER) != 0 && Math.abs(velocityX[i]) < minSpeed) {
+                velocityX[i] = speed;
+                scratch.set(speed, velocityY[i]);
+                bodies[i].setLinearVelocity(scratch);
+            }
+        }
+    }
+
+    /**
+     * Teletrasporta un'entità a sinistra, alla stessa altezza, quando esce dal bordo
+     * destro (senza interpolare attraverso lo schermo). Le entità da controllare le
+     * trova {@link SimulationEngine} nell'indice spaziale.
+     *
+     * @param i Indice denso dell'entità
+     * @param speed Velocità orizzontale ripristinata (m/s)
+     * @param respawnX Coordinata X in pixel di ricomparsa
+     */
+    void respawn(int i, float speed, float respawnX) {
+        scratch.set(respawnX / pixelsPerMeter, bodies[i].getPosition().y);
+        bodies[i].setTransform(scratch, angle[i]);
+        velocityX[i] = speed;
+        scratch.set(speed, velocityY[i]);
+        bodies[i].setLinearVelocity(scratch);
+        x[i] = respawnX;
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+        prevAngle[i] = angle[i];
+    }
+
+    private void readBody(int i) {
+        Body body = bodies[i];
+        Vec2 position = body.getPosition();
+        Vec2 velocity = body.getLinearVelocity();
+        x[i] = position.x * pixelsPerMeter;
+        y[i] = worldHeight - position.y * pixelsPerMeter;
+        angle[i] = body.getAngle();
+        velocityX[i] = velocity.x;
+        velocityY[i] = velocity.y;
+    }
+
+    private void moveEntity(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        angle[to] = angle[from];
+        prevX[to] = prevX[from];
+        prevY[to] = prevY[from];
+        prevAngle[to] = prevAngle[from];
+        velocityX[to] = velocityX[from];
+        velocityY[to] = velocityY[from];
+        halfWidth[to] = halfWidth[from];
+        halfHeight[to] = halfHeight[from];
+        spriteId[to] = spriteId[from];
+        tintId[to] = tintId[from];
+        flags[to] = flags[from];
+        ids[to] = ids[from];
+        bodies[to] = bodies[from];
+        indexById[ids[to]] = to;
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        angle = grow(angle, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        prevAngle = grow(prevAngle, capacity);
+        velocityX = grow(velocityX, capacity);
+        velocityY = grow(velocityY, capacity);
+        halfWidth = grow(halfWidth, capacity);
+        halfHeight = grow(halfHeight, capacity);
+        spriteId = grow(spriteId, capacity);
+        tintId = grow(tintId, capacity);
+        flags = grow(flags, capacity);
+        ids = grow(ids, capacity);
+        bodies = bodies == null ? new Body[capacity] : Arrays.copyOf(bodies, capacity);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
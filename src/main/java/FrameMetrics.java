@@ -0,0 +1,250 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Misure del game loop: tempi del passo di simulazione, del paint, della colorazione
+ * e del drawImage dello sprite, intervallo tra i tick del Timer Swing e pause del GC.
+ *
+ * Ogni tempo finisce in un {@link LatencyHistogram} lock-free, quindi registrare non
+ * blocca e non alloca. Una volta al secondo {@link MetricsReporter} chiama
+ * {@link #report()}, che svuota gli istogrammi in snapshot immutabili: da lì li
+ * leggono l'overlay ({@link MetricsOverlay}), i bean JMX e il file di dump.
+ */
+final class FrameMetrics {
+
+    // Tempi misurati
+    static final int PHYSICS_STEP = 0;
+    static final int PAINT = 1;
+    static final int SPRITE_TINT = 2;
+    static final int DRAW_IMAGE = 3;
+    static final int FRAME_INTERVAL = 4;
+    static final int GC_PAUSE = 5;
+
+    static final String[] NAMES = {
+        "physics.step", "paint", "sprite.tint", "sprite.drawImage", "frame.interval", "gc.pause"
+    };
+
+    private static final String JMX_DOMAIN = "jbox2d.demo";
+
+    // Un tick del Timer è in ritardo se arriva dopo 1,5 periodi
+    private static final double LATE_TICK_FACTOR = 1.5;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+    private volatile LatencyHistogram.Snapshot[] latest = new LatencyHistogram.Snapshot[NAMES.length];
+    private volatile long latestIntervalNanos;
+    private long lastReportNanos = System.nanoTime();
+
+    private final long tickPeriodNanos;
+    private long lastTickNanos;
+    private final AtomicLong lateTicks = new AtomicLong();
+    private final AtomicLong missedTicks = new AtomicLong();
+    private final AtomicLong gcCount = new AtomicLong();
+    private volatile LongSupplier droppedSteps = () -> 0;
+
+    /**
+     * @param tickPeriodNanos Periodo atteso tra due tick del Timer di rendering
+     */
+    FrameMetrics(long tickPeriodNanos) {
+        this.tickPeriodNanos = tickPeriodNanos;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            latest[i] = LatencyHistogram.Snapshot.EMPTY;
+        }
+    }
+
+    /**
+     * Registra il tempo trascorso da {@code startNanos} (System.nanoTime) per la misura {@code id}.
+     */
+    void recordSince(int id, long startNanos) {
+        histograms[id].recordSince(startNanos);
+    }
+
+    /**
+     * Da chiamare ad ogni tick del Timer di rendering (solo dall'EDT): registra l'intervallo
+     * dal tick precedente e conta i tick in ritardo e quelli persi (accorpati dal Timer).
+     */
+    void onTimerTick(long nowNanos) {
+        if (lastTickNanos != 0) {
+            long interval = nowNanos - lastTickNanos;
+            histograms[FRAME_INTERVAL].record(interval);
+            if (interval > tickPeriodNanos * LATE_TICK_FACTOR) {
+                lateTicks.incrementAndGet();
+                missedTicks.addAndGet(Math.round((double) interval / tickPeriodNanos) - 1);
+            }
+        }
+        lastTickNanos = nowNanos;
+    }
+
+    /**
+     * Fonte del numero di passi di simulazione scartati (vedi {@link SimulationScheduler#getDroppedSteps}).
+     */
+    void setDroppedStepsSource(LongSupplier source) {
+        this.droppedSteps = source;
+    }
+
+    /**
+     * Registra la durata delle pause dei garbage collector tramite le loro notifiche.
+     * I collector concorrenti (che non fermano l'applicazione) sono ignorati.
+     */
+    void startGcMonitoring() {
+        NotificationListener listener = this::onGcNotification;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter && !isConcurrent(gc.getName())) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    private static boolean isConcurrent(String collectorName) {
+        return collectorName.contains("Concurrent") || collectorName.contains("Cycles");
+    }
+
+    private void onGcNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        histograms[GC_PAUSE].record(info.getGcInfo().getDuration() * 1_000_000L);
+        gcCount.incrementAndGet();
+    }
+
+    /**
+     * Chiude l'intervallo corrente: svuota gli istogrammi negli snapshot letti da overlay,
+     * JMX e dump. Chiamato periodicamente da un solo thread ({@link MetricsReporter}).
+     */
+    void report() {
+        long now = System.nanoTime();
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            snapshots[i] = histograms[i].drain();
+        }
+        latestIntervalNanos = now - lastReportNanos;
+        lastReportNanos = now;
+        latest = snapshots;
+    }
+
+    /**
+     * @return Lo snapshot dell'ultimo intervallo chiuso per la misura {@code id}
+     */
+    LatencyHistogram.Snapshot latest(int id) {
+        return latest[id];
+    }
+
+    long getLateTicks() {
+        return lateTicks.get();
+    }
+
+    long getMissedTicks() {
+        return missedTicks.get();
+    }
+
+    long getDroppedSteps() {
+        return droppedSteps.getAsLong();
+    }
+
+    long getGcCount() {
+        return gcCount.get();
+    }
+
+    /**
+     * @return Frame disegnati al secondo nell'ultimo intervallo
+     */
+    double getFramesPerSecond() {
+        long interval = latestIntervalNanos;
+        return interval == 0 ? 0 : latest(FRAME_INTERVAL).getCount() * 1.0e9 / interval;
+    }
+
+    /**
+     * Registra i bean JMX (visibili ad esempio da JConsole o VisualVM).
+     */
+    void registerMBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(new CountersBean(), FrameMetricsMXBean.class, true),
+                                 new ObjectName(JMX_DOMAIN + ":type=FrameMetrics"));
+            for (int i = 0; i < NAMES.length; i++) {
+                server.registerMBean(new StandardMBean(new TimerBean(i), LatencyTimerMXBean.class, true),
+                                     new ObjectName(JMX_DOMAIN + ":type=Timer,name=" + NAMES[i]));
+            }
+        } catch (JMException e) {
+            System.err.println("Impossibile registrare le metriche JMX: " + e.getMessage());
+        }
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1.0e6;
+    }
+
+    private final class CountersBean implements FrameMetricsMXBean {
+        @Override
+        public long getLateTicks() {
+            return FrameMetrics.this.getLateTicks();
+        }
+
+        @Override
+        public long getMissedTicks() {
+            return FrameMetrics.this.getMissedTicks();
+        }
+
+        @Override
+        public long getDroppedSteps() {
+            return FrameMetrics.this.getDroppedSteps();
+        }
+
+        @Override
+        public long getGcCount() {
+            return FrameMetrics.this.getGcCount();
+        }
+
+        @Override
+        public double getFramesPerSecond() {
+            return FrameMetrics.this.getFramesPerSecond();
+        }
+    }
+
+    private final class TimerBean implements LatencyTimerMXBean {
+        private final int id;
+
+        TimerBean(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public long getCount() {
+            return latest(id).getCount();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return toMillis(latest(id).getValueAtPercentile(50));
+        }
+
+        @Override
+        public double getP99Millis() {
+            return toMillis(latest(id).getValueAtPercentile(99));
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return toMillis(latest(id).getMaxNanos());
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return latest(id).getMeanNanos() / 1.0e6;
+        }
+    }
+}
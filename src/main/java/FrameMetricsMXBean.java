@@ -0,0 +1,16 @@
+/**
+ * Contatori JMX del game loop (totali dall'avvio), registrati come
+ * {@code jbox2d.demo:type=FrameMetrics}. I tempi sono nei {@link LatencyTimerMXBean}.
+ */
+public interface FrameMetricsMXBean {
+
+    long getLateTicks();
+
+    long getMissedTicks();
+
+    long getDroppedSteps();
+
+    long getGcCount();
+
+    double getFramesPerSecond();
+}
@@ -0,0 +1,309 @@
+import org.jbox2d.common.Vec2;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Esecuzione della simulazione senza interfaccia grafica, per server senza display
+ * e simulazioni batch. Ogni World avanza alla massima velocità consentita dalla CPU,
+ * senza alcun vincolo di tempo reale, e al termine vengono riportati i passi al secondo.
+ *
+ * Uso: {@code --headless [--steps N] [--worlds M] [--boxes B]}
+ * (da Gradle: {@code gradlew runHeadless --args="--steps 100000 --worlds 4"}).
+ *
+ * Con {@code --scenarios K [--threads T] [--csv file]} esegue invece K varianti
+ * dello scenario in parallelo (vedi {@link ScenarioExecutor}); con {@code --alloc-check}
+ * verifica che il game loop non allochi a regime (vedi {@link AllocationProbe}).
+ * Con {@code --record dir} e {@code --replay dir} misura registrazione e riproduzione
+ * (vedi {@link RecordingRunner}); con {@code --startup} misura il tempo di avvio fino al
+ * primo frame disegnato offscreen; con {@code --sync} misura banda e latenza della
+ * sincronizzazione dello stato (vedi {@link StateSyncRunner}).
+ *
+ * Le verifiche di correttezza stanno nei test (src/test/java, eseguiti da
+ * {@code gradlew check}) e le misure delle singole operazioni nei benchmark JMH
+ * (src/jmh/java).
+ */
+final class HeadlessRunner {
+
+    static final String HEADLESS_FLAG = "--headless";
+
+    private static final int DEFAULT_STEPS = 10_000;
+    private static final int DEFAULT_WORLDS = 1;
+    private static final int DEFAULT_SCENARIO_STEPS = 600;
+    private static final int DEFAULT_PROBE_FRAMES = 1_000;
+    private static final int DEFAULT_SYNC_STEPS = 600;
+    private static final int DEFAULT_SYNC_BOXES = 300;
+    private static final int DEFAULT_SYNC_CLIENTS = 2;
+    private static final long SCENARIO_SEED = 42L;
+    private static final long BOX_SEED = 7L;
+
+    private HeadlessRunner() {
+    }
+
+    /**
+     * @return true se tra gli argomenti è richiesta la modalità senza finestra
+     */
+    static boolean isRequested(String[] args) {
+        for (String arg : args) {
+            if (HEADLESS_FLAG.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        // Nessuna parte della simulazione usa AWT: garantiamolo anche a runtime
+        System.setProperty("java.awt.headless", "true");
+
+        int steps = -1;
+        int worlds = DEFAULT_WORLDS;
+        int boxes = 0;
+        int scenarios = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String csv = null;
+        boolean allocCheck = false;
+        Path record = null;
+        boolean overwrite = false;
+        Path replay = null;
+        boolean startup = false;
+        int syncClients = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case HEADLESS_FLAG:
+                        break;
+                    case "--steps":
+                        steps = parsePositive(args, ++i);
+                        break;
+                    case "--worlds":
+                        worlds = parsePositive(args, ++i);
+                        break;
+                    case "--boxes":
+                        boxes = parseNonNegative(args, ++i);
+                        break;
+                    case "--scenarios":
+                        scenarios = parsePositive(args, ++i);
+                        break;
+                    case "--threads":
+                        threads = parsePositive(args, ++i);
+                        break;
+                    case "--csv":
+                        if (++i >= args.length) {
+                            throw new IllegalArgumentException("Valore mancante per --csv");
+                        }
+                        csv = args[i];
+                        break;
+                    case "--alloc-check":
+                        allocCheck = true;
+                        break;
+                    case "--record":
+                        record = parsePath(args, ++i);
+                        break;
+                    case "--overwrite":
+                        overwrite = true;
+                        break;
+                    case "--replay":
+                        replay = parsePath(args, ++i);
+                        break;
+                    case "--startup":
+                        startup = true;
+                        break;
+                    case "--sync":
+                        syncClients = DEFAULT_SYNC_CLIENTS;
+                        break;
+                    case "--clients":
+                        syncClients = parsePositive(args, ++i);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argomento sconosciuto: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Errore: " + e.getMessage());
+            System.err.println("Uso: --headless [--steps N] [--worlds M] [--boxes B]");
+            System.err.println("     --headless --scenarios K [--steps N] [--threads T] [--csv file]");
+            System.err.println("     --headless --alloc-check [--steps N] [--boxes B]");
+            System.err.println("     --headless --record dir [--overwrite] [--steps N] [--boxes B]");
+            System.err.println("     --headless --replay dir");
+            System.err.println("     --headless --startup [--boxes B]");
+            System.err.println("     --headless --sync [--steps N] [--boxes B] [--clients K]");
+            System.exit(2);
+            return;
+        }
+
+        if (record != null) {
+            RecordingRunner.record(steps > 0 ? steps : DEFAULT_STEPS, boxes, record, overwrite);
+        } else if (replay != null) {
+            RecordingRunner.replay(replay);
+        } else if (startup) {
+            runStartup(boxes);
+        } else if (syncClients > 0) {
+            StateSyncRunner.run(steps > 0 ? steps : DEFAULT_SYNC_STEPS,
+                                boxes > 0 ? boxes : DEFAULT_SYNC_BOXES, syncClients);
+        } else if (allocCheck) {
+            System.exit(AllocationProbe.run(steps > 0 ? steps : DEFAULT_PROBE_FRAMES, boxes));
+        } else if (scenarios > 0) {
+            runScenarios(steps > 0 ? steps : DEFAULT_SCENARIO_STEPS, scenarios, threads, csv);
+        } else {
+            run(steps > 0 ? steps : DEFAULT_STEPS, worlds, boxes);
+        }
+    }
+
+    /**
+     * Costruisce e fa avanzare {@code worlds} mondi indipendenti, uno dopo l'altro,
+     * per {@code steps} passi ciascuno, con {@code boxes} scatole oltre al cubo.
+     */
+    static void run(int steps, int worlds, int boxes) {
+        System.out.printf(Locale.ROOT, "Simulazione headless: %d mondi x %d passi, %d scatole%n",
+                          worlds, steps, boxes);
+
+        long totalSteps = 0;
+        long setupNanos = 0;
+        long stepNanos = 0;
+        for (int w = 0; w < worlds; w++) {
+            long start = System.nanoTime();
+            SimulationEngine engine = new SimulationEngine();
+            engine.spawnBoxes(boxes, BOX_SEED);
+            long built = System.nanoTime();
+
+            for (int s = 0; s < steps; s++) {
+                engine.step();
+            }
+            long end = System.nanoTime();
+
+            setupNanos += built - start;
+            stepNanos += end - built;
+            totalSteps += steps;
+
+            Vec2 cube = engine.getCubeBody().getPosition();
+            System.out.printf(Locale.ROOT, "  mondo %d: cubo in (%.2f, %.2f) m%n", w, cube.x, cube.y);
+        }
+
+        double seconds = stepNanos / 1.0e9;
+        System.out.printf(Locale.ROOT, "Passi totali: %d in %.3f s (setup %.3f s)%n",
+                          totalSteps, seconds, setupNanos / 1.0e9);
+        System.out.printf(Locale.ROOT, "Passi al secondo: %.0f (%.1fx tempo reale)%n",
+                          totalSteps / seconds,
+                          totalSteps * SimulationEngine.TIME_STEP / seconds);
+    }
+
+    /**
+     * Esegue {@code count} varianti casuali dello scenario su {@code threads} thread.
+     */
+    static void runScenarios(int steps, int count, int threads, String csv) {
+        System.out.printf(Locale.ROOT, "Scenari in parallelo: %d scenari x %d passi su %d thread%n",
+                          count, steps, threads);
+
+        ScenarioParams[] scenarios = ScenarioParams.randomVariants(count, SCENARIO_SEED);
+        ScenarioResults results;
+        long start = System.nanoTime();
+        try (ScenarioExecutor executor = new ScenarioExecutor(threads)) {
+            results = executor.run(scenarios, steps);
+        }
+        double seconds = (System.nanoTime() - start) / 1.0e9;
+
+        long contacts = 0;
+        double energy = 0;
+        for (int i = 0; i < results.size(); i++) {
+            contacts += results.contactCount[i];
+            energy += results.kineticEnergy[i] + results.potentialEnergy[i];
+        }
+        System.out.printf(Locale.ROOT, "Completati in %.3f s: %.1f scenari/s, %.0f passi/s%n",
+                          seconds, count / seconds, (double) count * steps / seconds);
+        System.out.printf(Locale.ROOT, "Contatti totali: %d, energia media finale: %.3f J%n",
+                          contacts, energy / count);
+
+        if (csv != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(csv), StandardCharsets.UTF_8))) {
+                out.println(ScenarioResults.csvHeader());
+                for (int i = 0; i < results.size(); i++) {
+                    out.println(results.toCsvRow(i));
+                }
+                System.out.println("Risultati scritti in " + csv);
+            } catch (IOException e) {
+                System.err.println("Errore durante la scrittura dei risultati: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ripete l'avvio della demo senza finestra: sprite caricato in background mentre si
+     * costruisce il mondo, primo frame offscreen con i rettangoli colorati, poi il primo
+     * frame con lo sprite. Riporta i tempi dall'avvio della JVM; è anche l'esecuzione di
+     * addestramento dell'archivio AppCDS (task Gradle cdsArchive).
+     */
+    static void runStartup(int boxes) {
+        long mainMillis = uptimeMillis();
+        CompletableFuture<SceneRenderer.LoadedSprite> sprite = SceneRenderer.loadSpriteAsync();
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        BodyStateBuffer buffer = new BodyStateBuffer(engine.getEntities().size());
+        buffer.back().copyFrom(engine.getEntities());
+        buffer.publish();
+
+        SceneRenderer renderer = new SceneRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+        BufferedImage frame = new BufferedImage(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = frame.createGraphics();
+        renderer.render(g2d, buffer.latest(), 1.0f);
+        long firstFrameMillis = uptimeMillis();
+
+        renderer.installSprite(sprite.join());
+        long spriteMillis = uptimeMillis();
+        engine.step();
+        buffer.back().copyFrom(engine.getEntities());
+        buffer.publish();
+        renderer.render(g2d, buffer.latest(), 1.0f);
+        long spriteFrameMillis = uptimeMillis();
+        g2d.dispose();
+
+        System.out.printf(Locale.ROOT, "Avvio (ms dall'avvio della JVM): main %d, primo frame %d, "
+                          + "sprite pronto %d, primo frame %s %d%n",
+                          mainMillis, firstFrameMillis, spriteMillis,
+                          renderer.hasSprite() ? "con lo sprite" : "senza sprite", spriteFrameMillis);
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static Path parsePath(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Valore mancante per " + args[index - 1]);
+        }
+        return Paths.get(args[index]);
+    }
+
+    private static int parseNonNegative(String[] args, int index) {
+        if (index < args.length && "0".equals(args[index])) {
+            return 0;
+        }
+        return parsePositive(args, index);
+    }
+
+    private static int parsePositive(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Valore mancante per " + args[index - 1]);
+        }
+        try {
+            int value = Integer.parseInt(args[index]);
+            if (value <= 0) {
+                throw new IllegalArgumentException(args[index - 1] + " deve essere positivo: " + value);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valore non valido per " + args[index - 1] + ": " + args[index]);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.awt.Graphics2D;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Riga di testo dell'HUD con valori numerici a due decimali, ad esempio
+ * {@code "Velocità: %.2f m/s"}, o interi ({@link #setCount}), riusata a ogni frame
+ * senza allocazioni.
+ *
+ * I valori vengono confrontati dopo l'arrotondamento a due decimali: il testo
+ * (un {@code char[]} riusato) viene riformattato solo quando cambia ciò che si vede.
+ * Il separatore decimale è quello della locale di default, come in String.format.
+ */
+final class HudLine {
+
+    private static final int MAX_VALUE_CHARS = 24;
+
+    private final char[][] parts;
+    // Per ogni valore: modulo in centesimi (o l'intero stesso), segno e tipo
+    private final long[] magnitudes;
+    private final boolean[] negative;
+    private final boolean[] integer;
+    private final char decimalSeparator;
+
+    private final char[] text;
+    private int length;
+    private boolean dirty = true;
+    private long formatCount;
+
+    /**
+     * @param parts Testo fisso attorno ai valori: parts.length - 1 valori, il primo
+     *              valore va tra parts[0] e parts[1] e così via
+     */
+    HudLine(String... parts) {
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Serve almeno un valore");
+        }
+        this.parts = new char[parts.length][];
+        int capacity = 0;
+        for (int i = 0; i < parts.length; i++) {
+            this.parts[i] = parts[i].toCharArray();
+            capacity += this.parts[i].length;
+        }
+        int values = parts.length - 1;
+        this.magnitudes = new long[values];
+        this.negative = new boolean[values];
+        this.integer = new boolean[values];
+        this.text = new char[capacity + values * MAX_VALUE_CHARS];
+        this.decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+    }
+
+    /**
+     * Imposta un valore; il testo viene riformattato solo se cambia la sua forma a due decimali.
+     */
+    void set(int index, float value) {
+        boolean isNegative = value < 0 || (value == 0 && Float.floatToRawIntBits(value) != 0);
+        double magnitude = Math.abs((double) value) * 100.0;
+        long rounded = magnitude < Long.MAX_VALUE ? (long) (magnitude + 0.5) : Long.MAX_VALUE;
+        update(index, rounded, isNegative, false);
+    }
+
+    /**
+     * Imposta un valore intero (senza decimali), ad esempio un contatore.
+     */
+    void setCount(int index, long value) {
+        boolean isNegative = value < 0;
+        long magnitude = value == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(value);
+        update(index, magnitude, isNegative, true);
+    }
+
+    private void update(int index, long magnitude, boolean isNegative, boolean isInteger) {
+        if (magnitude != magnitudes[index] || isNegative != negative[index] || isInteger != integer[index]) {
+            magnitudes[index] = magnitude;
+            negative[index] = isNegative;
+            integer[index] = isInteger;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Disegna la riga alla posizione indicata (stessa baseline di drawString).
+     */
+    void draw(Graphics2D g2d, int x, int y) {
+        if (dirty) {
+            format();
+        }
+        g2d.drawChars(text, 0, length, x, y);
+    }
+
+    /**
+     * @return Quante volte il testo è stato riformattato (per diagnostica)
+     */
+    long getFormatCount() {
+        return formatCount;
+    }
+
+    @Override
+    public String toString() {
+        if (dirty) {
+            format();
+        }
+        return new String(text, 0, length);
+    }
+
+    private void format() {
+        int pos = 0;
+        for (int i = 0; i < parts.length; i++) {
+            System.arraycopy(parts[i], 0, text, pos, parts[i].length);
+            pos += parts[i].length;
+            if (i < magnitudes.length) {
+                pos = integer[i]
+                    ? appendInteger(pos, magnitudes[i], negative[i])
+                    : appendFixed2(pos, magnitudes[i], negative[i]);
+            }
+        }
+        length = pos;
+        dirty = false;
+        formatCount++;
+    }
+
+    // Scrive "[-]intero<sep>dd" a partire da pos, senza creare stringhe
+    private int appendFixed2(int pos, long value, boolean isNegative) {
+        if (isNegative) {
+            text[pos++] = '-';
+        }
+        pos = appendDigits(pos, value / 100);
+        int fraction = (int) (value % 100);
+
+        text[pos++] = decimalSeparator;
+        text[pos++] = (char) ('0' + fraction / 10);
+        text[pos++] = (char) ('0' + fraction % 10);
+        return pos;
+    }
+
+    // Scrive "[-]intero" a partire da pos
+    private int appendInteger(int pos, long value, boolean isNegative) {
+        if (isNegative) {
+            text[pos++] = '-';
+        }
+        return appendDigits(pos, value);
+    }
+
+    private int appendDigits(int pos, long value) {
+        int start = pos;
+        do {
+            text[pos++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        reverse(start, pos);
+        return pos;
+    }
+
+    private void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            char c = text[i];
+            text[i] = text[j];
+            text[j] = c;
+        }
+    }
+}
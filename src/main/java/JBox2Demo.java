@@ -1,504 +1,575 @@
-import org.jbox2d.collision.shapes.PolygonShape;
-import org.jbox2d.common.Vec2;
-import org.jbox2d.dynamics.*;
-
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Demo JBox2D con Swing: un cubo che corre su un pavimento
  */
 public class JBox2Demo extends JFrame {
     
-    private static final int WINDOW_WIDTH = 800;
-    private static final int WINDOW_HEIGHT = 600;
-    private static final float PIXELS_PER_METER = 30.0f;
-    private static final int TARGET_FPS = 60;
-    private static final float TIME_STEP = 1.0f / TARGET_FPS;
-    private static final int VELOCITY_ITERATIONS = 8;
-    private static final int POSITION_ITERATIONS = 3;
-    
-    private World world;
-    private Body cubeBody;
-    private Body floorBody;
+    private static final int WINDOW_WIDTH = SimulationEngine.WORLD_WIDTH;
+    private static final int WINDOW_HEIGHT = SimulationEngine.WORLD_HEIGHT;
+    private static final int TARGET_FPS = SimulationEngine.TARGET_FPS;
+    private static final float TIME_STEP = SimulationEngine.TIME_STEP;
+    private static final int MAX_CATCH_UP_STEPS = 5;
+    private static final long BOX_SEED = 7L;
+    private static final long METRICS_PERIOD_MILLIS = 1000;
+    private static final int TIMER_PERIOD_MILLIS = 1000 / TARGET_FPS;
+    private static final int REPLAY_SEEK_FRAMES = TARGET_FPS;
+    private static final int REPLAY_LONG_SEEK_FRAMES = 10 * TARGET_FPS;
+    private static final long NO_CLICK = Long.MIN_VALUE;
+    
+    private SimulationEngine engine;
     private GamePanel gamePanel;
-    private BufferedImage spriteSheet;
-    private BufferedImage cubeSprite;
     
-    // Colore personalizzato per lo sprite (null = nessuna colorazione)
-    private Color spriteTintColor = new Color(255, 100, 100); // Rosso chiaro come esempio
+    // Simulazione su thread dedicato: l'EDT legge solo gli stati pubblicati
+    private SimulationScheduler scheduler;
+    private BodyStateBuffer stateBuffer;
+    
+    // Disegno della scena (sprite, colori, HUD)
+    private final SceneRenderer renderer = new SceneRenderer(WINDOW_WIDTH, WINDOW_HEIGHT);
+    
+    // Misure del game loop: overlay (F3), JMX e dump periodico opzionale
+    private final FrameMetrics metrics = new FrameMetrics(TIMER_PERIOD_MILLIS * 1_000_000L);
+    private final MetricsOverlay metricsOverlay = new MetricsOverlay(metrics, WINDOW_WIDTH);
+    private MetricsReporter metricsReporter;
+    private volatile boolean metricsVisible;
+    
+    // Qualità adattata al budget del frame (F5 attiva/disattiva l'adattamento)
+    private final QualityGovernor governor = new QualityGovernor((long) (TIME_STEP * 1.0e9));
+    
+    // Rasterizzazione a tile in parallelo (--tiled, F6 per passare da Java2D ai tile)
+    private TiledRenderer tiledRenderer;
+    
+    // Ridisegno parziale (F4 per ridisegnare sempre tutta la scena)
+    private final DirtyRegions dirtyRegions = new DirtyRegions(WINDOW_WIDTH, WINDOW_HEIGHT);
+    private final Rectangle overlayBounds = new Rectangle();
+    private boolean partialRepaint = true;
+    
+    // Registrazione dei passi (--record) o riproduzione al posto della simulazione (--replay)
+    private SimulationRecorder recorder;
+    private final SimulationReplay replay;
+    // Stato inviato ai visualizzatori remoti (--serve) o ricevuto da un server (--connect)
+    private volatile StateSyncServer syncServer;
+    private final StateSyncClient remote;
+    // Ultimo clic non ancora gestito (x nei 32 bit alti, y in quelli bassi): l'EDT lo
+    // scrive, il thread di simulazione lo applica al passo successivo
+    private final AtomicLong pendingClick = new AtomicLong(NO_CLICK);
+    
+    // Passo dell'ultimo stato visto dal Timer (per riconoscere i salti della riproduzione)
+    private long repaintStep;
+    
+    // Tempi di avvio in ms dall'avvio della JVM (-1 = non ancora), usati solo dall'EDT
+    private long firstFrameMillis = -1;
+    private long spriteFrameMillis = -1;
+    private boolean spriteLoaded;
+    // --exit-after-startup: termina dopo il primo frame con lo sprite (misure dell'avvio)
+    private final boolean exitAfterStartup;
     
     public JBox2Demo() {
-        setTitle("JBox2D Swing Demo - Cubo Che Corre");
+        this(new Options());
+    }
+    
+    /**
+     * @param options Opzioni della riga di comando (vedi {@link Options})
+     */
+    JBox2Demo(Options options) {
+        SimulationRecording recording = options.recording;
+        StateSyncClient remote = options.remote;
+        replay = recording != null ? new SimulationReplay(recording) : null;
+        this.remote = remote;
+        exitAfterStartup = options.exitAfterStartup;
+        setTitle(remote != null ? "JBox2D Swing Demo - Visualizzatore remoto"
+                 : replay != null ? "JBox2D Swing Demo - Riproduzione" : "JBox2D Swing Demo - Cubo Che Corre");
         setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setResizable(false);
         
-        loadSprite();
-        initPhysics();
+        // Lo sprite viene letto e colorato in background: fino ad allora il cubo è un rettangolo
+        CompletableFuture<SceneRenderer.LoadedSprite> sprite = SceneRenderer.loadSpriteAsync();
+        renderer.setMetrics(metrics);
+        if (remote != null) {
+            // I frame arrivano già pronti dal client: niente World né thread di simulazione
+            stateBuffer = remote.getStates();
+        } else if (replay != null) {
+            stateBuffer = new BodyStateBuffer(recording.getMaxBodyCount());
+            publishState();
+        } else {
+            initPhysics(options.extraBoxes);
+            if (options.recordDirectory != null) {
+                startRecording(options.recordDirectory, options.overwriteRecording);
+            }
+        }
+        if (options.servePort >= 0) {
+            serveState(options.servePort);
+        }
         
         gamePanel = new GamePanel();
         add(gamePanel);
+        bindMetricsToggle();
+        bindRepaintToggle();
+        bindGovernorToggle();
+        bindTiledToggle();
+        if (replay != null) {
+            bindReplayKeys();
+        } else if (remote == null) {
+            bindClickToKick();
+        }
+        
+        metrics.registerMBeans();
+        metrics.startGcMonitoring();
+        governor.registerMBean();
+        metricsReporter = new MetricsReporter(metrics, METRICS_PERIOD_MILLIS, options.metricsFile);
+        metricsReporter.setGovernor(governor);
+        metricsReporter.start();
         
         setLocationRelativeTo(null);
         setVisible(true);
+        if (options.tiledRendering) {
+            setTiledRendering(true);
+        }
         
         startGameLoop();
+        sprite.thenAcceptAsync(this::installSprite, SwingUtilities::invokeLater);
     }
     
-    private void loadSprite() {
-        try {
-            // Carica l'immagine dallo sprite sheet
-            InputStream is = getClass().getResourceAsStream("/player_01-hd.jpeg");
-            if (is == null) {
-                System.err.println("ATTENZIONE: File oplayer_01-hd.jpeg non trovato in src/main/resources/");
-                System.err.println("Il cubo verrà disegnato senza sprite.");
-                return;
+    // Eseguito dall'EDT quando il caricamento in background è terminato
+    private void installSprite(SceneRenderer.LoadedSprite sprite) {
+        renderer.installSprite(sprite);
+        spriteLoaded = true;
+        dirtyRegions.invalidateAll();
+        gamePanel.repaint();
+    }
+    
+    // Riporta il tempo del primo frame e del primo frame dopo il caricamento dello sprite
+    private void reportStartup() {
+        if (firstFrameMillis < 0) {
+            firstFrameMillis = uptimeMillis();
+            System.out.printf(Locale.ROOT, "Primo frame dopo %d ms dall'avvio della JVM%n", firstFrameMillis);
+        }
+        if (spriteLoaded && spriteFrameMillis < 0) {
+            spriteFrameMillis = uptimeMillis();
+            System.out.printf(Locale.ROOT, "Primo frame %s dopo %d ms dall'avvio della JVM%n",
+                              renderer.hasSprite() ? "con lo sprite" : "senza sprite", spriteFrameMillis);
+            if (exitAfterStartup) {
+                System.exit(0);
             }
-            spriteSheet = ImageIO.read(is);
-            
-            // Estrai lo sprite specifico (coordinate e dimensioni dall'esempio CSS)
-            // .sprite { background: url('imgs/player_01-hd.png') no-repeat -69px -2px; width: 60px; height: 61px; }
-            cubeSprite = spriteSheet.getSubimage(69, 2, 60, 61);
-            
-            System.out.println("Sprite caricato correttamente: 60x61 pixel");
+        }
+    }
+    
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+    
+    private void initPhysics(int extraBoxes) {
+        // Mondo fisico (pavimento e cubo), indipendente da Swing
+        engine = new SimulationEngine();
+        engine.spawnBoxes(extraBoxes, BOX_SEED);
+        
+        stateBuffer = new BodyStateBuffer(engine.getEntities().size());
+        publishState();
+    }
+    
+    // Invia lo stato della simulazione ai visualizzatori remoti (loopback, vedi StateSyncServer)
+    private void serveState(int port) {
+        if (engine == null) {
+            System.err.println("Solo la simulazione può essere inviata ai visualizzatori remoti");
+            return;
+        }
+        try {
+            StateSyncServer server = new StateSyncServer(port);
+            server.start();
+            syncServer = server;
+            System.out.println("Stato della simulazione inviato sulla porta " + server.getPort());
         } catch (IOException e) {
-            System.err.println("Errore durante il caricamento dello sprite: " + e.getMessage());
+            System.err.println("Impossibile avviare il server di sincronizzazione: " + e.getMessage());
             e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("Errore durante l'estrazione dello sprite: " + e.getMessage());
+        }
+    }
+    
+    private void startRecording(Path directory, boolean overwriteRecording) {
+        try {
+            recorder = new SimulationRecorder(directory, TIME_STEP, overwriteRecording);
+            System.out.println("Registrazione in " + directory);
+            // Alla chiusura della finestra l'ultimo segmento viene completato e ridotto
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    stopRecording();
+                }
+            });
+        } catch (DirectoryNotEmptyException e) {
+            System.err.println("La cartella della registrazione non è vuota: " + directory
+                               + " (--overwrite per sostituire la registrazione)");
+        } catch (IOException e) {
+            System.err.println("Impossibile avviare la registrazione: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    /**
-     * Applica un colore di tinta (tint) a un'immagine.
-     * Mantiene i valori alpha originali dell'immagine.
-     * 
-     * @param source L'immagine sorgente
-     * @param tintColor Il colore da applicare (null = nessuna colorazione)
-     * @return Una nuova immagine colorata, o l'originale se tintColor è null
-     */
-    private BufferedImage applyTint(BufferedImage source, Color tintColor) {
-        if (source == null || tintColor == null) {
-            return source;
+    // Eseguito dall'EDT: ferma la simulazione, poi chiude la registrazione
+    private void stopRecording() {
+        if (scheduler != null) {
+            scheduler.stop();
         }
-        
-        // Crea una nuova immagine con lo stesso tipo
-        BufferedImage tinted = new BufferedImage(
-            source.getWidth(), 
-            source.getHeight(), 
-            BufferedImage.TYPE_INT_ARGB
-        );
-        
-        // Estrai i componenti del colore di tinta (0.0 - 1.0)
-        float tintR = tintColor.getRed() / 255.0f;
-        float tintG = tintColor.getGreen() / 255.0f;
-        float tintB = tintColor.getBlue() / 255.0f;
-        
-        // Applica il tint pixel per pixel
-        for (int y = 0; y < source.getHeight(); y++) {
-            for (int x = 0; x < source.getWidth(); x++) {
-                int pixel = source.getRGB(x, y);
-                
-                // Estrai i componenti ARGB
-                int alpha = (pixel >> 24) & 0xff;
-                int red = (pixel >> 16) & 0xff;
-                int green = (pixel >> 8) & 0xff;
-                int blue = pixel & 0xff;
-                
-                // Applica il tint moltiplicando i valori
-                red = (int)(red * tintR);
-                green = (int)(green * tintG);
-                blue = (int)(blue * tintB);
-                
-                // Clamp i valori tra 0 e 255
-                red = Math.min(255, Math.max(0, red));
-                green = Math.min(255, Math.max(0, green));
-                blue = Math.min(255, Math.max(0, blue));
-                
-                // Ricomponi il pixel
-                int newPixel = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                tinted.setRGB(x, y, newPixel);
-            }
+        if (recorder != null) {
+            closeRecorder();
         }
-        
-        return tinted;
     }
     
-    /**
-     * Applica un colore di tinta solo a una regione rettangolare dell'immagine.
-     * 
-     * @param source L'immagine sorgente
-     * @param tintColor Il colore da applicare
-     * @param regionX Coordinata X iniziale della regione (0 = sinistra)
-     * @param regionY Coordinata Y iniziale della regione (0 = alto)
-     * @param regionWidth Larghezza della regione da colorare
-     * @param regionHeight Altezza della regione da colorare
-     * @return Una nuova immagine con la regione colorata
-     */
-    private BufferedImage applyPartialTint(BufferedImage source, Color tintColor, 
-                                          int regionX, int regionY, 
-                                          int regionWidth, int regionHeight) {
-        if (source == null || tintColor == null) {
-            return source;
+    private void closeRecorder() {
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.err.println("Errore alla chiusura della registrazione: " + e.getMessage());
+            e.printStackTrace();
         }
-        
-        // Crea una copia dell'immagine originale
-        BufferedImage tinted = new BufferedImage(
-            source.getWidth(), 
-            source.getHeight(), 
-            BufferedImage.TYPE_INT_ARGB
-        );
-        
-        // Estrai i componenti del colore di tinta
-        float tintR = tintColor.getRed() / 255.0f;
-        float tintG = tintColor.getGreen() / 255.0f;
-        float tintB = tintColor.getBlue() / 255.0f;
-        
-        for (int y = 0; y < source.getHeight(); y++) {
-            for (int x = 0; x < source.getWidth(); x++) {
-                int pixel = source.getRGB(x, y);
-                
-                // Verifica se il pixel è dentro la regione da colorare
-                boolean inRegion = (x >= regionX && x < regionX + regionWidth &&
-                                   y >= regionY && y < regionY + regionHeight);
-                
-                if (inRegion) {
-                    // Applica il tint a questo pixel
-                    int alpha = (pixel >> 24) & 0xff;
-                    int red = (int)(((pixel >> 16) & 0xff) * tintR);
-                    int green = (int)(((pixel >> 8) & 0xff) * tintG);
-                    int blue = (int)((pixel & 0xff) * tintB);
-                    
-                    // Clamp
-                    red = Math.min(255, Math.max(0, red));
-                    green = Math.min(255, Math.max(0, green));
-                    blue = Math.min(255, Math.max(0, blue));
-                    
-                    pixel = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                }
-                
-                tinted.setRGB(x, y, pixel);
-            }
+        recorder = null;
+    }
+    
+    private void startGameLoop() {
+        if (remote != null) {
+            remote.start();
+        } else {
+            // La fisica avanza sul proprio thread a passo fisso
+            scheduler = new SimulationScheduler(TIME_STEP, MAX_CATCH_UP_STEPS, 
+                                                this::stepPhysics, this::publishState);
+            metrics.setDroppedStepsSource(scheduler::getDroppedSteps);
+            scheduler.start();
         }
         
-        return tinted;
+        // L'EDT si limita a ridisegnare, interpolando gli stati pubblicati
+        Timer timer = new Timer(TIMER_PERIOD_MILLIS, e -> {
+            metrics.onTimerTick(System.nanoTime());
+            requestRepaint();
+        });
+        timer.start();
     }
     
-    /**
-     * Applica un colore di tinta solo ai pixel di un determinato colore (con tolleranza).
-     * Utile per colorare solo specifiche parti dello sprite (es. solo la pelle, solo i vestiti).
-     * 
-     * @param source L'immagine sorgente
-     * @param tintColor Il colore da applicare
-     * @param targetColor Il colore originale da sostituire
-     * @param tolerance Tolleranza per il matching del colore (0-255, consigliato 30-50)
-     * @return Una nuova immagine con i colori target colorati
-     */
-    private BufferedImage applyColorMaskedTint(BufferedImage source, Color tintColor, 
-                                               Color targetColor, int tolerance) {
-        if (source == null || tintColor == null || targetColor == null) {
-            return source;
+    // Chiede il ridisegno della sola area cambiata dall'ultimo paint (o di tutto il pannello)
+    private void requestRepaint() {
+        if (!partialRepaint) {
+            gamePanel.repaint();
+            return;
         }
-        
-        BufferedImage tinted = new BufferedImage(
-            source.getWidth(), 
-            source.getHeight(), 
-            BufferedImage.TYPE_INT_ARGB
-        );
-        
-        float tintR = tintColor.getRed() / 255.0f;
-        float tintG = tintColor.getGreen() / 255.0f;
-        float tintB = tintColor.getBlue() / 255.0f;
-        
-        int targetR = targetColor.getRed();
-        int targetG = targetColor.getGreen();
-        int targetB = targetColor.getBlue();
-        
-        for (int y = 0; y < source.getHeight(); y++) {
-            for (int x = 0; x < source.getWidth(); x++) {
-                int pixel = source.getRGB(x, y);
-                
-                int alpha = (pixel >> 24) & 0xff;
-                int red = (pixel >> 16) & 0xff;
-                int green = (pixel >> 8) & 0xff;
-                int blue = pixel & 0xff;
-                
-                // Calcola la distanza dal colore target
-                int diffR = Math.abs(red - targetR);
-                int diffG = Math.abs(green - targetG);
-                int diffB = Math.abs(blue - targetB);
-                
-                // Se il pixel è simile al colore target, applica il tint
-                if (diffR <= tolerance && diffG <= tolerance && diffB <= tolerance) {
-                    red = (int)(red * tintR);
-                    green = (int)(green * tintG);
-                    blue = (int)(blue * tintB);
-                    
-                    red = Math.min(255, Math.max(0, red));
-                    green = Math.min(255, Math.max(0, green));
-                    blue = Math.min(255, Math.max(0, blue));
-                    
-                    pixel = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                }
-                
-                tinted.setRGB(x, y, pixel);
+        if (metricsVisible) {
+            metricsOverlay.getBounds(overlayBounds);
+        }
+        BodyStates latest = stateBuffer.latest();
+        if ((replay != null || remote != null) && latest.step != repaintStep) {
+            // Un salto nella registrazione o nei frame ricevuti (o un frame scelto in pausa)
+            // sposta anche i corpi fermi
+            if ((replay != null && replay.isPaused()) || latest.step < repaintStep
+                    || latest.step - repaintStep > MAX_CATCH_UP_STEPS) {
+                dirtyRegions.invalidateAll();
             }
+            repaintStep = latest.step;
+        }
+        Rectangle dirty = dirtyRegions.next(latest, metricsVisible ? overlayBounds : null);
+        if (!dirty.isEmpty()) {
+            gamePanel.repaint(dirty);
         }
-        
-        return tinted;
     }
     
-    private void initPhysics() {
-        // Crea il mondo JBox2D con gravità verso il basso
-        Vec2 gravity = new Vec2(0.0f, -9.8f);
-        world = new World(gravity);
-        
-        // Crea il pavimento (corpo statico)
-        createFloor();
-        
-        // Crea il cubo (corpo dinamico)
-        createCube();
-        
-        // Applica velocità iniziale al cubo per farlo correre
-        cubeBody.setLinearVelocity(new Vec2(5.0f, 0.0f));
+    // Eseguito dal thread di simulazione: un passo (e la sua registrazione), misurato
+    private void stepPhysics() {
+        long start = System.nanoTime();
+        if (replay != null) {
+            replay.step();
+        } else {
+            engine.setSolverIterations(governor.getVelocityIterations(), governor.getPositionIterations());
+            engine.step();
+            applyClick();
+            recordStep();
+        }
+        metrics.recordSince(FrameMetrics.PHYSICS_STEP, start);
     }
     
-    private void createFloor() {
-        // Definizione del corpo statico per il pavimento
-        BodyDef floorDef = new BodyDef();
-        floorDef.type = BodyType.STATIC;
-        floorDef.position.set(
-            pixelsToMeters(WINDOW_WIDTH / 2.0f),
-            pixelsToMeters(50.0f)
-        );
-        
-        floorBody = world.createBody(floorDef);
-        
-        // Forma del pavimento: rettangolo largo e sottile
-        PolygonShape floorShape = new PolygonShape();
-        floorShape.setAsBox(
-            pixelsToMeters(WINDOW_WIDTH / 2.0f),
-            pixelsToMeters(20.0f)
-        );
-        
-        // Fixture del pavimento
-        FixtureDef floorFixture = new FixtureDef();
-        floorFixture.shape = floorShape;
-        floorFixture.friction = 0.5f;
-        floorFixture.restitution = 0.3f;
-        
-        floorBody.createFixture(floorFixture);
+    private void recordStep() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.record(engine.getEntities(), engine.getStepCount());
+        } catch (IOException e) {
+            System.err.println("Errore durante la registrazione, registrazione interrotta: " + e.getMessage());
+            e.printStackTrace();
+            closeRecorder();
+        }
     }
     
-    private void createCube() {
-        // Definizione del corpo dinamico per il cubo
-        BodyDef cubeDef = new BodyDef();
-        cubeDef.type = BodyType.DYNAMIC;
-        cubeDef.position.set(
-            pixelsToMeters(100.0f),
-            pixelsToMeters(300.0f)
-        );
-        
-        cubeBody = world.createBody(cubeDef);
-        
-        // Forma del cubo: quadrato
-        PolygonShape cubeShape = new PolygonShape();
-        float cubeSize = pixelsToMeters(40.0f);
-        cubeShape.setAsBox(cubeSize, cubeSize);
-        
-        // Fixture del cubo
-        FixtureDef cubeFixture = new FixtureDef();
-        cubeFixture.shape = cubeShape;
-        cubeFixture.density = 1.0f;
-        cubeFixture.friction = 0.3f;
-        cubeFixture.restitution = 0.4f;
-        
-        cubeBody.createFixture(cubeFixture);
+    // Il clic su un corpo dinamico lo fa saltare (il corpo viene cercato nell'indice spaziale)
+    private void bindClickToKick() {
+        gamePanel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                pendingClick.set(((long) e.getX() << 32) | (e.getY() & 0xFFFFFFFFL));
+            }
+        });
     }
     
-    private void startGameLoop() {
-        Timer timer = new Timer(1000 / TARGET_FPS, e -> {
-            // Aggiorna la fisica
-            world.step(TIME_STEP, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
-            
-            // Ridisegna
-            gamePanel.repaint();
-            
-            // Mantieni il cubo in movimento se rallenta troppo
-            Vec2 velocity = cubeBody.getLinearVelocity();
-            if (Math.abs(velocity.x) < 3.0f) {
-                cubeBody.setLinearVelocity(new Vec2(5.0f, velocity.y));
+    private void applyClick() {
+        long click = pendingClick.getAndSet(NO_CLICK);
+        if (click != NO_CLICK) {
+            engine.kickAt((int) (click >> 32), (int) click);
+        }
+    }
+    
+    // F3 mostra/nasconde il pannello delle metriche
+    private void bindMetricsToggle() {
+        gamePanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                 .put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleMetrics");
+        gamePanel.getActionMap().put("toggleMetrics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                metricsVisible = !metricsVisible;
+                gamePanel.repaint();
             }
-            
-            // Teletrasporta il cubo se esce dallo schermo
-            Vec2 position = cubeBody.getPosition();
-            if (metersToPixels(position.x) > WINDOW_WIDTH + 50) {
-                cubeBody.setTransform(new Vec2(pixelsToMeters(-50.0f), position.y), cubeBody.getAngle());
-                cubeBody.setLinearVelocity(new Vec2(5.0f, velocity.y));
+        });
+    }
+    
+    // F4 alterna ridisegno parziale e completo
+    private void bindRepaintToggle() {
+        gamePanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                 .put(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0), "toggleRepaint");
+        gamePanel.getActionMap().put("toggleRepaint", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                partialRepaint = !partialRepaint;
+                dirtyRegions.invalidateAll();
+                gamePanel.repaint();
             }
         });
-        timer.start();
     }
     
-    private float pixelsToMeters(float pixels) {
-        return pixels / PIXELS_PER_METER;
+    // F5 attiva/disattiva l'adattamento della qualità (disattivato torna alla qualità piena)
+    private void bindGovernorToggle() {
+        bindKey(KeyEvent.VK_F5, 0, "toggleGovernor", () -> {
+            governor.setEnabled(!governor.isEnabled());
+            System.out.println("Adattamento della qualità " + (governor.isEnabled() ? "attivo" : "disattivato"));
+        });
+    }
+    
+    // F6 passa dal disegno Java2D al renderer a tile e viceversa
+    private void bindTiledToggle() {
+        bindKey(KeyEvent.VK_F6, 0, "toggleTiled", () -> {
+            setTiledRendering(renderer.getTiledRenderer() == null);
+            System.out.println(renderer.getTiledRenderer() != null
+                ? "Renderer a tile (" + tiledRenderer.getParallelism() + " thread)"
+                : "Renderer Java2D");
+        });
+    }
+    
+    /**
+     * Disegna i corpi con il {@link TiledRenderer} (un thread per processore) invece che
+     * con Java2D. Il renderer a tile viene creato alla prima attivazione e poi riusato.
+     */
+    void setTiledRendering(boolean enabled) {
+        if (enabled && tiledRenderer == null) {
+            tiledRenderer = new TiledRenderer(WINDOW_WIDTH, WINDOW_HEIGHT, TiledRenderer.DEFAULT_TILE_SIZE,
+                                              Runtime.getRuntime().availableProcessors());
+        }
+        renderer.setTiledRenderer(enabled ? tiledRenderer : null);
+        dirtyRegions.invalidateAll();
+        gamePanel.repaint();
     }
     
-    private float metersToPixels(float meters) {
-        return meters * PIXELS_PER_METER;
+    // Riproduzione: Spazio pausa, frecce ±1 s (con Maiusc ±1 frame), PagSu/PagGiù ±10 s, Inizio/Fine
+    private void bindReplayKeys() {
+        bindKey(KeyEvent.VK_SPACE, 0, "replayPause", replay::togglePause);
+        bindKey(KeyEvent.VK_LEFT, 0, "replayBack", () -> replay.seekBy(-REPLAY_SEEK_FRAMES));
+        bindKey(KeyEvent.VK_RIGHT, 0, "replayForward", () -> replay.seekBy(REPLAY_SEEK_FRAMES));
+        bindKey(KeyEvent.VK_LEFT, InputEvent.SHIFT_DOWN_MASK, "replayFrameBack", () -> replay.seekBy(-1));
+        bindKey(KeyEvent.VK_RIGHT, InputEvent.SHIFT_DOWN_MASK, "replayFrameForward", () -> replay.seekBy(1));
+        bindKey(KeyEvent.VK_PAGE_UP, 0, "replayLongBack", () -> replay.seekBy(-REPLAY_LONG_SEEK_FRAMES));
+        bindKey(KeyEvent.VK_PAGE_DOWN, 0, "replayLongForward", () -> replay.seekBy(REPLAY_LONG_SEEK_FRAMES));
+        bindKey(KeyEvent.VK_HOME, 0, "replayStart", () -> replay.seekTo(0));
+        bindKey(KeyEvent.VK_END, 0, "replayEnd",
+                () -> replay.seekTo(replay.getRecording().getFrameCount() - 1));
+    }
+    
+    private void bindKey(int keyCode, int modifiers, String name, Runnable action) {
+        gamePanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                 .put(KeyStroke.getKeyStroke(keyCode, modifiers), name);
+        gamePanel.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * Copia lo stato dei corpi (o il frame della registrazione) nel frame libero e lo
+     * pubblica per il rendering. Eseguito dal thread di simulazione (o prima del suo avvio).
+     */
+    private void publishState() {
+        BodyStates states = stateBuffer.back();
+        if (replay != null) {
+            replay.publish(states);
+        } else {
+            states.copyFrom(engine.getEntities());
+            states.step = engine.getStepCount();
+        }
+        states.timeNanos = System.nanoTime();
+        
+        stateBuffer.publish();
+        
+        StateSyncServer server = syncServer;
+        if (server != null) {
+            server.publish(engine.getEntities(), engine.getStepCount());
+        }
     }
     
     // Pannello per il rendering con Swing
     private class GamePanel extends JPanel {
         
+        // Clip del paint corrente
+        private final Rectangle clipBounds = new Rectangle();
+        
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
+            long start = System.nanoTime();
+            // Niente super.paintComponent: lo strato statico del renderer copre già tutto il clip
             
             Graphics2D g2d = (Graphics2D) g;
+            clipBounds.setBounds(0, 0, getWidth(), getHeight());
+            g2d.getClipBounds(clipBounds);
+            long layerBuilds = renderer.getStaticLayerBuilds();
             
-            // Abilita antialiasing per grafica migliore
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Ultimo stato pubblicato dalla simulazione, senza lock
+            BodyStates states = stateBuffer.latest();
             
-            // Sfondo
-            g2d.setColor(new Color(240, 248, 255));
-            g2d.fillRect(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT);
+            // Livello di qualità scelto dal governatore (letto una volta per paint)
+            renderer.setFastRendering(governor.isFastRendering());
+            renderer.setTintingEnabled(governor.isTintingEnabled());
             
-            // Disegna il pavimento
-            drawBody(g2d, floorBody, new Color(101, 67, 33), false);
+            // Frazione del passo trascorsa dall'ultimo stato: interpola tra i due passi
+            float alpha = (System.nanoTime() - states.timeNanos) / (TIME_STEP * 1.0e9f);
+            alpha = Math.min(1.0f, Math.max(0.0f, alpha));
             
-            // Disegna il cubo (con sprite se disponibile)
-            drawBody(g2d, cubeBody, new Color(220, 20, 60), true);
-            
-            // Disegna informazioni di debug
-            g2d.setColor(Color.BLACK);
-            g2d.setFont(new Font("Arial", Font.PLAIN, 14));
-            Vec2 cubeVel = cubeBody.getLinearVelocity();
-            g2d.drawString(String.format("Velocità: %.2f m/s", cubeVel.length()), 10, 20);
-            Vec2 cubePos = cubeBody.getPosition();
-            g2d.drawString(String.format("Posizione: (%.2f, %.2f)", cubePos.x, cubePos.y), 10, 40);
-        }
-        
-        private void drawBody(Graphics2D g2d, Body body, Color color, boolean useSprite) {
-            Vec2 position = body.getPosition();
-            float angle = body.getAngle();
-            
-            // Ottieni la forma del corpo (assumiamo PolygonShape)
-            PolygonShape shape = (PolygonShape) body.getFixtureList().getShape();
-            
-            // Per un rettangolo (setAsBox crea un rettangolo centrato)
-            float halfWidth = metersToPixels(shape.m_vertices[1].x);
-            float halfHeight = metersToPixels(shape.m_vertices[2].y);
-            
-            // Converti coordinate JBox2D in coordinate Swing
-            float x = metersToPixels(position.x);
-            float y = WINDOW_HEIGHT - metersToPixels(position.y); // Inverti Y per Swing
-            
-            // Salva lo stato di trasformazione corrente
-            var oldTransform = g2d.getTransform();
-            
-            // Applica trasformazioni per posizione e rotazione
-            g2d.translate(x, y);
-            g2d.rotate(-angle); // Ruota in senso opposto per Swing
+            // Solo le aree cambiate (ognuna col proprio clip), o tutto il clip
+            int regions = dirtyRegions.beginPaint(clipBounds);
+            for (int i = 0; i < regions; i++) {
+                if (regions > 1) {
+                    g2d.setClip(dirtyRegions.paintRegion(i));
+                }
+                renderer.render(g2d, states, alpha);
+            }
+            if (regions > 1) {
+                g2d.setClip(clipBounds);
+            }
             
-            // Disegna lo sprite se disponibile e richiesto, altrimenti rettangolo colorato
-            if (useSprite && cubeSprite != null) {
-                BufferedImage spriteToRender = cubeSprite;
-                
-                // Ottieni le dimensioni originali dello sprite per calcoli adattivi
-                int origSpriteWidth = cubeSprite.getWidth();
-                int origSpriteHeight = cubeSprite.getHeight();
-                
-                // Calcola i margini per la parte esterna (20% del bordo per la parte verde)
-                int marginX = (int)(origSpriteWidth * 0.2);  // 20% margine orizzontale
-                int marginY = (int)(origSpriteHeight * 0.2); // 20% margine verticale
-                
-                // Calcola le dimensioni della parte centrale
-                int centerX = marginX;
-                int centerY = marginY;
-                int centerWidth = origSpriteWidth - (2 * marginX);
-                int centerHeight = origSpriteHeight - (2 * marginY);
-                
-                // PASSO 1: Colora tutta la parte esterna di verde
-                spriteToRender = applyTint(cubeSprite, new Color(100, 255, 100));
-                
-                // PASSO 2: Colora la parte centrale di azzurro (sovrascrive il verde al centro)
-                spriteToRender = applyPartialTint(spriteToRender, 
-                                                  new Color(100, 200, 255),  // Azzurro
-                                                  centerX, centerY,          // Posizione centrale
-                                                  centerWidth, centerHeight); // Dimensioni centrali
-                
-                // --- ALTERNATIVE COMMENTATE (prova decommentando una di queste) ---
-                
-                // ALTERNATIVA 1: Bordo verde più stretto (10% invece di 20%)
-                // int smallMargin = (int)(origSpriteWidth * 0.1);
-                // spriteToRender = applyTint(cubeSprite, new Color(100, 255, 100));
-                // spriteToRender = applyPartialTint(spriteToRender, new Color(100, 200, 255),
-                //                                   smallMargin, smallMargin,
-                //                                   origSpriteWidth - 2*smallMargin, origSpriteHeight - 2*smallMargin);
-                
-                // ALTERNATIVA 2: Tre zone - bordo verde, anello intermedio giallo, centro azzurro
-                // spriteToRender = applyTint(cubeSprite, new Color(100, 255, 100));  // Verde esterno
-                // int midMargin = (int)(origSpriteWidth * 0.15);
-                // spriteToRender = applyPartialTint(spriteToRender, new Color(255, 255, 100),  // Giallo intermedio
-                //                                   midMargin, midMargin, 
-                //                                   origSpriteWidth - 2*midMargin, origSpriteHeight - 2*midMargin);
-                // int innerMargin = (int)(origSpriteWidth * 0.3);
-                // spriteToRender = applyPartialTint(spriteToRender, new Color(100, 200, 255),  // Azzurro centro
-                //                                   innerMargin, innerMargin,
-                //                                   origSpriteWidth - 2*innerMargin, origSpriteHeight - 2*innerMargin);
-                
-                // ALTERNATIVA 3: Solo metà verticale - verde sopra, azzurro sotto
-                // spriteToRender = applyPartialTint(cubeSprite, new Color(100, 255, 100), 
-                //                                   0, 0, origSpriteWidth, origSpriteHeight/2);
-                // spriteToRender = applyPartialTint(spriteToRender, new Color(100, 200, 255),
-                //                                   0, origSpriteHeight/2, origSpriteWidth, origSpriteHeight/2);
-                
-                // Disegna lo sprite centrato e scalato per adattarsi al corpo
-                int spriteWidth = (int)(halfWidth * 2);
-                int spriteHeight = (int)(halfHeight * 2);
-                g2d.drawImage(spriteToRender, 
-                    -(int)halfWidth, -(int)halfHeight,
-                    spriteWidth, spriteHeight, 
-                    null);
-                
-                // Bordo opzionale attorno allo sprite
-                g2d.setColor(new Color(0, 0, 0, 100));
-                g2d.setStroke(new BasicStroke(1));
-                Rectangle2D rect = new Rectangle2D.Float(
-                    -halfWidth, -halfHeight,
-                    halfWidth * 2, halfHeight * 2
-                );
-                g2d.draw(rect);
-            } else {
-                // Disegna il rettangolo colorato (fallback o per altri corpi)
-                g2d.setColor(color);
-                Rectangle2D rect = new Rectangle2D.Float(
-                    -halfWidth, -halfHeight,
-                    halfWidth * 2, halfHeight * 2
-                );
-                g2d.fill(rect);
-                
-                // Bordo
-                g2d.setColor(color.darker());
-                g2d.setStroke(new BasicStroke(2));
-                g2d.draw(rect);
+            if (metricsVisible) {
+                metricsOverlay.draw(g2d);
             }
             
-            // Ripristina lo stato di trasformazione
-            g2d.setTransform(oldTransform);
+            // Uno strato statico ricostruito durante un paint parziale va mostrato ovunque
+            dirtyRegions.painted(states);
+            if (renderer.getStaticLayerBuilds() != layerBuilds) {
+                dirtyRegions.invalidateAll();
+            }
+            metrics.recordSince(FrameMetrics.PAINT, start);
+            reportStartup();
         }
     }
     
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(JBox2Demo::new);
+        // Modalità senza finestra: simulazione pura, nessuna dipendenza dal display
+        if (HeadlessRunner.isRequested(args)) {
+            HeadlessRunner.main(args);
+            return;
+        }
+        
+        Options options = new Options();
+        Path replayDirectory = null;
+        String connectAddress = null;
+        for (String arg : args) {
+            if ("--exit-after-startup".equals(arg)) {
+                options.exitAfterStartup = true;
+            } else if ("--tiled".equals(arg)) {
+                options.tiledRendering = true;
+            } else if ("--overwrite".equals(arg)) {
+                options.overwriteRecording = true;
+            }
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("--boxes".equals(args[i])) {
+                options.extraBoxes = Integer.parseInt(args[i + 1]);
+            } else if ("--metrics".equals(args[i])) {
+                options.metricsFile = Paths.get(args[i + 1]);
+            } else if ("--record".equals(args[i])) {
+                options.recordDirectory = Paths.get(args[i + 1]);
+            } else if ("--replay".equals(args[i])) {
+                replayDirectory = Paths.get(args[i + 1]);
+            } else if ("--serve".equals(args[i])) {
+                options.servePort = Integer.parseInt(args[i + 1]);
+            } else if ("--connect".equals(args[i])) {
+                connectAddress = args[i + 1];
+            }
+        }
+        
+        if (replayDirectory != null) {
+            try {
+                options.recording = SimulationRecording.open(replayDirectory);
+            } catch (IOException e) {
+                System.err.println("Impossibile aprire la registrazione: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+        if (connectAddress != null) {
+            // host:porta, oppure solo la porta (su loopback)
+            int colon = connectAddress.lastIndexOf(':');
+            String host = colon >= 0 ? connectAddress.substring(0, colon) : "localhost";
+            int port = Integer.parseInt(colon >= 0 ? connectAddress.substring(colon + 1) : connectAddress);
+            try {
+                options.remote = new StateSyncClient(host, port);
+            } catch (IOException e) {
+                System.err.println("Impossibile connettersi a " + host + ":" + port + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+        SwingUtilities.invokeLater(() -> new JBox2Demo(options));
+    }
+    
+    /**
+     * Opzioni della demo, lette dalla riga di comando da {@link #main}.
+     */
+    static final class Options {
+        // Scatole dinamiche da aggiungere oltre al cubo
+        int extraBoxes;
+        // File CSV o JSON in cui salvare le metriche ogni secondo (null = nessuno)
+        Path metricsFile;
+        // Cartella in cui registrare ogni passo (null = nessuna registrazione)
+        Path recordDirectory;
+        // Sostituisce la registrazione già presente nella cartella (altrimenti deve essere vuota)
+        boolean overwriteRecording;
+        // Registrazione da riprodurre al posto della simulazione (null = simulazione)
+        SimulationRecording recording;
+        // Server da cui ricevere lo stato al posto della simulazione (null = simulazione)
+        StateSyncClient remote;
+        // Porta su cui inviare lo stato ai visualizzatori remoti (-1 = nessuna)
+        int servePort = -1;
+        // Termina dopo il primo frame disegnato con lo sprite (o senza, se non è
+        // disponibile), per misurare il tempo di avvio da script
+        boolean exitAfterStartup;
+        // Renderer a tile fin dall'avvio (F6 lo alterna con Java2D)
+        boolean tiledRendering;
     }
 }
@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Istogramma di durate (in nanosecondi) lock-free, in stile HdrHistogram.
+ *
+ * I bucket hanno ampiezza proporzionale al valore: per ogni potenza di due ci sono
+ * 32 sotto-intervalli, quindi i percentili hanno un errore relativo massimo di circa
+ * il 3% da 1 ns fino a circa 36 minuti. Registrare un valore costa un incremento
+ * atomico e non alloca, quindi si può fare sul percorso caldo da qualsiasi thread.
+ *
+ * Chi legge prende i conteggi con {@link #drain()}, che li azzera bucket per bucket:
+ * ogni snapshot descrive l'intervallo dall'ultima lettura e nessun valore si perde.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    // Valori più grandi vengono registrati come MAX_VALUE
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Registra una durata.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        totalNanos.addAndGet(value);
+
+        long max;
+        while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+            // Un altro thread ha aggiornato il massimo: riprova
+        }
+    }
+
+    /**
+     * Registra il tempo trascorso da {@code startNanos} (System.nanoTime).
+     */
+    void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Restituisce i valori registrati dall'ultima chiamata e li azzera.
+     */
+    Snapshot drain() {
+        long[] drained = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            drained[i] = counts.getAndSet(i, 0);
+            count += drained[i];
+        }
+        return new Snapshot(drained, count, totalNanos.getAndSet(0), maxNanos.getAndSet(0));
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS - 1;
+        return (long) (index - exponent * SUB_BUCKETS) << exponent;
+    }
+
+    /**
+     * Conteggi di un intervallo, immutabili.
+     */
+    static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0, 0, 0);
+
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMaxNanos() {
+            return maxNanos;
+        }
+
+        double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile Percentile richiesto, da 0 a 100
+         * @return Il limite superiore del bucket che contiene il percentile (mai oltre il massimo)
+         */
+        long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketLowerBound(i + 1) - 1, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
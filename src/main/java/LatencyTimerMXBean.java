@@ -0,0 +1,17 @@
+/**
+ * Statistiche JMX di un tempo misurato da {@link FrameMetrics}, relative all'ultimo
+ * intervallo di raccolta (un secondo). Registrato come
+ * {@code jbox2d.demo:type=Timer,name=<nome>}.
+ */
+public interface LatencyTimerMXBean {
+
+    long getCount();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    double getMeanMillis();
+}
@@ -0,0 +1,92 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/**
+ * Pannello con p50/p99/max di ogni misura di {@link FrameMetrics} (ultimo secondo)
+ * e i contatori del game loop, disegnato sopra la scena.
+ *
+ * I valori sono {@link HudLine}, riformattati solo quando arriva un nuovo snapshot, e
+ * il font è lo stesso dell'HUD (le colonne sono allineate per posizione), quindi il
+ * disegno non alloca.
+ */
+final class MetricsOverlay {
+
+    // Opaco: passare da un colore trasparente a uno opaco invalida le informazioni sul
+    // font del Graphics2D, che Java2D ricostruisce (allocando) al testo successivo
+    private static final Color BACKGROUND_COLOR = new Color(32, 32, 32);
+    private static final Color TEXT_COLOR = new Color(230, 230, 230);
+    private static final int WIDTH = 440;
+    private static final int LINE_HEIGHT = 18;
+    private static final int PADDING = 6;
+    private static final int MARGIN = 10;
+
+    // Colonne (rispetto al bordo sinistro del testo): nome, p50, p99, max
+    private static final int[] COLUMNS = {0, 130, 225, 320};
+
+    private final FrameMetrics metrics;
+    private final int x;
+    private final char[][] names = new char[FrameMetrics.NAMES.length][];
+    private final HudLine[][] cells = new HudLine[FrameMetrics.NAMES.length][];
+    private final LatencyHistogram.Snapshot[] shown = new LatencyHistogram.Snapshot[FrameMetrics.NAMES.length];
+    private final HudLine frameLine = new HudLine("fps ", "   ritardi ", " (persi ", ")   scartati ", "   GC ", "");
+
+    /**
+     * @param sceneWidth Larghezza della scena (il pannello sta in alto a destra)
+     */
+    MetricsOverlay(FrameMetrics metrics, int sceneWidth) {
+        this.metrics = metrics;
+        this.x = sceneWidth - WIDTH - MARGIN;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = FrameMetrics.NAMES[i].toCharArray();
+            cells[i] = new HudLine[] {
+                new HudLine("p50 ", ""),
+                new HudLine("p99 ", ""),
+                new HudLine("max ", " ms")
+            };
+        }
+    }
+
+    /**
+     * Scrive in {@code bounds} l'area occupata dal pannello (per il ridisegno parziale).
+     */
+    void getBounds(Rectangle bounds) {
+        bounds.setBounds(x, MARGIN, WIDTH, panelHeight());
+    }
+
+    private int panelHeight() {
+        return (names.length + 1) * LINE_HEIGHT + 2 * PADDING;
+    }
+
+    void draw(Graphics2D g2d) {
+        g2d.setColor(BACKGROUND_COLOR);
+        g2d.fillRect(x, MARGIN, WIDTH, panelHeight());
+
+        g2d.setColor(TEXT_COLOR);
+        g2d.setFont(SceneRenderer.HUD_FONT);
+        int left = x + PADDING;
+        int baseline = MARGIN + PADDING + LINE_HEIGHT - 4;
+        for (int i = 0; i < names.length; i++) {
+            LatencyHistogram.Snapshot snapshot = metrics.latest(i);
+            if (snapshot != shown[i]) {
+                // Nuovo intervallo: ricalcola i percentili una sola volta
+                shown[i] = snapshot;
+                cells[i][0].set(0, (float) FrameMetrics.toMillis(snapshot.getValueAtPercentile(50)));
+                cells[i][1].set(0, (float) FrameMetrics.toMillis(snapshot.getValueAtPercentile(99)));
+                cells[i][2].set(0, (float) FrameMetrics.toMillis(snapshot.getMaxNanos()));
+            }
+            g2d.drawChars(names[i], 0, names[i].length, left + COLUMNS[0], baseline);
+            for (int c = 0; c < cells[i].length; c++) {
+                cells[i][c].draw(g2d, left + COLUMNS[c + 1], baseline);
+            }
+            baseline += LINE_HEIGHT;
+        }
+
+        frameLine.set(0, (float) metrics.getFramesPerSecond());
+        frameLine.setCount(1, metrics.getLateTicks());
+        frameLine.setCount(2, metrics.getMissedTicks());
+        frameLine.setCount(3, metrics.getDroppedSteps());
+        frameLine.setCount(4, metrics.getGcCount());
+        frameLine.draw(g2d, left, baseline);
+    }
+}
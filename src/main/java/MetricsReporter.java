@@ -0,0 +1,156 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chiude periodicamente l'intervallo di {@link FrameMetrics} su un thread daemon e,
+ * se richiesto, aggiunge le statistiche a un file: CSV (una riga per misura) o, se il
+ * nome termina con {@code .json}, JSON Lines (un oggetto per intervallo). Se c'è un
+ * {@link QualityGovernor}, gli passa ogni intervallo chiuso.
+ */
+final class MetricsReporter {
+
+    private static final String CSV_HEADER =
+        "timestamp_ms,metric,count,p50_ms,p99_ms,max_ms,mean_ms,late_ticks,missed_ticks,dropped_steps,gc_count";
+
+    private final FrameMetrics metrics;
+    private final long periodMillis;
+    private final Path dumpFile;
+    private final boolean json;
+
+    private ScheduledExecutorService executor;
+    private BufferedWriter writer;
+    private volatile QualityGovernor governor;
+
+    /**
+     * @param dumpFile File di dump, o null per aggiornare solo overlay e JMX
+     */
+    MetricsReporter(FrameMetrics metrics, long periodMillis, Path dumpFile) {
+        this.metrics = metrics;
+        this.periodMillis = periodMillis;
+        this.dumpFile = dumpFile;
+        this.json = dumpFile != null && dumpFile.toString().toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    /**
+     * Valuta {@code governor} alla chiusura di ogni intervallo (null per nessuno).
+     */
+    void setGovernor(QualityGovernor governor) {
+        this.governor = governor;
+    }
+
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        if (dumpFile != null) {
+            try {
+                writer = Files.newBufferedWriter(dumpFile, StandardCharsets.UTF_8);
+                if (!json) {
+                    writer.write(CSV_HEADER);
+                    writer.newLine();
+                }
+                System.out.println("Metriche salvate in " + dumpFile);
+            } catch (IOException e) {
+                System.err.println("Impossibile creare il file delle metriche: " + e.getMessage());
+                writer = null;
+            }
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        executor = null;
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Errore durante la chiusura del file delle metriche: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private synchronized void report() {
+        metrics.report();
+        QualityGovernor qualityGovernor = governor;
+        if (qualityGovernor != null) {
+            qualityGovernor.evaluate(metrics);
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            long timestamp = System.currentTimeMillis();
+            if (json) {
+                writeJson(timestamp);
+            } else {
+                writeCsv(timestamp);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // Il dump non deve fermare la demo: si smette solo di scrivere
+            System.err.println("Errore durante la scrittura delle metriche: " + e.getMessage());
+            writer = null;
+        }
+    }
+
+    private void writeCsv(long timestamp) throws IOException {
+        for (int i = 0; i < FrameMetrics.NAMES.length; i++) {
+            LatencyHistogram.Snapshot snapshot = metrics.latest(i);
+            writer.write(String.format(Locale.ROOT, "%d,%s,%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d",
+                timestamp, FrameMetrics.NAMES[i], snapshot.getCount(),
+                FrameMetrics.toMillis(snapshot.getValueAtPercentile(50)),
+                FrameMetrics.toMillis(snapshot.getValueAtPercentile(99)),
+                FrameMetrics.toMillis(snapshot.getMaxNanos()),
+                snapshot.getMeanNanos() / 1.0e6,
+                metrics.getLateTicks(), metrics.getMissedTicks(),
+                metrics.getDroppedSteps(), metrics.getGcCount()));
+            writer.newLine();
+        }
+    }
+
+    private void writeJson(long timestamp) throws IOException {
+        StringBuilder line = new StringBuilder(512);
+        line.append("{\"timestamp\":").append(timestamp)
+            .append(",\"fps\":").append(String.format(Locale.ROOT, "%.1f", metrics.getFramesPerSecond()))
+            .append(",\"lateTicks\":").append(metrics.getLateTicks())
+            .append(",\"missedTicks\":").append(metrics.getMissedTicks())
+            .append(",\"droppedSteps\":").append(metrics.getDroppedSteps())
+            .append(",\"gcCount\":").append(metrics.getGcCount())
+            .append(",\"timers\":{");
+        for (int i = 0; i < FrameMetrics.NAMES.length; i++) {
+            LatencyHistogram.Snapshot snapshot = metrics.latest(i);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('"').append(FrameMetrics.NAMES[i]).append("\":")
+                .append(String.format(Locale.ROOT,
+                    "{\"count\":%d,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f,\"meanMs\":%.3f}",
+                    snapshot.getCount(),
+                    FrameMetrics.toMillis(snapshot.getValueAtPercentile(50)),
+                    FrameMetrics.toMillis(snapshot.getValueAtPercentile(99)),
+                    FrameMetrics.toMillis(snapshot.getMaxNanos()),
+                    snapshot.getMeanNanos() / 1.0e6));
+        }
+        line.append("}}");
+        writer.write(line.toString());
+        writer.newLine();
+    }
+}
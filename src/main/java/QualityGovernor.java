@@ -0,0 +1,351 @@
+import javax.management.JMException;
+import javax.management.MBeanNotificationInfo;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+import javax.management.StandardEmitterMBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Adatta la qualità della simulazione e del rendering al budget di un frame.
+ *
+ * Ad ogni intervallo di {@link FrameMetrics} (vedi {@link MetricsReporter}) confronta
+ * il costo di un frame, stimato per eccesso come p99 del passo di simulazione più p99
+ * del paint, con il budget (1 / TARGET_FPS). Se il costo supera {@link #DEGRADE_LOAD}
+ * del budget, o la simulazione ha scartato passi, per {@link #DEGRADE_INTERVALS}
+ * intervalli di fila, scende di un livello:
+ * <ol>
+ *   <li>meno iterazioni del solver, poi il minimo;</li>
+ *   <li>rendering veloce: niente antialiasing, {@code VALUE_RENDER_SPEED} e
+ *       interpolazione nearest neighbor;</li>
+ *   <li>sprite senza colorazione: solo varianti già in cache, altrimenti lo sprite
+ *       originale (nessuna variante costruita durante il paint).</li>
+ * </ol>
+ * Risale di un livello quando il costo resta sotto {@link #RESTORE_LOAD} del budget per
+ * {@link #RESTORE_INTERVALS} intervalli. Le due soglie e i conteggi evitano di
+ * oscillare; se un ripristino riporta subito il sovraccarico, il successivo aspetta
+ * il doppio degli intervalli.
+ *
+ * Ogni cambio di livello è un {@link Transition}, passato ai listener e pubblicato come
+ * notifica JMX da {@code jbox2d.demo:type=QualityGovernor}. Il livello si legge da
+ * qualsiasi thread: la simulazione legge le iterazioni del solver, il paint i flag del
+ * rendering.
+ */
+final class QualityGovernor {
+
+    // Livelli, dal migliore al più economico
+    static final int FULL = 0;
+    static final int SOLVER_REDUCED = 1;
+    static final int SOLVER_MINIMAL = 2;
+    static final int FAST_RENDERING = 3;
+    static final int NO_TINT = 4;
+
+    static final String[] LEVEL_NAMES = {
+        "piena", "solver ridotto", "solver minimo", "rendering veloce", "sprite senza colorazione"
+    };
+
+    // Iterazioni del solver per livello
+    private static final int[] VELOCITY_ITERATIONS = {SimulationEngine.VELOCITY_ITERATIONS, 5, 3, 3, 3};
+    private static final int[] POSITION_ITERATIONS = {SimulationEngine.POSITION_ITERATIONS, 2, 1, 1, 1};
+
+    // Soglie in frazioni del budget e intervalli consecutivi richiesti
+    static final double DEGRADE_LOAD = 0.9;
+    static final double RESTORE_LOAD = 0.5;
+    static final int DEGRADE_INTERVALS = 2;
+    static final int RESTORE_INTERVALS = 3;
+    private static final int MAX_RESTORE_INTERVALS = 48;
+
+    // Tipi delle notifiche JMX
+    static final String DEGRADE_NOTIFICATION = "jbox2d.quality.degrade";
+    static final String RESTORE_NOTIFICATION = "jbox2d.quality.restore";
+
+    private static final String JMX_NAME = "jbox2d.demo:type=QualityGovernor";
+
+    private final long budgetNanos;
+    private final long degradeNanos;
+    private final long restoreNanos;
+
+    private volatile int level = FULL;
+    private volatile boolean enabled = true;
+    private volatile long lastLoadNanos;
+
+    // Stato della valutazione (solo sotto il lock)
+    private int pressureIntervals;
+    private int headroomIntervals;
+    private int restoreIntervals = RESTORE_INTERVALS;
+    private boolean justRestored;
+    private long lastDroppedSteps;
+
+    private final AtomicLong degrades = new AtomicLong();
+    private final AtomicLong restores = new AtomicLong();
+    private final AtomicLong notificationSequence = new AtomicLong();
+    private final List<Consumer<Transition>> listeners = new CopyOnWriteArrayList<>();
+    private NotificationBroadcasterSupport broadcaster;
+
+    /**
+     * @param budgetNanos Durata di un frame (ad esempio 1 / TARGET_FPS)
+     */
+    QualityGovernor(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Il budget deve essere positivo: " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+        this.degradeNanos = (long) (budgetNanos * DEGRADE_LOAD);
+        this.restoreNanos = (long) (budgetNanos * RESTORE_LOAD);
+    }
+
+    /**
+     * Chiamato per ogni transizione, dal thread che valuta (quello delle metriche).
+     */
+    void addListener(Consumer<Transition> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Valuta l'ultimo intervallo chiuso da {@link FrameMetrics#report()}. Un intervallo
+     * senza passi né frame (ad esempio con la finestra ridotta a icona) viene ignorato.
+     */
+    void evaluate(FrameMetrics metrics) {
+        LatencyHistogram.Snapshot step = metrics.latest(FrameMetrics.PHYSICS_STEP);
+        LatencyHistogram.Snapshot paint = metrics.latest(FrameMetrics.PAINT);
+        if (step.getCount() == 0 && paint.getCount() == 0) {
+            return;
+        }
+        evaluate(step.getCount() == 0 ? 0 : step.getValueAtPercentile(99),
+                 paint.getCount() == 0 ? 0 : paint.getValueAtPercentile(99),
+                 metrics.getDroppedSteps());
+    }
+
+    /**
+     * Valuta un intervallo.
+     *
+     * @param stepNanos Tempo di un passo di simulazione (p99)
+     * @param paintNanos Tempo di un paint (p99)
+     * @param droppedSteps Passi scartati dall'avvio (vedi {@link SimulationScheduler#getDroppedSteps})
+     */
+    synchronized void evaluate(long stepNanos, long paintNanos, long droppedSteps) {
+        long dropped = droppedSteps - lastDroppedSteps;
+        lastDroppedSteps = droppedSteps;
+        long load = stepNanos + paintNanos;
+        lastLoadNanos = load;
+        if (!enabled) {
+            return;
+        }
+
+        if (load > degradeNanos || dropped > 0) {
+            headroomIntervals = 0;
+            if (++pressureIntervals >= DEGRADE_INTERVALS && level < NO_TINT) {
+                if (justRestored) {
+                    // Il ripristino ha riportato il sovraccarico: il prossimo aspetterà di più
+                    restoreIntervals = Math.min(restoreIntervals * 2, MAX_RESTORE_INTERVALS);
+                    justRestored = false;
+                }
+                String reason = dropped > 0
+                    ? String.format(Locale.ROOT, "%d passi scartati", dropped)
+                    : String.format(Locale.ROOT, "carico oltre il %.0f%% del budget", DEGRADE_LOAD * 100);
+                change(level + 1, load, reason);
+            }
+            return;
+        }
+
+        if (justRestored) {
+            // Il ripristino ha retto: l'attesa torna gradualmente quella normale
+            restoreIntervals = Math.max(restoreIntervals / 2, RESTORE_INTERVALS);
+            justRestored = false;
+        }
+        pressureIntervals = 0;
+        if (load >= restoreNanos) {
+            // Tra le due soglie: il livello resta quello che è
+            headroomIntervals = 0;
+        } else if (++headroomIntervals >= restoreIntervals && level > FULL) {
+            change(level - 1, load,
+                   String.format(Locale.ROOT, "carico sotto il %.0f%% del budget", RESTORE_LOAD * 100));
+            justRestored = true;
+        }
+    }
+
+    /**
+     * Attiva o disattiva l'adattamento; disattivato riporta subito la qualità piena.
+     */
+    synchronized void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        pressureIntervals = 0;
+        headroomIntervals = 0;
+        restoreIntervals = RESTORE_INTERVALS;
+        justRestored = false;
+        if (!enabled && level != FULL) {
+            change(FULL, lastLoadNanos, "adattamento disattivato");
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // Solo sotto il lock: azzera i conteggi, poi avvisa listener e client JMX
+    private void change(int newLevel, long load, String reason) {
+        Transition transition = new Transition(level, newLevel, load, budgetNanos, reason);
+        level = newLevel;
+        pressureIntervals = 0;
+        headroomIntervals = 0;
+        if (transition.isDegrade()) {
+            degrades.incrementAndGet();
+        } else {
+            restores.incrementAndGet();
+        }
+        for (Consumer<Transition> listener : listeners) {
+            listener.accept(transition);
+        }
+        if (broadcaster != null) {
+            Notification notification = new Notification(
+                transition.isDegrade() ? DEGRADE_NOTIFICATION : RESTORE_NOTIFICATION,
+                JMX_NAME, notificationSequence.incrementAndGet(), transition.timeMillis, transition.toString());
+            broadcaster.sendNotification(notification);
+        }
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    int getVelocityIterations() {
+        return VELOCITY_ITERATIONS[level];
+    }
+
+    int getPositionIterations() {
+        return POSITION_ITERATIONS[level];
+    }
+
+    boolean isFastRendering() {
+        return level >= FAST_RENDERING;
+    }
+
+    boolean isTintingEnabled() {
+        return level < NO_TINT;
+    }
+
+    long getDegrades() {
+        return degrades.get();
+    }
+
+    long getRestores() {
+        return restores.get();
+    }
+
+    /**
+     * @return Il costo stimato di un frame nell'ultimo intervallo valutato
+     */
+    long getLastLoadNanos() {
+        return lastLoadNanos;
+    }
+
+    /**
+     * Registra il bean JMX, che pubblica ogni transizione come notifica.
+     */
+    synchronized void registerMBean() {
+        MBeanNotificationInfo info = new MBeanNotificationInfo(
+            new String[] {DEGRADE_NOTIFICATION, RESTORE_NOTIFICATION},
+            Notification.class.getName(), "Cambio del livello di qualità");
+        NotificationBroadcasterSupport support = new NotificationBroadcasterSupport(info);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardEmitterMBean(new GovernorBean(), QualityGovernorMXBean.class, true, support),
+                new ObjectName(JMX_NAME));
+            broadcaster = support;
+        } catch (JMException e) {
+            System.err.println("Impossibile registrare il governatore della qualità in JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Un cambio di livello (immutabile).
+     */
+    static final class Transition {
+        final int fromLevel;
+        final int toLevel;
+        final long loadNanos;
+        final long budgetNanos;
+        final String reason;
+        final long timeMillis = System.currentTimeMillis();
+
+        Transition(int fromLevel, int toLevel, long loadNanos, long budgetNanos, String reason) {
+            this.fromLevel = fromLevel;
+            this.toLevel = toLevel;
+            this.loadNanos = loadNanos;
+            this.budgetNanos = budgetNanos;
+            this.reason = reason;
+        }
+
+        boolean isDegrade() {
+            return toLevel > fromLevel;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Qualità %s: %s -> %s (%s; frame %.2f ms su %.2f ms)",
+                                 isDegrade() ? "ridotta" : "ripristinata",
+                                 LEVEL_NAMES[fromLevel], LEVEL_NAMES[toLevel], reason,
+                                 FrameMetrics.toMillis(loadNanos), FrameMetrics.toMillis(budgetNanos));
+        }
+    }
+
+    private final class GovernorBean implements QualityGovernorMXBean {
+        @Override
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public String getLevelName() {
+            return LEVEL_NAMES[level];
+        }
+
+        @Override
+        public int getVelocityIterations() {
+            return QualityGovernor.this.getVelocityIterations();
+        }
+
+        @Override
+        public int getPositionIterations() {
+            return QualityGovernor.this.getPositionIterations();
+        }
+
+        @Override
+        public double getLastLoadMillis() {
+            return FrameMetrics.toMillis(lastLoadNanos);
+        }
+
+        @Override
+        public double getBudgetMillis() {
+            return FrameMetrics.toMillis(budgetNanos);
+        }
+
+        @Override
+        public long getDegrades() {
+            return QualityGovernor.this.getDegrades();
+        }
+
+        @Override
+        public long getRestores() {
+            return QualityGovernor.this.getRestores();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            QualityGovernor.this.setEnabled(enabled);
+        }
+    }
+}
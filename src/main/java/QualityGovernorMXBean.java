@@ -0,0 +1,27 @@
+/**
+ * Stato del {@link QualityGovernor}, registrato come
+ * {@code jbox2d.demo:type=QualityGovernor}. Ogni cambio di livello arriva anche come
+ * notifica ({@code jbox2d.quality.degrade} o {@code jbox2d.quality.restore}).
+ */
+public interface QualityGovernorMXBean {
+
+    int getLevel();
+
+    String getLevelName();
+
+    int getVelocityIterations();
+
+    int getPositionIterations();
+
+    double getLastLoadMillis();
+
+    double getBudgetMillis();
+
+    long getDegrades();
+
+    long getRestores();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+}
@@ -0,0 +1,74 @@
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formato binario delle registrazioni ({@link SimulationRecorder}, {@link SimulationRecording}).
+ *
+ * Una registrazione è una cartella di segmenti {@code segment-NNNNN.jbrec}, numerati in
+ * ordine. Ogni segmento ha un numero fisso di corpi e record di larghezza fissa, quindi
+ * il frame k del segmento sta a {@code framesOffset + k * frameBytes}:
+ * <pre>
+ * intestazione (32 byte, little-endian)
+ *   int   MAGIC, VERSION, numero di corpi, frame previsti, frame scritti
+ *   float durata del passo (s)
+ * descrittori dei corpi (struct-of-arrays, n valori ciascuno)
+ *   float mezza larghezza, mezza altezza (pixel); int sprite, tinta, flag
+ * frame (allineati a 8 byte)
+ *   long  numero del passo
+ *   float x[n], y[n] (pixel, Y verso il basso), angolo[n] (rad), vx[n], vy[n] (m/s)
+ *   4 byte di riempimento se n è dispari
+ * </pre>
+ * Con il riempimento {@code frameBytes} è multiplo di 8, quindi il numero del passo di
+ * ogni frame è un long allineato (anche con un numero dispari di corpi).
+ * Il contatore dei frame scritti viene aggiornato dopo ogni frame: anche una
+ * registrazione interrotta resta leggibile fino all'ultimo frame completo.
+ */
+final class RecordingFormat {
+
+    static final int MAGIC = 0x4A425243; // "JBRC"
+    static final int VERSION = 2;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_BYTES = 32;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int BODY_COUNT_OFFSET = 8;
+    static final int FRAME_CAPACITY_OFFSET = 12;
+    static final int FRAME_COUNT_OFFSET = 16;
+    static final int TIME_STEP_OFFSET = 20;
+
+    // Valori per corpo: 5 nei descrittori, 5 in ogni frame
+    static final int DESCRIPTOR_VALUES = 5;
+    static final int FRAME_VALUES = 5;
+    static final int STEP_BYTES = 8;
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".jbrec";
+
+    private RecordingFormat() {
+    }
+
+    static long framesOffset(int bodyCount) {
+        long end = HEADER_BYTES + (long) DESCRIPTOR_VALUES * Float.BYTES * bodyCount;
+        return (end + 7) & ~7L;
+    }
+
+    static long frameBytes(int bodyCount) {
+        long end = STEP_BYTES + (long) FRAME_VALUES * Float.BYTES * bodyCount;
+        return (end + 7) & ~7L;
+    }
+
+    static long segmentBytes(int bodyCount, int frames) {
+        return framesOffset(bodyCount) + frames * frameBytes(bodyCount);
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format(Locale.ROOT, "%s%05d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Costo della registrazione e della riproduzione (vedi {@link SimulationRecorder} e
+ * {@link SimulationRecording}), senza finestra: {@code --headless --record dir} e
+ * {@code --headless --replay dir}. Che la riproduzione restituisca gli stessi frame lo
+ * verifica SimulationRecorderTest.
+ */
+final class RecordingRunner {
+
+    private static final int REPLAY_SEEKS = 10_000;
+    private static final long BOX_SEED = 7L;
+    private static final long SEEK_SEED = 42L;
+
+    private RecordingRunner() {
+    }
+
+    /**
+     * Fa avanzare un mondo con {@code boxes} scatole per {@code steps} passi registrandoli
+     * in {@code directory}, e riporta il costo della registrazione. Una registrazione già
+     * presente nella cartella viene sostituita solo con {@code overwrite}.
+     */
+    static void record(int steps, int boxes, Path directory, boolean overwrite) {
+        System.out.printf(Locale.ROOT, "Registrazione headless: %d passi, %d scatole in %s%n",
+                          steps, boxes, directory);
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        EntityRegistry entities = engine.getEntities();
+
+        long stepNanos = 0;
+        long recordNanos = 0;
+        long recordAllocated = 0;
+        try (SimulationRecorder recorder = new SimulationRecorder(directory, SimulationEngine.TIME_STEP, overwrite)) {
+            for (int s = 0; s < steps; s++) {
+                long start = System.nanoTime();
+                engine.step();
+                long stepped = System.nanoTime();
+                long allocated = threads.getThreadAllocatedBytes(threadId);
+                recorder.record(entities, engine.getStepCount());
+                recordAllocated += threads.getThreadAllocatedBytes(threadId) - allocated;
+                stepNanos += stepped - start;
+                recordNanos += System.nanoTime() - stepped;
+            }
+
+            double recordSeconds = recordNanos / 1.0e9;
+            System.out.printf(Locale.ROOT, "Frame: %d in %d segmenti, %.1f MB%n",
+                              recorder.getFrames(), recorder.getSegments(), recorder.getBytes() / 1.0e6);
+            System.out.printf(Locale.ROOT, "Passi: %.3f s, registrazione: %.3f s (%.1f us/frame, %.0f MB/s)%n",
+                              stepNanos / 1.0e9, recordSeconds, recordNanos / 1.0e3 / steps,
+                              recorder.getBytes() / 1.0e6 / recordSeconds);
+            System.out.printf(Locale.ROOT, "Frame registrabili al secondo: %.0f (%.1fx tempo reale), %.1f byte allocati per frame%n",
+                              steps / recordSeconds, steps * SimulationEngine.TIME_STEP / recordSeconds,
+                              (double) recordAllocated / steps);
+        } catch (DirectoryNotEmptyException e) {
+            System.err.println("La cartella della registrazione non è vuota: " + directory
+                               + " (--overwrite per sostituire la registrazione)");
+        } catch (IOException e) {
+            System.err.println("Errore durante la registrazione: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Legge tutta la registrazione in {@code directory} in sequenza e con salti casuali,
+     * e riporta i tempi.
+     */
+    static void replay(Path directory) {
+        try (SimulationRecording recording = SimulationRecording.open(directory)) {
+            int frames = recording.getFrameCount();
+            System.out.printf(Locale.ROOT, "Registrazione %s: %d frame (%.1f s) in %d segmenti, fino a %d corpi%n",
+                              directory, frames, frames * recording.getTimeStep(),
+                              recording.getSegmentCount(), recording.getMaxBodyCount());
+
+            BodyStates states = new BodyStates(recording.getMaxBodyCount());
+            long start = System.nanoTime();
+            for (int f = 0; f < frames; f++) {
+                recording.read(f, states, true);
+            }
+            double sequential = (System.nanoTime() - start) / 1.0e9;
+            System.out.printf(Locale.ROOT, "Lettura sequenziale: %.3f s (%.1f us/frame)%n",
+                              sequential, sequential * 1.0e6 / frames);
+            if (states.count > SimulationEngine.CUBE_INDEX) {
+                System.out.printf(Locale.ROOT, "  passo %d: cubo in (%.1f, %.1f) px%n", states.step,
+                                  states.x[SimulationEngine.CUBE_INDEX], states.y[SimulationEngine.CUBE_INDEX]);
+            }
+
+            SplittableRandom random = new SplittableRandom(SEEK_SEED);
+            start = System.nanoTime();
+            for (int i = 0; i < REPLAY_SEEKS; i++) {
+                recording.read(random.nextInt(frames), states, false);
+            }
+            double seeks = (System.nanoTime() - start) / 1.0e9;
+            System.out.printf(Locale.ROOT, "Salti casuali: %d in %.3f s (%.1f us/salto)%n",
+                              REPLAY_SEEKS, seeks, seeks * 1.0e6 / REPLAY_SEEKS);
+        } catch (IOException e) {
+            System.err.println("Impossibile aprire la registrazione: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Esegue molti scenari indipendenti in parallelo su tutti i core.
+ *
+ * Un World JBox2D è single-thread, ma scenari diversi non condividono nulla:
+ * ogni worker del pool fork-join tiene il proprio {@link SimulationEngine} e lo
+ * riporta allo stato iniziale con {@link SimulationEngine#reset} per ogni scenario,
+ * riusando lo stesso World invece di ricrearlo. I risultati sono scritti direttamente
+ * nelle colonne di {@link ScenarioResults}, ognuno al proprio indice, senza lock.
+ */
+final class ScenarioExecutor implements AutoCloseable {
+
+    // Sotto questa soglia un task esegue i suoi scenari invece di dividersi
+    private static final int SPLIT_THRESHOLD = 4;
+
+    private final ForkJoinPool pool;
+
+    // Motore riusato da ogni worker
+    private final ThreadLocal<SimulationEngine> workerEngine =
+        ThreadLocal.withInitial(() -> new SimulationEngine(ScenarioParams.DEFAULT));
+
+    /**
+     * @param parallelism Numero di thread worker (tipicamente il numero di core)
+     */
+    ScenarioExecutor(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Esegue ogni scenario per {@code steps} passi e raccoglie lo stato finale.
+     */
+    ScenarioResults run(ScenarioParams[] scenarios, int steps) {
+        ScenarioResults results = new ScenarioResults(scenarios.length);
+        pool.invoke(new ScenarioTask(scenarios, steps, results, 0, scenarios.length));
+        return results;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Divide l'intervallo di scenari finché è abbastanza piccolo, poi lo esegue
+    private final class ScenarioTask extends RecursiveAction {
+        private final ScenarioParams[] scenarios;
+        private final int steps;
+        private final ScenarioResults results;
+        private final int from;
+        private final int to;
+
+        ScenarioTask(ScenarioParams[] scenarios, int steps, ScenarioResults results, int from, int to) {
+            this.scenarios = scenarios;
+            this.steps = steps;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                SimulationEngine engine = workerEngine.get();
+                for (int i = from; i < to; i++) {
+                    engine.reset(scenarios[i]);
+                    for (int s = 0; s < steps; s++) {
+                        engine.step();
+                    }
+                    results.record(i, engine);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScenarioTask(scenarios, steps, results, from, middle),
+                      new ScenarioTask(scenarios, steps, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Parametri di uno scenario della demo: le proprietà fisiche di pavimento e cubo
+ * che in origine erano fisse in createFloor/createCube.
+ * Immutabile; {@link #DEFAULT} riproduce esattamente la demo.
+ */
+final class ScenarioParams {
+
+    static final ScenarioParams DEFAULT = new ScenarioParams(0.5f, 0.3f, 0.3f, 0.4f, 1.0f, 5.0f);
+
+    final float floorFriction;
+    final float floorRestitution;
+    final float cubeFriction;
+    final float cubeRestitution;
+    final float cubeDensity;
+    // Velocità orizzontale iniziale del cubo, ripristinata quando rallenta troppo (m/s)
+    final float cubeSpeed;
+
+    ScenarioParams(float floorFriction, float floorRestitution,
+                   float cubeFriction, float cubeRestitution,
+                   float cubeDensity, float cubeSpeed) {
+        this.floorFriction = floorFriction;
+        this.floorRestitution = floorRestitution;
+        this.cubeFriction = cubeFriction;
+        this.cubeRestitution = cubeRestitution;
+        this.cubeDensity = cubeDensity;
+        this.cubeSpeed = cubeSpeed;
+    }
+
+    /**
+     * Genera varianti casuali (ma riproducibili) dello scenario di default.
+     *
+     * @param count Numero di scenari
+     * @param seed Seme del generatore casuale
+     */
+    static ScenarioParams[] randomVariants(int count, long seed) {
+        Random random = new Random(seed);
+        ScenarioParams[] variants = new ScenarioParams[count];
+        for (int i = 0; i < count; i++) {
+            variants[i] = new ScenarioParams(
+                random.nextFloat(),                   // attrito pavimento 0-1
+                random.nextFloat() * 0.8f,            // rimbalzo pavimento 0-0.8
+                random.nextFloat(),                   // attrito cubo 0-1
+                random.nextFloat() * 0.8f,            // rimbalzo cubo 0-0.8
+                0.2f + random.nextFloat() * 4.8f,     // densità 0.2-5
+                1.0f + random.nextFloat() * 9.0f      // velocità 1-10 m/s
+            );
+        }
+        return variants;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+            "ScenarioParams[floor f=%.2f r=%.2f, cube f=%.2f r=%.2f d=%.2f v=%.2f]",
+            floorFriction, floorRestitution, cubeFriction, cubeRestitution, cubeDensity, cubeSpeed);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Locale;
+
+/**
+ * Risultati di un insieme di scenari in formato colonnare: un array primitivo per
+ * ogni grandezza, indicizzato per scenario. Compatto in memoria e facile da
+ * aggregare senza creare un oggetto per scenario.
+ */
+final class ScenarioResults {
+
+    final float[] finalX;
+    final float[] finalY;
+    final float[] finalAngle;
+    final int[] contactCount;
+    final float[] kineticEnergy;
+    final float[] potentialEnergy;
+
+    ScenarioResults(int count) {
+        finalX = new float[count];
+        finalY = new float[count];
+        finalAngle = new float[count];
+        contactCount = new int[count];
+        kineticEnergy = new float[count];
+        potentialEnergy = new float[count];
+    }
+
+    int size() {
+        return finalX.length;
+    }
+
+    /**
+     * Registra lo stato finale del cubo per lo scenario {@code index}.
+     */
+    void record(int index, SimulationEngine engine) {
+        var cube = engine.getCubeBody();
+        finalX[index] = cube.getPosition().x;
+        finalY[index] = cube.getPosition().y;
+        finalAngle[index] = cube.getAngle();
+        contactCount[index] = engine.getContactCount();
+        kineticEnergy[index] = engine.getCubeKineticEnergy();
+        potentialEnergy[index] = engine.getCubePotentialEnergy();
+    }
+
+    /**
+     * @return Una riga CSV per lo scenario {@code index}
+     */
+    String toCsvRow(int index) {
+        return String.format(Locale.ROOT, "%d,%.4f,%.4f,%.4f,%d,%.4f,%.4f",
+                             index, finalX[index], finalY[index], finalAngle[index],
+                             contactCount[index], kineticEnergy[index], potentialEnergy[index]);
+    }
+
+    static String csvHeader() {
+        return "scenario,finalX,finalY,finalAngle,contacts,kineticEnergy,potentialEnergy";
+    }
+}
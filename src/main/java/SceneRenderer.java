@@ -0,0 +1,614 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Disegna la scena (sfondo, corpi, HUD) a partire dagli stati pubblicati dalla simulazione.
+ * Lo usa il GamePanel di {@link JBox2Demo}, ma funziona con qualsiasi Graphics2D,
+ * anche offscreen e senza display (vedi {@link AllocationProbe}).
+ *
+ * Gli sprite vengono dagli sprite pre-calcolati in fase di build ({@link BakedSprites})
+ * o, se mancano, dall'atlante ({@link SpriteAtlas}), e possono essere caricati in
+ * background ({@link #loadSpriteAsync}): fino ad allora i corpi sono rettangoli colorati.
+ * Il caricamento usa un solo thread, in parallelo all'avvio della finestra ma non al
+ * proprio interno: c'è una sola variante colorata (quella del cubo, usata da tutti i
+ * corpi con sprite) e di norma arriva già pronta dagli sprite pre-calcolati, quindi
+ * non ci sono lavori di colorazione da distribuire su più thread.
+ * Le varianti colorate arrivano dalla cache e vengono disegnate tramite superfici già
+ * scalate e compatibili con la destinazione ({@link SpriteSurfaces}), così il disegno
+ * resta sulla pipeline accelerata.
+ *
+ * Sfondo e corpi statici sono disegnati una volta in uno strato in cache, compatibile con
+ * la destinazione, e ricopiati ad ogni frame; l'area ridisegnata è quella del clip del
+ * Graphics2D (vedi {@link DirtyRegions}) e i corpi il cui rettangolo di ingombro ne
+ * resta fuori vengono saltati. In alternativa i corpi dinamici possono essere
+ * rasterizzati in parallelo da un {@link TiledRenderer}.
+ *
+ * A regime il rendering non alloca: colori, font e stroke sono costanti, la forma dei
+ * corpi ({@link BodyOutline}) è riusata e il testo dell'HUD viene riformattato solo
+ * quando cambia ({@link HudLine}). L'unica eccezione è il drawImage ruotato dello
+ * sprite, che alloca qualche oggetto temporaneo dentro Java2D.
+ */
+final class SceneRenderer {
+    
+    private static final int TINT_CACHE_CAPACITY = 32;
+    private static final int SURFACE_CACHE_CAPACITY = 256;
+    
+    // Manifest dell'atlante nelle risorse e nome del frame del cubo
+    static final String ATLAS_MANIFEST = "/sprites.atlas";
+    private static final String CUBE_FRAME = "cube";
+    // Sprite pre-calcolati dal task bakeSprites (vedi BakedSprites)
+    private static final String BAKED_SPRITES = "/sprites.argb";
+    
+    // Indice del cubo negli stati pubblicati (per l'HUD)
+    private static final int CUBE_INDEX = SimulationEngine.CUBE_INDEX;
+    
+    private static final Color BACKGROUND_COLOR = new Color(240, 248, 255);
+    
+    // Colori dei rettangoli, indicizzati per tintId (SimulationEngine.TINT_*)
+    private static final Color[] BODY_COLORS = {
+        new Color(101, 67, 33),    // Pavimento
+        new Color(220, 20, 60),    // Cubo
+        new Color(70, 130, 180)    // Scatole aggiuntive
+    };
+    private static final Color[] BODY_BORDER_COLORS = {
+        BODY_COLORS[0].darker(),
+        BODY_COLORS[1].darker(),
+        BODY_COLORS[2].darker()
+    };
+    private static final Color SPRITE_BORDER_COLOR = new Color(0, 0, 0, 100);
+    private static final BasicStroke SPRITE_STROKE = new BasicStroke(1);
+    private static final BasicStroke BODY_STROKE = new BasicStroke(2);
+    // Condiviso con l'overlay delle metriche: cambiare Font tra un testo e l'altro costa una ricerca nella cache dei glifi
+    static final Font HUD_FONT = new Font("Arial", Font.PLAIN, 14);
+    
+    // Area dell'HUD (in alto a sinistra), per il ridisegno parziale
+    static final int HUD_WIDTH = 320;
+    static final int HUD_HEIGHT = 48;
+    
+    // Margine in pixel attorno ai corpi per il culling: mezzo bordo più l'antialiasing
+    private static final int CULL_MARGIN = 2;
+    
+    private final int width;
+    private final int height;
+    
+    private BufferedImage cubeSprite;
+    
+    // Varianti colorate dello sprite, costruite una sola volta e riusate ad ogni frame
+    private final TintedSpriteCache tintCache = new TintedSpriteCache(TINT_CACHE_CAPACITY);
+    private TintPipeline cubeTint;
+    
+    // Varianti già scalate per ogni dimensione dei corpi, nel formato della destinazione
+    private final SpriteSurfaces surfaces = new SpriteSurfaces(SURFACE_CACHE_CAPACITY);
+    
+    private boolean spritesEnabled = true;
+    
+    // Qualità ridotta dal QualityGovernor sotto carico
+    private boolean fastRendering;
+    private boolean tintingEnabled = true;
+    
+    // Misure opzionali (null = nessuna misura)
+    private FrameMetrics metrics;
+    
+    // Strato in cache con sfondo e corpi statici, per la GraphicsConfiguration staticConfig
+    private BufferedImage staticLayer;
+    private Graphics2D staticGraphics;
+    private GraphicsConfiguration staticConfig;
+    private boolean staticLayerValid;
+    private long staticSignature;
+    private boolean staticSprites;
+    private boolean staticLayerScaled;
+    private long staticLayerBuilds;
+    
+    // Rasterizzatore a tile al posto di drawBody (null = Java2D), con il suo strato statico
+    private TiledRenderer tiled;
+    private boolean tiledLayerValid;
+    private long tiledSignature;
+    private boolean tiledSprites;
+    
+    // Area ridisegnata nel frame corrente (clip limitato alla scena)
+    private final Rectangle clip = new Rectangle();
+    // Corpi dinamici vicini al clip, da un indice spaziale sullo stato disegnato
+    private final BodyCuller culler = new BodyCuller(SimulationEngine.SPATIAL_CELL_SIZE);
+    
+    // Oggetti riusati ad ogni frame
+    private final BodyOutline outline = new BodyOutline();
+    private final HudLine speedLine = new HudLine("Velocità: ", " m/s");
+    private final HudLine positionLine = new HudLine("Posizione: (", ", ", ")");
+    
+    SceneRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * Abilita o disabilita gli sprite (con sprite disabilitati tutti i corpi sono rettangoli).
+     */
+    void setSpritesEnabled(boolean enabled) {
+        this.spritesEnabled = enabled;
+    }
+    
+    /**
+     * Rendering veloce: niente antialiasing, {@code VALUE_RENDER_SPEED} e sprite ruotati
+     * con interpolazione nearest neighbor. Non cambia lo strato statico, disegnato una
+     * volta sola.
+     */
+    void setFastRendering(boolean fastRendering) {
+        this.fastRendering = fastRendering;
+    }
+    
+    /**
+     * Con la colorazione disabilitata gli sprite usano solo le varianti già in cache e,
+     * se manca, lo sprite originale: nessuna variante viene costruita durante il paint.
+     */
+    void setTintingEnabled(boolean tintingEnabled) {
+        this.tintingEnabled = tintingEnabled;
+    }
+    
+    /**
+     * Disegna i corpi dinamici con il rasterizzatore a tile invece che con Java2D
+     * (null per tornare a Java2D). Sfondo, corpi statici e HUD restano disegnati da
+     * Java2D; gli hint del rendering veloce non si applicano ai tile.
+     */
+    void setTiledRenderer(TiledRenderer tiled) {
+        this.tiled = tiled;
+        tiledLayerValid = false;
+    }
+    
+    TiledRenderer getTiledRenderer() {
+        return tiled;
+    }
+    
+    /**
+     * Misura i tempi di colorazione e di drawImage dello sprite (null per disattivare).
+     */
+    void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    boolean hasSprite() {
+        return cubeSprite != null;
+    }
+    
+    TintedSpriteCache getTintCache() {
+        return tintCache;
+    }
+    
+    SpriteSurfaces getSurfaces() {
+        return surfaces;
+    }
+    
+    /**
+     * @return Quante volte lo strato statico è stato ridisegnato
+     */
+    long getStaticLayerBuilds() {
+        return staticLayerBuilds;
+    }
+    
+    /**
+     * Disegna un frame completo.
+     *
+     * @param g2d Destinazione (pannello Swing o immagine offscreen)
+     * @param states Stato dei corpi pubblicato dalla simulazione
+     * @param alpha Frazione del passo trascorsa, per interpolare tra gli ultimi due passi
+     */
+    void render(Graphics2D g2d, BodyStates states, float alpha) {
+        // Abilita antialiasing per grafica migliore (se non serve risparmiare)
+        if (fastRendering) {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        } else {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Quella che VALUE_RENDER_QUALITY sceglie da sola, esplicita per annullare la precedente
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        
+        // Area da ridisegnare: il clip (repaint parziale) limitato alla scena
+        clip.setBounds(0, 0, width, height);
+        g2d.getClipBounds(clip);
+        clampToScene(clip);
+        
+        if (tiled != null) {
+            // Strato statico e corpi dinamici rasterizzati nei tile, poi un solo drawImage
+            drawTiled(g2d, states, alpha);
+        } else {
+            // Sfondo e corpi statici dallo strato in cache
+            drawStaticLayer(g2d, states);
+            
+            // Disegna cubo e scatole (con sprite se disponibile): l'indice trova quelli
+            // vicini al clip, drawBody salta quelli il cui ingombro ruotato ne resta fuori
+            int visibleCount = culler.cull(states, clip.x - CULL_MARGIN, clip.y - CULL_MARGIN,
+                                           clip.x + clip.width + CULL_MARGIN, clip.y + clip.height + CULL_MARGIN);
+            int[] visible = culler.getVisible();
+            for (int v = 0; v < visibleCount; v++) {
+                drawBody(g2d, states, visible[v], alpha, true);
+            }
+        }
+        
+        // Disegna informazioni di debug (se l'HUD è nell'area da ridisegnare)
+        if (clip.x < HUD_WIDTH && clip.y < HUD_HEIGHT) {
+            drawHud(g2d, states);
+        }
+    }
+    
+    private void drawHud(Graphics2D g2d, BodyStates states) {
+        g2d.setColor(Color.BLACK);
+        g2d.setFont(HUD_FONT);
+        float cubeVelX = states.velocityX[CUBE_INDEX];
+        float cubeVelY = states.velocityY[CUBE_INDEX];
+        speedLine.set(0, (float) Math.sqrt(cubeVelX * cubeVelX + cubeVelY * cubeVelY));
+        speedLine.draw(g2d, 10, 20);
+        positionLine.set(0, SimulationEngine.pixelsToMeters(states.x[CUBE_INDEX]));
+        positionLine.set(1, SimulationEngine.pixelsToMeters(height - states.y[CUBE_INDEX]));
+        positionLine.draw(g2d, 10, 40);
+    }
+    
+    /**
+     * Copia lo strato statico, ridisegnandolo prima se i corpi statici, gli sprite o la
+     * configurazione della destinazione sono cambiati.
+     */
+    private void drawStaticLayer(Graphics2D g2d, BodyStates states) {
+        GraphicsConfiguration gc = g2d.getDeviceConfiguration();
+        if (gc != staticConfig) {
+            createStaticLayer(gc);
+        }
+        long signature = staticSignature(states);
+        if (!staticLayerValid || signature != staticSignature || spritesEnabled != staticSprites) {
+            paintStaticScene(staticGraphics, states);
+            staticSignature = signature;
+            staticSprites = spritesEnabled;
+            staticLayerValid = true;
+            staticLayerBuilds++;
+        }
+        if (staticLayerScaled) {
+            g2d.drawImage(staticLayer, 0, 0, width, height, null);
+        } else {
+            g2d.drawImage(staticLayer, 0, 0, null);
+        }
+    }
+    
+    // Sfondo e corpi statici
+    private void paintStaticScene(Graphics2D g, BodyStates states) {
+        g.setColor(BACKGROUND_COLOR);
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < states.count; i++) {
+            if (states.isStatic(i)) {
+                drawBody(g, states, i, 1.0f, false);
+            }
+        }
+    }
+    
+    /**
+     * Disegna la scena con il rasterizzatore a tile: lo strato statico (a risoluzione
+     * logica) viene ridisegnato da Java2D solo quando cambia, come {@link #drawStaticLayer}.
+     */
+    private void drawTiled(Graphics2D g2d, BodyStates states, float alpha) {
+        long signature = staticSignature(states);
+        if (!tiledLayerValid || signature != tiledSignature || spritesEnabled != tiledSprites) {
+            Graphics2D g = tiled.getBackground().createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            paintStaticScene(g, states);
+            g.dispose();
+            tiledSignature = signature;
+            tiledSprites = spritesEnabled;
+            tiledLayerValid = true;
+            staticLayerBuilds++;
+        }
+        BufferedImage sprite = spritesEnabled && cubeSprite != null ? currentSprite() : null;
+        tiled.render(states, alpha, clip, sprite, BODY_COLORS, BODY_BORDER_COLORS, SPRITE_BORDER_COLOR);
+        g2d.drawImage(tiled.getFrame(), 0, 0, width, height, null);
+    }
+    
+    private void createStaticLayer(GraphicsConfiguration gc) {
+        if (staticGraphics != null) {
+            staticGraphics.dispose();
+            staticLayer.flush();
+        }
+        // Sugli schermi HiDPI lo strato ha la risoluzione del dispositivo
+        AffineTransform deviceTransform = gc.getDefaultTransform();
+        double scaleX = deviceTransform.getScaleX();
+        double scaleY = deviceTransform.getScaleY();
+        staticLayer = gc.createCompatibleImage((int) Math.ceil(width * scaleX),
+                                               (int) Math.ceil(height * scaleY), Transparency.OPAQUE);
+        staticGraphics = staticLayer.createGraphics();
+        staticGraphics.scale(scaleX, scaleY);
+        staticGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        staticGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        staticLayerScaled = scaleX != 1.0 || scaleY != 1.0;
+        staticConfig = gc;
+        staticLayerValid = false;
+    }
+    
+    // Impronta dei corpi statici: cambia se ne viene aggiunto, tolto o spostato uno
+    private static long staticSignature(BodyStates states) {
+        long signature = 1;
+        for (int i = 0; i < states.count; i++) {
+            if (!states.isStatic(i)) {
+                continue;
+            }
+            signature = 31 * signature + i;
+            signature = 31 * signature + Float.floatToIntBits(states.x[i]);
+            signature = 31 * signature + Float.floatToIntBits(states.y[i]);
+            signature = 31 * signature + Float.floatToIntBits(states.angle[i]);
+            signature = 31 * signature + Float.floatToIntBits(states.halfWidth[i]);
+            signature = 31 * signature + Float.floatToIntBits(states.halfHeight[i]);
+            signature = 31 * signature + states.spriteId[i];
+            signature = 31 * signature + states.tintId[i];
+        }
+        return signature;
+    }
+    
+    private void clampToScene(Rectangle r) {
+        int minX = Math.max(r.x, 0);
+        int minY = Math.max(r.y, 0);
+        int maxX = Math.min(r.x + r.width, width);
+        int maxY = Math.min(r.y + r.height, height);
+        r.setBounds(minX, minY, Math.max(0, maxX - minX), Math.max(0, maxY - minY));
+    }
+    
+    /**
+     * Disegna un corpo.
+     *
+     * @param cull Se true il corpo viene saltato quando il suo ingombro è fuori dal clip
+     */
+    private void drawBody(Graphics2D g2d, BodyStates states, int index, float alpha, boolean cull) {
+        float angle = states.interpolatedAngle(index, alpha);
+        float halfWidth = states.halfWidth[index];
+        float halfHeight = states.halfHeight[index];
+        int tint = states.tintId[index];
+        boolean useSprite = states.spriteId[index] == SimulationEngine.SPRITE_CUBE;
+        
+        // Coordinate già in pixel Swing (Y invertita dal registro)
+        float x = states.interpolatedX(index, alpha);
+        float y = states.interpolatedY(index, alpha);
+        
+        // Vertici già ruotati: la trasformazione del Graphics2D resta intatta
+        outline.set(x, y, halfWidth, halfHeight, angle);
+        if (cull && !intersectsClip(outline)) {
+            return;
+        }
+        
+        // Disegna lo sprite se disponibile e richiesto, altrimenti rettangolo colorato
+        if (useSprite && spritesEnabled && cubeSprite != null) {
+            // Variante colorata dalla cache: viene costruita solo al primo frame
+            long start = metrics != null ? System.nanoTime() : 0;
+            BufferedImage spriteToRender = currentSprite();
+            if (metrics != null) {
+                metrics.recordSince(FrameMetrics.SPRITE_TINT, start);
+                start = System.nanoTime();
+            }
+            
+            // Sprite centrato e ruotato, già scalato alla dimensione del corpo
+            int spriteWidth = (int)(halfWidth * 2);
+            int spriteHeight = (int)(halfHeight * 2);
+            surfaces.draw(g2d, spriteToRender, spriteWidth, spriteHeight, x, y, angle);
+            if (metrics != null) {
+                metrics.recordSince(FrameMetrics.DRAW_IMAGE, start);
+            }
+            
+            // Bordo opzionale attorno allo sprite
+            g2d.setColor(SPRITE_BORDER_COLOR);
+            g2d.setStroke(SPRITE_STROKE);
+            g2d.draw(outline);
+        } else {
+            // Disegna il rettangolo colorato (fallback o per altri corpi)
+            g2d.setColor(BODY_COLORS[tint]);
+            g2d.fill(outline);
+            
+            // Bordo
+            g2d.setColor(BODY_BORDER_COLORS[tint]);
+            g2d.setStroke(BODY_STROKE);
+            g2d.draw(outline);
+        }
+    }
+    
+    // Variante dello sprite da disegnare: colorata (dalla cache) o, con la colorazione
+    // disabilitata, quella già in cache o l'originale
+    private BufferedImage currentSprite() {
+        if (tintingEnabled) {
+            return tintCache.get(cubeSprite, cubeTint, cubeTint);
+        }
+        BufferedImage cached = tintCache.peek(cubeSprite, cubeTint);
+        return cached != null ? cached : cubeSprite;
+    }
+    
+    // Il rettangolo di ingombro del corpo (più il bordo) tocca l'area da ridisegnare?
+    private boolean intersectsClip(BodyOutline body) {
+        return body.maxX() + CULL_MARGIN > clip.x && body.minX() - CULL_MARGIN < clip.x + clip.width
+            && body.maxY() + CULL_MARGIN > clip.y && body.minY() - CULL_MARGIN < clip.y + clip.height;
+    }
+    
+    /**
+     * Carica lo sprite del cubo (vedi {@link #readCubeSprite}) e lo usa da subito.
+     * Se manca il manifest o lo sprite sheet il cubo viene disegnato come rettangolo colorato.
+     */
+    void loadSprite() {
+        installSprite(readCubeSprite());
+    }
+    
+    /**
+     * Carica lo sprite del cubo e ne prepara la variante colorata su un thread in
+     * background, mentre il renderer continua a disegnare i rettangoli colorati. Lo
+     * sprite va poi passato a {@link #installSprite} dal thread che disegna.
+     *
+     * Decodifica e colorazione restano in sequenza sullo stesso thread: la variante è una
+     * sola (e con gli sprite pre-calcolati non va nemmeno costruita), quindi un pool per
+     * le varianti aggiungerebbe solo un passaggio tra thread. Se il renderer userà più
+     * varianti per sprite, andranno costruite in parallelo dopo la decodifica.
+     *
+     * @return Lo sprite pronto (null se non disponibile)
+     */
+    static CompletableFuture<LoadedSprite> loadSpriteAsync() {
+        ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sprite-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return CompletableFuture.supplyAsync(SceneRenderer::readCubeSprite, loader);
+        } finally {
+            // Il caricamento già accodato viene completato, poi il thread termina
+            loader.shutdown();
+        }
+    }
+    
+    /**
+     * Sostituisce lo sprite del cubo, con la sua variante colorata già pronta in cache.
+     * Da chiamare dal thread che disegna; null non cambia nulla.
+     */
+    void installSprite(LoadedSprite sprite) {
+        if (sprite == null) {
+            return;
+        }
+        cubeSprite = sprite.source;
+        cubeTint = sprite.tint;
+        tintCache.clear();
+        tintCache.put(sprite.source, sprite.tint, sprite.tinted);
+        surfaces.clear();
+        staticLayerValid = false;
+        tiledLayerValid = false;
+    }
+    
+    /**
+     * Legge lo sprite del cubo e ne costruisce la variante colorata. Usa gli sprite
+     * pre-calcolati in fase di build ({@link BakedSprites}) se ci sono, altrimenti
+     * decodifica l'atlante descritto in sprites.atlas (nelle risorse) e colora il frame.
+     *
+     * @return Lo sprite, o null se non è disponibile (il cubo resta un rettangolo colorato)
+     */
+    static LoadedSprite readCubeSprite() {
+        try {
+            // Sprite pre-calcolati: pixel grezzi, nessuna decodifica
+            BakedSprites baked = loadBakedSprites();
+            BufferedImage source = baked != null ? baked.frame(CUBE_FRAME) : null;
+            if (source != null) {
+                TintPipeline tint = createCubeTint(source);
+                BufferedImage tinted = baked.variant(CUBE_FRAME, tint);
+                if (tinted == null) {
+                    // Ricetta cambiata dopo l'ultima build
+                    tinted = tint.apply(source);
+                }
+                System.out.println("Sprite caricato correttamente (pre-calcolato): "
+                                   + source.getWidth() + "x" + source.getHeight() + " pixel");
+                return new LoadedSprite(source, tint, tinted);
+            }
+            
+            // Carica l'atlante: manifest con le coordinate dei frame e sprite sheet
+            SpriteAtlas atlas = SpriteAtlas.load(ATLAS_MANIFEST);
+            if (atlas == null) {
+                System.err.println("ATTENZIONE: Manifest sprites.atlas non trovato in src/main/resources/");
+                System.err.println("Il cubo verrà disegnato senza sprite.");
+                return null;
+            }
+            
+            source = atlas.frame(CUBE_FRAME);
+            if (source == null) {
+                System.err.println("ATTENZIONE: Frame '" + CUBE_FRAME + "' non presente in sprites.atlas");
+                System.err.println("Il cubo verrà disegnato senza sprite.");
+                return null;
+            }
+            TintPipeline tint = createCubeTint(source);
+            BufferedImage tinted = tint.apply(source);
+            
+            System.out.println("Sprite caricato correttamente: " 
+                               + source.getWidth() + "x" + source.getHeight() + " pixel");
+            return new LoadedSprite(source, tint, tinted);
+        } catch (IOException e) {
+            System.err.println("Errore durante il caricamento dello sprite: " + e.getMessage());
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("Errore durante l'estrazione dello sprite: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    private static BakedSprites loadBakedSprites() {
+        try {
+            return BakedSprites.load(BAKED_SPRITES);
+        } catch (IOException e) {
+            System.err.println("ATTENZIONE: " + e.getMessage() + ", uso l'atlante");
+            return null;
+        }
+    }
+    
+    /**
+     * Aggiunge a {@code baked} le varianti colorate usate dal renderer (vedi {@link SpriteBaker}).
+     */
+    static void bakeVariants(SpriteAtlas atlas, BakedSprites baked) {
+        BufferedImage cube = atlas.frame(CUBE_FRAME);
+        if (cube != null) {
+            TintPipeline tint = createCubeTint(cube);
+            baked.addVariant(CUBE_FRAME, tint, tint.apply(cube));
+        }
+    }
+    
+    private static TintPipeline createCubeTint(BufferedImage sprite) {
+        int origSpriteWidth = sprite.getWidth();
+        int origSpriteHeight = sprite.getHeight();
+        
+        // Calcola i margini per la parte esterna (20% del bordo per la parte verde)
+        int marginX = (int)(origSpriteWidth * 0.2);  // 20% margine orizzontale
+        int marginY = (int)(origSpriteHeight * 0.2); // 20% margine verticale
+        
+        // PASSO 1: Colora tutta la parte esterna di verde
+        // PASSO 2: Colora la parte centrale di azzurro (sovrascrive il verde al centro)
+        // I due passi vengono fusi in un solo passaggio sui pixel
+        return TintPipeline.create()
+            .tint(new Color(100, 255, 100))
+            .partialTint(new Color(100, 200, 255),                      // Azzurro
+                         marginX, marginY,                              // Posizione centrale
+                         origSpriteWidth - (2 * marginX),               // Dimensioni centrali
+                         origSpriteHeight - (2 * marginY));
+        
+        // --- ALTERNATIVE COMMENTATE (prova decommentando una di queste) ---
+        
+        // ALTERNATIVA 1: Bordo verde più stretto (10% invece di 20%)
+        // int smallMargin = (int)(origSpriteWidth * 0.1);
+        // return TintPipeline.create()
+        //     .tint(new Color(100, 255, 100))
+        //     .partialTint(new Color(100, 200, 255),
+        //                  smallMargin, smallMargin,
+        //                  origSpriteWidth - 2*smallMargin, origSpriteHeight - 2*smallMargin);
+        
+        // ALTERNATIVA 2: Tre zone - bordo verde, anello intermedio giallo, centro azzurro
+        // int midMargin = (int)(origSpriteWidth * 0.15);
+        // int innerMargin = (int)(origSpriteWidth * 0.3);
+        // return TintPipeline.create()
+        //     .tint(new Color(100, 255, 100))                                    // Verde esterno
+        //     .partialTint(new Color(255, 255, 100),                             // Giallo intermedio
+        //                  midMargin, midMargin,
+        //                  origSpriteWidth - 2*midMargin, origSpriteHeight - 2*midMargin)
+        //     .partialTint(new Color(100, 200, 255),                             // Azzurro centro
+        //                  innerMargin, innerMargin,
+        //                  origSpriteWidth - 2*innerMargin, origSpriteHeight - 2*innerMargin);
+        
+        // ALTERNATIVA 3: Solo metà verticale - verde sopra, azzurro sotto
+        // return TintPipeline.create()
+        //     .partialTint(new Color(100, 255, 100), 0, 0, origSpriteWidth, origSpriteHeight/2)
+        //     .partialTint(new Color(100, 200, 255), 0, origSpriteHeight/2, origSpriteWidth, origSpriteHeight/2);
+    }
+    
+    /**
+     * Sprite del cubo pronto per il rendering: il frame, la ricetta di colorazione e la
+     * variante già colorata.
+     */
+    static final class LoadedSprite {
+        final BufferedImage source;
+        final TintPipeline tint;
+        final BufferedImage tinted;
+        
+        LoadedSprite(BufferedImage source, TintPipeline tint, BufferedImage tinted) {
+            this.source = source;
+            this.tint = tint;
+            this.tinted = tinted;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+import org.jbox2d.callbacks.ContactImpulse;
+import org.jbox2d.callbacks.ContactListener;
+import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.*;
+import org.jbox2d.dynamics.contacts.Contact;
+
+import java.util.Random;
+
+/**
+ * Mondo fisico della demo: pavimento, cubo, eventuali scatole aggiuntive e regole di gioco.
+ * Non dipende da Swing/AWT, quindi può girare anche con java.awt.headless=true
+ * (vedi {@link HeadlessRunner}); {@link JBox2Demo} lo usa per la versione grafica.
+ *
+ * Le proprietà fisiche dei corpi vengono da {@link ScenarioParams}; con {@link #reset}
+ * lo stesso World viene riusato per un nuovo scenario senza ricrearlo.
+ * Lo stato per frame dei corpi sta in un {@link EntityRegistry} (array primitivi), e
+ * un {@link SpatialHash} aggiornato ad ogni passo permette di trovare i corpi in un'area,
+ * vicino o sotto un punto e quelli usciti dallo schermo senza scorrerli tutti.
+ */
+final class SimulationEngine {
+
+    // Dimensioni dell'area di gioco in pixel (coincidono con la finestra)
+    static final int WORLD_WIDTH = 800;
+    static final int WORLD_HEIGHT = 600;
+    static final float PIXELS_PER_METER = 30.0f;
+    static final int TARGET_FPS = 60;
+    static final float TIME_STEP = 1.0f / TARGET_FPS;
+    static final int VELOCITY_ITERATIONS = 8;
+    static final int POSITION_ITERATIONS = 3;
+
+    // Indici densi di pavimento e cubo nel registro: sono registrati per primi e mai rimossi
+    static final int FLOOR_INDEX = 0;
+    static final int CUBE_INDEX = 1;
+
+    // Sprite e tinte usati dal renderer
+    static final int SPRITE_CUBE = 0;
+    static final int TINT_FLOOR = 0;
+    static final int TINT_CUBE = 1;
+    static final int TINT_BOX = 2;
+
+    // Regole di gioco (pixel e m/s)
+    private static final float MIN_RUN_SPEED = 3.0f;
+    static final float TELEPORT_X = WORLD_WIDTH + 50;
+    private static final float RESPAWN_X = -50.0f;
+    // Velocità verticale data al corpo cliccato (m/s)
+    private static final float KICK_SPEED = 8.0f;
+    // Un clic fuori dai corpi colpisce il corpo dinamico più vicino entro questa distanza (pixel)
+    private static final float KICK_RADIUS = 24.0f;
+
+    // Lato delle celle dell'indice spaziale in pixel: circa il doppio delle scatole
+    static final float SPATIAL_CELL_SIZE = 64.0f;
+
+    private World world;
+    private EntityRegistry entities;
+    private Body cubeBody;
+    private Body floorBody;
+    private ScenarioParams params;
+    private final SpatialHash spatial = new SpatialHash(SPATIAL_CELL_SIZE);
+    // Vettore riusato per le chiamate a JBox2D (che copiano il valore)
+    private final Vec2 kickVelocity = new Vec2();
+    // Visitor riusati per le interrogazioni dell'indice: nessuna allocazione per passo o clic
+    private final SpatialHash.Visitor respawner = this::respawnIfPastEdge;
+    private final SpatialHash.Visitor nearestFinder = this::keepNearest;
+    private float nearestX, nearestY, nearestDistance;
+    private int nearest;
+    private int respawned;
+
+    // Contatti iniziati dall'ultimo reset
+    private int contactCount;
+    // Passi eseguiti dall'ultimo reset
+    private long stepCount;
+    // Iterazioni del solver (ridotte dal QualityGovernor sotto carico)
+    private int velocityIterations = VELOCITY_ITERATIONS;
+    private int positionIterations = POSITION_ITERATIONS;
+
+    SimulationEngine() {
+        this(ScenarioParams.DEFAULT);
+    }
+
+    SimulationEngine(ScenarioParams params) {
+        initPhysics(params);
+    }
+
+    World getWorld() {
+        return world;
+    }
+
+    Body getCubeBody() {
+        return cubeBody;
+    }
+
+    Body getFloorBody() {
+        return floorBody;
+    }
+
+    /**
+     * @return Il registro delle entità (pavimento e cubo agli indici FLOOR_INDEX e CUBE_INDEX)
+     */
+    EntityRegistry getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return L'indice spaziale delle entità, allineato all'ultimo passo
+     */
+    SpatialHash getSpatialIndex() {
+        return spatial;
+    }
+
+    ScenarioParams getParams() {
+        return params;
+    }
+
+    /**
+     * @return Il numero di contatti iniziati dall'ultimo reset
+     */
+    int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * Imposta le iterazioni del solver per i passi successivi (di default
+     * VELOCITY_ITERATIONS e POSITION_ITERATIONS): meno iterazioni costano meno ma
+     * lasciano più compenetrazione e rimbalzi nelle pile.
+     */
+    void setSolverIterations(int velocity, int position) {
+        if (velocity <= 0 || position <= 0) {
+            throw new IllegalArgumentException("Le iterazioni del solver devono essere positive: "
+                                               + velocity + ", " + position);
+        }
+        velocityIterations = velocity;
+        positionIterations = position;
+    }
+
+    int getVelocityIterations() {
+        return velocityIterations;
+    }
+
+    int getPositionIterations() {
+        return positionIterations;
+    }
+
+    /**
+     * @return Il numero di passi eseguiti dall'ultimo reset
+     */
+    long getStepCount() {
+        return stepCount;
+    }
+
+    private void initPhysics(ScenarioParams params) {
+        // Crea il mondo JBox2D con gravità verso il basso
+        Vec2 gravity = new Vec2(0.0f, -9.8f);
+        world = new World(gravity);
+        world.setContactListener(new ContactCounter());
+        entities = new EntityRegistry(world, WORLD_HEIGHT, PIXELS_PER_METER);
+
+        reset(params);
+    }
+
+    /**
+     * Riporta la simulazione allo stato iniziale di uno scenario, riusando il World
+     * (e i suoi pool interni): vengono ricreati solo pavimento e cubo, le scatole
+     * aggiuntive vengono rimosse.
+     */
+    void reset(ScenarioParams params) {
+        this.params = params;
+
+        // Ordine inverso alla creazione: i nodi del broadphase tornano liberi in modo che
+        // i nuovi corpi ricevano gli stessi proxy id di un World nuovo (risultati identici)
+        entities.clear();
+
+        // Crea il pavimento (corpo statico)
+        createFloor();
+
+        // Crea il cubo (corpo dinamico)
+        createCube();
+
+        // Applica velocità iniziale al cubo per farlo correre
+        cubeBody.setLinearVelocity(new Vec2(params.cubeSpeed, 0.0f));
+
+        entities.register(floorBody, WORLD_WIDTH / 2.0f, 20.0f,
+                          EntityRegistry.NO_SPRITE, TINT_FLOOR, EntityRegistry.FLAG_STATIC);
+        entities.register(cubeBody, 40.0f, 40.0f,
+                          SPRITE_CUBE, TINT_CUBE, EntityRegistry.FLAG_RUNNER);
+        contactCount = 0;
+        stepCount = 0;
+        spatial.update(entities);
+    }
+
+    private void createFloor() {
+        // Definizione del corpo statico per il pavimento
+        BodyDef floorDef = new BodyDef();
+        floorDef.type = BodyType.STATIC;
+        floorDef.position.set(
+            pixelsToMeters(WORLD_WIDTH / 2.0f),
+            pixelsToMeters(50.0f)
+        );
+
+        floorBody = world.createBody(floorDef);
+
+        // Forma del pavimento: rettangolo largo e sottile
+        PolygonShape floorShape = new PolygonShape();
+        floorShape.setAsBox(
+            pixelsToMeters(WORLD_WIDTH / 2.0f),
+            pixelsToMeters(20.0f)
+        );
+
+        // Fixture del pavimento
+        FixtureDef floorFixture = new FixtureDef();
+        floorFixture.shape = floorShape;
+        floorFixture.friction = params.floorFriction;
+        floorFixture.restitution = params.floorRestitution;
+
+        floorBody.createFixture(floorFixture);
+    }
+
+    private void createCube() {
+        // Definizione del corpo dinamico per il cubo
+        BodyDef cubeDef = new BodyDef();
+        cubeDef.type = BodyType.DYNAMIC;
+        cubeDef.position.set(
+            pixelsToMeters(100.0f),
+            pixelsToMeters(300.0f)
+        );
+
+        cubeBody = world.createBody(cubeDef);
+
+        // Forma del cubo: quadrato
+        PolygonShape cubeShape = new PolygonShape();
+        float cubeSize = pixelsToMeters(40.0f);
+        cubeShape.setAsBox(cubeSize, cubeSize);
+
+        // Fixture del cubo
+        FixtureDef cubeFixture = new FixtureDef();
+        cubeFixture.shape = cubeShape;
+        cubeFixture.density = params.cubeDensity;
+        cubeFixture.friction = params.cubeFriction;
+        cubeFixture.restitution = params.cubeRestitution;
+
+        cubeBody.createFixture(cubeFixture);
+    }
+
+    /**
+     * Aggiunge scatole dinamiche in posizioni casuali sopra il pavimento.
+     * Corrono come il cubo (stesse regole di gioco).
+     *
+     * @param count Numero di scatole
+     * @param seed Seme per posizioni e dimensioni
+     */
+    void spawnBoxes(int count, long seed) {
+        Random random = new Random(seed);
+        BodyDef boxDef = new BodyDef();
+        boxDef.type = BodyType.DYNAMIC;
+        PolygonShape boxShape = new PolygonShape();
+        FixtureDef boxFixture = new FixtureDef();
+        boxFixture.shape = boxShape;
+        boxFixture.density = params.cubeDensity;
+        boxFixture.friction = params.cubeFriction;
+        boxFixture.restitution = params.cubeRestitution;
+
+        for (int i = 0; i < count; i++) {
+            float halfSize = 6.0f + random.nextFloat() * 10.0f;
+            boxDef.position.set(
+                pixelsToMeters(random.nextFloat() * WORLD_WIDTH),
+                pixelsToMeters(100.0f + random.nextFloat() * (WORLD_HEIGHT * 4.0f))
+            );
+            Body box = world.createBody(boxDef);
+            boxShape.setAsBox(pixelsToMeters(halfSize), pixelsToMeters(halfSize));
+            box.createFixture(boxFixture);
+            box.setLinearVelocity(new Vec2(params.cubeSpeed, 0.0f));
+
+            entities.register(box, halfSize, halfSize, SPRITE_CUBE, TINT_BOX, EntityRegistry.FLAG_RUNNER);
+        }
+        spatial.update(entities);
+    }
+
+    /**
+     * Rimuove un'entità (pavimento e cubo non vanno rimossi).
+     *
+     * @param id L'id restituito dal registro
+     * @return true se l'entità esisteva
+     */
+    boolean despawn(int id) {
+        boolean removed = entities.despawn(id);
+        spatial.update(entities);
+        return removed;
+    }
+
+    /**
+     * Fa saltare il corpo dinamico sotto il punto, come al clic del mouse. Se sotto il
+     * punto non ce n'è (clic sul pavimento o sullo sfondo), salta il corpo dinamico più
+     * vicino entro {@value #KICK_RADIUS} pixel: le scatole in corsa sono piccole.
+     *
+     * @param x Coordinata X in pixel
+     * @param y Coordinata Y in pixel (Y verso il basso)
+     * @return L'indice denso dell'entità colpita, o -1 se non c'è un corpo dinamico vicino al punto
+     */
+    int kickAt(float x, float y) {
+        int i = spatial.pick(x, y);
+        if (i < 0 || (entities.flags[i] & EntityRegistry.FLAG_STATIC) != 0) {
+            i = nearestDynamic(x, y, KICK_RADIUS);
+            if (i < 0) {
+                return -1;
+            }
+        }
+        kickVelocity.set(entities.velocityX[i], KICK_SPEED);
+        entities.bodies[i].setLinearVelocity(kickVelocity);
+        return i;
+    }
+
+    /**
+     * @return L'indice denso del corpo dinamico con il centro più vicino al punto, tra
+     *         quelli il cui ingombro dista al più {@code radius} pixel, o -1 se non ce n'è
+     */
+    int nearestDynamic(float x, float y, float radius) {
+        nearestX = x;
+        nearestY = y;
+        nearestDistance = Float.POSITIVE_INFINITY;
+        nearest = -1;
+        spatial.queryRadius(x, y, radius, nearestFinder);
+        return nearest;
+    }
+
+    private boolean keepNearest(int i) {
+        if ((entities.flags[i] & EntityRegistry.FLAG_STATIC) == 0) {
+            float dx = entities.x[i] - nearestX;
+            float dy = entities.y[i] - nearestY;
+            float distance = dx * dx + dy * dy;
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Salva lo stato dinamico del World e del motore in {@code snapshot} (riusabile).
+     */
+    void saveSnapshot(WorldSnapshot snapshot) {
+        snapshot.capture(world);
+        snapshot.stepCount = stepCount;
+        snapshot.contactCounter = contactCount;
+        snapshot.layoutVersion = entities.getLayoutVersion();
+    }
+
+    /**
+     * Riporta il World e il motore allo stato salvato, negli stessi corpi.
+     *
+     * @throws IllegalStateException Se da allora sono state aggiunte o rimosse entità
+     */
+    void restoreSnapshot(WorldSnapshot snapshot) {
+        if (snapshot.layoutVersion != entities.getLayoutVersion()) {
+            throw new IllegalStateException("Le entità sono cambiate dopo lo snapshot");
+        }
+        snapshot.restore(world);
+        stepCount = snapshot.stepCount;
+        contactCount = snapshot.contactCounter;
+        entities.resyncFromBodies();
+        spatial.update(entities);
+    }
+
+    /**
+     * Un passo di simulazione: world.step più le regole di gioco.
+     */
+    void step() {
+        // Aggiorna la fisica
+        world.step(TIME_STEP, velocityIterations, positionIterations);
+
+        // Copia lo stato dei corpi negli array del registro
+        entities.syncFromBodies();
+
+        // Mantieni le entità in movimento
+        entities.applyRunnerRules(MIN_RUN_SPEED, params.cubeSpeed);
+
+        // Sposta nell'indice solo i corpi che hanno cambiato celle
+        spatial.update(entities);
+
+        // Teletrasporta le entità uscite dal bordo destro: l'indice esamina solo le celle
+        // oltre il bordo, non tutto il registro. I corpi spostati vanno poi reindicizzati.
+        respawned = 0;
+        spatial.queryOutside(-Float.MAX_VALUE, -Float.MAX_VALUE, TELEPORT_X, Float.MAX_VALUE, respawner);
+        if (respawned > 0) {
+            spatial.update(entities);
+        }
+        stepCount++;
+    }
+
+    private boolean respawnIfPastEdge(int i) {
+        if ((entities.flags[i] & EntityRegistry.FLAG_RUNNER) != 0 && entities.x[i] > TELEPORT_X) {
+            entities.respawn(i, params.cubeSpeed, RESPAWN_X);
+            respawned++;
+        }
+        return true;
+    }
+
+    /**
+     * @return L'energia cinetica (traslazione + rotazione) del cubo, in joule
+     */
+    float getCubeKineticEnergy() {
+        Vec2 velocity = cubeBody.getLinearVelocity();
+        float omega = cubeBody.getAngularVelocity();
+        return 0.5f * cubeBody.getMass() * (velocity.x * velocity.x + velocity.y * velocity.y)
+             + 0.5f * cubeBody.getInertia() * omega * omega;
+    }
+
+    /**
+     * @return L'energia potenziale del cubo rispetto a y = 0, in joule
+     */
+    float getCubePotentialEnergy() {
+        return -cubeBody.getMass() * world.getGravity().y * cubeBody.getWorldCenter().y;
+    }
+
+    // Conta i contatti iniziati durante la simulazione
+    private final class ContactCounter implements ContactListener {
+        @Override
+        public void beginContact(Contact contact) {
+            contactCount++;
+        }
+
+        @Override
+        public void endContact(Contact contact) {
+        }
+
+        @Override
+        public void preSolve(Contact contact, Manifold oldManifold) {
+        }
+
+        @Override
+        public void postSolve(Contact contact, ContactImpulse impulse) {
+        }
+    }
+
+    static float pixelsToMeters(float pixels) {
+        return pixels / PIXELS_PER_METER;
+    }
+
+    static float metersToPixels(float meters) {
+        return meters * PIXELS_PER_METER;
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Registra lo stato di tutte le entità ad ogni passo (posizione, angolo e velocità
+ * lineare) in segmenti mappati in memoria, nel formato di {@link RecordingFormat}.
+ *
+ * Ogni segmento è un file di dimensione fissa mappato con {@link FileChannel#map}: un
+ * frame è una copia in blocco degli array di {@link EntityRegistry} nel buffer, senza
+ * allocazioni né chiamate di sistema (la scrittura su disco la fa il sistema operativo).
+ * Quando un segmento è pieno, o le entità vengono aggiunte o rimosse, si passa al
+ * segmento successivo. Alla chiusura l'intestazione riporta come capacità i frame
+ * effettivamente scritti e il file viene troncato dopo l'ultimo frame. Da usare da un
+ * solo thread (quello della simulazione).
+ */
+final class SimulationRecorder implements Closeable {
+
+    // Limiti di un segmento: la dimensione del file mappato e la durata (un minuto a 60 Hz)
+    private static final long MAX_SEGMENT_BYTES = 256L * 1024 * 1024;
+    private static final int MAX_SEGMENT_FRAMES = 3_600;
+
+    private final Path directory;
+    private final float timeStep;
+
+    private Path segmentFile;
+    private MappedByteBuffer buffer;
+    private FloatBuffer floats;
+    private int segmentIndex;
+    private int bodyCount;
+    private int frameCapacity;
+    private int frameCount;
+    private int layoutVersion;
+    private long framesOffset;
+    private long frameBytes;
+
+    private long totalFrames;
+    private long totalBytes;
+
+    /**
+     * @param directory Cartella della registrazione (creata se non esiste)
+     * @param timeStep Durata di un passo in secondi
+     * @param overwrite Se true i segmenti di una registrazione precedente vengono
+     *                  eliminati; se false la cartella deve essere vuota
+     * @throws DirectoryNotEmptyException Se la cartella non è vuota e overwrite è false
+     */
+    SimulationRecorder(Path directory, float timeStep, boolean overwrite) throws IOException {
+        this.directory = directory;
+        this.timeStep = timeStep;
+        Files.createDirectories(directory);
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!overwrite) {
+                    throw new DirectoryNotEmptyException(directory.toString());
+                }
+                if (RecordingFormat.isSegment(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggiunge un frame con lo stato attuale delle entità.
+     *
+     * @param step Numero del passo di simulazione
+     */
+    void record(EntityRegistry entities, long step) throws IOException {
+        int n = entities.size();
+        if (buffer == null || frameCount == frameCapacity || n != bodyCount
+                || entities.getLayoutVersion() != layoutVersion) {
+            openSegment(entities);
+        }
+
+        long offset = framesOffset + frameCount * frameBytes;
+        buffer.putLong((int) offset, step);
+        floats.position((int) ((offset + RecordingFormat.STEP_BYTES) / Float.BYTES));
+        floats.put(entities.x, 0, n);
+        floats.put(entities.y, 0, n);
+        floats.put(entities.angle, 0, n);
+        floats.put(entities.velocityX, 0, n);
+        floats.put(entities.velocityY, 0, n);
+
+        // Il contatore va aggiornato per ultimo: il frame è completo
+        frameCount++;
+        buffer.putInt(RecordingFormat.FRAME_COUNT_OFFSET, frameCount);
+        totalFrames++;
+        totalBytes += frameBytes;
+    }
+
+    private void openSegment(EntityRegistry entities) throws IOException {
+        closeSegment();
+
+        bodyCount = entities.size();
+        layoutVersion = entities.getLayoutVersion();
+        framesOffset = RecordingFormat.framesOffset(bodyCount);
+        frameBytes = RecordingFormat.frameBytes(bodyCount);
+        frameCapacity = (int) Math.max(1, Math.min(MAX_SEGMENT_FRAMES,
+                                                    (MAX_SEGMENT_BYTES - framesOffset) / frameBytes));
+        frameCount = 0;
+
+        segmentFile = RecordingFormat.segmentPath(directory, segmentIndex++);
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // La mappatura resta valida anche dopo la chiusura del canale
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 RecordingFormat.segmentBytes(bodyCount, frameCapacity));
+        }
+        buffer.order(RecordingFormat.ORDER);
+        floats = buffer.duplicate().order(RecordingFormat.ORDER).asFloatBuffer();
+
+        buffer.putInt(RecordingFormat.MAGIC_OFFSET, RecordingFormat.MAGIC);
+        buffer.putInt(RecordingFormat.VERSION_OFFSET, RecordingFormat.VERSION);
+        buffer.putInt(RecordingFormat.BODY_COUNT_OFFSET, bodyCount);
+        buffer.putInt(RecordingFormat.FRAME_CAPACITY_OFFSET, frameCapacity);
+        buffer.putInt(RecordingFormat.FRAME_COUNT_OFFSET, 0);
+        buffer.putFloat(RecordingFormat.TIME_STEP_OFFSET, timeStep);
+
+        // Descrittori dei corpi, fissi per tutto il segmento
+        floats.position(RecordingFormat.HEADER_BYTES / Float.BYTES);
+        floats.put(entities.halfWidth, 0, bodyCount);
+        floats.put(entities.halfHeight, 0, bodyCount);
+        IntBuffer ints = buffer.duplicate().order(RecordingFormat.ORDER).asIntBuffer();
+        ints.position(floats.position());
+        ints.put(entities.spriteId, 0, bodyCount);
+        ints.put(entities.tintId, 0, bodyCount);
+        ints.put(entities.flags, 0, bodyCount);
+    }
+
+    private void closeSegment() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        // Il segmento contiene solo i frame scritti: capacità e dimensione del file si riducono
+        buffer.putInt(RecordingFormat.FRAME_CAPACITY_OFFSET, frameCount);
+        buffer.force();
+        buffer = null;
+        floats = null;
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            channel.truncate(RecordingFormat.segmentBytes(bodyCount, frameCount));
+        } catch (IOException e) {
+            // Windows non tronca un file ancora mappato: il segmento resta valido, solo più grande
+            System.err.println("Impossibile ridurre " + segmentFile + ": " + e.getMessage());
+        }
+    }
+
+    long getFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * @return Byte dei frame scritti (intestazioni e descrittori esclusi)
+     */
+    long getBytes() {
+        return totalBytes;
+    }
+
+    int getSegments() {
+        return segmentIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
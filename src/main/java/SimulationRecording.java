@@ -0,0 +1,222 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Registrazione di {@link SimulationRecorder} aperta in lettura: i segmenti sono
+ * mappati in memoria e i frame sono numerati da 0 a {@link #getFrameCount()} - 1
+ * attraverso tutti i segmenti.
+ *
+ * Trovare un frame costa una ricerca binaria sul primo frame di ogni segmento (pochi
+ * elementi: un segmento dura fino a un minuto) più un calcolo di offset, perché i
+ * record hanno larghezza fissa: saltare in un punto qualsiasi costa quanto leggere il
+ * frame successivo, e le pagine vengono caricate dal sistema operativo solo quando servono.
+ * Da usare da un solo thread.
+ */
+final class SimulationRecording implements Closeable {
+
+    private final Segment[] segments;
+    // Indice del primo frame di ogni segmento
+    private final int[] firstFrames;
+    private final int frameCount;
+    private final float timeStep;
+    private final int maxBodyCount;
+
+    private SimulationRecording(Segment[] segments, float timeStep) {
+        this.segments = segments;
+        this.firstFrames = new int[segments.length];
+        int frames = 0;
+        int bodies = 0;
+        for (int i = 0; i < segments.length; i++) {
+            firstFrames[i] = frames;
+            frames += segments[i].frameCount;
+            bodies = Math.max(bodies, segments[i].bodyCount);
+        }
+        this.frameCount = frames;
+        this.timeStep = timeStep;
+        this.maxBodyCount = bodies;
+    }
+
+    /**
+     * Apre la registrazione contenuta in {@code directory}.
+     *
+     * @throws IOException Se la cartella non contiene segmenti validi
+     */
+    static SimulationRecording open(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(RecordingFormat::isSegment).sorted().collect(Collectors.toList());
+        }
+        List<Segment> segments = new ArrayList<>();
+        float timeStep = 0;
+        for (Path file : files) {
+            Segment segment = Segment.map(file);
+            if (segment.frameCount > 0) {
+                segments.add(segment);
+                timeStep = segment.timeStep;
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new IOException("Nessun frame registrato in " + directory);
+        }
+        return new SimulationRecording(segments.toArray(new Segment[0]), timeStep);
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * @return Durata di un passo in secondi
+     */
+    float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @return Il numero massimo di corpi in un frame (per dimensionare i {@link BodyStates})
+     */
+    int getMaxBodyCount() {
+        return maxBodyCount;
+    }
+
+    /**
+     * @return Il numero del passo di simulazione del frame
+     */
+    long getStep(int frame) {
+        int index = segmentOf(frame);
+        Segment segment = segments[index];
+        return segment.buffer.getLong((int) segment.frameOffset(frame - firstFrames[index]));
+    }
+
+    /**
+     * Copia il frame in {@code out}. Lo stato precedente (per l'interpolazione) è il
+     * frame prima, se ha gli stessi corpi; altrimenti, o se {@code interpolate} è false
+     * (pausa, salto), coincide con quello del frame.
+     */
+    void read(int frame, BodyStates out, boolean interpolate) {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " fuori da 0.." + (frameCount - 1));
+        }
+        int index = segmentOf(frame);
+        Segment segment = segments[index];
+        int local = frame - firstFrames[index];
+        int n = segment.bodyCount;
+        out.ensureCapacity(n);
+        segment.readDescriptors(out);
+        segment.readFrame(local, out.x, out.y, out.angle, out.velocityX, out.velocityY);
+        if (interpolate && local > 0) {
+            segment.readFrame(local - 1, out.prevX, out.prevY, out.prevAngle, null, null);
+        } else {
+            System.arraycopy(out.x, 0, out.prevX, 0, n);
+            System.arraycopy(out.y, 0, out.prevY, 0, n);
+            System.arraycopy(out.angle, 0, out.prevAngle, 0, n);
+        }
+        out.count = n;
+        // Un segmento ha sempre gli stessi corpi: il suo indice identifica il layout
+        out.layoutVersion = index;
+        out.step = segment.buffer.getLong((int) segment.frameOffset(local));
+    }
+
+    private int segmentOf(int frame) {
+        int index = Arrays.binarySearch(firstFrames, frame);
+        // Segmenti con lo stesso primo frame non esistono (quelli vuoti sono esclusi)
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public void close() {
+        // Le mappature vengono rilasciate dal GC: basta non usarle più
+        Arrays.fill(segments, null);
+    }
+
+    // Un file di segmento mappato in sola lettura
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        final FloatBuffer floats;
+        final IntBuffer ints;
+        final int bodyCount;
+        final int frameCount;
+        final float timeStep;
+        final long framesOffset;
+        final long frameBytes;
+
+        private Segment(MappedByteBuffer buffer, int bodyCount, int frameCount, float timeStep) {
+            this.buffer = buffer;
+            this.floats = buffer.duplicate().order(RecordingFormat.ORDER).asFloatBuffer();
+            this.ints = buffer.duplicate().order(RecordingFormat.ORDER).asIntBuffer();
+            this.bodyCount = bodyCount;
+            this.frameCount = frameCount;
+            this.timeStep = timeStep;
+            this.framesOffset = RecordingFormat.framesOffset(bodyCount);
+            this.frameBytes = RecordingFormat.frameBytes(bodyCount);
+        }
+
+        static Segment map(Path file) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            buffer.order(RecordingFormat.ORDER);
+            if (buffer.capacity() < RecordingFormat.HEADER_BYTES
+                    || buffer.getInt(RecordingFormat.MAGIC_OFFSET) != RecordingFormat.MAGIC) {
+                throw new IOException("Non è un segmento di registrazione: " + file);
+            }
+            int version = buffer.getInt(RecordingFormat.VERSION_OFFSET);
+            if (version != RecordingFormat.VERSION) {
+                throw new IOException("Versione " + version + " non supportata: " + file);
+            }
+            int bodyCount = buffer.getInt(RecordingFormat.BODY_COUNT_OFFSET);
+            int capacity = buffer.getInt(RecordingFormat.FRAME_CAPACITY_OFFSET);
+            int frameCount = buffer.getInt(RecordingFormat.FRAME_COUNT_OFFSET);
+            if (bodyCount < 0 || frameCount < 0 || frameCount > capacity
+                    || RecordingFormat.segmentBytes(bodyCount, capacity) > buffer.capacity()) {
+                throw new IOException("Segmento danneggiato: " + file);
+            }
+            return new Segment(buffer, bodyCount, frameCount,
+                               buffer.getFloat(RecordingFormat.TIME_STEP_OFFSET));
+        }
+
+        long frameOffset(int local) {
+            return framesOffset + local * frameBytes;
+        }
+
+        void readDescriptors(BodyStates out) {
+            int n = bodyCount;
+            floats.position(RecordingFormat.HEADER_BYTES / Float.BYTES);
+            floats.get(out.halfWidth, 0, n);
+            floats.get(out.halfHeight, 0, n);
+            ints.position(floats.position());
+            ints.get(out.spriteId, 0, n);
+            ints.get(out.tintId, 0, n);
+            ints.get(out.flags, 0, n);
+        }
+
+        // Legge i valori del frame; x, y e angolo sono sempre richiesti, le velocità sono opzionali
+        void readFrame(int local, float[] x, float[] y, float[] angle, float[] velocityX, float[] velocityY) {
+            int n = bodyCount;
+            floats.position((int) ((frameOffset(local) + RecordingFormat.STEP_BYTES) / Float.BYTES));
+            floats.get(x, 0, n);
+            floats.get(y, 0, n);
+            floats.get(angle, 0, n);
+            if (velocityX != null) {
+                floats.get(velocityX, 0, n);
+                floats.get(velocityY, 0, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Riproduzione di una {@link SimulationRecording} al posto della simulazione: il
+ * thread del {@link SimulationScheduler} chiama {@link #step} e {@link #publish} come
+ * farebbe con world.step, quindi il rendering (interpolazione, ridisegno parziale) non
+ * cambia.
+ *
+ * Pausa e salti vengono richiesti dall'EDT ({@link #togglePause}, {@link #seekBy},
+ * {@link #seekTo}) e applicati dal thread di simulazione al passo successivo. Un salto
+ * costa la lettura di un frame, quindi tenendo premuto un tasto si scorre la
+ * registrazione alla frequenza dei passi.
+ */
+final class SimulationReplay {
+
+    private static final int NO_SEEK = -1;
+
+    private final SimulationRecording recording;
+
+    // Frame mostrato (scritto solo dal thread di simulazione)
+    private volatile int frame;
+    private volatile boolean paused;
+    private final AtomicInteger pendingSeek = new AtomicInteger(NO_SEEK);
+    // L'ultimo frame pubblicato non segue il precedente: niente interpolazione
+    private boolean jumped = true;
+
+    SimulationReplay(SimulationRecording recording) {
+        this.recording = recording;
+    }
+
+    SimulationRecording getRecording() {
+        return recording;
+    }
+
+    int getFrame() {
+        return frame;
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    void togglePause() {
+        paused = !paused;
+    }
+
+    /**
+     * Salta di {@code frames} frame (negativo = indietro) rispetto al frame mostrato o
+     * all'ultimo salto non ancora applicato.
+     */
+    void seekBy(int frames) {
+        int pending;
+        int target;
+        do {
+            pending = pendingSeek.get();
+            int base = pending == NO_SEEK ? frame : pending;
+            target = clamp((long) base + frames);
+        } while (!pendingSeek.compareAndSet(pending, target));
+    }
+
+    void seekTo(int target) {
+        pendingSeek.set(clamp(target));
+    }
+
+    /**
+     * Avanza di un frame, o applica il salto richiesto. In fondo alla registrazione si
+     * ferma in pausa. Eseguito dal thread di simulazione.
+     */
+    void step() {
+        int target = pendingSeek.getAndSet(NO_SEEK);
+        if (target != NO_SEEK) {
+            jumped = target != frame + 1;
+            frame = target;
+        } else if (!paused) {
+            if (frame + 1 < recording.getFrameCount()) {
+                frame++;
+                jumped = false;
+            } else {
+                paused = true;
+            }
+        }
+    }
+
+    /**
+     * Copia il frame mostrato in {@code out}. In pausa o dopo un salto lo stato
+     * precedente coincide con quello del frame, così i corpi restano fermi.
+     */
+    void publish(BodyStates out) {
+        recording.read(frame, out, !paused && !jumped);
+    }
+
+    private int clamp(long target) {
+        return (int) Math.max(0, Math.min(recording.getFrameCount() - 1, target));
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Esegue la simulazione fisica su un thread dedicato, separato dall'EDT di Swing.
+ *
+ * Usa un accumulatore a passo fisso: il tempo reale trascorso viene accumulato e
+ * consumato a passi di durata costante, recuperando i passi persi se il thread è
+ * rimasto indietro. Per evitare la "spirale della morte" (ogni frame richiede più
+ * passi di quanti se ne riescano a eseguire) i passi di recupero per iterazione sono
+ * limitati e il tempo in eccesso viene scartato.
+ */
+final class SimulationScheduler {
+
+    private final long stepNanos;
+    private final int maxCatchUpSteps;
+    private final Runnable step;
+    private final Runnable publish;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    // Statistiche (scritte solo dal thread di simulazione)
+    private volatile long stepCount;
+    private volatile long droppedSteps;
+
+    /**
+     * @param timeStep Durata di un passo di simulazione in secondi
+     * @param maxCatchUpSteps Numero massimo di passi eseguiti per iterazione
+     * @param step Esegue un singolo passo (world.step e logica di gioco)
+     * @param publish Pubblica lo stato dei corpi dopo uno o più passi
+     */
+    SimulationScheduler(float timeStep, int maxCatchUpSteps, Runnable step, Runnable publish) {
+        this.stepNanos = (long) (timeStep * TimeUnit.SECONDS.toNanos(1));
+        this.maxCatchUpSteps = maxCatchUpSteps;
+        this.step = step;
+        this.publish = publish;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ferma il thread di simulazione e, se chiamato da un altro thread, attende che
+     * termini il passo in corso.
+     */
+    void stop() {
+        Thread simulation;
+        synchronized (this) {
+            running = false;
+            simulation = thread;
+            thread = null;
+        }
+        if (simulation != null) {
+            LockSupport.unpark(simulation);
+            if (simulation != Thread.currentThread()) {
+                try {
+                    simulation.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    long getStepNanos() {
+        return stepNanos;
+    }
+
+    long getStepCount() {
+        return stepCount;
+    }
+
+    long getDroppedSteps() {
+        return droppedSteps;
+    }
+
+    private void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            // Esegui tutti i passi dovuti, ma non più di maxCatchUpSteps
+            int steps = 0;
+            while (accumulator >= stepNanos && steps < maxCatchUpSteps) {
+                try {
+                    step.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Errore durante il passo di simulazione: " + e.getMessage());
+                    e.printStackTrace();
+                    running = false;
+                    return;
+                }
+                accumulator -= stepNanos;
+                steps++;
+            }
+
+            // Spirale della morte: scarta il tempo che non riusciamo a recuperare
+            if (accumulator >= stepNanos) {
+                droppedSteps += accumulator / stepNanos;
+                accumulator %= stepNanos;
+            }
+
+            if (steps > 0) {
+                stepCount += steps;
+                publish.run();
+            }
+
+            // Attendi fino al prossimo passo dovuto
+            LockSupport.parkNanos(stepNanos - accumulator);
+        }
+    }
+}
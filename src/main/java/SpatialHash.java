@@ -0,0 +1,516 @@
+import java.util.Arrays;
+
+/**
+ * Indice spaziale a griglia uniforme sulle entità di un {@link EntityRegistry}, in pixel
+ * (Y verso il basso): ogni entità è registrata in tutte le celle toccate dal suo
+ * rettangolo di ingombro, e le celle sono distribuite con un hash su una tabella di
+ * liste, quindi il mondo non ha limiti.
+ *
+ * L'ingombro dei corpi statici è il rettangolo ruotato esatto, calcolato una volta;
+ * quello dei corpi dinamici è il quadrato circoscritto al cerchio che contiene il
+ * corpo, che non dipende dalla rotazione e non richiede seno e coseno ad ogni passo.
+ *
+ * {@link #update} va chiamato dopo ogni passo: sposta solo le entità che hanno cambiato
+ * celle e ricostruisce tutto solo quando le entità vengono aggiunte o rimosse. Oltre al
+ * registro della simulazione può indicizzare uno stato pubblicato ({@link BodyStates}),
+ * per le interrogazioni del thread che disegna (vedi {@link BodyCuller}). Le
+ * interrogazioni chiamano un {@link Visitor} per ogni entità trovata, una volta sola
+ * anche se occupa più celle (timbro per interrogazione), e non allocano. Un'area con
+ * più celle che entità (ad esempio tutto ciò che sta sotto lo schermo) viene cercata
+ * scorrendo le entità, quindi il costo non supera mai quello di una scansione.
+ * Da usare da un solo thread (quello che aggiorna l'indice).
+ */
+final class SpatialHash {
+
+    /**
+     * Riceve le entità trovate da un'interrogazione.
+     */
+    interface Visitor {
+        /**
+         * @param index Indice denso dell'entità nel registro
+         * @return false per interrompere l'interrogazione
+         */
+        boolean visit(int index);
+    }
+
+    private static final int NONE = -1;
+    private static final int MIN_BUCKETS = 64;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+
+    // Testa della lista di ogni bucket (NONE = vuoto)
+    private int[] bucketHead = new int[0];
+    private int bucketMask;
+
+    // Nodi: un'entità in una cella, in una lista doppia del bucket e nella lista dell'entità
+    private int[] nodeEntity = new int[0];
+    private int[] nodeCellX = new int[0];
+    private int[] nodeCellY = new int[0];
+    private int[] nodeNext = new int[0];
+    private int[] nodePrev = new int[0];
+    private int[] nodeBucket = new int[0];
+    private int[] nodeEntityNext = new int[0];
+    private int freeNode = NONE;
+    private int usedNodes;
+
+    // Per entità (indice denso): nodi, celle occupate, mezze dimensioni dell'ingombro e timbro
+    private int[] firstNode = new int[0];
+    private int[] minCellX = new int[0];
+    private int[] minCellY = new int[0];
+    private int[] maxCellX = new int[0];
+    private int[] maxCellY = new int[0];
+    private float[] extentX = new float[0];
+    private float[] extentY = new float[0];
+    private int[] stamps = new int[0];
+    private int stamp;
+
+    // Registro (o stato pubblicato) indicizzato e sua versione: le entità aggiunte o
+    // rimosse richiedono una ricostruzione. Gli array sono quelli dell'ultimo update.
+    private Object source;
+    private int layoutVersion;
+    private int count;
+    private float[] x;
+    private float[] y;
+    private float[] angle;
+    private float[] halfWidth;
+    private float[] halfHeight;
+
+    // Celle occupate finora (si allargano soltanto fino alla prossima ricostruzione):
+    // limitano le interrogazioni su aree molto grandi
+    private int boundsMinCellX;
+    private int boundsMinCellY;
+    private int boundsMaxCellX;
+    private int boundsMaxCellY;
+
+    private long moves;
+    private long rebuilds;
+
+    // Visitor interni riusati: nessuna allocazione per interrogazione
+    private final OutsideFilter outside = new OutsideFilter();
+    private final Picker picker = new Picker();
+
+    /**
+     * @param cellSize Lato di una cella in pixel (circa il doppio dei corpi più comuni)
+     */
+    SpatialHash(float cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Il lato della cella deve essere positivo: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0f / cellSize;
+    }
+
+    float getCellSize() {
+        return cellSize;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return Le entità spostate in altre celle da {@link #update}
+     */
+    long getMoves() {
+        return moves;
+    }
+
+    long getRebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * @return Mezza larghezza in pixel dell'ingombro indicizzato dell'entità
+     */
+    float getExtentX(int index) {
+        return extentX[index];
+    }
+
+    /**
+     * @return Mezza altezza in pixel dell'ingombro indicizzato dell'entità
+     */
+    float getExtentY(int index) {
+        return extentY[index];
+    }
+
+    /**
+     * Allinea l'indice al registro: ricostruisce tutto se le entità sono cambiate,
+     * altrimenti sposta solo i corpi dinamici che hanno cambiato celle.
+     */
+    void update(EntityRegistry registry) {
+        update(registry, registry.x, registry.y, registry.angle, registry.halfWidth, registry.halfHeight,
+               registry.flags, registry.size(), registry.getLayoutVersion());
+    }
+
+    /**
+     * Allinea l'indice a uno stato pubblicato. Gli stati di un {@link BodyStateBuffer} si
+     * alternano tra più istanze: l'indice viene ricostruito solo quando cambiano la
+     * versione del layout o il numero di corpi.
+     */
+    void update(BodyStates states) {
+        update(BodyStates.class, states.x, states.y, states.angle, states.halfWidth, states.halfHeight,
+               states.flags, states.count, states.layoutVersion);
+    }
+
+    private void update(Object source, float[] x, float[] y, float[] angle, float[] halfWidth, float[] halfHeight,
+                        int[] flags, int count, int layoutVersion) {
+        this.x = x;
+        this.y = y;
+        this.angle = angle;
+        this.halfWidth = halfWidth;
+        this.halfHeight = halfHeight;
+        if (source != this.source || layoutVersion != this.layoutVersion || count != this.count) {
+            rebuild(source, flags, count, layoutVersion);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & EntityRegistry.FLAG_STATIC) != 0) {
+                continue;
+            }
+            int x0 = cell(x[i] - extentX[i]);
+            int y0 = cell(y[i] - extentY[i]);
+            int x1 = cell(x[i] + extentX[i]);
+            int y1 = cell(y[i] + extentY[i]);
+            if (x0 != minCellX[i] || y0 != minCellY[i] || x1 != maxCellX[i] || y1 != maxCellY[i]) {
+                remove(i);
+                insert(i, x0, y0, x1, y1);
+                moves++;
+            }
+        }
+    }
+
+    private void rebuild(Object source, int[] flags, int count, int layoutVersion) {
+        this.source = source;
+        this.layoutVersion = layoutVersion;
+        this.count = count;
+        rebuilds++;
+
+        if (firstNode.length < count) {
+            int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(count - 1) << 1);
+            firstNode = new int[capacity];
+            minCellX = new int[capacity];
+            minCellY = new int[capacity];
+            maxCellX = new int[capacity];
+            maxCellY = new int[capacity];
+            extentX = new float[capacity];
+            extentY = new float[capacity];
+            stamps = new int[capacity];
+        }
+        int buckets = Math.max(MIN_BUCKETS, Integer.highestOneBit(Math.max(1, count)) << 2);
+        if (bucketHead.length != buckets) {
+            bucketHead = new int[buckets];
+            bucketMask = buckets - 1;
+        }
+        Arrays.fill(bucketHead, NONE);
+        Arrays.fill(stamps, 0, count, 0);
+        stamp = 0;
+        freeNode = NONE;
+        usedNodes = 0;
+        boundsMinCellX = Integer.MAX_VALUE;
+        boundsMinCellY = Integer.MAX_VALUE;
+        boundsMaxCellX = Integer.MIN_VALUE;
+        boundsMaxCellY = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            float hw = halfWidth[i];
+            float hh = halfHeight[i];
+            if ((flags[i] & EntityRegistry.FLAG_STATIC) != 0) {
+                // Rettangolo ruotato esatto: il corpo non si muove
+                float cos = Math.abs((float) Math.cos(angle[i]));
+                float sin = Math.abs((float) Math.sin(angle[i]));
+                extentX[i] = hw * cos + hh * sin;
+                extentY[i] = hw * sin + hh * cos;
+            } else {
+                float radius = (float) Math.sqrt(hw * hw + hh * hh);
+                extentX[i] = radius;
+                extentY[i] = radius;
+            }
+            firstNode[i] = NONE;
+            insert(i, cell(x[i] - extentX[i]), cell(y[i] - extentY[i]),
+                   cell(x[i] + extentX[i]), cell(y[i] + extentY[i]));
+        }
+    }
+
+    // --- Interrogazioni ---
+
+    /**
+     * Visita le entità il cui ingombro interseca il rettangolo (estremi inclusi).
+     *
+     * @return false se il visitor ha interrotto l'interrogazione
+     */
+    boolean query(float minX, float minY, float maxX, float maxY, Visitor visitor) {
+        nextStamp();
+        return visitArea(minX, minY, maxX, maxY, visitor);
+    }
+
+    /**
+     * Visita le entità il cui ingombro dista al più {@code radius} dal punto.
+     *
+     * @return false se il visitor ha interrotto l'interrogazione
+     */
+    boolean queryRadius(float px, float py, float radius, Visitor visitor) {
+        nextStamp();
+        if (boundsMinCellX > boundsMaxCellX) {
+            return true;
+        }
+        int x0 = clampCell(cell(px - radius), boundsMinCellX, boundsMaxCellX);
+        int y0 = clampCell(cell(py - radius), boundsMinCellY, boundsMaxCellY);
+        int x1 = clampCell(cell(px + radius), boundsMinCellX, boundsMaxCellX);
+        int y1 = clampCell(cell(py + radius), boundsMinCellY, boundsMaxCellY);
+        float radiusSquared = radius * radius;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                for (int node = bucketHead[bucket(cx, cy)]; node != NONE; node = nodeNext[node]) {
+                    int i = nodeEntity[node];
+                    if (nodeCellX[node] != cx || nodeCellY[node] != cy || stamps[i] == stamp) {
+                        continue;
+                    }
+                    // Distanza dal punto al rettangolo di ingombro
+                    float dx = Math.max(0, Math.abs(px - x[i]) - extentX[i]);
+                    float dy = Math.max(0, Math.abs(py - y[i]) - extentY[i]);
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        stamps[i] = stamp;
+                        if (!visitor.visit(i)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visita le entità il cui ingombro esce dal rettangolo (ad esempio quelle fuori
+     * dallo schermo da riciclare): solo le celle occupate attorno al rettangolo vengono
+     * esaminate.
+     *
+     * @return false se il visitor ha interrotto l'interrogazione
+     */
+    boolean queryOutside(float minX, float minY, float maxX, float maxY, Visitor visitor) {
+        nextStamp();
+        if (boundsMinCellX > boundsMaxCellX) {
+            return true;
+        }
+        // Le strisce si estendono fino alle celle occupate
+        float left = boundsMinCellX * cellSize;
+        float top = boundsMinCellY * cellSize;
+        float right = (boundsMaxCellX + 1) * cellSize;
+        float bottom = (boundsMaxCellY + 1) * cellSize;
+        outside.set(minX, minY, maxX, maxY, visitor);
+        // Quattro strisce attorno al rettangolo; il timbro evita i doppioni negli angoli
+        return visitArea(left, top, right, minY, outside)
+            && visitArea(left, maxY, right, bottom, outside)
+            && visitArea(left, minY, minX, maxY, outside)
+            && visitArea(maxX, minY, right, maxY, outside);
+    }
+
+    /**
+     * @return L'entità sotto il punto (il rettangolo ruotato esatto), quella con indice
+     *         più alto (disegnata sopra) se sono più d'una, o -1 se non ce n'è
+     */
+    int pick(float px, float py) {
+        picker.reset(px, py);
+        query(px, py, px, py, picker);
+        return picker.found;
+    }
+
+    // Visita le celle dell'area (limitate a quelle occupate) con il timbro corrente
+    private boolean visitArea(float minX, float minY, float maxX, float maxY, Visitor visitor) {
+        if (minX > maxX || minY > maxY || boundsMinCellX > boundsMaxCellX) {
+            return true;
+        }
+        int x0 = clampCell(cell(minX), boundsMinCellX, boundsMaxCellX);
+        int y0 = clampCell(cell(minY), boundsMinCellY, boundsMaxCellY);
+        int x1 = clampCell(cell(maxX), boundsMinCellX, boundsMaxCellX);
+        int y1 = clampCell(cell(maxY), boundsMinCellY, boundsMaxCellY);
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > count) {
+            // Più celle che entità (area enorme o corpi sparsi lontano): conviene scorrere le entità
+            for (int i = 0; i < count; i++) {
+                if (stamps[i] != stamp && overlaps(i, minX, minY, maxX, maxY)) {
+                    stamps[i] = stamp;
+                    if (!visitor.visit(i)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                for (int node = bucketHead[bucket(cx, cy)]; node != NONE; node = nodeNext[node]) {
+                    int i = nodeEntity[node];
+                    if (nodeCellX[node] != cx || nodeCellY[node] != cy || stamps[i] == stamp) {
+                        continue;
+                    }
+                    if (overlaps(i, minX, minY, maxX, maxY)) {
+                        stamps[i] = stamp;
+                        if (!visitor.visit(i)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // L'ingombro indicizzato dell'entità interseca il rettangolo (estremi inclusi)?
+    private boolean overlaps(int i, float minX, float minY, float maxX, float maxY) {
+        return x[i] + extentX[i] >= minX && x[i] - extentX[i] <= maxX
+            && y[i] + extentY[i] >= minY && y[i] - extentY[i] <= maxY;
+    }
+
+    private void nextStamp() {
+        if (source == null) {
+            throw new IllegalStateException("Indice non ancora allineato a un registro (update)");
+        }
+        if (++stamp == 0) {
+            // Dopo 2^32 interrogazioni i timbri ricominciano: nessuno deve coincidere per caso
+            Arrays.fill(stamps, 0, count, 0);
+            stamp = 1;
+        }
+    }
+
+    // --- Celle e nodi ---
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private static int clampCell(int cell, int min, int max) {
+        return Math.max(min, Math.min(max, cell));
+    }
+
+    private int bucket(int cx, int cy) {
+        int h = cx * 0x9E3779B1 + cy * 0x85EBCA77;
+        return (h ^ (h >>> 15)) & bucketMask;
+    }
+
+    private void insert(int i, int x0, int y0, int x1, int y1) {
+        minCellX[i] = x0;
+        minCellY[i] = y0;
+        maxCellX[i] = x1;
+        maxCellY[i] = y1;
+        boundsMinCellX = Math.min(boundsMinCellX, x0);
+        boundsMinCellY = Math.min(boundsMinCellY, y0);
+        boundsMaxCellX = Math.max(boundsMaxCellX, x1);
+        boundsMaxCellY = Math.max(boundsMaxCellY, y1);
+
+        int head = NONE;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int node = allocateNode();
+                int b = bucket(cx, cy);
+                nodeEntity[node] = i;
+                nodeCellX[node] = cx;
+                nodeCellY[node] = cy;
+                nodeBucket[node] = b;
+                nodePrev[node] = NONE;
+                nodeNext[node] = bucketHead[b];
+                if (bucketHead[b] != NONE) {
+                    nodePrev[bucketHead[b]] = node;
+                }
+                bucketHead[b] = node;
+                nodeEntityNext[node] = head;
+                head = node;
+            }
+        }
+        firstNode[i] = head;
+    }
+
+    private void remove(int i) {
+        int node = firstNode[i];
+        while (node != NONE) {
+            int next = nodeEntityNext[node];
+            if (nodePrev[node] != NONE) {
+                nodeNext[nodePrev[node]] = nodeNext[node];
+            } else {
+                bucketHead[nodeBucket[node]] = nodeNext[node];
+            }
+            if (nodeNext[node] != NONE) {
+                nodePrev[nodeNext[node]] = nodePrev[node];
+            }
+            nodeNext[node] = freeNode;
+            freeNode = node;
+            node = next;
+        }
+        firstNode[i] = NONE;
+    }
+
+    private int allocateNode() {
+        if (freeNode != NONE) {
+            int node = freeNode;
+            freeNode = nodeNext[node];
+            return node;
+        }
+        if (usedNodes == nodeEntity.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, nodeEntity.length * 2);
+            nodeEntity = Arrays.copyOf(nodeEntity, capacity);
+            nodeCellX = Arrays.copyOf(nodeCellX, capacity);
+            nodeCellY = Arrays.copyOf(nodeCellY, capacity);
+            nodeNext = Arrays.copyOf(nodeNext, capacity);
+            nodePrev = Arrays.copyOf(nodePrev, capacity);
+            nodeBucket = Arrays.copyOf(nodeBucket, capacity);
+            nodeEntityNext = Arrays.copyOf(nodeEntityNext, capacity);
+        }
+        return usedNodes++;
+    }
+
+    // --- Visitor interni riusati ---
+
+    // Inoltra solo le entità che escono dal rettangolo
+    private final class OutsideFilter implements Visitor {
+        private float minX, minY, maxX, maxY;
+        private Visitor target;
+
+        void set(float minX, float minY, float maxX, float maxY, Visitor target) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.target = target;
+        }
+
+        @Override
+        public boolean visit(int i) {
+            if (x[i] - extentX[i] < minX || x[i] + extentX[i] > maxX
+                    || y[i] - extentY[i] < minY || y[i] + extentY[i] > maxY) {
+                return target.visit(i);
+            }
+            return true;
+        }
+    }
+
+    // Cerca l'entità con indice più alto il cui rettangolo ruotato contiene il punto
+    private final class Picker implements Visitor {
+        private float px, py;
+        int found;
+
+        void reset(float px, float py) {
+            this.px = px;
+            this.py = py;
+            this.found = -1;
+        }
+
+        @Override
+        public boolean visit(int i) {
+            if (i <= found) {
+                return true;
+            }
+            // Punto nel sistema del corpo: rotazione inversa di quella di BodyOutline
+            float dx = px - x[i];
+            float dy = py - y[i];
+            float cos = (float) Math.cos(angle[i]);
+            float sin = (float) Math.sin(angle[i]);
+            float localX = dx * cos - dy * sin;
+            float localY = dx * sin + dy * cos;
+            if (Math.abs(localX) <= halfWidth[i] && Math.abs(localY) <= halfHeight[i]) {
+                found = i;
+            }
+            return true;
+        }
+    }
+}
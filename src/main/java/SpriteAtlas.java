@@ -0,0 +1,168 @@
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Atlante degli sprite descritto da un manifest nelle risorse, al posto delle
+ * coordinate scritte nel codice. Ogni riga del manifest definisce un frame:
+ *
+ * <pre>
+ * # commento
+ * nome = file x y larghezza altezza
+ * </pre>
+ *
+ * Ogni sprite sheet viene decodificato una sola volta e ogni frame viene copiato in
+ * un'immagine {@code TYPE_INT_ARGB} propria (non una vista sul foglio intero).
+ * I frame sono indicizzati nell'ordine del manifest. La conversione nel formato dello
+ * schermo e il ridimensionamento avvengono dopo, in {@link SpriteSurfaces}.
+ */
+final class SpriteAtlas {
+
+    private final List<String> names;
+    private final List<BufferedImage> frames;
+    private final Map<String, Integer> indexByName;
+
+    private SpriteAtlas(List<String> names, List<BufferedImage> frames) {
+        this.names = names;
+        this.frames = frames;
+        this.indexByName = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            indexByName.put(names.get(i), i);
+        }
+    }
+
+    /**
+     * Carica il manifest e gli sprite sheet dalle risorse.
+     *
+     * @param manifestResource Percorso della risorsa (es. {@code "/sprites.atlas"})
+     * @return L'atlante, o null se il manifest non esiste
+     * @throws IOException Se uno sprite sheet non si legge
+     * @throws IllegalArgumentException Se il manifest non è valido
+     */
+    static SpriteAtlas load(String manifestResource) throws IOException {
+        InputStream manifest = SpriteAtlas.class.getResourceAsStream(manifestResource);
+        if (manifest == null) {
+            return null;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<BufferedImage> frames = new ArrayList<>();
+        Map<String, BufferedImage> sheets = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(manifest, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                int equals = line.indexOf('=');
+                String[] fields = equals < 0 ? new String[0] : line.substring(equals + 1).trim().split("\\s+");
+                if (equals <= 0 || fields.length != 5) {
+                    throw new IllegalArgumentException(manifestResource + ":" + lineNumber
+                        + ": atteso 'nome = file x y larghezza altezza'");
+                }
+                String name = line.substring(0, equals).trim();
+                if (names.contains(name)) {
+                    throw new IllegalArgumentException(manifestResource + ":" + lineNumber
+                        + ": frame duplicato '" + name + "'");
+                }
+
+                BufferedImage sheet = sheets.get(fields[0]);
+                if (sheet == null) {
+                    sheet = readSheet(fields[0]);
+                    sheets.put(fields[0], sheet);
+                }
+
+                int x = parseCoordinate(fields[1], manifestResource, lineNumber);
+                int y = parseCoordinate(fields[2], manifestResource, lineNumber);
+                int width = parseCoordinate(fields[3], manifestResource, lineNumber);
+                int height = parseCoordinate(fields[4], manifestResource, lineNumber);
+                if (width == 0 || height == 0
+                    || x + width > sheet.getWidth() || y + height > sheet.getHeight()) {
+                    throw new IllegalArgumentException(manifestResource + ":" + lineNumber
+                        + ": il frame '" + name + "' esce da " + fields[0]
+                        + " (" + sheet.getWidth() + "x" + sheet.getHeight() + ")");
+                }
+
+                names.add(name);
+                frames.add(copyFrame(sheet, x, y, width, height));
+            }
+        }
+        return new SpriteAtlas(names, frames);
+    }
+
+    private static BufferedImage readSheet(String file) throws IOException {
+        InputStream is = SpriteAtlas.class.getResourceAsStream("/" + file);
+        if (is == null) {
+            throw new IOException("Sprite sheet non trovato nelle risorse: " + file);
+        }
+        try (InputStream in = is) {
+            BufferedImage sheet = ImageIO.read(in);
+            if (sheet == null) {
+                throw new IOException("Formato immagine non supportato: " + file);
+            }
+            return sheet;
+        }
+    }
+
+    private static int parseCoordinate(String value, String manifestResource, int lineNumber) {
+        try {
+            int coordinate = Integer.parseInt(value);
+            if (coordinate < 0) {
+                throw new NumberFormatException();
+            }
+            return coordinate;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(manifestResource + ":" + lineNumber
+                + ": coordinata non valida '" + value + "'");
+        }
+    }
+
+    private static BufferedImage copyFrame(BufferedImage sheet, int x, int y, int width, int height) {
+        BufferedImage frame = TintKernels.createArgb(width, height);
+        Graphics2D g = frame.createGraphics();
+        g.drawImage(sheet.getSubimage(x, y, width, height), 0, 0, null);
+        g.dispose();
+        return frame;
+    }
+
+    int size() {
+        return frames.size();
+    }
+
+    /**
+     * @return L'indice del frame, o -1 se non esiste
+     */
+    int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    String name(int index) {
+        return names.get(index);
+    }
+
+    BufferedImage frame(int index) {
+        return frames.get(index);
+    }
+
+    /**
+     * @return Il frame con quel nome, o null se non esiste
+     */
+    BufferedImage frame(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : frames.get(index);
+    }
+}
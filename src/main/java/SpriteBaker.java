@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Pre-calcola gli sprite in fase di build (task Gradle {@code bakeSprites}): decodifica
+ * l'atlante e scrive i suoi frame e le varianti colorate usate da {@link SceneRenderer}
+ * nel formato di {@link BakedSprites}, che viene poi incluso tra le risorse.
+ *
+ * Uso: {@code SpriteBaker file-di-uscita}
+ */
+final class SpriteBaker {
+
+    private SpriteBaker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 1) {
+            System.err.println("Uso: SpriteBaker file-di-uscita");
+            System.exit(2);
+            return;
+        }
+        Path output = Paths.get(args[0]);
+
+        SpriteAtlas atlas = SpriteAtlas.load(SceneRenderer.ATLAS_MANIFEST);
+        if (atlas == null) {
+            System.err.println("Manifest " + SceneRenderer.ATLAS_MANIFEST + " non trovato nelle risorse");
+            System.exit(1);
+            return;
+        }
+        BakedSprites baked = new BakedSprites();
+        for (int i = 0; i < atlas.size(); i++) {
+            baked.addFrame(atlas.name(i), atlas.frame(i));
+        }
+        SceneRenderer.bakeVariants(atlas, baked);
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        baked.write(output);
+        System.out.printf(Locale.ROOT, "Sprite pre-calcolati: %d voci in %s (%d byte)%n",
+                          baked.size(), output, Files.size(output));
+    }
+}
@@ -0,0 +1,316 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Superfici degli sprite già convertite nel formato dello schermo e già scalate alla
+ * dimensione in pixel di ogni corpo.
+ *
+ * Scalare un'immagine non compatibile a ogni drawImage (con VALUE_RENDER_QUALITY
+ * attivo) costringe Java2D ai loop software. Qui ogni coppia (immagine, dimensione)
+ * viene scalata una sola volta, con interpolazione bilineare, in una superficie della
+ * GraphicsConfiguration di destinazione:
+ * - una {@link VolatileImage} se la configurazione è accelerata (VRAM): i contenuti
+ *   possono andare persi (cambio modalità video, blocco schermo...) e vengono
+ *   ridisegnati dalla copia in memoria quando {@code validate} lo segnala;
+ * - altrimenti un'immagine compatibile (createCompatibleImage), che Java2D può
+ *   comunque tenere in cache come "managed image".
+ *
+ * Il disegno diventa quindi una copia (o una copia ruotata) senza scalatura. I corpi
+ * quasi allineati agli assi (fermi a terra stanno a multipli di 90°) usano una copia a
+ * coordinate intere, il percorso più veloce, da una superficie già ruotata del quarto
+ * di giro più vicino; gli altri la superficie dritta con una trasformazione.
+ * Le superfici sono mantenute con politica LRU. Da usare da un solo thread (l'EDT).
+ */
+final class SpriteSurfaces {
+
+    // Sotto questo spostamento (in pixel) degli angoli un corpo è disegnato senza rotazione
+    private static final float UPRIGHT_TOLERANCE_PX = 0.25f;
+    private static final int MAX_RESTORE_ATTEMPTS = 2;
+    private static final float QUARTER_TURN = (float) (Math.PI / 2);
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Surface> entries;
+    private final Key probe = new Key();
+    private final AffineTransform transform = new AffineTransform();
+    private boolean volatileEnabled = true;
+
+    private long created;
+    private long restored;
+
+    /**
+     * @param capacity Numero massimo di superfici mantenute
+     */
+    SpriteSurfaces(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacità deve essere positiva: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Surface> eldest) {
+                if (size() > SpriteSurfaces.this.capacity) {
+                    eldest.getValue().flush();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Abilita le VolatileImage sulle configurazioni accelerate (predefinito); se disabilitate
+     * si usano sempre immagini compatibili.
+     */
+    void setVolatileEnabled(boolean enabled) {
+        if (enabled != volatileEnabled) {
+            volatileEnabled = enabled;
+            clear();
+        }
+    }
+
+    /**
+     * Disegna {@code source} scalata a {@code width}x{@code height}, centrata in
+     * ({@code centerX}, {@code centerY}) e ruotata di {@code angle} (convenzione JBox2D).
+     * L'angolo in alto a sinistra dello sprite è a ({@code -width/2}, {@code -height/2})
+     * dal centro, arrotondati per difetto come nel disegno originale.
+     */
+    void draw(Graphics2D g2d, BufferedImage source, int width, int height,
+              float centerX, float centerY, float angle) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int offsetX = width / 2;
+        int offsetY = height / 2;
+        float cornerRadius = (float) Math.sqrt(offsetX * offsetX + offsetY * offsetY);
+        int turns = Math.round(angle / QUARTER_TURN);
+        boolean upright = Math.abs(angle - turns * QUARTER_TURN) * cornerRadius < UPRIGHT_TOLERANCE_PX;
+        int quadrant = upright ? Math.floorMod(turns, 4) : 0;
+
+        GraphicsConfiguration gc = g2d.getDeviceConfiguration();
+        Surface surface = lookup(gc, source, width, height, quadrant);
+        for (int attempt = 0; attempt < MAX_RESTORE_ATTEMPTS; attempt++) {
+            Image image = surface.validate(gc, source);
+            if (upright) {
+                g2d.drawImage(image, Math.round(centerX + surface.originX), Math.round(centerY + surface.originY), null);
+            } else {
+                transform.setToTranslation(centerX, centerY);
+                transform.rotate(-angle); // Ruota in senso opposto per Swing
+                transform.translate(-offsetX, -offsetY);
+                g2d.drawImage(image, transform, null);
+            }
+            if (!surface.contentsLost()) {
+                return;
+            }
+        }
+    }
+
+    private Surface lookup(GraphicsConfiguration gc, BufferedImage source, int width, int height, int quadrant) {
+        probe.set(source, width, height, quadrant);
+        Surface surface = entries.get(probe);
+        probe.set(null, 0, 0, 0);
+        if (surface == null) {
+            surface = new Surface(width, height, quadrant);
+            entries.put(new Key(source, width, height, quadrant), surface);
+            created++;
+        }
+        if (surface.config != gc) {
+            surface.create(gc, source, volatileEnabled && gc.getImageCapabilities().isAccelerated());
+        }
+        return surface;
+    }
+
+    /**
+     * Rilascia tutte le superfici (ad esempio quando gli sprite vengono ricaricati).
+     */
+    void clear() {
+        for (Surface surface : entries.values()) {
+            surface.flush();
+        }
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return Quante volte il contenuto di una VolatileImage è stato ridisegnato dopo una perdita
+     */
+    long getRestored() {
+        return restored;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpriteSurfaces[size=%d/%d, created=%d, restored=%d, volatile=%b]",
+                             entries.size(), capacity, created, restored, volatileEnabled);
+    }
+
+    // Superficie di una coppia (immagine, dimensione), ruotata di quadrant quarti di giro
+    // (senso JBox2D), per una GraphicsConfiguration
+    private final class Surface {
+        private final int width;
+        private final int height;
+        private final int quadrant;
+        // Dimensione della superficie e suo angolo in alto a sinistra rispetto al centro del corpo
+        private final int surfaceWidth;
+        private final int surfaceHeight;
+        private final int originX;
+        private final int originY;
+        private GraphicsConfiguration config;
+        private BufferedImage scaled;
+        private VolatileImage accelerated;
+
+        Surface(int width, int height, int quadrant) {
+            this.width = width;
+            this.height = height;
+            this.quadrant = quadrant;
+            boolean odd = (quadrant & 1) != 0;
+            this.surfaceWidth = odd ? height : width;
+            this.surfaceHeight = odd ? width : height;
+            // Minimo dei vertici (-w/2, -h/2)..(w - w/2, h - h/2) ruotati di -quadrant * 90° (Y verso il basso)
+            int offsetX = width / 2;
+            int offsetY = height / 2;
+            switch (quadrant) {
+                case 1:
+                    originX = -offsetY;
+                    originY = offsetX - width;
+                    break;
+                case 2:
+                    originX = offsetX - width;
+                    originY = offsetY - height;
+                    break;
+                case 3:
+                    originX = offsetY - height;
+                    originY = -offsetX;
+                    break;
+                default:
+                    originX = -offsetX;
+                    originY = -offsetY;
+                    break;
+            }
+        }
+
+        void create(GraphicsConfiguration gc, BufferedImage source, boolean useVolatile) {
+            flush();
+            config = gc;
+            scaled = gc.createCompatibleImage(surfaceWidth, surfaceHeight, Transparency.TRANSLUCENT);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Stessa trasformazione del disegno ruotato, con il centro del corpo in (-originX, -originY)
+            g.translate(-originX, -originY);
+            g.transform(AffineTransform.getQuadrantRotateInstance(-quadrant));
+            g.drawImage(source, -(width / 2), -(height / 2), width, height, null);
+            g.dispose();
+
+            if (useVolatile) {
+                accelerated = gc.createCompatibleVolatileImage(surfaceWidth, surfaceHeight, Transparency.TRANSLUCENT);
+                if (accelerated != null) {
+                    accelerated.validate(gc);
+                    copyToAccelerated();
+                }
+            }
+        }
+
+        /**
+         * @return L'immagine da disegnare, con il contenuto valido per {@code gc}
+         */
+        Image validate(GraphicsConfiguration gc, BufferedImage source) {
+            if (accelerated == null) {
+                return scaled;
+            }
+            switch (accelerated.validate(gc)) {
+                case VolatileImage.IMAGE_INCOMPATIBLE:
+                    // Configurazione cambiata (es. finestra spostata su un altro schermo)
+                    create(gc, source, true);
+                    restored++;
+                    return accelerated != null ? accelerated : scaled;
+                case VolatileImage.IMAGE_RESTORED:
+                    copyToAccelerated();
+                    restored++;
+                    return accelerated;
+                default:
+                    return accelerated;
+            }
+        }
+
+        boolean contentsLost() {
+            return accelerated != null && accelerated.contentsLost();
+        }
+
+        private void copyToAccelerated() {
+            Graphics2D g = accelerated.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(scaled, 0, 0, null);
+            g.dispose();
+        }
+
+        void flush() {
+            if (accelerated != null) {
+                accelerated.flush();
+                accelerated = null;
+            }
+            if (scaled != null) {
+                scaled.flush();
+                scaled = null;
+            }
+            config = null;
+        }
+    }
+
+    // Chiave (immagine per identità, dimensione in pixel, quarti di giro)
+    private static final class Key {
+        private BufferedImage source;
+        private int width;
+        private int height;
+        private int quadrant;
+        private int hash;
+
+        Key() {
+        }
+
+        Key(BufferedImage source, int width, int height, int quadrant) {
+            set(source, width, height, quadrant);
+        }
+
+        void set(BufferedImage source, int width, int height, int quadrant) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.quadrant = quadrant;
+            this.hash = ((31 * System.identityHashCode(source) + width) * 31 + height) * 31 + quadrant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return source == other.source && width == other.width && height == other.height
+                && quadrant == other.quadrant;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Visualizzatore remoto: riceve da un {@link StateSyncServer} lo stato dei corpi ad ogni
+ * passo e lo pubblica in un {@link BodyStateBuffer}, da cui si disegna come se la
+ * simulazione fosse locale.
+ *
+ * Il thread "state-sync-client" legge i messaggi di {@link StateSyncFormat}, ricostruisce
+ * i delta dal frame di riferimento (ricordato in una {@link StateSyncFormat.History}),
+ * pubblica il frame e conferma al server l'ultimo passo decodificato. Lo stato
+ * precedente, per l'interpolazione, è quello del frame ricevuto prima; le velocità sono
+ * ricavate dallo spostamento tra i due.
+ */
+final class StateSyncClient implements Closeable {
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final BodyStateBuffer states = new BodyStateBuffer(0);
+    private final StateSyncFormat.History history = new StateSyncFormat.History();
+    private final ByteBuffer ack = ByteBuffer.allocateDirect(StateSyncFormat.ACK_BYTES).order(StateSyncFormat.ORDER);
+    private ByteBuffer in = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES).order(StateSyncFormat.ORDER);
+
+    // Descrittori dell'ultimo keyframe (solo il thread del client)
+    private float[] halfWidth = new float[0];
+    private float[] halfHeight = new float[0];
+    private int[] spriteId = new int[0];
+    private int[] tintId = new int[0];
+    private int[] flags = new int[0];
+    // Cambia ad ogni keyframe: un frame si interpola solo con uno dello stesso layout
+    private int layout;
+    private int previousSlot = -1;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    // Statistiche (scritte solo dal thread del client)
+    private volatile long framesReceived;
+    private volatile long keyframesReceived;
+    private volatile long bytesReceived;
+    private volatile long lastStep = StateSyncFormat.NO_BASE;
+    // Dall'invio del server alla pubblicazione (System.nanoTime: stesso host)
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Si connette al server (bloccante).
+     */
+    StateSyncClient(String host, int port) throws IOException {
+        channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Il buffer in cui vengono pubblicati i frame ricevuti (un solo lettore)
+     */
+    BodyStateBuffer getStates() {
+        return states;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "state-sync-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Il canale è comunque inutilizzabile
+        }
+    }
+
+    boolean isConnected() {
+        return running && channel.isOpen();
+    }
+
+    long getFramesReceived() {
+        return framesReceived;
+    }
+
+    long getKeyframesReceived() {
+        return keyframesReceived;
+    }
+
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    long getLastStep() {
+        return lastStep;
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                if (channel.read(in) < 0) {
+                    System.out.println("Il server di sincronizzazione ha chiuso la connessione");
+                    break;
+                }
+                in.flip();
+                long decoded = StateSyncFormat.NO_BASE;
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    int end = in.position() + 4 + length;
+                    decoded = decode(in);
+                    in.position(end);
+                    bytesReceived += 4 + length;
+                }
+                in.compact();
+                if (decoded != StateSyncFormat.NO_BASE) {
+                    sendAck(decoded);
+                }
+                ensureRoomForNextMessage();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Errore nella ricezione dello stato: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    // Un messaggio più grande del buffer (molti corpi in un keyframe) richiede un buffer più grande
+    private void ensureRoomForNextMessage() {
+        if (in.position() < 4) {
+            return;
+        }
+        int needed = 4 + in.getInt(0);
+        if (needed > in.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(needed, in.capacity() * 2))
+                                          .order(StateSyncFormat.ORDER);
+            in.flip();
+            larger.put(in);
+            in = larger;
+        }
+    }
+
+    private void sendAck(long step) throws IOException {
+        ack.clear();
+        ack.putLong(step);
+        ack.flip();
+        while (ack.hasRemaining()) {
+            channel.write(ack);
+        }
+    }
+
+    // Decodifica un messaggio completo e pubblica il frame; restituisce il suo passo
+    private long decode(ByteBuffer message) throws IOException {
+        message.getInt();
+        byte type = message.get();
+        long step = message.getLong();
+        long sendNanos = message.getLong();
+        long baseStep = message.getLong();
+        int n = message.getInt();
+
+        int base = -1;
+        if (type == StateSyncFormat.DELTA) {
+            base = history.slotOf(baseStep);
+            if (base < 0 || history.count(base) != n || baseStep % StateSyncFormat.HISTORY_FRAMES
+                                                       == step % StateSyncFormat.HISTORY_FRAMES) {
+                throw new IOException("Frame di riferimento " + baseStep + " non disponibile per il passo " + step);
+            }
+        } else if (type == StateSyncFormat.KEYFRAME) {
+            readDescriptors(message, n);
+            layout++;
+            keyframesReceived++;
+        } else {
+            throw new IOException("Tipo di messaggio sconosciuto: " + type);
+        }
+
+        long now = System.nanoTime();
+        int slot = history.store(step, n, layout, now);
+        int[] qx = history.x(slot);
+        int[] qy = history.y(slot);
+        int[] qa = history.angle(slot);
+        if (base < 0) {
+            for (int i = 0; i < n; i++) {
+                qx[i] = message.getInt();
+            }
+            for (int i = 0; i < n; i++) {
+                qy[i] = message.getInt();
+            }
+            for (int i = 0; i < n; i++) {
+                qa[i] = message.getInt();
+            }
+        } else {
+            System.arraycopy(history.x(base), 0, qx, 0, n);
+            System.arraycopy(history.y(base), 0, qy, 0, n);
+            System.arraycopy(history.angle(base), 0, qa, 0, n);
+            int maskStart = message.position();
+            message.position(maskStart + (n + 7) / 8);
+            for (int i = 0; i < n; i++) {
+                if ((message.get(maskStart + (i >> 3)) & (1 << (i & 7))) == 0) {
+                    continue;
+                }
+                qx[i] += StateSyncFormat.getVarint(message);
+                qy[i] += StateSyncFormat.getVarint(message);
+                qa[i] += StateSyncFormat.getVarint(message);
+            }
+        }
+
+        publish(slot, step);
+        previousSlot = slot;
+        lastStep = step;
+        framesReceived++;
+        latency.record(System.nanoTime() - sendNanos);
+        return step;
+    }
+
+    private void readDescriptors(ByteBuffer message, int n) {
+        if (halfWidth.length < n) {
+            int capacity = Math.max(n, halfWidth.length * 2);
+            halfWidth = new float[capacity];
+            halfHeight = new float[capacity];
+            spriteId = new int[capacity];
+            tintId = new int[capacity];
+            flags = new int[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            halfWidth[i] = message.getFloat();
+        }
+        for (int i = 0; i < n; i++) {
+            halfHeight[i] = message.getFloat();
+        }
+        for (int i = 0; i < n; i++) {
+            spriteId[i] = message.getInt();
+        }
+        for (int i = 0; i < n; i++) {
+            tintId[i] = message.getInt();
+        }
+        for (int i = 0; i < n; i++) {
+            flags[i] = message.getInt();
+        }
+    }
+
+    private void publish(int slot, long step) {
+        int n = history.count(slot);
+        BodyStates out = states.back();
+        out.ensureCapacity(n);
+        System.arraycopy(halfWidth, 0, out.halfWidth, 0, n);
+        System.arraycopy(halfHeight, 0, out.halfHeight, 0, n);
+        System.arraycopy(spriteId, 0, out.spriteId, 0, n);
+        System.arraycopy(tintId, 0, out.tintId, 0, n);
+        System.arraycopy(flags, 0, out.flags, 0, n);
+
+        int[] qx = history.x(slot);
+        int[] qy = history.y(slot);
+        int[] qa = history.angle(slot);
+        for (int i = 0; i < n; i++) {
+            out.x[i] = StateSyncFormat.positionOf(qx[i]);
+            out.y[i] = StateSyncFormat.positionOf(qy[i]);
+            out.angle[i] = StateSyncFormat.angleOf(qa[i]);
+        }
+
+        // Stato precedente e velocità dal frame ricevuto prima, se ha gli stessi corpi
+        int previous = previousSlot;
+        if (previous >= 0 && history.layout(previous) == layout && history.step(previous) < step) {
+            int[] px = history.x(previous);
+            int[] py = history.y(previous);
+            int[] pa = history.angle(previous);
+            float seconds = (step - history.step(previous)) * SimulationEngine.TIME_STEP;
+            for (int i = 0; i < n; i++) {
+                out.prevX[i] = StateSyncFormat.positionOf(px[i]);
+                out.prevY[i] = StateSyncFormat.positionOf(py[i]);
+                out.prevAngle[i] = StateSyncFormat.angleOf(pa[i]);
+                // Pixel con Y verso il basso -> m/s con Y verso l'alto
+                out.velocityX[i] = SimulationEngine.pixelsToMeters(out.x[i] - out.prevX[i]) / seconds;
+                out.velocityY[i] = -SimulationEngine.pixelsToMeters(out.y[i] - out.prevY[i]) / seconds;
+            }
+        } else {
+            System.arraycopy(out.x, 0, out.prevX, 0, n);
+            System.arraycopy(out.y, 0, out.prevY, 0, n);
+            System.arraycopy(out.angle, 0, out.prevAngle, 0, n);
+            for (int i = 0; i < n; i++) {
+                out.velocityX[i] = 0;
+                out.velocityY[i] = 0;
+            }
+        }
+        out.count = n;
+        out.layoutVersion = layout;
+        out.step = step;
+        out.timeNanos = System.nanoTime();
+        states.publish();
+    }
+}
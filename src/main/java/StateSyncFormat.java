@@ -0,0 +1,194 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Protocollo di {@link StateSyncServer} e {@link StateSyncClient}: lo stato dei corpi
+ * inviato ad ogni passo ai visualizzatori remoti, su una connessione TCP.
+ *
+ * Posizioni e angoli sono quantizzati (1/16 di pixel, 1/4096 di radiante) e, quando
+ * possibile, codificati come differenza rispetto all'ultimo frame confermato dal client:
+ * <pre>
+ * messaggio del server (little-endian, uno per passo)
+ *   int   lunghezza del resto del messaggio
+ *   byte  KEYFRAME o DELTA
+ *   long  numero del passo
+ *   long  istante di invio (System.nanoTime del server)
+ *   long  passo di riferimento (DELTA) o NO_BASE (KEYFRAME)
+ *   int   numero di corpi n
+ * KEYFRAME
+ *   float mezza larghezza[n], mezza altezza[n] (pixel); int sprite[n], tinta[n], flag[n]
+ *   int   x[n], y[n], angolo[n] quantizzati
+ * DELTA
+ *   byte  maschera dei corpi cambiati (n bit, il bit i del byte i / 8)
+ *   per ogni corpo cambiato: x, y e angolo come differenza dal riferimento (varint zigzag)
+ * messaggio del client
+ *   long  passo dell'ultimo frame decodificato (conferma)
+ * </pre>
+ * Le velocità non vengono inviate: il client le ricava dalle posizioni di due frame.
+ */
+final class StateSyncFormat {
+
+    static final int DEFAULT_PORT = 47110;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+    static final long NO_BASE = -1;
+
+    // lunghezza, tipo, passo, istante di invio, riferimento, numero di corpi
+    static final int HEADER_BYTES = 4 + 1 + 8 + 8 + 8 + 4;
+    static final int ACK_BYTES = 8;
+
+    // Valori per corpo in un keyframe: 5 nei descrittori, 3 quantizzati
+    static final int KEYFRAME_BODY_BYTES = (5 + 3) * 4;
+    // Caso peggiore di un corpo cambiato in un delta: tre varint da 5 byte
+    static final int DELTA_BODY_BYTES = 3 * 5;
+
+    // Frame ricordati da server e client per i delta (confermati da meno di un secondo a 60 Hz)
+    static final int HISTORY_FRAMES = 64;
+
+    static final float POSITION_SCALE = 16.0f;
+    static final float ANGLE_SCALE = 4096.0f;
+
+    private StateSyncFormat() {
+    }
+
+    /**
+     * @return Lo spazio necessario, nel caso peggiore, per un messaggio con {@code bodyCount} corpi
+     */
+    static int maxMessageBytes(int bodyCount) {
+        int delta = (bodyCount + 7) / 8 + bodyCount * DELTA_BODY_BYTES;
+        return HEADER_BYTES + Math.max(bodyCount * KEYFRAME_BODY_BYTES, delta);
+    }
+
+    static int quantizePosition(float pixels) {
+        return Math.round(pixels * POSITION_SCALE);
+    }
+
+    static int quantizeAngle(float radians) {
+        return Math.round(radians * ANGLE_SCALE);
+    }
+
+    static float positionOf(int quantized) {
+        return quantized / POSITION_SCALE;
+    }
+
+    static float angleOf(int quantized) {
+        return quantized / ANGLE_SCALE;
+    }
+
+    /**
+     * Scrive un intero con segno in 1-5 byte (zigzag, 7 bit per byte): le differenze
+     * piccole, positive o negative, occupano un solo byte.
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Ultimi frame quantizzati, indicizzati per passo (un frame per slot, passo modulo la
+     * capacità): i riferimenti per i delta. Server e client ne hanno uno con la stessa
+     * capacità, quindi un passo ancora presente sul server è presente anche sul client.
+     */
+    static final class History {
+
+        private final long[] steps = new long[HISTORY_FRAMES];
+        private final int[] counts = new int[HISTORY_FRAMES];
+        private final int[] layouts = new int[HISTORY_FRAMES];
+        private final long[] times = new long[HISTORY_FRAMES];
+        private final int[][] x = new int[HISTORY_FRAMES][];
+        private final int[][] y = new int[HISTORY_FRAMES][];
+        private final int[][] angle = new int[HISTORY_FRAMES][];
+
+        History() {
+            Arrays.fill(steps, NO_BASE);
+            for (int slot = 0; slot < HISTORY_FRAMES; slot++) {
+                x[slot] = new int[0];
+                y[slot] = new int[0];
+                angle[slot] = new int[0];
+            }
+        }
+
+        /**
+         * @return Lo slot del passo, o -1 se non è (più) ricordato
+         */
+        int slotOf(long step) {
+            if (step < 0) {
+                return -1;
+            }
+            int slot = (int) (step % HISTORY_FRAMES);
+            return steps[slot] == step ? slot : -1;
+        }
+
+        /**
+         * Prepara lo slot per un nuovo frame (sovrascrivendo quello di HISTORY_FRAMES passi prima).
+         *
+         * @param layout Identifica l'insieme dei corpi: un delta vale solo tra frame con lo stesso layout
+         * @param timeNanos Istante associato al frame (invio sul server, ricezione sul client)
+         */
+        int store(long step, int count, int layout, long timeNanos) {
+            int slot = (int) (step % HISTORY_FRAMES);
+            if (x[slot].length < count) {
+                int capacity = Math.max(count, x[slot].length * 2);
+                x[slot] = new int[capacity];
+                y[slot] = new int[capacity];
+                angle[slot] = new int[capacity];
+            }
+            steps[slot] = step;
+            counts[slot] = count;
+            layouts[slot] = layout;
+            times[slot] = timeNanos;
+            return slot;
+        }
+
+        void clear() {
+            Arrays.fill(steps, NO_BASE);
+        }
+
+        long step(int slot) {
+            return steps[slot];
+        }
+
+        int count(int slot) {
+            return counts[slot];
+        }
+
+        int layout(int slot) {
+            return layouts[slot];
+        }
+
+        long time(int slot) {
+            return times[slot];
+        }
+
+        int[] x(int slot) {
+            return x[slot];
+        }
+
+        int[] y(int slot) {
+            return y[slot];
+        }
+
+        int[] angle(int slot) {
+            return angle[slot];
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Banda e latenza della sincronizzazione dello stato ({@link StateSyncServer} e
+ * {@link StateSyncClient}) su loopback, senza finestra: {@code --headless --sync}. Che i
+ * client riproducano la simulazione entro la quantizzazione lo verifica StateSyncTest.
+ */
+final class StateSyncRunner {
+
+    private static final long CONNECT_TIMEOUT_NANOS = 2_000_000_000L;
+    private static final long BOX_SEED = 7L;
+
+    private StateSyncRunner() {
+    }
+
+    /**
+     * Simula {@code steps} passi a 60 Hz con {@code boxes} scatole (un quarto viene rimosso
+     * a metà, per forzare un keyframe) e li invia con uno {@link StateSyncServer} a
+     * {@code clients} visualizzatori nello stesso processo, su loopback. Riporta i byte
+     * per corpo, la banda per client, la latenza dall'invio alla pubblicazione e dalla
+     * conferma.
+     */
+    static void run(int steps, int boxes, int clients) {
+        System.out.printf(Locale.ROOT, "Sincronizzazione dello stato: %d scatole, %d passi a %d Hz, %d client su loopback%n",
+                          boxes, steps, SimulationEngine.TARGET_FPS, clients);
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(boxes, BOX_SEED);
+        EntityRegistry entities = engine.getEntities();
+
+        StateSyncServer server;
+        StateSyncClient[] viewers = new StateSyncClient[clients];
+        try {
+            server = new StateSyncServer(0);
+            server.start();
+            String host = InetAddress.getLoopbackAddress().getHostAddress();
+            for (int c = 0; c < clients; c++) {
+                viewers[c] = new StateSyncClient(host, server.getPort());
+                viewers[c].start();
+            }
+        } catch (IOException e) {
+            System.err.println("Impossibile avviare la sincronizzazione su loopback: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (server.getClientCount() < clients && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+
+        long stepNanos = (long) (SimulationEngine.TIME_STEP * 1.0e9);
+        long start = System.nanoTime();
+        long next = start;
+        for (int s = 0; s < steps; s++) {
+            if (s == steps / 2) {
+                for (int k = 0; k < boxes / 4; k++) {
+                    engine.despawn(entities.ids[entities.size() - 1]);
+                }
+            }
+            engine.step();
+            server.publish(entities, engine.getStepCount());
+            next += stepNanos;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+        long lastStep = engine.getStepCount();
+        deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        for (StateSyncClient viewer : viewers) {
+            while (viewer.getLastStep() != lastStep && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1.0e9;
+
+        long bytes = server.getBytesSent();
+        long bodies = server.getBodiesSent();
+        System.out.printf(Locale.ROOT, "Server: %d frame inviati (%d keyframe), %d saltati, %d byte%n",
+                          server.getFramesSent(), server.getKeyframesSent(), server.getSkippedFrames(), bytes);
+        System.out.printf(Locale.ROOT, "  %.2f byte per corpo per frame (keyframe %d, float senza compressione %d), %.1f kB/s per client%n",
+                          bodies == 0 ? 0 : (double) bytes / bodies, StateSyncFormat.KEYFRAME_BODY_BYTES,
+                          3 * Float.BYTES, bytes / 1024.0 / seconds / clients);
+        LatencyHistogram.Snapshot acks = server.getAckLatency().drain();
+        System.out.printf(Locale.ROOT, "  conferme: p50 %.3f ms, p99 %.3f ms, massima %.3f ms (invio -> conferma)%n",
+                          acks.getValueAtPercentile(50) / 1.0e6, acks.getValueAtPercentile(99) / 1.0e6,
+                          acks.getMaxNanos() / 1.0e6);
+
+        for (int c = 0; c < clients; c++) {
+            StateSyncClient viewer = viewers[c];
+            LatencyHistogram.Snapshot latency = viewer.getLatency().drain();
+            System.out.printf(Locale.ROOT, "Client %d: %d frame (%d keyframe), ultimo passo %d di %d, "
+                              + "latenza p50 %.3f ms, p99 %.3f ms, massima %.3f ms%n",
+                              c + 1, viewer.getFramesReceived(), viewer.getKeyframesReceived(),
+                              viewer.getLastStep(), lastStep,
+                              latency.getValueAtPercentile(50) / 1.0e6, latency.getValueAtPercentile(99) / 1.0e6,
+                              latency.getMaxNanos() / 1.0e6);
+            viewer.close();
+        }
+        server.close();
+    }
+}
@@ -0,0 +1,399 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Invia lo stato dei corpi, ad ogni passo, ai visualizzatori remoti ({@link StateSyncClient})
+ * nel formato di {@link StateSyncFormat}, così più processi possono mostrare la stessa
+ * simulazione senza un World proprio.
+ *
+ * Il thread di simulazione chiama {@link #publish} dopo ogni passo: copia lo stato in un
+ * {@link BodyStateBuffer} e sveglia il thread "state-sync", che fa tutto il resto con un
+ * Selector NIO e canali non bloccanti. Il frame viene quantizzato una volta sola e poi
+ * codificato per ogni client come delta rispetto all'ultimo frame che quel client ha
+ * confermato (o come keyframe, se non ce n'è uno valido), in un ByteBuffer diretto
+ * scritto con una sola chiamata. Un client che non ha ancora ricevuto tutto il frame
+ * precedente salta quello nuovo: il server non accoda mai frame vecchi.
+ *
+ * Per default accetta solo connessioni dall'interfaccia di loopback.
+ */
+final class StateSyncServer implements Closeable {
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final BodyStateBuffer frames;
+    private final StateSyncFormat.History history = new StateSyncFormat.History();
+    private final List<Connection> connections = new ArrayList<>();
+    private final Consumer<SelectionKey> keyHandler = this::handleKey;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    // Ultimo passo inviato (solo il thread del server)
+    private long lastStep = StateSyncFormat.NO_BASE;
+
+    // Statistiche (scritte solo dal thread del server)
+    private volatile long framesSent;
+    private volatile long keyframesSent;
+    private volatile long bytesSent;
+    private volatile long bodiesSent;
+    private volatile long skippedFrames;
+    private volatile int clientCount;
+    // Dall'invio di un frame alla sua conferma
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+
+    /**
+     * @param port Porta TCP sull'interfaccia di loopback (0 = una porta libera qualsiasi)
+     */
+    StateSyncServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    StateSyncServer(InetSocketAddress address) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        frames = new BodyStateBuffer(0);
+    }
+
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "state-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pubblica lo stato attuale delle entità. Eseguito dal thread di simulazione dopo
+     * ogni passo: copia gli array e sveglia il thread del server, senza bloccarsi.
+     *
+     * @param step Numero del passo di simulazione
+     */
+    void publish(EntityRegistry entities, long step) {
+        BodyStates states = frames.back();
+        states.copyFrom(entities);
+        states.step = step;
+        states.timeNanos = System.nanoTime();
+        frames.publish();
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        Thread serverThread;
+        synchronized (this) {
+            running = false;
+            serverThread = thread;
+            thread = null;
+        }
+        selector.wakeup();
+        if (serverThread != null) {
+            try {
+                serverThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeQuietly();
+    }
+
+    int getClientCount() {
+        return clientCount;
+    }
+
+    long getFramesSent() {
+        return framesSent;
+    }
+
+    long getKeyframesSent() {
+        return keyframesSent;
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return Somma dei corpi di tutti i frame inviati (per i byte per corpo)
+     */
+    long getBodiesSent() {
+        return bodiesSent;
+    }
+
+    /**
+     * @return Frame non inviati a un client perché non aveva ancora ricevuto il precedente
+     */
+    long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(keyHandler);
+                BodyStates states = frames.latest();
+                if (states.step != lastStep) {
+                    lastStep = states.step;
+                    broadcast(states);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Errore del server di sincronizzazione: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (running) {
+                closeQuietly();
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            disconnect(connections.get(i));
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Errore alla chiusura del server di sincronizzazione: " + e.getMessage());
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                readAcks(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection);
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            clientCount = connections.size();
+        } catch (IOException e) {
+            System.err.println("Connessione di un client non riuscita: " + e.getMessage());
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Il canale è comunque inutilizzabile
+        }
+        connections.remove(connection);
+        clientCount = connections.size();
+    }
+
+    // Conferme del client: l'ultimo passo ricevuto diventa il riferimento dei delta
+    private void readAcks(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (connection.channel.read(in) < 0) {
+            throw new IOException("Connessione chiusa dal client");
+        }
+        in.flip();
+        long now = System.nanoTime();
+        while (in.remaining() >= StateSyncFormat.ACK_BYTES) {
+            long step = in.getLong();
+            if (step > connection.ackedStep) {
+                connection.ackedStep = step;
+                int slot = history.slotOf(step);
+                if (slot >= 0) {
+                    ackLatency.record(now - history.time(slot));
+                }
+            }
+        }
+        in.compact();
+    }
+
+    private void flush(Connection connection) throws IOException {
+        connection.channel.write(connection.out);
+        if (!connection.out.hasRemaining()) {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void broadcast(BodyStates states) {
+        int n = states.count;
+        long now = System.nanoTime();
+        int slot = history.store(states.step, n, states.layoutVersion, now);
+        int[] qx = history.x(slot);
+        int[] qy = history.y(slot);
+        int[] qa = history.angle(slot);
+        for (int i = 0; i < n; i++) {
+            qx[i] = StateSyncFormat.quantizePosition(states.x[i]);
+            qy[i] = StateSyncFormat.quantizePosition(states.y[i]);
+            qa[i] = StateSyncFormat.quantizeAngle(states.angle[i]);
+        }
+
+        for (int c = connections.size() - 1; c >= 0; c--) {
+            Connection connection = connections.get(c);
+            if (connection.out.hasRemaining()) {
+                skippedFrames++;
+                continue;
+            }
+            // Delta solo rispetto a un frame confermato, ancora ricordato e con gli stessi corpi
+            int base = history.slotOf(connection.ackedStep);
+            if (base >= 0 && (history.layout(base) != states.layoutVersion || history.count(base) != n)) {
+                base = -1;
+            }
+            ByteBuffer out = connection.prepare(StateSyncFormat.maxMessageBytes(n));
+            encode(out, states, slot, base, now);
+            int length = out.limit();
+            try {
+                flush(connection);
+                if (out.hasRemaining()) {
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                disconnect(connection);
+                continue;
+            }
+            framesSent++;
+            bytesSent += length;
+            bodiesSent += n;
+            if (base < 0) {
+                keyframesSent++;
+            }
+        }
+    }
+
+    private void encode(ByteBuffer out, BodyStates states, int slot, int base, long sendNanos) {
+        int n = states.count;
+        out.position(4);
+        out.put(base < 0 ? StateSyncFormat.KEYFRAME : StateSyncFormat.DELTA);
+        out.putLong(states.step);
+        out.putLong(sendNanos);
+        out.putLong(base < 0 ? StateSyncFormat.NO_BASE : history.step(base));
+        out.putInt(n);
+
+        int[] qx = history.x(slot);
+        int[] qy = history.y(slot);
+        int[] qa = history.angle(slot);
+        if (base < 0) {
+            for (int i = 0; i < n; i++) {
+                out.putFloat(states.halfWidth[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putFloat(states.halfHeight[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(states.spriteId[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(states.tintId[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(states.flags[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(qx[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(qy[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putInt(qa[i]);
+            }
+        } else {
+            int[] bx = history.x(base);
+            int[] by = history.y(base);
+            int[] ba = history.angle(base);
+            // Prima la maschera (azzerata), poi i valori dei soli corpi cambiati
+            int maskStart = out.position();
+            int maskBytes = (n + 7) / 8;
+            for (int i = 0; i < maskBytes; i++) {
+                out.put((byte) 0);
+            }
+            for (int i = 0; i < n; i++) {
+                int dx = qx[i] - bx[i];
+                int dy = qy[i] - by[i];
+                int da = qa[i] - ba[i];
+                if ((dx | dy | da) == 0) {
+                    continue;
+                }
+                int maskIndex = maskStart + (i >> 3);
+                out.put(maskIndex, (byte) (out.get(maskIndex) | (1 << (i & 7))));
+                StateSyncFormat.putVarint(out, dx);
+                StateSyncFormat.putVarint(out, dy);
+                StateSyncFormat.putVarint(out, da);
+            }
+        }
+        out.putInt(0, out.position() - 4);
+        out.flip();
+    }
+
+    // Un client connesso: il frame in uscita e le conferme in arrivo
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(StateSyncFormat.ACK_BYTES * 64)
+                                        .order(StateSyncFormat.ORDER);
+        ByteBuffer out = ByteBuffer.allocateDirect(0);
+        SelectionKey key;
+        long ackedStep = StateSyncFormat.NO_BASE;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // Il buffer in uscita, vuoto e con almeno {@code capacity} byte
+        ByteBuffer prepare(int capacity) {
+            if (out.capacity() < capacity) {
+                out = ByteBuffer.allocateDirect(Math.max(capacity, out.capacity() * 2)).order(StateSyncFormat.ORDER);
+            }
+            out.clear();
+            return out;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasterizzatore software dei corpi dinamici, alternativo al drawBody di
+ * {@link SceneRenderer}: disegna in un framebuffer {@code int[]} (TYPE_INT_RGB) diviso
+ * in tile, elaborati in parallelo su un {@link ForkJoinPool}, e il frame finito viene
+ * copiato sul Graphics2D con un solo drawImage.
+ *
+ * Ad ogni frame, sul thread chiamante, i corpi vicini all'area da ridisegnare (cercati con
+ * un {@link BodyCuller}) vengono posizionati (interpolati come in SceneRenderer) e
+ * smistati nei tile toccati dal loro rettangolo di ingombro, in ordine di indice
+ * (l'ordine di disegno). Ogni tile riparte dallo strato statico
+ * ({@link #getBackground}, disegnato da SceneRenderer) e rasterizza i suoi corpi
+ * scrivendo solo nelle proprie righe: i tile non condividono pixel, quindi non servono
+ * lock. I tile fuori dall'area da ridisegnare vengono saltati.
+ *
+ * Il risultato riproduce quello di Java2D con VALUE_RENDER_QUALITY e antialiasing,
+ * seguendo la geometria esatta (Java2D, con la normalizzazione predefinita dei tratti
+ * usata dalla demo, sposta i vertici fino a un quarto di pixel):
+ * - rettangoli: copertura del riempimento e del bordo di 2 pixel stimata dalla distanza
+ *   del centro del pixel dal bordo (giunzioni a spigolo vivo come BasicStroke);
+ * - sprite: la variante scalata alla dimensione del corpo (bilineare, come
+ *   {@link SpriteSurfaces}), campionata con interpolazione bilineare in alfa
+ *   premoltiplicato; i corpi quasi allineati agli assi sono copiati a coordinate intere
+ *   come in SpriteSurfaces, poi il bordo semitrasparente di 1 pixel.
+ * Le differenze restano sui pixel di bordo (vedi TiledRendererTest, che confronta i due
+ * percorsi come li usa la demo). Gli hint di rendering del Graphics2D non si applicano.
+ *
+ * Da usare da un solo thread (quello che disegna).
+ */
+final class TiledRenderer {
+
+    static final int DEFAULT_TILE_SIZE = 64;
+
+    // Stesse soglie di SpriteSurfaces per il disegno senza rotazione
+    private static final float UPRIGHT_TOLERANCE_PX = 0.25f;
+    private static final float QUARTER_TURN = (float) (Math.PI / 2);
+
+    // Bordo dei rettangoli e degli sprite (come BODY_STROKE e SPRITE_STROKE)
+    private static final float BODY_STROKE_HALF_WIDTH = 1.0f;
+    private static final float SPRITE_STROKE_HALF_WIDTH = 0.5f;
+    // Margine del rettangolo di ingombro: mezzo bordo più l'antialiasing
+    private static final float BOUNDS_MARGIN = BODY_STROKE_HALF_WIDTH + 1.0f;
+
+    private static final int INITIAL_BODIES = 64;
+    private static final int INITIAL_BIN = 16;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+
+    private final BufferedImage frame;
+    private final int[] framePixels;
+    private final BufferedImage background;
+    private final int[] backgroundPixels;
+
+    private final ForkJoinPool pool;
+    private final TileTask[] tasks;
+    private final FrameTask frameTask = new FrameTask();
+    private TileTask[] active;
+    private int activeCount;
+
+    // Corpi per tile (indici nei dati del frame), in ordine di disegno
+    private final int[][] bins;
+    private final int[] binCounts;
+
+    // Corpi del frame corrente, posizionati sul thread chiamante
+    private int bodyCount;
+    private float[] centerX = new float[INITIAL_BODIES];
+    private float[] centerY = new float[INITIAL_BODIES];
+    private float[] cos = new float[INITIAL_BODIES];
+    private float[] sin = new float[INITIAL_BODIES];
+    private float[] halfWidth = new float[INITIAL_BODIES];
+    private float[] halfHeight = new float[INITIAL_BODIES];
+    private int[] fillColor = new int[INITIAL_BODIES];
+    private int[] borderColor = new int[INITIAL_BODIES];
+    private ScaledSprite[] sprites = new ScaledSprite[INITIAL_BODIES];
+
+    // Sprite scalati alle dimensioni dei corpi (della sorgente corrente): poche dimensioni,
+    // cercate in ordine senza allocare chiavi
+    private BufferedImage scaledSource;
+    private ScaledSprite[] scaled = new ScaledSprite[INITIAL_BIN];
+    private int scaledCount;
+
+    private final Rectangle area = new Rectangle();
+    // Corpi dinamici vicini all'area, da un indice spaziale sullo stato disegnato
+    private final BodyCuller culler = new BodyCuller(SimulationEngine.SPATIAL_CELL_SIZE);
+
+    /**
+     * @param parallelism Thread del pool; con 1 i tile sono elaborati dal thread chiamante
+     */
+    TiledRenderer(int width, int height, int tileSize, int parallelism) {
+        if (tileSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Dimensione dei tile e parallelismo devono essere positivi: "
+                                               + tileSize + ", " + parallelism);
+        }
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        framePixels = TintKernels.pixelsOf(frame);
+        background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        backgroundPixels = TintKernels.pixelsOf(background);
+
+        int tiles = tilesX * tilesY;
+        bins = new int[tiles][INITIAL_BIN];
+        binCounts = new int[tiles];
+        tasks = new TileTask[tiles];
+        for (int t = 0; t < tiles; t++) {
+            tasks[t] = new TileTask(t);
+        }
+        active = new TileTask[tiles];
+
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism, TiledRenderer::newWorker, null, false) : null;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("tile-renderer-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return Lo strato statico (sfondo e corpi statici) da cui riparte ogni tile;
+     *         chi lo ridisegna deve farlo prima di {@link #render}
+     */
+    BufferedImage getBackground() {
+        return background;
+    }
+
+    /**
+     * @return Il frame dell'ultimo {@link #render}
+     */
+    BufferedImage getFrame() {
+        return frame;
+    }
+
+    int getTileCount() {
+        return tasks.length;
+    }
+
+    int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * Termina i thread del pool.
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Disegna i corpi dinamici nel frame, sopra lo strato statico.
+     *
+     * @param states Stato dei corpi pubblicato dalla simulazione
+     * @param alpha Frazione del passo trascorsa, per interpolare tra gli ultimi due passi
+     * @param clip Area da ridisegnare: i tile che non la toccano restano come sono
+     * @param sprite Lo sprite (già colorato) dei corpi con sprite, o null per i rettangoli
+     * @param bodyColors Colori dei rettangoli per tintId
+     * @param borderColors Colori dei bordi dei rettangoli per tintId
+     * @param spriteBorderColor Colore del bordo degli sprite
+     */
+    void render(BodyStates states, float alpha, Rectangle clip, BufferedImage sprite,
+                Color[] bodyColors, Color[] borderColors, Color spriteBorderColor) {
+        if (sprite != scaledSource) {
+            Arrays.fill(scaled, null);
+            scaledCount = 0;
+            scaledSource = sprite;
+        }
+        area.setBounds(0, 0, width, height);
+        Rectangle.intersect(area, clip, area);
+
+        // Posiziona i corpi e smistali nei tile (in ordine di disegno)
+        bodyCount = 0;
+        for (int t = 0; t < binCounts.length; t++) {
+            binCounts[t] = 0;
+        }
+        if (!area.isEmpty()) {
+            int visibleCount = culler.cull(states, area.x - BOUNDS_MARGIN, area.y - BOUNDS_MARGIN,
+                                           area.x + area.width + BOUNDS_MARGIN, area.y + area.height + BOUNDS_MARGIN);
+            int[] visible = culler.getVisible();
+            for (int v = 0; v < visibleCount; v++) {
+                prepare(states, visible[v], alpha, sprite, bodyColors, borderColors, spriteBorderColor);
+            }
+        }
+
+        // Tile da elaborare: quelli che toccano l'area, anche se senza corpi (sfondo)
+        activeCount = 0;
+        if (!area.isEmpty()) {
+            int tx0 = area.x / tileSize;
+            int ty0 = area.y / tileSize;
+            int tx1 = (area.x + area.width - 1) / tileSize;
+            int ty1 = (area.y + area.height - 1) / tileSize;
+            for (int ty = ty0; ty <= ty1; ty++) {
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    active[activeCount++] = tasks[ty * tilesX + tx];
+                }
+            }
+        }
+
+        if (pool == null) {
+            for (int t = 0; t < activeCount; t++) {
+                active[t].rasterize();
+            }
+        } else {
+            frameTask.reinitialize();
+            pool.invoke(frameTask);
+        }
+    }
+
+    private void prepare(BodyStates states, int index, float alpha, BufferedImage sprite,
+                         Color[] bodyColors, Color[] borderColors, Color spriteBorderColor) {
+        float x = states.interpolatedX(index, alpha);
+        float y = states.interpolatedY(index, alpha);
+        float angle = states.interpolatedAngle(index, alpha);
+        float hw = states.halfWidth[index];
+        float hh = states.halfHeight[index];
+
+        // Rettangolo di ingombro (vertici ruotati più il margine), come il culling di SceneRenderer
+        float c = (float) Math.cos(angle);
+        float s = (float) Math.sin(angle);
+        float extentX = Math.abs(hw * c) + Math.abs(hh * s) + BOUNDS_MARGIN;
+        float extentY = Math.abs(hw * s) + Math.abs(hh * c) + BOUNDS_MARGIN;
+        int minX = Math.max((int) Math.floor(x - extentX), area.x);
+        int minY = Math.max((int) Math.floor(y - extentY), area.y);
+        int maxX = Math.min((int) Math.ceil(x + extentX), area.x + area.width - 1);
+        int maxY = Math.min((int) Math.ceil(y + extentY), area.y + area.height - 1);
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        int b = bodyCount++;
+        if (b == centerX.length) {
+            growBodies();
+        }
+        centerX[b] = x;
+        centerY[b] = y;
+        cos[b] = c;
+        sin[b] = s;
+        halfWidth[b] = hw;
+        halfHeight[b] = hh;
+
+        boolean useSprite = sprite != null && states.spriteId[index] == SimulationEngine.SPRITE_CUBE;
+        sprites[b] = null;
+        if (useSprite) {
+            ScaledSprite scaledSprite = scaledSprite(sprite, (int) (hw * 2), (int) (hh * 2));
+            if (scaledSprite != null) {
+                sprites[b] = scaledSprite;
+                borderColor[b] = spriteBorderColor.getRGB();
+                snapUpright(b, angle, scaledSprite);
+            }
+        }
+        if (sprites[b] == null) {
+            fillColor[b] = bodyColors[states.tintId[index]].getRGB();
+            borderColor[b] = borderColors[states.tintId[index]].getRGB();
+        }
+
+        for (int ty = minY / tileSize; ty <= maxY / tileSize; ty++) {
+            for (int tx = minX / tileSize; tx <= maxX / tileSize; tx++) {
+                int t = ty * tilesX + tx;
+                if (binCounts[t] == bins[t].length) {
+                    bins[t] = Arrays.copyOf(bins[t], binCounts[t] * 2);
+                }
+                bins[t][binCounts[t]++] = b;
+            }
+        }
+    }
+
+    /**
+     * Come SpriteSurfaces: un corpo quasi allineato agli assi è disegnato senza
+     * rotazione, con l'angolo in alto a sinistra a coordinate intere. Qui si ottiene
+     * lo stesso campionamento portando angolo e centro ai valori esatti.
+     */
+    private void snapUpright(int b, float angle, ScaledSprite sprite) {
+        int offsetX = sprite.width / 2;
+        int offsetY = sprite.height / 2;
+        float cornerRadius = (float) Math.sqrt(offsetX * offsetX + offsetY * offsetY);
+        int turns = Math.round(angle / QUARTER_TURN);
+        if (Math.abs(angle - turns * QUARTER_TURN) * cornerRadius >= UPRIGHT_TOLERANCE_PX) {
+            return;
+        }
+        int quadrant = Math.floorMod(turns, 4);
+        // Angolo in alto a sinistra della superficie ruotata rispetto al centro (vedi SpriteSurfaces)
+        int originX;
+        int originY;
+        switch (quadrant) {
+            case 1:
+                originX = -offsetY;
+                originY = offsetX - sprite.width;
+                break;
+            case 2:
+                originX = offsetX - sprite.width;
+                originY = offsetY - sprite.height;
+                break;
+            case 3:
+                originX = offsetY - sprite.height;
+                originY = -offsetX;
+                break;
+            default:
+                originX = -offsetX;
+                originY = -offsetY;
+                break;
+        }
+        centerX[b] = Math.round(centerX[b] + originX) - originX;
+        centerY[b] = Math.round(centerY[b] + originY) - originY;
+        cos[b] = quadrant == 0 ? 1 : quadrant == 2 ? -1 : 0;
+        sin[b] = quadrant == 1 ? 1 : quadrant == 3 ? -1 : 0;
+    }
+
+    private void growBodies() {
+        int capacity = centerX.length * 2;
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        cos = Arrays.copyOf(cos, capacity);
+        sin = Arrays.copyOf(sin, capacity);
+        halfWidth = Arrays.copyOf(halfWidth, capacity);
+        halfHeight = Arrays.copyOf(halfHeight, capacity);
+        fillColor = Arrays.copyOf(fillColor, capacity);
+        borderColor = Arrays.copyOf(borderColor, capacity);
+        sprites = Arrays.copyOf(sprites, capacity);
+    }
+
+    // Sprite scalato alla dimensione del corpo, costruito al primo uso (sul thread chiamante)
+    private ScaledSprite scaledSprite(BufferedImage source, int spriteWidth, int spriteHeight) {
+        if (spriteWidth <= 0 || spriteHeight <= 0) {
+            return null;
+        }
+        for (int i = 0; i < scaledCount; i++) {
+            if (scaled[i].width == spriteWidth && scaled[i].height == spriteHeight) {
+                return scaled[i];
+            }
+        }
+        if (scaledCount == scaled.length) {
+            scaled = Arrays.copyOf(scaled, scaledCount * 2);
+        }
+        ScaledSprite sprite = new ScaledSprite(source, spriteWidth, spriteHeight);
+        scaled[scaledCount++] = sprite;
+        return sprite;
+    }
+
+    // --- Rasterizzazione di un tile ---
+
+    private void rasterizeTile(int tile) {
+        int x0 = (tile % tilesX) * tileSize;
+        int y0 = (tile / tilesX) * tileSize;
+        int x1 = Math.min(x0 + tileSize, width);
+        int y1 = Math.min(y0 + tileSize, height);
+
+        for (int y = y0; y < y1; y++) {
+            System.arraycopy(backgroundPixels, y * width + x0, framePixels, y * width + x0, x1 - x0);
+        }
+        int[] bin = bins[tile];
+        for (int n = 0; n < binCounts[tile]; n++) {
+            int b = bin[n];
+            if (sprites[b] != null) {
+                rasterizeSprite(b, x0, y0, x1, y1);
+            } else {
+                rasterizeRect(b, x0, y0, x1, y1);
+            }
+        }
+    }
+
+    private void rasterizeRect(int b, int x0, int y0, int x1, int y1) {
+        float hw = halfWidth[b];
+        float hh = halfHeight[b];
+        float c = cos[b];
+        float s = sin[b];
+        float reach = Math.abs(hw * c) + Math.abs(hh * s) + BOUNDS_MARGIN;
+        float reachY = Math.abs(hw * s) + Math.abs(hh * c) + BOUNDS_MARGIN;
+        int minX = Math.max(x0, (int) Math.floor(centerX[b] - reach));
+        int maxX = Math.min(x1, (int) Math.ceil(centerX[b] + reach));
+        int minY = Math.max(y0, (int) Math.floor(centerY[b] - reachY));
+        int maxY = Math.min(y1, (int) Math.ceil(centerY[b] + reachY));
+        int fill = fillColor[b];
+        int border = borderColor[b];
+
+        for (int py = minY; py < maxY; py++) {
+            float dy = py + 0.5f - centerY[b];
+            int row = py * width;
+            for (int px = minX; px < maxX; px++) {
+                float dx = px + 0.5f - centerX[b];
+                // Coordinate locali del centro del pixel e distanza (con segno) dal bordo
+                float lx = dx * c - dy * s;
+                float ly = dx * s + dy * c;
+                float d = Math.max(Math.abs(lx) - hw, Math.abs(ly) - hh);
+                if (d >= BODY_STROKE_HALF_WIDTH + 0.5f) {
+                    continue;
+                }
+                int pixel = framePixels[row + px];
+                float fillCoverage = clamp(0.5f - d);
+                if (fillCoverage > 0) {
+                    pixel = blend(pixel, fill, fillCoverage);
+                }
+                float borderCoverage = clamp(BODY_STROKE_HALF_WIDTH + 0.5f - Math.abs(d));
+                if (borderCoverage > 0) {
+                    pixel = blend(pixel, border, borderCoverage);
+                }
+                framePixels[row + px] = pixel;
+            }
+        }
+    }
+
+    private void rasterizeSprite(int b, int x0, int y0, int x1, int y1) {
+        ScaledSprite sprite = sprites[b];
+        float hw = halfWidth[b];
+        float hh = halfHeight[b];
+        float c = cos[b];
+        float s = sin[b];
+        float reach = Math.abs(hw * c) + Math.abs(hh * s) + BOUNDS_MARGIN;
+        float reachY = Math.abs(hw * s) + Math.abs(hh * c) + BOUNDS_MARGIN;
+        int minX = Math.max(x0, (int) Math.floor(centerX[b] - reach));
+        int maxX = Math.min(x1, (int) Math.ceil(centerX[b] + reach));
+        int minY = Math.max(y0, (int) Math.floor(centerY[b] - reachY));
+        int maxY = Math.min(y1, (int) Math.ceil(centerY[b] + reachY));
+        int border = borderColor[b];
+        float borderAlpha = (border >>> 24) / 255.0f;
+        // L'angolo in alto a sinistra dello sprite è a (-w/2, -h/2) dal centro, per difetto
+        float originX = sprite.width / 2;
+        float originY = sprite.height / 2;
+        int spriteWidth = sprite.width;
+        int spriteHeight = sprite.height;
+        int[] texels = sprite.premultiplied;
+
+        for (int py = minY; py < maxY; py++) {
+            float dy = py + 0.5f - centerY[b];
+            int row = py * width;
+            for (int px = minX; px < maxX; px++) {
+                float dx = px + 0.5f - centerX[b];
+                float lx = dx * c - dy * s;
+                float ly = dx * s + dy * c;
+                int pixel = framePixels[row + px];
+                boolean touched = false;
+
+                // Sprite: solo i pixel il cui centro cade nell'immagine (come il drawImage trasformato)
+                float u = lx + originX;
+                float v = ly + originY;
+                if (u >= 0 && v >= 0 && u < spriteWidth && v < spriteHeight) {
+                    pixel = over(pixel, sampleBilinear(texels, spriteWidth, spriteHeight, u - 0.5f, v - 0.5f));
+                    touched = true;
+                }
+
+                // Bordo del rettangolo del corpo
+                float d = Math.max(Math.abs(lx) - hw, Math.abs(ly) - hh);
+                float borderCoverage = clamp(SPRITE_STROKE_HALF_WIDTH + 0.5f - Math.abs(d));
+                if (borderCoverage > 0) {
+                    pixel = blend(pixel, border, borderCoverage * borderAlpha);
+                    touched = true;
+                }
+                if (touched) {
+                    framePixels[row + px] = pixel;
+                }
+            }
+        }
+    }
+
+    // Campione bilineare in alfa premoltiplicato, con i texel fuori dai bordi ripetuti
+    private static int sampleBilinear(int[] texels, int w, int h, float u, float v) {
+        int ix = (int) Math.floor(u);
+        int iy = (int) Math.floor(v);
+        float fx = u - ix;
+        float fy = v - iy;
+        int xa = Math.max(0, Math.min(w - 1, ix));
+        int xb = Math.max(0, Math.min(w - 1, ix + 1));
+        int ya = Math.max(0, Math.min(h - 1, iy));
+        int yb = Math.max(0, Math.min(h - 1, iy + 1));
+        int p00 = texels[ya * w + xa];
+        int p10 = texels[ya * w + xb];
+        int p01 = texels[yb * w + xa];
+        int p11 = texels[yb * w + xb];
+        float w00 = (1 - fx) * (1 - fy);
+        float w10 = fx * (1 - fy);
+        float w01 = (1 - fx) * fy;
+        float w11 = fx * fy;
+        int a = channel(p00, p10, p01, p11, 24, w00, w10, w01, w11);
+        int r = channel(p00, p10, p01, p11, 16, w00, w10, w01, w11);
+        int g = channel(p00, p10, p01, p11, 8, w00, w10, w01, w11);
+        int bl = channel(p00, p10, p01, p11, 0, w00, w10, w01, w11);
+        return (a << 24) | (r << 16) | (g << 8) | bl;
+    }
+
+    private static int channel(int p00, int p10, int p01, int p11, int shift,
+                               float w00, float w10, float w01, float w11) {
+        float value = ((p00 >>> shift) & 0xFF) * w00 + ((p10 >>> shift) & 0xFF) * w10
+                    + ((p01 >>> shift) & 0xFF) * w01 + ((p11 >>> shift) & 0xFF) * w11;
+        return Math.min(255, (int) (value + 0.5f));
+    }
+
+    // Sorgente premoltiplicata sopra una destinazione opaca (SrcOver)
+    private static int over(int dst, int src) {
+        int alpha = src >>> 24;
+        if (alpha == 0) {
+            return dst;
+        }
+        int inverse = 255 - alpha;
+        int r = ((src >> 16) & 0xFF) + div255(((dst >> 16) & 0xFF) * inverse);
+        int g = ((src >> 8) & 0xFF) + div255(((dst >> 8) & 0xFF) * inverse);
+        int b = (src & 0xFF) + div255((dst & 0xFF) * inverse);
+        return 0xFF000000 | (Math.min(255, r) << 16) | (Math.min(255, g) << 8) | Math.min(255, b);
+    }
+
+    // Colore opaco (alfa ignorato) sopra la destinazione con la copertura data
+    private static int blend(int dst, int color, float coverage) {
+        if (coverage >= 1) {
+            return 0xFF000000 | color;
+        }
+        int a = (int) (coverage * 255 + 0.5f);
+        int inverse = 255 - a;
+        int r = div255(((color >> 16) & 0xFF) * a + ((dst >> 16) & 0xFF) * inverse);
+        int g = div255(((color >> 8) & 0xFF) * a + ((dst >> 8) & 0xFF) * inverse);
+        int b = div255((color & 0xFF) * a + (dst & 0xFF) * inverse);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int div255(int value) {
+        return (value + 128 + ((value + 128) >> 8)) >> 8;
+    }
+
+    private static float clamp(float value) {
+        return value <= 0 ? 0 : value >= 1 ? 1 : value;
+    }
+
+    // Sprite scalato con interpolazione bilineare, come le superfici di SpriteSurfaces
+    private static final class ScaledSprite {
+        final int width;
+        final int height;
+        final int[] premultiplied;
+
+        ScaledSprite(BufferedImage source, int width, int height) {
+            this.width = width;
+            this.height = height;
+            BufferedImage image = TintKernels.createArgb(width, height);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+            g.dispose();
+
+            premultiplied = TintKernels.pixelsOf(image);
+            for (int i = 0; i < premultiplied.length; i++) {
+                int argb = premultiplied[i];
+                int a = argb >>> 24;
+                premultiplied[i] = (a << 24)
+                    | (div255(((argb >> 16) & 0xFF) * a) << 16)
+                    | (div255(((argb >> 8) & 0xFF) * a) << 8)
+                    | div255((argb & 0xFF) * a);
+            }
+        }
+    }
+
+    // Elabora i tile attivi: tutti tranne l'ultimo in parallelo, l'ultimo qui
+    private final class FrameTask extends RecursiveAction {
+        @Override
+        protected void compute() {
+            for (int t = 0; t < activeCount - 1; t++) {
+                active[t].reinitialize();
+                active[t].fork();
+            }
+            if (activeCount > 0) {
+                active[activeCount - 1].rasterize();
+            }
+            for (int t = 0; t < activeCount - 1; t++) {
+                active[t].join();
+            }
+        }
+    }
+
+    private final class TileTask extends RecursiveAction {
+        private final int tile;
+
+        TileTask(int tile) {
+            this.tile = tile;
+        }
+
+        void rasterize() {
+            rasterizeTile(tile);
+        }
+
+        @Override
+        protected void compute() {
+            rasterizeTile(tile);
+        }
+    }
+}
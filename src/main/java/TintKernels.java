@@ -0,0 +1,187 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Motore di colorazione (tint) che lavora direttamente sull'array {@code int[]}
+ * di un'immagine {@code TYPE_INT_ARGB}, evitando le conversioni del color model
+ * di {@code getRGB}/{@code setRGB} pixel per pixel.
+ *
+ * La moltiplicazione float + clamp di ogni canale è sostituita da una tabella di
+ * lookup (256 valori) per canale, calcolata con la stessa formula: i risultati
+ * sono quindi identici bit a bit a quelli dei metodi {@code apply*Tint} originali
+ * (vedi TintKernelsTest). {@link #tint}, {@link #regionTint} e {@link #colorMaskedTint}
+ * sono il riferimento con cui si confrontano {@link TintPipeline} e {@link ColorMaskIndex}.
+ */
+final class TintKernels {
+
+    private TintKernels() {
+    }
+
+    /**
+     * Colora l'intera immagine.
+     */
+    static BufferedImage tint(BufferedImage source, Color tintColor) {
+        if (source == null || tintColor == null) {
+            return source;
+        }
+
+        BufferedImage tinted = createArgb(source.getWidth(), source.getHeight());
+        int[] pixels = pixelsOf(tinted);
+        readArgb(source, pixels);
+
+        tintSpan(pixels, 0, pixels.length,
+                 channelLut(tintColor.getRed()),
+                 channelLut(tintColor.getGreen()),
+                 channelLut(tintColor.getBlue()));
+        return tinted;
+    }
+
+    /**
+     * Colora solo una regione rettangolare.
+     * Le righe fuori dalla regione sono solo copiate (System.arraycopy), senza essere esaminate.
+     */
+    static BufferedImage regionTint(BufferedImage source, Color tintColor,
+                                    int regionX, int regionY, int regionWidth, int regionHeight) {
+        if (source == null || tintColor == null) {
+            return source;
+        }
+
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage tinted = createArgb(width, height);
+        int[] pixels = pixelsOf(tinted);
+        readArgb(source, pixels);
+
+        // Limita la regione ai bordi dell'immagine (come il test inRegion originale)
+        int x0 = Math.max(0, regionX);
+        int y0 = Math.max(0, regionY);
+        int x1 = (int) Math.min(width, (long) regionX + regionWidth);
+        int y1 = (int) Math.min(height, (long) regionY + regionHeight);
+        if (x0 >= x1 || y0 >= y1) {
+            return tinted;
+        }
+
+        int[] lutR = channelLut(tintColor.getRed());
+        int[] lutG = channelLut(tintColor.getGreen());
+        int[] lutB = channelLut(tintColor.getBlue());
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            tintSpan(pixels, row + x0, row + x1, lutR, lutG, lutB);
+        }
+        return tinted;
+    }
+
+    /**
+     * Colora solo i pixel simili a un colore target.
+     */
+    static BufferedImage colorMaskedTint(BufferedImage source, Color tintColor,
+                                         Color targetColor, int tolerance) {
+        if (source == null || tintColor == null || targetColor == null) {
+            return source;
+        }
+
+        BufferedImage tinted = createArgb(source.getWidth(), source.getHeight());
+        int[] pixels = pixelsOf(tinted);
+        readArgb(source, pixels);
+
+        int[] lutR = channelLut(tintColor.getRed());
+        int[] lutG = channelLut(tintColor.getGreen());
+        int[] lutB = channelLut(tintColor.getBlue());
+        int targetR = targetColor.getRed();
+        int targetG = targetColor.getGreen();
+        int targetB = targetColor.getBlue();
+
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int red = (pixel >> 16) & 0xff;
+            int green = (pixel >> 8) & 0xff;
+            int blue = pixel & 0xff;
+
+            if (Math.abs(red - targetR) <= tolerance
+                && Math.abs(green - targetG) <= tolerance
+                && Math.abs(blue - targetB) <= tolerance) {
+                pixels[i] = (pixel & 0xff000000) | (lutR[red] << 16) | (lutG[green] << 8) | lutB[blue];
+            }
+        }
+        return tinted;
+    }
+
+    /**
+     * Tabella di lookup per un canale: {@code lut[c] = clamp((int)(c * tint / 255f))}.
+     * Stessa aritmetica float dei metodi originali, per risultati identici.
+     */
+    static int[] channelLut(int tintComponent) {
+        float factor = tintComponent / 255.0f;
+        int[] lut = new int[256];
+        for (int c = 0; c < 256; c++) {
+            int value = (int) (c * factor);
+            lut[c] = Math.min(255, Math.max(0, value));
+        }
+        return lut;
+    }
+
+    /**
+     * Applica le tabelle di lookup ai pixel nell'intervallo [from, to), mantenendo l'alpha.
+     */
+    static void tintSpan(int[] pixels, int from, int to, int[] lutR, int[] lutG, int[] lutB) {
+        for (int i = from; i < to; i++) {
+            int pixel = pixels[i];
+            pixels[i] = (pixel & 0xff000000)
+                      | (lutR[(pixel >> 16) & 0xff] << 16)
+                      | (lutG[(pixel >> 8) & 0xff] << 8)
+                      | lutB[pixel & 0xff];
+        }
+    }
+
+    /**
+     * Crea un'immagine TYPE_INT_ARGB vuota.
+     */
+    static BufferedImage createArgb(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Restituisce l'array di pixel che fa da backing a un'immagine TYPE_INT_ARGB
+     * creata da {@link #createArgb}. Le scritture sono visibili direttamente nell'immagine.
+     */
+    static int[] pixelsOf(BufferedImage argb) {
+        return ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Copia i pixel ARGB della sorgente in {@code dest} (riga per riga, larghezza = larghezza immagine).
+     * Se la sorgente è già TYPE_INT_ARGB le righe sono copiate con System.arraycopy
+     * dal suo raster (anche per le sub-immagini), altrimenti si usa il getRGB a blocchi.
+     */
+    static void readArgb(BufferedImage source, int[] dest) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        WritableRaster raster = source.getRaster();
+        if (source.getType() == BufferedImage.TYPE_INT_ARGB
+            && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+            && raster.getDataBuffer() instanceof DataBufferInt) {
+            SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int stride = model.getScanlineStride();
+            int offset = buffer.getOffset()
+                       - raster.getSampleModelTranslateY() * stride
+                       - raster.getSampleModelTranslateX();
+            int[] data = buffer.getData();
+
+            if (offset == 0 && stride == width) {
+                System.arraycopy(data, 0, dest, 0, width * height);
+            } else {
+                for (int y = 0; y < height; y++) {
+                    System.arraycopy(data, offset + y * stride, dest, y * width, width);
+                }
+            }
+            return;
+        }
+
+        source.getRGB(0, 0, width, height, dest, 0, width);
+    }
+}
@@ -0,0 +1,385 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Pipeline dichiarativa di colorazione: una lista ordinata di passaggi
+ * (tint completo, tint di una regione rettangolare, tint per maschera di colore)
+ * con la stessa semantica di {@link TintKernels#tint}, {@link TintKernels#regionTint}
+ * e {@link TintKernels#colorMaskedTint} applicati in sequenza, con una differenza: ogni
+ * maschera sceglie i pixel sul colore dello sprite originale, non su quello risultante
+ * dai passaggi precedenti (il suo tint si applica invece al colore corrente).
+ *
+ * Invece di creare un'immagine intermedia per ogni passaggio, la pipeline scrive una
+ * sola immagine di output:
+ * - i passaggi consecutivi senza maschera sono compilati in un unico passaggio sui
+ *   pixel: l'immagine è divisa in celle dai bordi delle regioni, in ogni cella
+ *   l'insieme dei passaggi attivi è costante e i loro tint (trasformazioni per canale)
+ *   sono composti in una sola tabella di lookup, quindi costano una lookup per canale
+ *   qualunque sia il loro numero;
+ * - i passaggi consecutivi con maschera sono applicati da {@link ColorMaskIndex#apply}
+ *   con gli intervalli calcolati una volta per sprite, quindi costano solo i pixel
+ *   delle maschere.
+ *
+ * La pipeline è immutabile e implementa equals/hashCode, quindi può essere usata
+ * come ricetta in {@link TintedSpriteCache}.
+ */
+final class TintPipeline implements UnaryOperator<BufferedImage> {
+
+    private static final int FULL = 0;
+    private static final int REGION = 1;
+    private static final int MASK = 2;
+
+    private static final TintPipeline EMPTY = new TintPipeline(new Stage[0]);
+
+    private final Stage[] stages;
+    // Gruppi di passaggi consecutivi con e senza maschera, nell'ordine della pipeline
+    private final Segment[] segments;
+
+    // La pipeline è immutabile: l'hash (usato ad ogni ricerca in cache) si calcola una volta
+    private final int hash;
+
+    private TintPipeline(Stage[] stages) {
+        this.stages = stages;
+        this.hash = Arrays.hashCode(stages);
+
+        List<Segment> groups = new ArrayList<>();
+        int start = 0;
+        for (int s = 1; s <= stages.length; s++) {
+            if (s == stages.length || (stages[s].kind == MASK) != (stages[start].kind == MASK)) {
+                groups.add(new Segment(Arrays.copyOfRange(stages, start, s)));
+                start = s;
+            }
+        }
+        this.segments = groups.toArray(new Segment[0]);
+    }
+
+    /**
+     * @return Una pipeline vuota, che restituisce l'immagine sorgente invariata
+     */
+    static TintPipeline create() {
+        return EMPTY;
+    }
+
+    /**
+     * Aggiunge un tint dell'intera immagine (come {@link TintKernels#tint}).
+     * Un colore null non aggiunge alcun passaggio.
+     */
+    TintPipeline tint(Color tintColor) {
+        if (tintColor == null) {
+            return this;
+        }
+        return with(new Stage(FULL, tintColor.getRGB(), 0, 0, 0, 0, 0, 0));
+    }
+
+    /**
+     * Aggiunge un tint di una regione rettangolare (come {@link TintKernels#regionTint}).
+     */
+    TintPipeline partialTint(Color tintColor, int regionX, int regionY, int regionWidth, int regionHeight) {
+        if (tintColor == null) {
+            return this;
+        }
+        return with(new Stage(REGION, tintColor.getRGB(), regionX, regionY, regionWidth, regionHeight, 0, 0));
+    }
+
+    /**
+     * Aggiunge un tint dei soli pixel simili a un colore target (come {@link TintKernels#colorMaskedTint}).
+     * Il test usa il colore del pixel nello sprite originale, anche dopo altri passaggi:
+     * i pixel scelti sono sempre gli stessi, qualunque colore abbiano ricevuto prima.
+     */
+    TintPipeline colorMaskedTint(Color tintColor, Color targetColor, int tolerance) {
+        if (tintColor == null || targetColor == null) {
+            return this;
+        }
+        return with(new Stage(MASK, tintColor.getRGB(), 0, 0, 0, 0, targetColor.getRGB(), tolerance));
+    }
+
+    /**
+     * @return Il numero di passaggi della pipeline
+     */
+    int size() {
+        return stages.length;
+    }
+
+    /**
+     * Applica tutti i passaggi: un passaggio sui pixel per ogni gruppo di passaggi senza
+     * maschera, i soli pixel delle maschere per quelli con maschera.
+     *
+     * @param source L'immagine sorgente
+     * @return Una nuova immagine TYPE_INT_ARGB, o la sorgente se la pipeline è vuota
+     */
+    @Override
+    public BufferedImage apply(BufferedImage source) {
+        if (source == null || stages.length == 0) {
+            return source;
+        }
+
+        BufferedImage tinted = TintKernels.createArgb(source.getWidth(), source.getHeight());
+        int[] pixels = TintKernels.pixelsOf(tinted);
+        TintKernels.readArgb(source, pixels);
+        for (Segment segment : segments) {
+            segment.apply(source, pixels);
+        }
+        return tinted;
+    }
+
+    private TintPipeline with(Stage stage) {
+        Stage[] next = Arrays.copyOf(stages, stages.length + 1);
+        next[stages.length] = stage;
+        return new TintPipeline(next);
+    }
+
+    // Composizione di due tabelle: prima "first", poi "then" (null = identità)
+    private static int[] compose(int[] first, int[] then) {
+        if (first == null) {
+            return then;
+        }
+        int[] composed = new int[768];
+        for (int c = 0; c < 256; c++) {
+            composed[c] = then[first[c]];
+            composed[256 + c] = then[256 + first[256 + c]];
+            composed[512 + c] = then[512 + first[512 + c]];
+        }
+        return composed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof TintPipeline && Arrays.equals(stages, ((TintPipeline) o).stages));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "TintPipeline" + Arrays.toString(stages);
+    }
+
+    // Un passaggio della pipeline
+    private static final class Stage {
+        final int kind;
+        final int tintRgb;
+        final int x, y, width, height;
+        final int targetRgb;
+        final int tolerance;
+        // Tabelle di lookup concatenate: rosso [0, 256), verde [256, 512), blu [512, 768)
+        final int[] lut;
+        // Maschera e tint per ColorMaskIndex (solo per i passaggi con maschera)
+        final ColorMaskIndex.MaskTint mask;
+
+        Stage(int kind, int tintRgb, int x, int y, int width, int height, int targetRgb, int tolerance) {
+            this.kind = kind;
+            this.tintRgb = tintRgb & 0xffffff;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.targetRgb = targetRgb & 0xffffff;
+            this.tolerance = tolerance;
+
+            this.lut = new int[768];
+            System.arraycopy(TintKernels.channelLut((tintRgb >> 16) & 0xff), 0, lut, 0, 256);
+            System.arraycopy(TintKernels.channelLut((tintRgb >> 8) & 0xff), 0, lut, 256, 256);
+            System.arraycopy(TintKernels.channelLut(tintRgb & 0xff), 0, lut, 512, 256);
+            this.mask = kind == MASK ? new ColorMaskIndex.MaskTint(tintRgb, targetRgb, tolerance) : null;
+        }
+
+        int clampedStart(int extent, boolean horizontal) {
+            int start = horizontal ? x : y;
+            return Math.max(0, Math.min(extent, start));
+        }
+
+        int clampedEnd(int extent, boolean horizontal) {
+            long end = horizontal ? (long) x + width : (long) y + height;
+            return (int) Math.max(0, Math.min(extent, end));
+        }
+
+        // Vero se il passaggio agisce sulla cella che inizia in (cellX, cellY)
+        boolean covers(int cellX, int cellY, int imageWidth, int imageHeight) {
+            if (kind != REGION) {
+                return true;
+            }
+            return cellX >= clampedStart(imageWidth, true) && cellX < clampedEnd(imageWidth, true)
+                && cellY >= clampedStart(imageHeight, false) && cellY < clampedEnd(imageHeight, false);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stage)) {
+                return false;
+            }
+            Stage other = (Stage) o;
+            return kind == other.kind && tintRgb == other.tintRgb
+                && x == other.x && y == other.y && width == other.width && height == other.height
+                && targetRgb == other.targetRgb && tolerance == other.tolerance;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = kind;
+            result = 31 * result + tintRgb;
+            result = 31 * result + x;
+            result = 31 * result + y;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + targetRgb;
+            return 31 * result + tolerance;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case FULL:
+                    return String.format("tint(#%06x)", tintRgb);
+                case REGION:
+                    return String.format("partialTint(#%06x, %d, %d, %d, %d)", tintRgb, x, y, width, height);
+                default:
+                    return String.format("colorMaskedTint(#%06x, #%06x, %d)", tintRgb, targetRgb, tolerance);
+            }
+        }
+    }
+
+    /**
+     * Passaggi consecutivi tutti con maschera, applicati da {@link ColorMaskIndex}, o
+     * tutti senza, compilati in un piano: una tabella di lookup per cella.
+     */
+    private static final class Segment {
+        private final Stage[] planned;
+        private final ColorMaskIndex.MaskTint[] masks;
+
+        // Ultimo piano compilato (dipende solo dalle dimensioni dell'immagine)
+        private volatile Plan lastPlan;
+
+        Segment(Stage[] stages) {
+            if (stages[0].kind == MASK) {
+                planned = null;
+                masks = new ColorMaskIndex.MaskTint[stages.length];
+                for (int s = 0; s < stages.length; s++) {
+                    masks[s] = stages[s].mask;
+                }
+            } else {
+                planned = stages;
+                masks = null;
+            }
+        }
+
+        void apply(BufferedImage source, int[] pixels) {
+            if (masks != null) {
+                ColorMaskIndex.apply(source, pixels, masks);
+                return;
+            }
+
+            int width = source.getWidth();
+            Plan plan = planFor(width, source.getHeight());
+            for (int cy = 0; cy < plan.ys.length - 1; cy++) {
+                for (int cx = 0; cx < plan.xs.length - 1; cx++) {
+                    int[] lut = plan.luts[cy * (plan.xs.length - 1) + cx];
+                    if (lut == null) {
+                        continue;
+                    }
+                    int x0 = plan.xs[cx];
+                    int x1 = plan.xs[cx + 1];
+                    for (int y = plan.ys[cy]; y < plan.ys[cy + 1]; y++) {
+                        int row = y * width;
+                        run(pixels, row + x0, row + x1, lut);
+                    }
+                }
+            }
+        }
+
+        private Plan planFor(int width, int height) {
+            Plan plan = lastPlan;
+            if (plan == null || plan.width != width || plan.height != height) {
+                plan = compile(width, height);
+                lastPlan = plan;
+            }
+            return plan;
+        }
+
+        /**
+         * Divide l'immagine in celle dai bordi delle regioni e compone i tint dei passaggi
+         * attivi in ogni cella. Celle con lo stesso insieme di passaggi attivi condividono
+         * la stessa tabella.
+         */
+        private Plan compile(int width, int height) {
+            int[] xs = breakpoints(width, true);
+            int[] ys = breakpoints(height, false);
+            int columns = xs.length - 1;
+            int rows = ys.length - 1;
+
+            int[][] luts = new int[columns * rows][];
+            Map<String, int[]> shared = new HashMap<>();
+            boolean[] active = new boolean[planned.length];
+
+            for (int cy = 0; cy < rows; cy++) {
+                for (int cx = 0; cx < columns; cx++) {
+                    StringBuilder key = new StringBuilder(planned.length);
+                    for (int s = 0; s < planned.length; s++) {
+                        active[s] = planned[s].covers(xs[cx], ys[cy], width, height);
+                        key.append(active[s] ? '1' : '0');
+                    }
+                    luts[cy * columns + cx] = shared.computeIfAbsent(key.toString(), k -> composeActive(active));
+                }
+            }
+            return new Plan(width, height, xs, ys, luts);
+        }
+
+        private int[] breakpoints(int extent, boolean horizontal) {
+            List<Integer> points = new ArrayList<>();
+            points.add(0);
+            points.add(extent);
+            for (Stage stage : planned) {
+                if (stage.kind == REGION) {
+                    points.add(stage.clampedStart(extent, horizontal));
+                    points.add(stage.clampedEnd(extent, horizontal));
+                }
+            }
+            return points.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        }
+
+        // Tabella composta dei passaggi attivi (null = nessun passaggio, pixel invariati)
+        private int[] composeActive(boolean[] active) {
+            int[] lut = null;
+            for (int s = 0; s < planned.length; s++) {
+                if (active[s]) {
+                    lut = compose(lut, planned[s].lut);
+                }
+            }
+            return lut;
+        }
+
+        // Applica la tabella concatenata ai pixel nell'intervallo [from, to), mantenendo l'alpha
+        private static void run(int[] pixels, int from, int to, int[] lut) {
+            for (int i = from; i < to; i++) {
+                int pixel = pixels[i];
+                pixels[i] = (pixel & 0xff000000)
+                          | (lut[(pixel >> 16) & 0xff] << 16)
+                          | (lut[256 + ((pixel >> 8) & 0xff)] << 8)
+                          | lut[512 + (pixel & 0xff)];
+            }
+        }
+    }
+
+    // Piano compilato per una dimensione d'immagine
+    private static final class Plan {
+        final int width, height;
+        final int[] xs, ys;
+        final int[][] luts;
+
+        Plan(int width, int height, int[] xs, int[] ys, int[][] luts) {
+            this.width = width;
+            this.height = height;
+            this.xs = xs;
+            this.ys = ys;
+            this.luts = luts;
+        }
+    }
+}
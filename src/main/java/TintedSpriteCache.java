@@ -0,0 +1,167 @@
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache delle varianti colorate (tinted) degli sprite.
+ * Ogni variante è identificata dalla coppia (sprite sorgente, ricetta di colorazione):
+ * la sorgente è confrontata per identità, la ricetta tramite equals/hashCode
+ * (deve quindi essere un valore immutabile: colori, regioni, maschere...).
+ * Le varianti vengono costruite una sola volta e mantenute con politica LRU.
+ */
+final class TintedSpriteCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Key, BufferedImage> entries;
+
+    // Chiave riusata per le ricerche: evita allocazioni quando la cache colpisce
+    private final Key probe = new Key();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity Numero massimo di varianti mantenute in memoria
+     */
+    TintedSpriteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacità deve essere positiva: " + capacity);
+        }
+        this.capacity = capacity;
+        // accessOrder = true: l'iterazione parte dalla voce usata meno di recente
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                if (size() > TintedSpriteCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Restituisce la variante colorata di uno sprite, costruendola solo al primo accesso.
+     *
+     * @param source Lo sprite sorgente
+     * @param recipe La ricetta di colorazione (valore immutabile con equals/hashCode)
+     * @param builder Funzione che costruisce la variante a partire dalla sorgente
+     * @return La variante colorata, o la sorgente se è null
+     */
+    synchronized BufferedImage get(BufferedImage source, Object recipe, UnaryOperator<BufferedImage> builder) {
+        if (source == null) {
+            return null;
+        }
+
+        probe.set(source, recipe);
+        BufferedImage cached = entries.get(probe);
+        probe.set(null, null);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+
+        misses++;
+        BufferedImage built = builder.apply(source);
+        entries.put(new Key(source, recipe), built);
+        return built;
+    }
+
+    /**
+     * Restituisce la variante colorata solo se è già in cache, senza costruirla né
+     * contarla tra hit e miss.
+     *
+     * @return La variante, o null se non è in cache
+     */
+    synchronized BufferedImage peek(BufferedImage source, Object recipe) {
+        if (source == null) {
+            return null;
+        }
+        probe.set(source, recipe);
+        BufferedImage cached = entries.get(probe);
+        probe.set(null, null);
+        return cached;
+    }
+
+    /**
+     * Inserisce una variante già pronta (ad esempio pre-calcolata in fase di build),
+     * così il primo {@link #get} la trova senza costruirla.
+     */
+    synchronized void put(BufferedImage source, Object recipe, BufferedImage variant) {
+        entries.put(new Key(source, recipe), variant);
+    }
+
+    /**
+     * Svuota la cache (ad esempio quando lo sprite sorgente viene ricaricato).
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TintedSpriteCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                             entries.size(), capacity, hits, misses, evictions);
+    }
+
+    // Chiave (sorgente per identità, ricetta per valore)
+    private static final class Key {
+        private BufferedImage source;
+        private Object recipe;
+        private int hash;
+
+        Key() {
+        }
+
+        Key(BufferedImage source, Object recipe) {
+            set(source, recipe);
+        }
+
+        void set(BufferedImage source, Object recipe) {
+            this.source = source;
+            this.recipe = recipe;
+            this.hash = 31 * System.identityHashCode(source) + (recipe == null ? 0 : recipe.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return source == other.source
+                && (recipe == null ? other.recipe == null : recipe.equals(other.recipe));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
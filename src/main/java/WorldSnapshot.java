@@ -0,0 +1,357 @@
+import org.jbox2d.collision.ContactID;
+import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.ManifoldPoint;
+import org.jbox2d.common.Settings;
+import org.jbox2d.common.Transform;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.ContactManager;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.contacts.Contact;
+
+import java.util.Arrays;
+
+/**
+ * Istantanea dello stato dinamico di un World, da ripristinare negli stessi oggetti
+ * Body senza ricrearli.
+ *
+ * Per ogni corpo (nell'ordine della lista del World) salva trasformazione, sweep,
+ * velocità, forze accumulate, tempo di inattività e flag di sonno; per ogni contatto
+ * i corpi e le fixture coinvolti, i flag e il manifold con gli impulsi, usati dal
+ * solver per il warm starting del passo successivo. Tutto sta in array primitivi
+ * riusati tra una cattura e l'altra: a regime né {@link #capture} né {@link #restore}
+ * allocano, e costano O(corpi + contatti).
+ *
+ * Il ripristino riporta la lista dei contatti allo stesso ordine (l'ordine conta per
+ * il solver), riusando i contatti esistenti o quelli del pool di JBox2D. L'albero
+ * del broadphase invece non viene salvato: i proxy vengono solo spostati nelle nuove
+ * posizioni, quindi l'ordine in cui nasceranno i contatti successivi può differire e
+ * una simulazione lunga dopo il ripristino può divergere di poco dall'originale.
+ *
+ * Vale solo per lo stesso World con gli stessi corpi e fixture della cattura.
+ */
+final class WorldSnapshot {
+
+    // Valori per corpo: p(2), q(2), sweep c0(2) c(2) a0 a alpha0, v(2), w, forza(2), coppia, sonno
+    private static final int BODY_FLOATS = 18;
+    // Flag del corpo ripristinati (gli altri dipendono dalla costruzione o dal solver)
+    private static final int BODY_FLAG_MASK = Body.e_awakeFlag | Body.e_toiFlag;
+
+    // Valori per contatto: corpo, fixture e figlio di A e B, flag, tipo di manifold, punti, id dei punti
+    private static final int CONTACT_INTS = 9 + Settings.maxManifoldPoints;
+    // normale(2), punto(2), toiCount, toi, attrito, restituzione, velocità tangente, per punto 4 valori
+    private static final int CONTACT_FLOATS = 9 + 4 * Settings.maxManifoldPoints;
+
+    private static final Manifold.ManifoldType[] MANIFOLD_TYPES = Manifold.ManifoldType.values();
+
+    private float[] bodyFloats = new float[0];
+    private int[] bodyFlags = new int[0];
+    private int bodyCount;
+
+    private float[] contactFloats = new float[0];
+    private int[] contactInts = new int[0];
+    private int contactCount;
+
+    // Corpi del World per indice, riempito a ogni cattura e ripristino
+    private Body[] bodies = new Body[0];
+    private final Vec2 position = new Vec2();
+
+    // Stato di SimulationEngine ed EntityRegistry al momento della cattura
+    long stepCount;
+    int contactCounter;
+    int layoutVersion;
+
+    /**
+     * Salva lo stato dinamico di tutti i corpi e contatti del World.
+     */
+    void capture(World world) {
+        bodyCount = indexBodies(world);
+        ensureBodyCapacity(bodyCount);
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            // Indice del corpo per i contatti: m_islandIndex viene riscritto dal solver prima di ogni uso
+            body.m_islandIndex = i;
+            int k = i * BODY_FLOATS;
+            float[] f = bodyFloats;
+            Transform xf = body.m_xf;
+            f[k] = xf.p.x;
+            f[k + 1] = xf.p.y;
+            f[k + 2] = xf.q.s;
+            f[k + 3] = xf.q.c;
+            f[k + 4] = body.m_sweep.c0.x;
+            f[k + 5] = body.m_sweep.c0.y;
+            f[k + 6] = body.m_sweep.c.x;
+            f[k + 7] = body.m_sweep.c.y;
+            f[k + 8] = body.m_sweep.a0;
+            f[k + 9] = body.m_sweep.a;
+            f[k + 10] = body.m_sweep.alpha0;
+            f[k + 11] = body.m_linearVelocity.x;
+            f[k + 12] = body.m_linearVelocity.y;
+            f[k + 13] = body.m_angularVelocity;
+            f[k + 14] = body.m_force.x;
+            f[k + 15] = body.m_force.y;
+            f[k + 16] = body.m_torque;
+            f[k + 17] = body.m_sleepTime;
+            bodyFlags[i] = body.m_flags;
+        }
+
+        contactCount = 0;
+        ensureContactCapacity(world.getContactCount());
+        for (Contact c = world.getContactList(); c != null; c = c.getNext()) {
+            captureContact(c, contactCount++);
+        }
+    }
+
+    private void captureContact(Contact c, int index) {
+        int[] n = contactInts;
+        int k = index * CONTACT_INTS;
+        n[k] = c.m_fixtureA.getBody().m_islandIndex;
+        n[k + 1] = fixtureIndex(c.m_fixtureA);
+        n[k + 2] = c.m_indexA;
+        n[k + 3] = c.m_fixtureB.getBody().m_islandIndex;
+        n[k + 4] = fixtureIndex(c.m_fixtureB);
+        n[k + 5] = c.m_indexB;
+        n[k + 6] = c.m_flags;
+        Manifold manifold = c.m_manifold;
+        // Un contatto mai toccato non ha ancora un tipo di manifold
+        n[k + 7] = manifold.type != null ? manifold.type.ordinal() : -1;
+        n[k + 8] = manifold.pointCount;
+
+        float[] f = contactFloats;
+        int j = index * CONTACT_FLOATS;
+        f[j] = manifold.localNormal.x;
+        f[j + 1] = manifold.localNormal.y;
+        f[j + 2] = manifold.localPoint.x;
+        f[j + 3] = manifold.localPoint.y;
+        f[j + 4] = c.m_toiCount;
+        f[j + 5] = c.m_toi;
+        f[j + 6] = c.m_friction;
+        f[j + 7] = c.m_restitution;
+        f[j + 8] = c.m_tangentSpeed;
+        for (int p = 0; p < manifold.pointCount; p++) {
+            ManifoldPoint point = manifold.points[p];
+            n[k + 9 + p] = packId(point.id);
+            int q = j + 9 + 4 * p;
+            f[q] = point.localPoint.x;
+            f[q + 1] = point.localPoint.y;
+            f[q + 2] = point.normalImpulse;
+            f[q + 3] = point.tangentImpulse;
+        }
+    }
+
+    /**
+     * Riporta il World allo stato dell'ultima {@link #capture}.
+     *
+     * @throws IllegalStateException Se il World è nel mezzo di un passo o non ha gli
+     *                               stessi corpi della cattura
+     */
+    void restore(World world) {
+        if (world.isLocked()) {
+            throw new IllegalStateException("Il World è nel mezzo di un passo");
+        }
+        if (indexBodies(world) != bodyCount) {
+            throw new IllegalStateException("Il World ha " + world.getBodyCount()
+                                            + " corpi, lo snapshot " + bodyCount);
+        }
+
+        // Trasformazioni: setTransform sposta anche i proxy nel broadphase
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            int k = i * BODY_FLOATS;
+            float[] f = bodyFloats;
+            Transform xf = body.m_xf;
+            if (xf.p.x != f[k] || xf.p.y != f[k + 1] || xf.q.s != f[k + 2] || xf.q.c != f[k + 3]) {
+                position.set(f[k], f[k + 1]);
+                body.setTransform(position, f[k + 9]);
+                xf.q.s = f[k + 2];
+                xf.q.c = f[k + 3];
+            }
+            body.m_sweep.c0.set(f[k + 4], f[k + 5]);
+            body.m_sweep.c.set(f[k + 6], f[k + 7]);
+            body.m_sweep.a0 = f[k + 8];
+            body.m_sweep.a = f[k + 9];
+            body.m_sweep.alpha0 = f[k + 10];
+            body.m_linearVelocity.set(f[k + 11], f[k + 12]);
+            body.m_angularVelocity = f[k + 13];
+            body.m_force.set(f[k + 14], f[k + 15]);
+            body.m_torque = f[k + 16];
+            body.m_sleepTime = f[k + 17];
+        }
+
+        restoreContacts(world);
+
+        // Flag per ultimi: creare contatti e spostare corpi non deve cambiare chi dorme
+        for (int i = 0; i < bodyCount; i++) {
+            Body body = bodies[i];
+            body.m_flags = (body.m_flags & ~BODY_FLAG_MASK) | (bodyFlags[i] & BODY_FLAG_MASK);
+        }
+    }
+
+    /**
+     * Riporta la lista dei contatti a quella salvata, nello stesso ordine. I contatti
+     * nuovi vengono inseriti in testa (alla lista del World e a quelle dei corpi), quindi
+     * i contatti attuali che formano, nell'ordine, la coda della lista salvata restano
+     * dove sono; gli altri tornano al pool e i mancanti vengono ricreati dall'ultimo al
+     * primo. Dopo pochi passi quasi tutti i contatti restano.
+     */
+    private void restoreContacts(World world) {
+        ContactManager contacts = world.getContactManager();
+        Contact tail = null;
+        for (Contact c = world.getContactList(); c != null; c = c.getNext()) {
+            c.m_flags &= ~Contact.ISLAND_FLAG;
+            tail = c;
+        }
+
+        // Risale la lista attuale cercando i contatti salvati dall'ultimo; ISLAND_FLAG
+        // (che il solver azzera prima di usarlo) marca quelli da tenere
+        int kept = contactCount;
+        Contact c = tail;
+        while (kept > 0 && c != null) {
+            Contact match = c;
+            while (match != null && !matches(match, kept - 1)) {
+                match = match.m_prev;
+            }
+            if (match == null) {
+                break;
+            }
+            kept--;
+            restoreContactState(match, kept);
+            match.m_flags |= Contact.ISLAND_FLAG;
+            c = match.m_prev;
+        }
+
+        c = world.getContactList();
+        while (c != null) {
+            Contact next = c.getNext();
+            if ((c.m_flags & Contact.ISLAND_FLAG) != 0) {
+                c.m_flags &= ~Contact.ISLAND_FLAG;
+            } else {
+                contacts.destroy(c);
+            }
+            c = next;
+        }
+
+        for (int i = kept - 1; i >= 0; i--) {
+            int k = i * CONTACT_INTS;
+            Fixture fixtureA = fixture(bodies[contactInts[k]], contactInts[k + 1]);
+            Fixture fixtureB = fixture(bodies[contactInts[k + 3]], contactInts[k + 4]);
+            contacts.addPair(fixtureA.m_proxies[contactInts[k + 2]], fixtureB.m_proxies[contactInts[k + 5]]);
+            Contact created = contacts.m_contactList;
+            // Con un filtro o corpi che non collidono più il contatto non viene creato
+            if (created != null && matches(created, i)) {
+                restoreContactState(created, i);
+            }
+        }
+    }
+
+    private boolean matches(Contact c, int index) {
+        int[] n = contactInts;
+        int k = index * CONTACT_INTS;
+        Fixture fixtureA = c.m_fixtureA;
+        Fixture fixtureB = c.m_fixtureB;
+        return fixtureA.getBody() == bodies[n[k]] && fixtureB.getBody() == bodies[n[k + 3]]
+            && c.m_indexA == n[k + 2] && c.m_indexB == n[k + 5]
+            && fixtureA == fixture(bodies[n[k]], n[k + 1]) && fixtureB == fixture(bodies[n[k + 3]], n[k + 4]);
+    }
+
+    private void restoreContactState(Contact c, int index) {
+        int[] n = contactInts;
+        int k = index * CONTACT_INTS;
+        c.m_flags = n[k + 6] & ~Contact.ISLAND_FLAG;
+        Manifold manifold = c.m_manifold;
+        manifold.type = n[k + 7] >= 0 ? MANIFOLD_TYPES[n[k + 7]] : null;
+        manifold.pointCount = n[k + 8];
+
+        float[] f = contactFloats;
+        int j = index * CONTACT_FLOATS;
+        manifold.localNormal.set(f[j], f[j + 1]);
+        manifold.localPoint.set(f[j + 2], f[j + 3]);
+        c.m_toiCount = f[j + 4];
+        c.m_toi = f[j + 5];
+        c.m_friction = f[j + 6];
+        c.m_restitution = f[j + 7];
+        c.m_tangentSpeed = f[j + 8];
+        for (int p = 0; p < manifold.pointCount; p++) {
+            ManifoldPoint point = manifold.points[p];
+            unpackId(n[k + 9 + p], point.id);
+            int q = j + 9 + 4 * p;
+            point.localPoint.set(f[q], f[q + 1]);
+            point.normalImpulse = f[q + 2];
+            point.tangentImpulse = f[q + 3];
+        }
+    }
+
+    int getBodyCount() {
+        return bodyCount;
+    }
+
+    int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * @return Byte occupati dallo stato salvato (corpi e contatti)
+     */
+    long getBytes() {
+        return (long) bodyCount * (BODY_FLOATS + 1) * Float.BYTES
+            + (long) contactCount * (CONTACT_FLOATS + CONTACT_INTS) * Float.BYTES;
+    }
+
+    // Riempie bodies con i corpi del World, nell'ordine della lista
+    private int indexBodies(World world) {
+        int count = world.getBodyCount();
+        if (bodies.length < count) {
+            bodies = new Body[Math.max(count, bodies.length * 2)];
+        }
+        int i = 0;
+        for (Body body = world.getBodyList(); body != null && i < count; body = body.getNext()) {
+            bodies[i++] = body;
+        }
+        Arrays.fill(bodies, i, bodies.length, null);
+        return i;
+    }
+
+    private void ensureBodyCapacity(int count) {
+        if (bodyFlags.length < count) {
+            int capacity = Math.max(count, bodyFlags.length * 2);
+            bodyFloats = Arrays.copyOf(bodyFloats, capacity * BODY_FLOATS);
+            bodyFlags = Arrays.copyOf(bodyFlags, capacity);
+        }
+    }
+
+    private void ensureContactCapacity(int count) {
+        if (contactInts.length < count * CONTACT_INTS) {
+            int capacity = Math.max(count, 2 * contactInts.length / CONTACT_INTS);
+            contactFloats = Arrays.copyOf(contactFloats, capacity * CONTACT_FLOATS);
+            contactInts = Arrays.copyOf(contactInts, capacity * CONTACT_INTS);
+        }
+    }
+
+    private static int fixtureIndex(Fixture fixture) {
+        int index = 0;
+        for (Fixture f = fixture.getBody().getFixtureList(); f != fixture; f = f.getNext()) {
+            index++;
+        }
+        return index;
+    }
+
+    private static Fixture fixture(Body body, int index) {
+        Fixture fixture = body.getFixtureList();
+        for (int i = 0; i < index; i++) {
+            fixture = fixture.getNext();
+        }
+        return fixture;
+    }
+
+    private static int packId(ContactID id) {
+        return (id.indexA & 0xFF) << 24 | (id.indexB & 0xFF) << 16 | (id.typeA & 0xFF) << 8 | (id.typeB & 0xFF);
+    }
+
+    private static void unpackId(int key, ContactID id) {
+        id.indexA = (byte) (key >>> 24);
+        id.indexB = (byte) (key >>> 16);
+        id.typeA = (byte) (key >>> 8);
+        id.typeB = (byte) key;
+    }
+}
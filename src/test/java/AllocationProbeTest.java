@@ -0,0 +1,30 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Il game loop non alloca a regime, in nessun passaggio di misura di
+ * {@link AllocationProbe}: né il tick di simulazione né il lavoro dell'EDT senza sprite
+ * (aree cambiate, indice del culler, scena, HUD e overlay) con un nuovo stato a ogni
+ * frame. Sono esclusi i setClip e il drawImage dello sprite, che allocano dentro Java2D.
+ */
+class AllocationProbeTest {
+
+    private static final int FRAMES = 600;
+    private static final int BOXES = 20;
+
+    @Test
+    void steadyStateLoopDoesNotAllocate() {
+        assumeTrue(AllocationProbe.isSupported(), "misura delle allocazioni non disponibile");
+
+        AllocationProbe.Result result = AllocationProbe.measure(FRAMES, BOXES);
+
+        for (int pass = 0; pass < result.tickBytes.length; pass++) {
+            assertEquals(0, result.tickBytes[pass],
+                         "byte allocati dal tick in " + FRAMES + " frame, passaggio " + pass);
+            assertEquals(0, result.plainBytes[pass],
+                         "byte allocati dal frame senza sprite in " + FRAMES + " frame, passaggio " + pass);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link QualityGovernor} scende di un livello alla volta sotto un carico che supera il
+ * budget, resta fermo tra le due soglie e risale quando il carico cala. I carichi sono
+ * sintetici: ogni valutazione è un intervallo di {@link FrameMetrics}.
+ */
+class QualityGovernorTest {
+
+    private static final long BUDGET = 16_000_000L;
+    private static final long OVERLOAD = BUDGET;
+    private static final long BETWEEN = BUDGET * 7 / 10;
+    private static final long LIGHT = BUDGET / 10;
+
+    @Test
+    void degradesOneLevelPerSustainedOverload() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        List<QualityGovernor.Transition> transitions = new ArrayList<>();
+        governor.addListener(transitions::add);
+
+        // Un solo intervallo sopra la soglia non basta
+        evaluate(governor, OVERLOAD, 1);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+
+        for (int level = QualityGovernor.SOLVER_REDUCED; level <= QualityGovernor.NO_TINT; level++) {
+            evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS);
+            assertEquals(level, governor.getLevel());
+        }
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS * 4);
+        assertEquals(QualityGovernor.NO_TINT, governor.getLevel());
+        assertTrue(governor.isFastRendering());
+        assertFalse(governor.isTintingEnabled());
+
+        assertEquals(QualityGovernor.NO_TINT, transitions.size());
+        for (QualityGovernor.Transition transition : transitions) {
+            assertTrue(transition.isDegrade());
+            assertEquals(transition.fromLevel + 1, transition.toLevel);
+        }
+    }
+
+    @Test
+    void holdsBetweenThresholdsAndRestoresWhenTheLoadDrops() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS * 2);
+        assertEquals(QualityGovernor.SOLVER_MINIMAL, governor.getLevel());
+
+        evaluate(governor, BETWEEN, QualityGovernor.RESTORE_INTERVALS * 10);
+        assertEquals(QualityGovernor.SOLVER_MINIMAL, governor.getLevel());
+
+        evaluate(governor, LIGHT, QualityGovernor.RESTORE_INTERVALS - 1);
+        assertEquals(QualityGovernor.SOLVER_MINIMAL, governor.getLevel());
+        evaluate(governor, LIGHT, 1);
+        assertEquals(QualityGovernor.SOLVER_REDUCED, governor.getLevel());
+        evaluate(governor, LIGHT, QualityGovernor.RESTORE_INTERVALS);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+        assertEquals(SimulationEngine.VELOCITY_ITERATIONS, governor.getVelocityIterations());
+        assertEquals(2, governor.getDegrades());
+        assertEquals(2, governor.getRestores());
+    }
+
+    @Test
+    void droppedStepsDegradeEvenWithinBudget() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        long dropped = 0;
+        for (int i = 0; i < QualityGovernor.DEGRADE_INTERVALS; i++) {
+            dropped += 3;
+            governor.evaluate(LIGHT, 0, dropped);
+        }
+        assertEquals(QualityGovernor.SOLVER_REDUCED, governor.getLevel());
+    }
+
+    @Test
+    void waitsLongerAfterARestoreThatBringsBackTheOverload() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS);
+        evaluate(governor, LIGHT, QualityGovernor.RESTORE_INTERVALS);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+
+        // Il ripristino riporta subito il sovraccarico
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS);
+        assertEquals(QualityGovernor.SOLVER_REDUCED, governor.getLevel());
+        evaluate(governor, LIGHT, QualityGovernor.RESTORE_INTERVALS);
+        assertEquals(QualityGovernor.SOLVER_REDUCED, governor.getLevel());
+        evaluate(governor, LIGHT, QualityGovernor.RESTORE_INTERVALS);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+    }
+
+    @Test
+    void disablingRestoresFullQuality() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS * 3);
+        assertEquals(QualityGovernor.FAST_RENDERING, governor.getLevel());
+
+        governor.setEnabled(false);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+        evaluate(governor, OVERLOAD, QualityGovernor.DEGRADE_INTERVALS * 3);
+        assertEquals(QualityGovernor.FULL, governor.getLevel());
+    }
+
+    // {@code intervals} intervalli con lo stesso carico, senza passi scartati
+    private static void evaluate(QualityGovernor governor, long load, int intervals) {
+        for (int i = 0; i < intervals; i++) {
+            governor.evaluate(load / 2, load - load / 2, 0);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Una registrazione di {@link SimulationRecorder} si rilegge con {@link SimulationRecording}
+ * identica alla simulazione, anche attraverso un cambio di segmento; alla chiusura i
+ * segmenti contengono solo i frame scritti, e una registrazione esistente non viene
+ * sovrascritta senza richiederlo. I frame sono allineati a 8 byte con qualsiasi numero
+ * di corpi.
+ */
+class SimulationRecorderTest {
+
+    private static final int STEPS = 120;
+    private static final int BOXES = 20;
+    private static final long BOX_SEED = 7L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayMatchesTheSimulation() throws IOException {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        EntityRegistry entities = engine.getEntities();
+        float[][] expectedX = new float[STEPS][];
+        float[][] expectedY = new float[STEPS][];
+        float[][] expectedAngle = new float[STEPS][];
+
+        try (SimulationRecorder recorder = new SimulationRecorder(directory, SimulationEngine.TIME_STEP, false)) {
+            for (int s = 0; s < STEPS; s++) {
+                if (s == STEPS / 2) {
+                    // Entità rimosse: il recorder passa a un nuovo segmento, con un numero di
+                    // corpi di parità opposta (e quindi con o senza riempimento nei frame)
+                    engine.despawn(entities.ids[entities.size() - 1]);
+                }
+                engine.step();
+                recorder.record(entities, engine.getStepCount());
+                expectedX[s] = Arrays.copyOf(entities.x, entities.size());
+                expectedY[s] = Arrays.copyOf(entities.y, entities.size());
+                expectedAngle[s] = Arrays.copyOf(entities.angle, entities.size());
+            }
+            assertEquals(2, recorder.getSegments());
+        }
+
+        try (SimulationRecording recording = SimulationRecording.open(directory)) {
+            assertEquals(STEPS, recording.getFrameCount());
+            assertEquals(2, recording.getSegmentCount());
+            BodyStates states = new BodyStates(recording.getMaxBodyCount());
+            // In ordine e poi all'indietro: i salti leggono gli stessi frame
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < STEPS; i++) {
+                    int f = pass == 0 ? i : STEPS - 1 - i;
+                    recording.read(f, states, pass == 0);
+                    assertEquals(f + 1, states.step);
+                    assertEquals(expectedX[f].length, states.count);
+                    assertArrayEquals(expectedX[f], Arrays.copyOf(states.x, states.count), "x al frame " + f);
+                    assertArrayEquals(expectedY[f], Arrays.copyOf(states.y, states.count), "y al frame " + f);
+                    assertArrayEquals(expectedAngle[f], Arrays.copyOf(states.angle, states.count),
+                                      "angolo al frame " + f);
+                }
+            }
+        }
+    }
+
+    @Test
+    void closeTruncatesSegmentsToTheWrittenFrames() throws IOException {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        EntityRegistry entities = engine.getEntities();
+        try (SimulationRecorder recorder = new SimulationRecorder(directory, SimulationEngine.TIME_STEP, false)) {
+            for (int s = 0; s < STEPS; s++) {
+                engine.step();
+                recorder.record(entities, engine.getStepCount());
+            }
+        }
+
+        Path segment = RecordingFormat.segmentPath(directory, 0);
+        assertEquals(RecordingFormat.segmentBytes(entities.size(), STEPS), Files.size(segment));
+        try (SimulationRecording recording = SimulationRecording.open(directory)) {
+            assertEquals(STEPS, recording.getFrameCount());
+        }
+    }
+
+    @Test
+    void framesAreEightByteAligned() {
+        for (int bodies = 0; bodies <= 9; bodies++) {
+            long frameBytes = RecordingFormat.frameBytes(bodies);
+            assertEquals(0, RecordingFormat.framesOffset(bodies) % 8, "inizio dei frame con " + bodies + " corpi");
+            assertEquals(0, frameBytes % 8, "passo dei frame con " + bodies + " corpi");
+            assertTrue(frameBytes >= RecordingFormat.STEP_BYTES
+                                   + (long) RecordingFormat.FRAME_VALUES * Float.BYTES * bodies);
+            assertTrue(frameBytes - 8 < RecordingFormat.STEP_BYTES
+                                       + (long) RecordingFormat.FRAME_VALUES * Float.BYTES * bodies);
+        }
+    }
+
+    @Test
+    void refusesANonEmptyDirectoryWithoutOverwrite() throws IOException {
+        record(1);
+        assertThrows(DirectoryNotEmptyException.class,
+                     () -> new SimulationRecorder(directory, SimulationEngine.TIME_STEP, false));
+
+        record(3);
+        try (SimulationRecording recording = SimulationRecording.open(directory)) {
+            assertEquals(3, recording.getFrameCount());
+        }
+    }
+
+    // Registra {@code steps} passi sostituendo la registrazione presente
+    private void record(int steps) throws IOException {
+        SimulationEngine engine = new SimulationEngine();
+        try (SimulationRecorder recorder = new SimulationRecorder(directory, SimulationEngine.TIME_STEP, true)) {
+            for (int s = 0; s < steps; s++) {
+                engine.step();
+                recorder.record(engine.getEntities(), engine.getStepCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Le interrogazioni dello {@link SpatialHash} della simulazione trovano le stesse entità
+ * di una scansione di tutto il registro, i teletrasporti che passano dall'indice non
+ * perdono corpi, e {@link BodyCuller} non scarta corpi che il frame interpolato
+ * disegnerebbe nell'area.
+ */
+class SpatialHashTest {
+
+    private static final int BOXES = 500;
+    private static final int STEPS = 300;
+    private static final long BOX_SEED = 7L;
+    private static final long QUERY_SEED = 42L;
+    private static final int QUERIES = 200;
+
+    private static SimulationEngine engine;
+    private static SpatialHash index;
+    private static EntityRegistry entities;
+
+    @BeforeAll
+    static void simulate() {
+        engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        for (int s = 0; s < STEPS; s++) {
+            engine.step();
+        }
+        index = engine.getSpatialIndex();
+        entities = engine.getEntities();
+    }
+
+    @Test
+    void queryFindsTheSameEntitiesAsAScan() {
+        SplittableRandom random = new SplittableRandom(QUERY_SEED);
+        assertQueryMatchesScan(0, 0, SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+        for (int q = 0; q < QUERIES; q++) {
+            float x = (float) random.nextDouble(-100, SimulationEngine.WORLD_WIDTH + 100);
+            float y = (float) random.nextDouble(-100, SimulationEngine.WORLD_HEIGHT + 100);
+            assertQueryMatchesScan(x, y, x + (float) random.nextDouble(400), y + (float) random.nextDouble(300));
+        }
+    }
+
+    @Test
+    void queryRadiusFindsTheSameEntitiesAsAScan() {
+        SplittableRandom random = new SplittableRandom(QUERY_SEED);
+        for (int q = 0; q < QUERIES; q++) {
+            float px = (float) random.nextDouble(-100, SimulationEngine.WORLD_WIDTH + 100);
+            float py = (float) random.nextDouble(-100, SimulationEngine.WORLD_HEIGHT + 100);
+            float radius = (float) random.nextDouble(200);
+            BitSet expected = new BitSet();
+            for (int i = 0; i < entities.size(); i++) {
+                float dx = Math.max(0, Math.abs(px - entities.x[i]) - index.getExtentX(i));
+                float dy = Math.max(0, Math.abs(py - entities.y[i]) - index.getExtentY(i));
+                if (dx * dx + dy * dy <= radius * radius) {
+                    expected.set(i);
+                }
+            }
+            BitSet found = new BitSet();
+            index.queryRadius(px, py, radius, i -> {
+                assertTrue(!found.get(i), "entità " + i + " visitata due volte");
+                found.set(i);
+                return true;
+            });
+            assertEquals(expected, found, "punto (" + px + ", " + py + "), raggio " + radius);
+        }
+    }
+
+    @Test
+    void nearestDynamicIsTheClosestCenterInRange() {
+        SplittableRandom random = new SplittableRandom(QUERY_SEED);
+        float radius = 24;
+        for (int q = 0; q < QUERIES; q++) {
+            float px = (float) random.nextDouble(SimulationEngine.WORLD_WIDTH);
+            float py = (float) random.nextDouble(SimulationEngine.WORLD_HEIGHT);
+            int expected = -1;
+            float best = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < entities.size(); i++) {
+                float dx = Math.max(0, Math.abs(px - entities.x[i]) - index.getExtentX(i));
+                float dy = Math.max(0, Math.abs(py - entities.y[i]) - index.getExtentY(i));
+                float cx = entities.x[i] - px;
+                float cy = entities.y[i] - py;
+                if ((entities.flags[i] & EntityRegistry.FLAG_STATIC) == 0
+                        && dx * dx + dy * dy <= radius * radius && cx * cx + cy * cy < best) {
+                    best = cx * cx + cy * cy;
+                    expected = i;
+                }
+            }
+            assertEquals(expected, engine.nearestDynamic(px, py, radius), "punto (" + px + ", " + py + ")");
+        }
+    }
+
+    @Test
+    void runnersPastTheRightEdgeAreRespawned() {
+        // Motore separato: i passi non devono spostare le entità degli altri test
+        SimulationEngine runner = new SimulationEngine();
+        runner.spawnBoxes(BOXES, BOX_SEED);
+        EntityRegistry registry = runner.getEntities();
+        float[] previousX = new float[registry.size()];
+        int respawns = 0;
+        for (int s = 0; s < STEPS; s++) {
+            System.arraycopy(registry.x, 0, previousX, 0, registry.size());
+            runner.step();
+            for (int i = 0; i < registry.size(); i++) {
+                if ((registry.flags[i] & EntityRegistry.FLAG_RUNNER) != 0) {
+                    assertTrue(registry.x[i] <= SimulationEngine.TELEPORT_X,
+                               "entità " + i + " oltre il bordo al passo " + s + ": x = " + registry.x[i]);
+                    if (registry.x[i] < previousX[i] - SimulationEngine.WORLD_WIDTH / 2) {
+                        respawns++;
+                    }
+                }
+            }
+        }
+        assertTrue(respawns > 0, "nessun teletrasporto in " + STEPS + " passi");
+    }
+
+    @Test
+    void queryOutsideFindsTheEntitiesNotContained() {
+        float width = SimulationEngine.WORLD_WIDTH;
+        float height = SimulationEngine.WORLD_HEIGHT;
+        BitSet expected = new BitSet();
+        for (int i = 0; i < entities.size(); i++) {
+            if (entities.x[i] - index.getExtentX(i) < 0 || entities.x[i] + index.getExtentX(i) > width
+                    || entities.y[i] - index.getExtentY(i) < 0 || entities.y[i] + index.getExtentY(i) > height) {
+                expected.set(i);
+            }
+        }
+        BitSet found = new BitSet();
+        index.queryOutside(0, 0, width, height, i -> {
+            found.set(i);
+            return true;
+        });
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void pickFindsTheTopmostBodyUnderThePoint() {
+        SplittableRandom random = new SplittableRandom(QUERY_SEED);
+        for (int q = 0; q < QUERIES * 10; q++) {
+            float px = (float) random.nextDouble(SimulationEngine.WORLD_WIDTH);
+            float py = (float) random.nextDouble(SimulationEngine.WORLD_HEIGHT);
+            int expected = -1;
+            for (int i = 0; i < entities.size(); i++) {
+                if (contains(i, px, py)) {
+                    expected = i;
+                }
+            }
+            assertEquals(expected, index.pick(px, py), "punto (" + px + ", " + py + ")");
+        }
+    }
+
+    @Test
+    void cullerKeepsEveryBodyDrawnInTheArea() {
+        BodyStateBuffer buffer = new BodyStateBuffer(entities.size());
+        for (int s = 0; s < 2; s++) {
+            engine.step();
+            buffer.back().copyFrom(entities);
+            buffer.publish();
+        }
+        BodyStates states = buffer.latest();
+        BodyCuller culler = new BodyCuller(SimulationEngine.SPATIAL_CELL_SIZE);
+
+        SplittableRandom random = new SplittableRandom(QUERY_SEED);
+        for (int q = 0; q < QUERIES; q++) {
+            float minX = (float) random.nextDouble(SimulationEngine.WORLD_WIDTH);
+            float minY = (float) random.nextDouble(SimulationEngine.WORLD_HEIGHT);
+            float maxX = minX + (float) random.nextDouble(300);
+            float maxY = minY + (float) random.nextDouble(300);
+            int count = culler.cull(states, minX, minY, maxX, maxY);
+            int[] visible = culler.getVisible();
+            BitSet culled = new BitSet();
+            for (int k = 0; k < count; k++) {
+                assertTrue(k == 0 || visible[k - 1] < visible[k], "indici non in ordine");
+                culled.set(visible[k]);
+            }
+
+            for (int i = 0; i < states.count; i++) {
+                if (states.isStatic(i)) {
+                    continue;
+                }
+                float radius = (float) Math.hypot(states.halfWidth[i], states.halfHeight[i]);
+                for (float alpha = 0; alpha <= 1; alpha += 0.25f) {
+                    float x = states.interpolatedX(i, alpha);
+                    float y = states.interpolatedY(i, alpha);
+                    if (x + radius >= minX && x - radius <= maxX && y + radius >= minY && y - radius <= maxY) {
+                        assertTrue(culled.get(i), "corpo " + i + " scartato (alpha " + alpha + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertQueryMatchesScan(float minX, float minY, float maxX, float maxY) {
+        BitSet expected = new BitSet();
+        for (int i = 0; i < entities.size(); i++) {
+            if (entities.x[i] + index.getExtentX(i) >= minX && entities.x[i] - index.getExtentX(i) <= maxX
+                    && entities.y[i] + index.getExtentY(i) >= minY && entities.y[i] - index.getExtentY(i) <= maxY) {
+                expected.set(i);
+            }
+        }
+        BitSet found = new BitSet();
+        index.query(minX, minY, maxX, maxY, i -> {
+            assertTrue(!found.get(i), "entità " + i + " visitata due volte");
+            found.set(i);
+            return true;
+        });
+        assertEquals(expected, found, "area (" + minX + ", " + minY + ") - (" + maxX + ", " + maxY + ")");
+    }
+
+    // Il punto è nel rettangolo ruotato dell'entità (come lo disegna BodyOutline)
+    private static boolean contains(int i, float px, float py) {
+        float dx = px - entities.x[i];
+        float dy = py - entities.y[i];
+        float cos = (float) Math.cos(entities.angle[i]);
+        float sin = (float) Math.sin(entities.angle[i]);
+        return Math.abs(dx * cos - dy * sin) <= entities.halfWidth[i]
+            && Math.abs(dx * sin + dy * cos) <= entities.halfHeight[i];
+    }
+}
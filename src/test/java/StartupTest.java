@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Il percorso di avvio della demo (vedi {@code --startup}): il primo frame si disegna
+ * senza aspettare lo sprite, caricato in background, che poi sostituisce il rettangolo
+ * colorato del cubo.
+ */
+class StartupTest {
+
+    private static final int BOXES = 20;
+    private static final long BOX_SEED = 7L;
+
+    @Test
+    void firstFrameDoesNotWaitForTheSprite() {
+        CompletableFuture<SceneRenderer.LoadedSprite> sprite = SceneRenderer.loadSpriteAsync();
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        BodyStates states = new BodyStates(engine.getEntities().size());
+        states.copyFrom(engine.getEntities());
+
+        int width = SimulationEngine.WORLD_WIDTH;
+        int height = SimulationEngine.WORLD_HEIGHT;
+        SceneRenderer renderer = new SceneRenderer(width, height);
+        BufferedImage withoutSprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        render(renderer, withoutSprite, states);
+        assertFalse(renderer.hasSprite());
+
+        SceneRenderer.LoadedSprite loaded = sprite.join();
+        assertNotNull(loaded, "sprite del cubo non disponibile");
+        renderer.installSprite(loaded);
+        assertTrue(renderer.hasSprite());
+
+        BufferedImage withSprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        render(renderer, withSprite, states);
+        assertFalse(samePixels(withoutSprite, withSprite), "il cubo non è cambiato dopo lo sprite");
+    }
+
+    private static void render(SceneRenderer renderer, BufferedImage target, BodyStates states) {
+        Graphics2D g2d = target.createGraphics();
+        renderer.render(g2d, states, 1.0f);
+        g2d.dispose();
+    }
+
+    private static boolean samePixels(BufferedImage a, BufferedImage b) {
+        int[] pa = TintKernels.pixelsOf(a);
+        int[] pb = TintKernels.pixelsOf(b);
+        return Arrays.equals(pa, pb);
+    }
+}
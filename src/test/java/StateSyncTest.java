@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Visualizzatori {@link StateSyncClient} collegati a uno {@link StateSyncServer} su
+ * loopback ricevono l'ultimo passo della simulazione entro l'errore di quantizzazione,
+ * anche dopo la rimozione di entità (che richiede un nuovo keyframe).
+ */
+class StateSyncTest {
+
+    private static final int BOXES = 100;
+    private static final int STEPS = 120;
+    private static final int CLIENTS = 2;
+    private static final long BOX_SEED = 7L;
+    private static final long TIMEOUT_NANOS = 5_000_000_000L;
+    // Errore massimo ammesso dopo la quantizzazione (metà del passo, più l'arrotondamento float)
+    private static final float MAX_POSITION_ERROR = 0.5f / StateSyncFormat.POSITION_SCALE + 1.0e-3f;
+    private static final float MAX_ANGLE_ERROR = 0.5f / StateSyncFormat.ANGLE_SCALE + 1.0e-5f;
+
+    private StateSyncServer server;
+    private final StateSyncClient[] viewers = new StateSyncClient[CLIENTS];
+
+    @AfterEach
+    void close() {
+        for (StateSyncClient viewer : viewers) {
+            if (viewer != null) {
+                viewer.close();
+            }
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void clientsReproduceTheSimulation() throws IOException {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        EntityRegistry entities = engine.getEntities();
+
+        server = new StateSyncServer(0);
+        server.start();
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        for (int c = 0; c < CLIENTS; c++) {
+            viewers[c] = new StateSyncClient(host, server.getPort());
+            viewers[c].start();
+        }
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (server.getClientCount() < CLIENTS && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+        assertEquals(CLIENTS, server.getClientCount(), "client connessi");
+
+        for (int s = 0; s < STEPS; s++) {
+            if (s == STEPS / 2) {
+                for (int k = 0; k < BOXES / 4; k++) {
+                    engine.despawn(entities.ids[entities.size() - 1]);
+                }
+            }
+            engine.step();
+            server.publish(entities, engine.getStepCount());
+            // Come a 60 Hz: il server ha il tempo di inviare quasi ogni frame
+            awaitStep(engine.getStepCount(), System.nanoTime() + 100_000_000L);
+        }
+        long lastStep = engine.getStepCount();
+        awaitStep(lastStep, System.nanoTime() + TIMEOUT_NANOS);
+
+        assertTrue(server.getKeyframesSent() >= 2 * CLIENTS, "keyframe inviati: " + server.getKeyframesSent());
+        assertTrue(server.getFramesSent() > server.getKeyframesSent(), "nessun delta inviato");
+        for (int c = 0; c < CLIENTS; c++) {
+            StateSyncClient viewer = viewers[c];
+            BodyStates received = viewer.getStates().latest();
+            assertEquals(lastStep, received.step, "ultimo passo del client " + (c + 1));
+            assertEquals(entities.size(), received.count, "corpi del client " + (c + 1));
+            assertTrue(viewer.getKeyframesReceived() >= 2, "keyframe ricevuti: " + viewer.getKeyframesReceived());
+            for (int i = 0; i < received.count; i++) {
+                assertEquals(entities.x[i], received.x[i], MAX_POSITION_ERROR, "x del corpo " + i);
+                assertEquals(entities.y[i], received.y[i], MAX_POSITION_ERROR, "y del corpo " + i);
+                assertEquals(entities.angle[i], received.angle[i], MAX_ANGLE_ERROR, "angolo del corpo " + i);
+            }
+        }
+    }
+
+    private void awaitStep(long step, long deadline) {
+        for (StateSyncClient viewer : viewers) {
+            while (viewer.getLastStep() != step && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(100_000L);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+
+/**
+ * Il {@link TiledRenderer} disegna la stessa scena del percorso Java2D di
+ * {@link SceneRenderer} usato dalla demo (suggerimenti di rendering predefiniti).
+ *
+ * La divisione in tile non cambia nulla: con tile di qualsiasi dimensione il frame è
+ * identico, bit a bit, a quello di un tile solo, quindi ai bordi dei tile non serve
+ * alcuna tolleranza.
+ *
+ * Rispetto a Java2D il frame è identico lontano dai contorni dei corpi, e dentro gli
+ * sprite differisce al più di {@value #SPRITE_TOLERANCE} per canale (arrotondamenti del
+ * campionamento bilineare). Solo nella fascia di {@value #EDGE_BAND} pixel attorno ai
+ * contorni c'è una tolleranza: Java2D normalizza i tratti antialiasati (STROKE_NORMALIZE)
+ * spostando i vertici fino a un quarto di pixel, mentre i tile seguono la geometria
+ * esatta, quindi i bordi cadono su pixel vicini. Lì un pixel è confrontato con i pixel
+ * del riferimento nel suo intorno 3x3, e i pixel diversi possono essere solo linee
+ * sottili: un bordo mancante o spostato di più produce un'area piena di pixel diversi.
+ */
+class TiledRendererTest {
+
+    private static final int STEPS = 240;
+    private static final int BOXES = 500;
+    private static final long BOX_SEED = 7L;
+    // A metà passo: le posizioni interpolate non sono allineate ai pixel
+    private static final float ALPHA = 0.5f;
+    private static final int THREADS = 2;
+    // Tile dispari e più piccoli: i bordi dei tile tagliano i corpi in punti diversi
+    private static final int ODD_TILE_SIZE = 37;
+
+    // Distanza massima dal contorno di un corpo (pixel) dei pixel con tolleranza:
+    // mezzo bordo di 2 pixel, antialiasing e normalizzazione dei tratti
+    private static final float EDGE_BAND = 2.5f;
+    // Differenza massima per canale dentro gli sprite, lontano dai contorni
+    private static final int SPRITE_TOLERANCE = 1;
+    // Nella fascia: un pixel è diverso se nessun pixel del riferimento nel suo intorno
+    // gli è vicino entro TOLERANCE su ogni canale
+    private static final int TOLERANCE = 32;
+    // Frazione massima dei pixel della fascia che sono diversi
+    private static final double MAX_DIFFERENT_PIXELS = 0.02;
+    // Pixel diversi circondati da pixel diversi (l'interno di un'area, non un bordo)
+    private static final int MAX_FILLED_PIXELS = 16;
+
+    private static BodyStates states;
+    private static TiledRenderer tiles;
+
+    @BeforeAll
+    static void simulate() {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        BodyStateBuffer buffer = new BodyStateBuffer(engine.getEntities().size());
+        for (int s = 0; s < STEPS; s++) {
+            engine.step();
+            buffer.back().copyFrom(engine.getEntities());
+            buffer.publish();
+        }
+        states = buffer.latest();
+        tiles = new TiledRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                  TiledRenderer.DEFAULT_TILE_SIZE, THREADS);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        tiles.shutdown();
+    }
+
+    @Test
+    void tilesDoNotChangeThePixels() {
+        TiledRenderer single = new TiledRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                                 Math.max(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT),
+                                                 1);
+        TiledRenderer odd = new TiledRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                              ODD_TILE_SIZE, THREADS);
+        try {
+            for (boolean sprites : new boolean[] {false, true}) {
+                int[] expected = TintKernels.pixelsOf(render(renderer(sprites, single)));
+                assertArrayEquals(expected, TintKernels.pixelsOf(render(renderer(sprites, tiles))),
+                                  "tile di " + TiledRenderer.DEFAULT_TILE_SIZE + " pixel, sprite " + sprites);
+                assertArrayEquals(expected, TintKernels.pixelsOf(render(renderer(sprites, odd))),
+                                  "tile di " + ODD_TILE_SIZE + " pixel, sprite " + sprites);
+            }
+        } finally {
+            single.shutdown();
+            odd.shutdown();
+        }
+    }
+
+    @Test
+    void matchesJava2dWithSprites() {
+        compare(true);
+    }
+
+    @Test
+    void matchesJava2dWithoutSprites() {
+        compare(false);
+    }
+
+    private static void compare(boolean sprites) {
+        int width = SimulationEngine.WORLD_WIDTH;
+        int height = SimulationEngine.WORLD_HEIGHT;
+        int[] expected = TintKernels.pixelsOf(render(renderer(sprites, null)));
+        int[] actual = TintKernels.pixelsOf(render(renderer(sprites, tiles)));
+        byte[] areas = areas(sprites, width, height);
+
+        boolean[] different = new boolean[expected.length];
+        long bandPixels = 0;
+        long differentCount = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if (areas[i] != BAND) {
+                    int allowed = areas[i] == SPRITE ? SPRITE_TOLERANCE : 0;
+                    assertTrue(maxChannelDifference(expected[i], actual[i]) <= allowed,
+                               String.format(Locale.ROOT, "pixel (%d, %d) lontano dai contorni: atteso #%06x, "
+                                             + "trovato #%06x", x, y, expected[i] & 0xFFFFFF, actual[i] & 0xFFFFFF));
+                    continue;
+                }
+                bandPixels++;
+                int nearest = Integer.MAX_VALUE;
+                for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+                    for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                        nearest = Math.min(nearest, maxChannelDifference(expected[ny * width + nx], actual[i]));
+                    }
+                }
+                if (nearest > TOLERANCE) {
+                    different[i] = true;
+                    differentCount++;
+                }
+            }
+        }
+        int filled = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                if (different[i] && different[i - 1] && different[i + 1]
+                        && different[i - width] && different[i + width]) {
+                    filled++;
+                }
+            }
+        }
+
+        double differentFraction = (double) differentCount / bandPixels;
+        String summary = String.format(Locale.ROOT, "%s: %d pixel nella fascia dei contorni, %.3f%% diversi "
+                                       + "(oltre %d), %d interni a un'area", sprites ? "con sprite" : "senza sprite",
+                                       bandPixels, differentFraction * 100, TOLERANCE, filled);
+        System.out.println(summary);
+
+        assertTrue(differentFraction <= MAX_DIFFERENT_PIXELS, summary);
+        assertTrue(filled <= MAX_FILLED_PIXELS, summary);
+    }
+
+    // Zone dei pixel: lontano dai corpi dinamici, dentro uno sprite, fascia dei contorni
+    private static final byte OUTSIDE = 0;
+    private static final byte SPRITE = 1;
+    private static final byte BAND = 2;
+
+    // Classifica ogni pixel (il suo centro) con la geometria esatta dei corpi interpolati,
+    // come la ruota BodyOutline
+    private static byte[] areas(boolean sprites, int width, int height) {
+        byte[] areas = new byte[width * height];
+        for (int b = 0; b < states.count; b++) {
+            if (states.isStatic(b)) {
+                continue;
+            }
+            float cx = states.interpolatedX(b, ALPHA);
+            float cy = states.interpolatedY(b, ALPHA);
+            float angle = states.interpolatedAngle(b, ALPHA);
+            float halfWidth = states.halfWidth[b];
+            float halfHeight = states.halfHeight[b];
+            boolean sprite = sprites && states.spriteId[b] == SimulationEngine.SPRITE_CUBE;
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            float reach = (float) Math.hypot(halfWidth, halfHeight) + EDGE_BAND;
+            int x0 = Math.max(0, (int) Math.floor(cx - reach));
+            int x1 = Math.min(width - 1, (int) Math.ceil(cx + reach));
+            int y0 = Math.max(0, (int) Math.floor(cy - reach));
+            int y1 = Math.min(height - 1, (int) Math.ceil(cy + reach));
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    float dx = x + 0.5f - cx;
+                    float dy = y + 0.5f - cy;
+                    float outX = Math.abs(dx * cos - dy * sin) - halfWidth;
+                    float outY = Math.abs(dx * sin + dy * cos) - halfHeight;
+                    // Distanza dal contorno, dentro o fuori dal rettangolo
+                    float distance = outX > 0 || outY > 0
+                        ? (float) Math.hypot(Math.max(outX, 0), Math.max(outY, 0))
+                        : -Math.max(outX, outY);
+                    int i = y * width + x;
+                    if (distance <= EDGE_BAND) {
+                        areas[i] = BAND;
+                    } else if (outX < 0 && outY < 0 && sprite && areas[i] == OUTSIDE) {
+                        areas[i] = SPRITE;
+                    }
+                }
+            }
+        }
+        return areas;
+    }
+
+    private static SceneRenderer renderer(boolean sprites, TiledRenderer tiledRenderer) {
+        SceneRenderer renderer = new SceneRenderer(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT);
+        if (sprites) {
+            renderer.installSprite(SceneRenderer.readCubeSprite());
+        }
+        renderer.setSpritesEnabled(sprites);
+        renderer.setTiledRenderer(tiledRenderer);
+        return renderer;
+    }
+
+    private static int maxChannelDifference(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+        }
+        return max;
+    }
+
+    private static BufferedImage render(SceneRenderer renderer) {
+        BufferedImage image = new BufferedImage(SimulationEngine.WORLD_WIDTH, SimulationEngine.WORLD_HEIGHT,
+                                                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        renderer.render(g2d, states, ALPHA);
+        g2d.dispose();
+        return image;
+    }
+}
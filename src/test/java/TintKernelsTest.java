@@ -0,0 +1,206 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
+/**
+ * I kernel di {@link TintKernels} sono il riferimento della colorazione: devono dare gli
+ * stessi pixel, bit a bit, dei metodi {@code apply*Tint} originali (getRGB/setRGB e
+ * moltiplicazione float pixel per pixel, riscritti qui sotto), e {@link TintPipeline}
+ * e {@link ColorMaskIndex} devono dare gli stessi pixel dei kernel applicati in sequenza,
+ * con le maschere scelte sui pixel dello sprite originale.
+ */
+class TintKernelsTest {
+
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 45;
+    private static final long SEED = 11L;
+    private static final Color TINT = new Color(100, 255, 100);
+    private static final Color REGION_TINT = new Color(255, 40, 180);
+    private static final Color TARGET = new Color(200, 60, 60);
+    private static final int TOLERANCE = 40;
+    // Seconda maschera, sovrapposta in parte alla prima
+    private static final Color OVERLAP_TARGET = new Color(230, 80, 40);
+    private static final int OVERLAP_TOLERANCE = 35;
+
+    @Test
+    void tintMatchesPerPixelReference() {
+        for (BufferedImage source : sources()) {
+            assertSamePixels(referenceTint(source, TINT, 0, 0, WIDTH, HEIGHT),
+                             TintKernels.tint(source, TINT));
+        }
+    }
+
+    @Test
+    void regionTintMatchesPerPixelReference() {
+        int[][] regions = {{10, 5, 20, 30}, {-8, -3, 25, 12}, {50, 30, 100, 100}, {70, 0, 5, 5}, {3, 4, 0, 10}};
+        for (BufferedImage source : sources()) {
+            for (int[] r : regions) {
+                assertSamePixels(referenceTint(source, REGION_TINT, r[0], r[1], r[2], r[3]),
+                                 TintKernels.regionTint(source, REGION_TINT, r[0], r[1], r[2], r[3]));
+            }
+        }
+    }
+
+    @Test
+    void colorMaskedTintMatchesPerPixelReference() {
+        for (BufferedImage source : sources()) {
+            for (int tolerance : new int[] {0, TOLERANCE, 255}) {
+                assertSamePixels(referenceMaskedTint(source, TINT, TARGET, tolerance),
+                                 TintKernels.colorMaskedTint(source, TINT, TARGET, tolerance));
+            }
+        }
+    }
+
+    @Test
+    void pipelineMatchesKernelsInSequence() {
+        for (BufferedImage source : sources()) {
+            BufferedImage expected = TintKernels.regionTint(TintKernels.tint(source, TINT), REGION_TINT, 12, 8, 30, 20);
+            expected = TintKernels.regionTint(expected, TINT, 25, -5, 60, 18);
+            BufferedImage actual = TintPipeline.create()
+                                               .tint(TINT)
+                                               .partialTint(REGION_TINT, 12, 8, 30, 20)
+                                               .partialTint(TINT, 25, -5, 60, 18)
+                                               .apply(source);
+            assertSamePixels(expected, actual);
+        }
+    }
+
+    @Test
+    void overlappingMasksMatchMaskedTintsOnTheOriginalPixels() {
+        for (BufferedImage source : sources()) {
+            BufferedImage expected = maskedTintInSequence(source, source, TINT, TARGET, TOLERANCE);
+            expected = maskedTintInSequence(expected, source, REGION_TINT, OVERLAP_TARGET, OVERLAP_TOLERANCE);
+            BufferedImage actual = ColorMaskIndex.tint(source,
+                                                       new ColorMaskIndex.MaskTint(TINT, TARGET, TOLERANCE),
+                                                       new ColorMaskIndex.MaskTint(REGION_TINT, OVERLAP_TARGET,
+                                                                                   OVERLAP_TOLERANCE));
+            assertSamePixels(expected, actual);
+        }
+    }
+
+    @Test
+    void pipelineMasksSelectTheOriginalPixels() {
+        for (BufferedImage source : sources()) {
+            BufferedImage expected = TintKernels.tint(source, TINT);
+            expected = maskedTintInSequence(expected, source, REGION_TINT, TARGET, TOLERANCE);
+            expected = maskedTintInSequence(expected, source, TINT, OVERLAP_TARGET, OVERLAP_TOLERANCE);
+            expected = TintKernels.regionTint(expected, REGION_TINT, 12, 8, 30, 20);
+            expected = maskedTintInSequence(expected, source, REGION_TINT, OVERLAP_TARGET, OVERLAP_TOLERANCE);
+            BufferedImage actual = TintPipeline.create()
+                                               .tint(TINT)
+                                               .colorMaskedTint(REGION_TINT, TARGET, TOLERANCE)
+                                               .colorMaskedTint(TINT, OVERLAP_TARGET, OVERLAP_TOLERANCE)
+                                               .partialTint(REGION_TINT, 12, 8, 30, 20)
+                                               .colorMaskedTint(REGION_TINT, OVERLAP_TARGET, OVERLAP_TOLERANCE)
+                                               .apply(source);
+            assertSamePixels(expected, actual);
+        }
+    }
+
+    // Tint di current sui pixel che TintKernels.colorMaskedTint sceglie nell'originale: con un
+    // tint nero cambiano tutti i pixel scelti, tranne quelli già neri, che nessun tint cambia
+    private static BufferedImage maskedTintInSequence(BufferedImage current, BufferedImage original,
+                                                      Color tintColor, Color targetColor, int tolerance) {
+        int[] originalPixels = new int[WIDTH * HEIGHT];
+        TintKernels.readArgb(original, originalPixels);
+        int[] selected = TintKernels.pixelsOf(TintKernels.colorMaskedTint(original, Color.BLACK,
+                                                                          targetColor, tolerance));
+        int[] tinted = TintKernels.pixelsOf(TintKernels.tint(current, tintColor));
+
+        BufferedImage result = TintKernels.createArgb(WIDTH, HEIGHT);
+        int[] pixels = TintKernels.pixelsOf(result);
+        TintKernels.readArgb(current, pixels);
+        for (int i = 0; i < pixels.length; i++) {
+            if (selected[i] != originalPixels[i]) {
+                pixels[i] = tinted[i];
+            }
+        }
+        return result;
+    }
+
+    // Sprite casuale con molti pixel vicini al colore target, come ARGB, come RGB e come
+    // sotto-immagine (raster con offset e passo di riga diversi dalla larghezza)
+    private static BufferedImage[] sources() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        BufferedImage argb = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage rgb = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        BufferedImage parent = new BufferedImage(WIDTH + 9, HEIGHT + 6, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < parent.getHeight(); y++) {
+            for (int x = 0; x < parent.getWidth(); x++) {
+                parent.setRGB(x, y, randomPixel(random));
+            }
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int pixel = randomPixel(random);
+                argb.setRGB(x, y, pixel);
+                rgb.setRGB(x, y, pixel);
+            }
+        }
+        return new BufferedImage[] {argb, rgb, parent.getSubimage(5, 4, WIDTH, HEIGHT)};
+    }
+
+    private static int randomPixel(SplittableRandom random) {
+        int alpha = random.nextInt(256) << 24;
+        if (random.nextBoolean()) {
+            return alpha | (random.nextInt(256) << 16) | (random.nextInt(256) << 8) | random.nextInt(256);
+        }
+        int r = TARGET.getRed() + random.nextInt(-2 * TOLERANCE, 2 * TOLERANCE);
+        int g = TARGET.getGreen() + random.nextInt(-2 * TOLERANCE, 2 * TOLERANCE);
+        int b = TARGET.getBlue() + random.nextInt(-2 * TOLERANCE, 2 * TOLERANCE);
+        return alpha | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+    }
+
+    private static int clamp(int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+
+    // applyTint / applyPartialTint originali: tutta l'immagine se la regione la copre
+    private static BufferedImage referenceTint(BufferedImage source, Color tintColor,
+                                               int regionX, int regionY, int regionWidth, int regionHeight) {
+        BufferedImage tinted = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int pixel = source.getRGB(x, y);
+                boolean inRegion = x >= regionX && x < regionX + regionWidth
+                                && y >= regionY && y < regionY + regionHeight;
+                tinted.setRGB(x, y, inRegion ? tintPixel(pixel, tintColor) : pixel);
+            }
+        }
+        return tinted;
+    }
+
+    // applyColorMaskedTint originale
+    private static BufferedImage referenceMaskedTint(BufferedImage source, Color tintColor,
+                                                     Color targetColor, int tolerance) {
+        BufferedImage tinted = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int pixel = source.getRGB(x, y);
+                boolean match = Math.abs(((pixel >> 16) & 0xff) - targetColor.getRed()) <= tolerance
+                             && Math.abs(((pixel >> 8) & 0xff) - targetColor.getGreen()) <= tolerance
+                             && Math.abs((pixel & 0xff) - targetColor.getBlue()) <= tolerance;
+                tinted.setRGB(x, y, match ? tintPixel(pixel, tintColor) : pixel);
+            }
+        }
+        return tinted;
+    }
+
+    private static int tintPixel(int pixel, Color tintColor) {
+        float tintR = tintColor.getRed() / 255.0f;
+        float tintG = tintColor.getGreen() / 255.0f;
+        float tintB = tintColor.getBlue() / 255.0f;
+        int red = clamp((int) (((pixel >> 16) & 0xff) * tintR));
+        int green = clamp((int) (((pixel >> 8) & 0xff) * tintG));
+        int blue = clamp((int) ((pixel & 0xff) * tintB));
+        return (pixel & 0xff000000) | (red << 16) | (green << 8) | blue;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertArrayEquals(TintKernels.pixelsOf(expected), TintKernels.pixelsOf(actual));
+    }
+}
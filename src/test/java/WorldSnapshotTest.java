@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * Dopo {@link SimulationEngine#restoreSnapshot} la simulazione ripete gli stessi passi:
+ * lo snapshot contiene anche i contatti e il loro warm starting. Con molti corpi
+ * ammucchiati i contatti nuovi possono nascere in un altro ordine (l'albero del
+ * broadphase non viene salvato), quindi il test usa poche scatole.
+ */
+class WorldSnapshotTest {
+
+    private static final int BOXES = 20;
+    private static final long BOX_SEED = 7L;
+    private static final int WARMUP_STEPS = 120;
+    private static final int STEPS = 60;
+    // Al ripristino il registro viene ricalcolato dai corpi (metri -> pixel): ammette
+    // l'arrotondamento della conversione, non uno scarto della simulazione
+    private static final float RESYNC_TOLERANCE = 1.0e-3f;
+
+    @Test
+    void rewindRepeatsTheSameSteps() {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        for (int s = 0; s < WARMUP_STEPS; s++) {
+            engine.step();
+        }
+        EntityRegistry entities = engine.getEntities();
+        WorldSnapshot snapshot = new WorldSnapshot();
+        engine.saveSnapshot(snapshot);
+        float[] savedX = Arrays.copyOf(entities.x, entities.size());
+        float[] savedY = Arrays.copyOf(entities.y, entities.size());
+
+        for (int s = 0; s < STEPS; s++) {
+            engine.step();
+        }
+        float[] expectedX = Arrays.copyOf(entities.x, entities.size());
+        float[] expectedY = Arrays.copyOf(entities.y, entities.size());
+
+        engine.restoreSnapshot(snapshot);
+        assertEquals(WARMUP_STEPS, engine.getStepCount());
+        assertArrayEquals(savedX, Arrays.copyOf(entities.x, entities.size()), RESYNC_TOLERANCE);
+        assertArrayEquals(savedY, Arrays.copyOf(entities.y, entities.size()), RESYNC_TOLERANCE);
+
+        for (int s = 0; s < STEPS; s++) {
+            engine.step();
+        }
+        assertArrayEquals(expectedX, Arrays.copyOf(entities.x, entities.size()), RESYNC_TOLERANCE,
+                          "x dopo i passi ripetuti");
+        assertArrayEquals(expectedY, Arrays.copyOf(entities.y, entities.size()), RESYNC_TOLERANCE,
+                          "y dopo i passi ripetuti");
+    }
+
+    @Test
+    void refusesASnapshotOfOtherEntities() {
+        SimulationEngine engine = new SimulationEngine();
+        engine.spawnBoxes(BOXES, BOX_SEED);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        engine.saveSnapshot(snapshot);
+
+        EntityRegistry entities = engine.getEntities();
+        engine.despawn(entities.ids[entities.size() - 1]);
+        assertThrows(IllegalStateException.class, () -> engine.restoreSnapshot(snapshot));
+    }
+}